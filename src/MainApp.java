@@ -1,5 +1,8 @@
 //@@author zenghou
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Timer;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -8,23 +11,68 @@ import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
 
 import com.ib.client.EClientSocket;
+import com.ib.client.EConflatingMessageQueue;
+import com.ib.client.EJournal;
+import com.ib.client.EPacingScheduler;
 import com.ib.client.EReader;
 import com.ib.client.EReaderSignal;
 
 import logic.EWrapperImplementation;
 import logic.Logic;
 import logic.LogicManager;
+import logic.SubscriptionRotation;
 import model.Model;
 import model.ModelManager;
 
 public class MainApp {
     private final static Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    /** Messages decoded per batch before EWrapperImplementation evaluates the contracts the batch updated */
+    private static final int MAX_MESSAGES_PER_BATCH = 256;
+    /** Outbound requests are written to TWS in batches of this many bytes, or after WRITE_BATCH_DELAY_MILLIS */
+    private static final int WRITE_BATCH_BYTES = 16 * 1024;
+    private static final long WRITE_BATCH_DELAY_MILLIS = 1;
+    /** TWS disconnects a client sending more than 50 messages a second; requests are paced below that, orders first */
+    private static final double MAX_REQUESTS_PER_SECOND = 45;
+    private static final int MAX_REQUEST_BURST = 10;
+    /** Historical data requests are limited to 60 per 10 minutes, and 6 at once */
+    private static final double MAX_HISTORICAL_REQUESTS_PER_SECOND = 0.1;
+    private static final int MAX_HISTORICAL_REQUEST_BURST = 6;
+    /** TWS address, overridable with -Dtws.host and -Dtws.port, e.g. to run against a stand-in server */
+    private static final String TWS_HOST = System.getProperty("tws.host", "127.0.0.1");
+    private static final int TWS_PORT = Integer.getInteger("tws.port", 7496);
+    /**
+     * With -Dtws.conflate=true, market data that is still queued when a newer value arrives is replaced by it, so that
+     * contracts are evaluated on the latest bar rather than on a backlog of stale ones
+     */
+    private static final boolean CONFLATE_MARKET_DATA = Boolean.getBoolean("tws.conflate");
+    private static final long MAX_QUEUED_MESSAGE_BYTES = 64 * 1024 * 1024;
+    /** With -Dtws.journal=directory, every message exchanged with TWS is recorded in a binary journal there */
+    private static final String JOURNAL_DIRECTORY = System.getProperty("tws.journal");
+    /** Journal segments kept on disk, 64MB each, overridable with -Dtws.journal.segments; the oldest are deleted */
+    private static final int MAX_JOURNAL_SEGMENTS = Integer.getInteger("tws.journal.segments", 16);
+    /**
+     * Real time bar subscriptions open at once, below TWS's default of 100 market data lines; the contracts are
+     * rotated through them, see {@link SubscriptionRotation}
+     */
+    private static final int REAL_TIME_BAR_SLOTS = 90;
+    private static final long ROTATION_INTERVAL_MILLIS = 1000;
+    /** Under half of MAX_REQUESTS_PER_SECOND, leaving the rest for orders */
+    private static final int MAX_REQUESTS_PER_ROTATION = 20;
+    /** Real time bars are 5 seconds apart, so a contract gets at least one bar before it is rotated out */
+    private static final long MIN_DWELL_SECONDS = 6;
+    private static final long MAX_DWELL_SECONDS = 15;
+    /** Threads that contracts are evaluated on; the bars of each contract are always evaluated in order */
+    private static final int SYMBOL_LANES = Runtime.getRuntime().availableProcessors();
 
     private EWrapperImplementation eWrapper; // Mechanism through which TWS delivers information to client app
     private EClientSocket eClientSocket; // Mechanism through which client app delivers information to TWS
     private EReaderSignal eReaderSignal;
     private EReader eReader;
+    private EConflatingMessageQueue conflatingQueue; // null unless CONFLATE_MARKET_DATA
+    private EJournal journal; // null unless JOURNAL_DIRECTORY is set
     private Timer timer;
+    private Timer rotationTimer; // kept apart from timer, so that a failing Parser run cannot stop the rotation
+    private SubscriptionRotation subscriptionRotation;
 
     protected Logic logic;
     protected Model model;
@@ -34,7 +82,7 @@ public class MainApp {
 
         model = new ModelManager();
 
-        eWrapper = new EWrapperImplementation(model);
+        eWrapper = new EWrapperImplementation(model, SYMBOL_LANES);
         eClientSocket = eWrapper.getClient();
         eReaderSignal = eWrapper.getSignal();
 
@@ -42,12 +90,31 @@ public class MainApp {
 
         model.getUniqueContractList().addObserver(logic);
 
+        subscriptionRotation = new SubscriptionRotation(eClientSocket, model.getRealTimeBarStore(),
+                REAL_TIME_BAR_SLOTS, MAX_REQUESTS_PER_ROTATION, MIN_DWELL_SECONDS, MAX_DWELL_SECONDS, TimeUnit.SECONDS);
+        logic.setSubscriptionRotation(subscriptionRotation);
+
         timer = new Timer();
+        rotationTimer = new Timer("Subscription rotation");
 
         // Connect to server
-        eClientSocket.eConnect("127.0.0.1", 7496, 0);
-
-        eReader = new EReader(eClientSocket, eReaderSignal);
+        eClientSocket.setWriteBatching(WRITE_BATCH_BYTES, WRITE_BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        EPacingScheduler pacing = new EPacingScheduler(MAX_REQUESTS_PER_SECOND, MAX_REQUEST_BURST);
+        pacing.setLaneRate(EPacingScheduler.Lane.HISTORICAL, MAX_HISTORICAL_REQUESTS_PER_SECOND,
+                MAX_HISTORICAL_REQUEST_BURST);
+        eClientSocket.setPacing(pacing);
+        if (JOURNAL_DIRECTORY != null) {
+            journal = new EJournal(Paths.get(JOURNAL_DIRECTORY), EJournal.DEFAULT_SEGMENT_BYTES, MAX_JOURNAL_SEGMENTS);
+            eClientSocket.setJournal(journal);
+        }
+        eClientSocket.eConnect(TWS_HOST, TWS_PORT, 0);
+
+        if (CONFLATE_MARKET_DATA) {
+            conflatingQueue = new EConflatingMessageQueue(MAX_QUEUED_MESSAGE_BYTES);
+            eReader = new EReader(eClientSocket, eReaderSignal, conflatingQueue);
+        } else {
+            eReader = new EReader(eClientSocket, eReaderSignal);
+        }
         eReader.start();
 
         //An additional thread is created in this program design to empty the messaging queue
@@ -55,7 +122,7 @@ public class MainApp {
             while (eClientSocket.isConnected()) {
                 eReaderSignal.waitForSignal();
                 try {
-                    eReader.processMsgs();
+                    eReader.processMsgs(MAX_MESSAGES_PER_BATCH);
                 } catch (Exception e) {
                     System.out.println("Exception: " + e.getMessage());
                 }
@@ -78,7 +145,9 @@ public class MainApp {
 
         // submitting of valid orders for today's session
         mainApp.logic.getRealTimeBars();
+        mainApp.rotationTimer.schedule(mainApp.subscriptionRotation, 0, ROTATION_INTERVAL_MILLIS);
         mainApp.timer.schedule(mainApp.logic.getParser(), 0, 30000);
+        mainApp.logic.getParser().startWatching();
 
         // mainApp.logic.cancelRealTimeBars(mainApp.eClientSocket);
         // mainApp.stop();
@@ -89,8 +158,23 @@ public class MainApp {
      */
     public void stop() {
         LOGGER.log(Level.INFO, "=============================[ Terminating Session ]===========================");
+        LOGGER.log(Level.INFO, "Message processing: " + eReader.metrics());
+        if (conflatingQueue != null) {
+            LOGGER.log(Level.INFO, "Market data conflation: " + conflatingQueue);
+        }
 
         eClientSocket.eDisconnect();
+
+        try {
+            eWrapper.getDispatcher().close(5, TimeUnit.SECONDS);
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
     }
 
     /**
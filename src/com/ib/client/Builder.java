@@ -14,27 +14,53 @@ import java.nio.charset.StandardCharsets;
 public class Builder implements ObjectOutput {
 	private static final char SEP = 0;
 	private static final byte[] EMPTY_LENGTH_HEADER = new byte[ 4 ];
+	/** Most fraction digits of a double encoded without Double.toString; 10^(MAX_FRACTION_DIGITS) must be exact */
+	private static final int MAX_FRACTION_DIGITS = 8;
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8 };
+	/** Double.toString switches to scientific notation at 10^7 */
+	private static final double MAX_PLAIN_DOUBLE = 1e7;
 
 	private final ByteBuffer m_sb;
+	private byte[] m_scratch = new byte[ 64 ]; // digits and ASCII strings are staged here and written in one go
 
 	public Builder( int size ) {
 	    m_sb = new ByteBuffer( size );
 	}
 
 	public void send(int a) {
-        send( String.valueOf(a) );
+        send( (long)a );
+	}
+
+	public void send(long a) {
+		int end = m_scratch.length;
+		int start = writeDigits( a, m_scratch, end );
+		m_scratch[ end - 1 ] = SEP;
+		m_sb.write( m_scratch, start, end - start );
 	}
 
 	public void sendMax(int a) {
-		send( a == Integer.MAX_VALUE ? "" : String.valueOf( a) );
+		if (a == Integer.MAX_VALUE) {
+			send( (String)null );
+		}
+		else {
+			send( a );
+		}
 	}
 
+	/** Encodes {@code a} as Double.toString would, formatting common prices directly */
 	public void send(double a) {
-        send( String.valueOf( a) );
+		if (!sendPlain( a )) {
+			send( String.valueOf( a) );
+		}
 	}
 
 	public void sendMax(double a) {
-		send( a == Double.MAX_VALUE ? "" : String.valueOf( a) );
+		if (a == Double.MAX_VALUE) {
+			send( (String)null );
+		}
+		else {
+			send( a );
+		}
 	}
 
 	public void send( boolean a) {
@@ -46,11 +72,27 @@ public class Builder implements ObjectOutput {
 	}
 
 	public void send( String a) {
-		if (a != null) {
-		    byte[] buffer = a.getBytes(StandardCharsets.UTF_8);
-		    m_sb.write( buffer, 0, buffer.length );
+		if (a == null) {
+			m_sb.write( SEP);
+			return;
+		}
+
+		int length = a.length();
+		if (length >= m_scratch.length) {
+			m_scratch = new byte[ Math.max( length + 1, m_scratch.length * 2) ];
+		}
+		for (int i = 0; i < length; i++) {
+			char c = a.charAt( i);
+			if (c >= 0x80) {
+			    byte[] buffer = a.getBytes(StandardCharsets.UTF_8);
+			    m_sb.write( buffer, 0, buffer.length );
+			    m_sb.write( SEP);
+			    return;
+			}
+			m_scratch[ i ] = (byte)c;
 		}
-		m_sb.write( SEP);
+		m_scratch[ length ] = SEP;
+		m_sb.write( m_scratch, 0, length + 1 );
 	}
 
 	public void send( byte[] bytes ) {
@@ -89,6 +131,93 @@ public class Builder implements ObjectOutput {
        m_sb.writeTo( dos );
     }
 
+    /** Discards the contents so that the builder can be reused for the next message */
+    void reset() {
+        m_sb.reset();
+    }
+
+    /** The builder's own buffer; valid until the builder is written to or reset */
+    byte[] buf() {
+        return m_sb.buf();
+    }
+
+    int size() {
+        return m_sb.size();
+    }
+
+    /**
+     * Writes the digits of {@code a} so that they end just before {@code end - 1}, which is left for the separator.
+     * @return the index of the first byte written
+     */
+    private static int writeDigits(long a, byte[] b, int end) {
+        int pos = end - 1;
+        long v = a;
+
+        do {
+            // v is never negated, so that Long.MIN_VALUE needs no special case
+            b[ --pos ] = (byte)('0' + Math.abs( (int)(v % 10)));
+            v /= 10;
+        } while (v != 0);
+
+        if (a < 0) {
+            b[ --pos ] = '-';
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes doubles that Double.toString would print in plain notation with a short fraction, e.g. 171.25 or
+     * 100.0, without creating a String. Anything else is left to the caller.
+     * @return false if {@code a} was not encoded
+     */
+    private boolean sendPlain(double a) {
+        double abs = Math.abs( a);
+
+        // zero is excluded for the sake of -0.0; NaN fails every comparison
+        if (!(abs >= 1e-3 && abs < MAX_PLAIN_DOUBLE)) {
+            return false;
+        }
+
+        for (int fractionDigits = 1; fractionDigits <= MAX_FRACTION_DIGITS; fractionDigits++) {
+            double scale = POWERS_OF_TEN[ fractionDigits ];
+            long scaled = Math.round( abs * scale);
+
+            if (scaled / scale == abs) {
+                sendScaled( a < 0, scaled, fractionDigits);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Writes {@code scaled / 10^fractionDigits} with trailing zeros of the fraction dropped, keeping at least one */
+    private void sendScaled(boolean negative, long scaled, int fractionDigits) {
+        while (fractionDigits > 1 && scaled % 10 == 0) {
+            scaled /= 10;
+            fractionDigits--;
+        }
+
+        byte[] b = m_scratch;
+        int end = b.length;
+        int pos = end - 1;
+        b[ pos ] = SEP;
+
+        for (int i = 0; i < fractionDigits; i++) {
+            b[ --pos ] = (byte)('0' + scaled % 10);
+            scaled /= 10;
+        }
+        b[ --pos ] = '.';
+        do {
+            b[ --pos ] = (byte)('0' + scaled % 10);
+            scaled /= 10;
+        } while (scaled != 0);
+
+        if (negative) {
+            b[ --pos ] = '-';
+        }
+        m_sb.write( b, pos, end - pos );
+    }
+
     // b[] must be at least b[position+4]
     static void intToBytes(int val, byte b[], int position) {
         b[position]   = (byte)(0xff & (val >> 24));
@@ -121,6 +250,10 @@ public class Builder implements ObjectOutput {
         void writeTo(DataOutputStream out) throws IOException {
             out.write( this.buf, 0, this.count );
         }
+
+        byte[] buf() {
+            return this.buf;
+        }
     }
 
 	@Override
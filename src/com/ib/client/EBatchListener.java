@@ -0,0 +1,10 @@
+package com.ib.client;
+
+/**
+ * Optionally implemented by an {@link EWrapper} that wants to know when {@link EReader#processMsgs(int)} has decoded
+ * a batch of messages, e.g. to act once on everything the batch updated instead of once per callback.
+ */
+public interface EBatchListener {
+	/** Called on the processing thread after the last callback of a batch of {@code batchSize} messages */
+	void onBatchEnd(int batchSize);
+}
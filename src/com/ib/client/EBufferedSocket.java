@@ -0,0 +1,122 @@
+package com.ib.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link ESocket} that corks outbound messages: they are collected in a buffer and written to the socket
+ * together once {@code flushThreshold} bytes are pending, when {@link #flush()} is called, or at the latest
+ * {@code maxDelayNanos} after the first pending message, so a burst of requests costs a few writes instead of one
+ * per request.
+ */
+class EBufferedSocket extends ESocket {
+	private final byte[] m_buffer;
+	private final long m_maxDelayNanos;
+	private final ScheduledExecutorService m_flusher; // null if messages are only flushed by size or explicitly
+	private int m_count;
+	private boolean m_isFlushScheduled;
+	private IOException m_flushFailure; // from a delayed flush, reported to the next caller
+
+	/**
+	 * @param flushThreshold pending bytes at which the buffer is written out
+	 * @param maxDelayNanos longest time a message may wait for the buffer to fill; 0 to wait for the threshold or an
+	 *        explicit flush
+	 */
+	EBufferedSocket(Socket s, int flushThreshold, long maxDelayNanos) throws IOException {
+		this(s.getOutputStream(), flushThreshold, maxDelayNanos);
+	}
+
+	EBufferedSocket(OutputStream out, int flushThreshold, long maxDelayNanos) {
+		super(out);
+		m_buffer = new byte[flushThreshold];
+		m_maxDelayNanos = maxDelayNanos;
+		m_flusher = maxDelayNanos > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "EBufferedSocket flusher");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+	}
+
+	@Override
+	public synchronized void send(EMessage msg) throws IOException {
+		checkFlushFailure();
+
+		int length = msg.length();
+		if (length > m_buffer.length - m_count) {
+			writeBuffer();
+		}
+		if (length >= m_buffer.length) {
+			// too big to be worth copying
+			super.send(msg);
+			return;
+		}
+
+		System.arraycopy(msg.buf(), msg.offset(), m_buffer, m_count, length);
+		m_count += length;
+
+		if (m_count == m_buffer.length) {
+			writeBuffer();
+		} else if (m_flusher != null && !m_isFlushScheduled) {
+			m_isFlushScheduled = true;
+			m_flusher.schedule(this::delayedFlush, m_maxDelayNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	@Override
+	protected synchronized void send(String str) throws IOException {
+		flush();
+		super.send(str);
+	}
+
+	@Override
+	public synchronized void flush() throws IOException {
+		checkFlushFailure();
+		writeBuffer();
+	}
+
+	/** Number of bytes waiting to be written */
+	synchronized int pendingBytes() {
+		return m_count;
+	}
+
+	private synchronized void delayedFlush() {
+		m_isFlushScheduled = false;
+		try {
+			writeBuffer();
+		} catch (IOException e) {
+			m_flushFailure = e;
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		if (m_count > 0) {
+			int count = m_count;
+			m_count = 0; // dropped on failure; the connection is unusable then anyway
+			m_dos.write(m_buffer, 0, count);
+		}
+	}
+
+	private void checkFlushFailure() throws IOException {
+		IOException failure = m_flushFailure;
+		if (failure != null) {
+			m_flushFailure = null;
+			throw failure;
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (m_flusher != null) {
+			m_flusher.shutdownNow();
+		}
+		try {
+			writeBuffer();
+		} finally {
+			super.close();
+		}
+	}
+}
@@ -324,6 +324,7 @@ public abstract class EClient {
 	    	// Switch to GW API (Version 100+ requires length prefix)
 	    	sendV100APIHeader();
 	    }
+	    m_socketTransport.flush(); // TWS answers nothing until it has the client version
     }
     
     public void disableUseV100Plus() {
@@ -385,7 +386,7 @@ public abstract class EClient {
             if (m_serverVersion >= MIN_SERVER_VER_OPTIONAL_CAPABILITIES) {
                 b.send(m_optionalCapabilities);
             }
-            closeAndSend(b);
+            closeAndFlush(b);
         }
         catch( Exception e) {
             error( EClientErrors.NO_VALID_ID,
@@ -1900,7 +1901,7 @@ public abstract class EClient {
                b.sendMax(order.cashQty());
            }
            
-           closeAndSend(b);
+           closeAndFlush(b);
         }
         catch( Exception e) {
             error( id, EClientErrors.FAIL_SEND_ORDER, e.toString());
@@ -1994,7 +1995,7 @@ public abstract class EClient {
             b.send( VERSION);
             b.send( id);
 
-            closeAndSend(b);
+            closeAndFlush(b);
         }
         catch( Exception e) {
             error( id, EClientErrors.FAIL_SEND_CORDER, e.toString());
@@ -3625,6 +3626,82 @@ public abstract class EClient {
     protected abstract Builder prepareBuffer();
     
     protected abstract void closeAndSend(Builder buf) throws IOException;
+
+    /**
+     * Returns the lane an {@link EPacingScheduler} queues a request with message id {@code msgId} in. A cancellation
+     * goes in the lane of the request it cancels, so that it cannot overtake that request while it is still queued.
+     */
+    static EPacingScheduler.Lane pacingLaneOf(int msgId) {
+        switch (msgId) {
+            case PLACE_ORDER:
+            case CANCEL_ORDER:
+            case REQ_GLOBAL_CANCEL:
+            case EXERCISE_OPTIONS:
+            case START_API:
+            case REQ_IDS:
+                return EPacingScheduler.Lane.ORDERS;
+            // the requests TWS applies its historical data pacing rules to, and their cancellations
+            case REQ_HISTORICAL_DATA:
+            case CANCEL_HISTORICAL_DATA:
+            case REQ_HEAD_TIMESTAMP:
+            case CANCEL_HEAD_TIMESTAMP:
+            case REQ_HISTOGRAM_DATA:
+            case CANCEL_HISTOGRAM_DATA:
+            case REQ_HISTORICAL_TICKS:
+                return EPacingScheduler.Lane.HISTORICAL;
+            default:
+                return EPacingScheduler.Lane.SUBSCRIPTIONS;
+        }
+    }
+
+    /** Returns whether a request with message id {@code msgId} cancels an earlier one; see {@link #pacingLaneOf(int)} */
+    static boolean isPacingCancel(int msgId) {
+        switch (msgId) {
+            case CANCEL_MKT_DATA:
+            case CANCEL_MKT_DEPTH:
+            case CANCEL_NEWS_BULLETINS:
+            case CANCEL_SCANNER_SUBSCRIPTION:
+            case CANCEL_HISTORICAL_DATA:
+            case CANCEL_REAL_TIME_BARS:
+            case CANCEL_FUNDAMENTAL_DATA:
+            case CANCEL_CALC_IMPLIED_VOLAT:
+            case CANCEL_CALC_OPTION_PRICE:
+            case CANCEL_ACCOUNT_SUMMARY:
+            case CANCEL_POSITIONS:
+            case CANCEL_POSITIONS_MULTI:
+            case CANCEL_ACCOUNT_UPDATES_MULTI:
+            case CANCEL_HISTOGRAM_DATA:
+            case CANCEL_HEAD_TIMESTAMP:
+            case CANCEL_PNL:
+            case CANCEL_PNL_SINGLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** Sends {@code buf} without letting the transport hold it back, for requests that must not wait, e.g. orders */
+    protected void closeAndFlush(Builder buf) throws IOException {
+    	closeAndSend(buf);
+    	m_socketTransport.flush();
+    }
+
+    /** Writes out any requests held back by a transport that batches writes */
+    public synchronized void flush() {
+        // not connected?
+        if( !isConnected()) {
+            notConnected();
+            return;
+        }
+
+        try {
+        	m_socketTransport.flush();
+        }
+        catch( Exception e) {
+            error( EClientErrors.NO_VALID_ID, EClientErrors.FAIL_SEND, e.toString());
+            close();
+        }
+    }
     
     private void sendV100APIHeader() throws IOException {
     	try (Builder builder = new Builder(1024)) {
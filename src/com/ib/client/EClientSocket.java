@@ -3,7 +3,11 @@ package com.ib.client;
 import java.io.DataInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 public class EClientSocket extends EClient implements EClientMsgSink  {
 
@@ -14,6 +18,15 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	private boolean m_asyncEConnect = false;
 	private boolean m_connected = false;
 	private Socket m_socket;
+	private EMessageFramer m_framer;
+	// reused by every request; requests are synchronized on this client, so one is built and sent at a time
+	private final Builder m_outBuffer = new Builder( 1024 );
+	private int m_writeBatchSize = 0; // 0 writes each request to the socket as it is sent
+	private long m_maxWriteDelayNanos = 0;
+	private final ENioSelector m_selector; // null for a blocking socket read by an EReader thread
+	private ESocketChannel m_channel;      // set while connected through a SocketChannel
+	private volatile EJournal m_journal;   // null unless messages are journaled
+	private EPacingScheduler m_pacing;     // null unless requests are paced
 		
 	public void setAsyncEConnect(boolean asyncEConnect) {
 		this.m_asyncEConnect = asyncEConnect;
@@ -23,13 +36,60 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 		return m_asyncEConnect;
 	}
 
+	/**
+	 * Makes connections opened afterwards batch outbound requests instead of writing each to the socket: requests
+	 * are written together once {@code batchSize} bytes are pending, on {@link #flush()}, or {@code maxDelay} after
+	 * the first pending request, whichever comes first. Orders and order cancellations are always written at once.
+	 * @param batchSize pending bytes at which requests are written; 0 disables batching
+	 * @param maxDelay 0 to hold requests until the batch is full or flushed
+	 */
+	public void setWriteBatching(int batchSize, long maxDelay, TimeUnit unit) {
+		m_writeBatchSize = batchSize;
+		m_maxWriteDelayNanos = unit.toNanos(maxDelay);
+	}
+
+	/**
+	 * Makes connections opened afterwards queue requests in {@code pacing}, which writes them out at the rate it
+	 * allows, orders first; null to write requests as they are sent. Requires V100+ framing.
+	 */
+	public void setPacing(EPacingScheduler pacing) {
+		m_pacing = pacing;
+	}
+
+	public EPacingScheduler pacing() {
+		return m_pacing;
+	}
+
+	/**
+	 * Records every message received and every request sent from now on in {@code journal}; null to stop. If the
+	 * journal cannot be written, the error is reported to the EWrapper and journaling stops.
+	 */
+	public void setJournal(EJournal journal) {
+		m_journal = journal;
+	}
+
+	public EJournal journal() {
+		return m_journal;
+	}
+
 	public EClientSocket(EWrapper eWrapper, EReaderSignal signal) {
+		this(eWrapper, signal, null);
+	}
+
+	/**
+	 * Constructs a client socket that connects through a {@link java.nio.channels.SocketChannel} and is read by
+	 * {@code selector}'s thread once its {@link EReader} is started. Requires V100+ framing.
+	 * @param selector null for a blocking socket read by a thread of its own
+	 */
+	public EClientSocket(EWrapper eWrapper, EReaderSignal signal, ENioSelector selector) {
 		super(eWrapper, signal);
+		m_selector = selector;
 	}
 
 	@Override
 	protected Builder prepareBuffer() {
-        Builder buf = new Builder( 1024 );
+        Builder buf = m_outBuffer;
+        buf.reset();
         if( m_useV100Plus ) {
             buf.allocateLengthHeader();
         }
@@ -39,20 +99,82 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	@Override
 	protected void closeAndSend(Builder buf) throws IOException {
     	if( m_useV100Plus ) {
-    		buf.updateLength( 0 ); // New buffer means length header position is always zero
+    		buf.updateLength( 0 ); // Reset buffer means length header position is always zero
     	}
     	
-    	EMessage msg = new EMessage(buf);
+    	// a paced request is journaled by the pacing scheduler once it is written, if it is written at all
+    	if (m_pacing == null || m_socketTransport != m_pacing) {
+    		int header = m_useV100Plus ? 4 : 0;
+    		journalOutbound(buf.buf(), header, buf.size() - header);
+    	}
     	
-    	sendMsg(msg);
+    	// a view of the buffer, written to the socket in one go before the buffer is reused
+    	sendMsg(new EMessage(buf));
     }
 
+	/** Records a request, without its length prefix, as it is written */
+	private void journalOutbound(byte[] buf, int offset, int length) {
+		EJournal journal = m_journal;
+		if (journal != null) {
+			try {
+				journal.appendOutbound(buf, offset, length);
+			} catch (IOException e) {
+				journalFailed(e);
+			}
+		}
+	}
+
+	/** Records a message framed by an {@link EReader}, on the thread that read it */
+	void journalInbound(EMessage msg) {
+		EJournal journal = m_journal;
+		if (journal != null) {
+			try {
+				journal.appendInbound(msg);
+			} catch (IOException e) {
+				journalFailed(e);
+			}
+		}
+	}
+
+	private void journalFailed(IOException e) {
+		m_journal = null;
+		m_eWrapper.error(e);
+	}
+
 	protected synchronized void eConnect(Socket socket) throws IOException {
 	    // create io streams
-	    m_socketTransport = new ESocket(socket);
-	    m_dis = new DataInputStream(socket.getInputStream());
+	    OutputStream out;
+	    if (m_selector != null) {
+	    	if (socket.getChannel() == null) {
+	    		throw new IllegalArgumentException("a client socket with an ENioSelector needs a socket opened by a SocketChannel");
+	    	}
+	    	if (!m_useV100Plus) {
+	    		throw new IOException("an ENioSelector can only read V100+ (length-prefixed) messages");
+	    	}
+	    	// blocking until the EReader registers the channel with the selector, so that the handshake is unchanged
+	    	socket.getChannel().configureBlocking(true);
+	    	m_channel = new ESocketChannel(socket.getChannel());
+	    	m_dis = null;
+	    	out = m_channel.outputStream();
+	    } else {
+	    	m_channel = null;
+	    	m_dis = new DataInputStream(socket.getInputStream());
+	    	out = socket.getOutputStream();
+	    }
+	    m_socketTransport = m_writeBatchSize > 0
+	    		? new EBufferedSocket(out, m_writeBatchSize, m_maxWriteDelayNanos)
+	    		: new ESocket(out);
+	    if (m_pacing != null) {
+	    	if (!m_useV100Plus) {
+	    		throw new IOException("requests can only be paced with V100+ (length-prefixed) messages");
+	    	}
+	    	m_pacing.attach(m_socketTransport, request -> journalOutbound(request, 4, request.length - 4));
+	    	m_socketTransport = m_pacing;
+	    }
 	    m_defaultPort = socket.getPort();
 	    m_socket = socket;
+	    // owned by the connection rather than a reader, so that bytes read ahead are not lost between readers
+	    m_framer = new EMessageFramer(this::read);
 	
 	    sendConnectRequest();
 	
@@ -91,8 +213,7 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	        return;
 	    }
 	    try{
-	        Socket socket = new Socket( m_host, port);
-	        eConnect(socket);
+	        eConnect(openSocket(m_host, port));
 	    }
 	    catch( Exception e) {
 	    	eDisconnect();
@@ -139,6 +260,15 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 		m_serverVersion = version;
 		m_TwsTime = time;	
 		
+		EJournal journal = m_journal;
+		if (journal != null) {
+			try {
+				journal.appendServerVersion(version);
+			} catch (IOException e) {
+				journalFailed(e);
+			}
+		}
+		
 		if( m_useV100Plus && (m_serverVersion < MIN_VERSION || m_serverVersion > MAX_VERSION) ) {
 			eDisconnect();
 			m_eWrapper.error(EClientErrors.NO_VALID_ID, EClientErrors.UNSUPPORTED_VERSION.code(), EClientErrors.UNSUPPORTED_VERSION.msg());
@@ -181,7 +311,15 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	        System.out.println( "Warning: redirect port is invalid, using default port");
 	        newPort = defaultPort;
 	    }
-	    eConnect( new Socket( m_host, newPort ) );
+	    eConnect( openSocket( m_host, newPort ) );
+	}
+
+	/** Opens a plain socket, or a SocketChannel's socket if this client is read by an ENioSelector */
+	private Socket openSocket(String host, int port) throws IOException {
+		if (m_selector == null) {
+			return new Socket(host, port);
+		}
+		return SocketChannel.open(new InetSocketAddress(host, port)).socket();
 	}
 
 	@Override
@@ -191,7 +329,7 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 
 	private synchronized void eDisconnect( boolean resetState ) {
 	    // not connected?
-	    if( m_dis == null && m_socketTransport == null) {
+	    if( m_dis == null && m_socketTransport == null && m_channel == null) {
 	        return;
 	    }
 	
@@ -206,6 +344,8 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	
 	    FilterInputStream dis = m_dis;
 	    m_dis = null;
+	    ESocketChannel channel = m_channel;
+	    m_channel = null;
 	    if (m_socketTransport != null) {
 			try {
 				m_socketTransport.close();
@@ -218,14 +358,36 @@ public class EClientSocket extends EClient implements EClientMsgSink  {
 	    try {
 	        if (dis != null)
 	        	dis.close();
+	        if (channel != null) {
+	        	channel.channel().close();
+	        	m_selector.wakeup();
+	        }
 	    } catch (Exception ignored) {
 	    }
 	}
 
+	/** @return 0 if the connection is read by an ENioSelector and has no bytes for now */
 	public int read(byte[] buf, int off, int len) throws IOException {
+		ESocketChannel channel = m_channel;
+		
+		if (channel != null) {
+			return channel.read(buf, off, len);
+		}
 		return m_dis.read(buf, off, len);
 	}
 
+	ENioSelector selector() {
+		return m_selector;
+	}
+
+	SocketChannel channel() {
+		return m_channel == null ? null : m_channel.channel();
+	}
+
+	EMessageFramer framer() {
+		return m_framer;
+	}
+
 	public int readInt() throws IOException {
 		return m_dis.readInt();
 	}
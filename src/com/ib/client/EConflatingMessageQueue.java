@@ -0,0 +1,232 @@
+package com.ib.client;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Queue that keeps only the latest market data when the thread calling {@link EReader#processMsgs()} falls behind.
+ * A tick price, size, generic, string or option computation, or a real time bar, replaces the message of the same
+ * type for the same reqId and tick type that is still queued, and is then delivered in that message's place. Every
+ * other message, e.g. order status, execution or error, is queued as it is and never dropped.
+ *
+ * Queued messages are bounded by {@code maxBytes}: once they take up that many bytes, putting another message that
+ * does not replace a queued one waits until messages are polled, which stops reading the socket and lets TCP flow
+ * control slow down TWS. Market data messages are copied out of the framer's chunk when queued, so a latest value
+ * that stays queued for long does not hold on to a whole chunk.
+ */
+public class EConflatingMessageQueue implements EMessageQueue {
+	private static final int MAX_MSG_ID = 128;
+	private static final long NOT_CONFLATED = -1;
+
+	// queued messages and latest market data slots in order, guarded by this
+	private final ArrayDeque<Object> m_queue = new ArrayDeque<>();
+	private final HashMap<Long, Slot> m_slots = new HashMap<>();
+	private final long m_maxBytes;
+	private long m_bytes;
+	private final long[] m_conflated = new long[MAX_MSG_ID];
+	private long m_maxQueuedBytes;
+
+	/** @param maxBytes total size of the queued messages above which putting a message waits */
+	public EConflatingMessageQueue(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+		}
+		m_maxBytes = maxBytes;
+	}
+
+	@Override
+	public synchronized boolean put(EMessage msg) {
+		long key = conflationKey(msg);
+
+		if (key != NOT_CONFLATED) {
+			msg = msg.detach();
+
+			Slot slot = m_slots.get(key);
+			if (slot != null) {
+				m_bytes += msg.length() - slot.m_msg.length();
+				slot.m_msg.release();
+				slot.m_msg = msg;
+				m_conflated[msgId(key)]++;
+				return true;
+			}
+		}
+
+		while (m_bytes >= m_maxBytes) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				msg.release();
+				return false; // the reader is being stopped
+			}
+		}
+
+		if (key != NOT_CONFLATED) {
+			Slot slot = new Slot(key, msg);
+			m_slots.put(key, slot);
+			m_queue.addLast(slot);
+		} else {
+			m_queue.addLast(msg);
+		}
+		m_bytes += msg.length();
+		m_maxQueuedBytes = Math.max(m_maxQueuedBytes, m_bytes);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean offer(EMessage msg) {
+		if (m_bytes >= m_maxBytes) {
+			long key = conflationKey(msg);
+			if (key == NOT_CONFLATED || !m_slots.containsKey(key)) {
+				return false;
+			}
+		}
+		return put(msg);
+	}
+
+	@Override
+	public synchronized EMessage poll() {
+		Object head = m_queue.pollFirst();
+		if (head == null) {
+			return null;
+		}
+
+		EMessage msg;
+		if (head instanceof Slot) {
+			Slot slot = (Slot)head;
+			m_slots.remove(slot.m_key);
+			msg = slot.m_msg;
+		} else {
+			msg = (EMessage)head;
+		}
+
+		if (m_bytes >= m_maxBytes) {
+			notifyAll();
+		}
+		m_bytes -= msg.length();
+		return msg;
+	}
+
+	/** Number of queued messages */
+	public synchronized int size() {
+		return m_queue.size();
+	}
+
+	/** Total size of the queued messages in bytes */
+	public synchronized long queuedBytes() {
+		return m_bytes;
+	}
+
+	/** Largest total size the queued messages have reached, in bytes */
+	public synchronized long maxQueuedBytes() {
+		return m_maxQueuedBytes;
+	}
+
+	/** Number of messages with incoming message id {@code msgId}, e.g. 1 for tick price, replaced by a later one */
+	public synchronized long conflatedCount(int msgId) {
+		return msgId >= 0 && msgId < MAX_MSG_ID ? m_conflated[msgId] : 0;
+	}
+
+	/** Number of messages of any type replaced by a later one */
+	public synchronized long conflatedCount() {
+		long total = 0;
+		for (long count : m_conflated) {
+			total += count;
+		}
+		return total;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "queued=" + m_queue.size() + " queuedBytes=" + m_bytes + " maxQueuedBytes=" + m_maxQueuedBytes
+				+ " conflated[tickPrice=" + m_conflated[EDecoder.TICK_PRICE]
+				+ " tickSize=" + m_conflated[EDecoder.TICK_SIZE]
+				+ " tickOptionComputation=" + m_conflated[EDecoder.TICK_OPTION_COMPUTATION]
+				+ " tickGeneric=" + m_conflated[EDecoder.TICK_GENERIC]
+				+ " tickString=" + m_conflated[EDecoder.TICK_STRING]
+				+ " realtimeBar=" + m_conflated[EDecoder.REAL_TIME_BARS] + "]";
+	}
+
+	/**
+	 * Returns msgId, tick type and reqId packed into a key for market data messages, or NOT_CONFLATED for all others.
+	 * These messages all start with msgId, version and reqId, followed by the tick type for ticks.
+	 */
+	static long conflationKey(EMessage msg) {
+		byte[] buf = msg.buf();
+		int pos = msg.offset();
+		int end = pos + msg.length();
+
+		long msgId = parseField(buf, pos, end);
+		boolean hasTickType;
+
+		switch ((int)msgId) {
+			case EDecoder.TICK_PRICE:
+			case EDecoder.TICK_SIZE:
+			case EDecoder.TICK_OPTION_COMPUTATION:
+			case EDecoder.TICK_GENERIC:
+			case EDecoder.TICK_STRING:
+				hasTickType = true;
+				break;
+			case EDecoder.REAL_TIME_BARS:
+				hasTickType = false;
+				break;
+			default:
+				return NOT_CONFLATED;
+		}
+
+		pos = skipField(buf, pos, end); // msgId
+		pos = skipField(buf, pos, end); // version
+		long reqId = parseField(buf, pos, end);
+		long tickType = hasTickType ? parseField(buf, skipField(buf, pos, end), end) : 0;
+
+		if (reqId == Long.MIN_VALUE || tickType < 0 || tickType > 0xffff) {
+			return NOT_CONFLATED; // not a well-formed message, so let the decoder report it
+		}
+		return msgId << 48 | tickType << 32 | (reqId & 0xffffffffL);
+	}
+
+	private static int msgId(long key) {
+		return (int)(key >>> 48);
+	}
+
+	/** Returns the position after the null terminator of the field at {@code pos} */
+	private static int skipField(byte[] buf, int pos, int end) {
+		while (pos < end && buf[pos] != 0) {
+			pos++;
+		}
+		return pos + 1;
+	}
+
+	/** Parses the int field at {@code pos}, or returns Long.MIN_VALUE if it is not an int */
+	private static long parseField(byte[] buf, int pos, int end) {
+		boolean negative = pos < end && buf[pos] == '-';
+		if (negative) {
+			pos++;
+		}
+
+		long value = 0;
+		int digits = 0;
+		while (pos < end && buf[pos] != 0) {
+			int digit = buf[pos++] - '0';
+			if (digit < 0 || digit > 9 || ++digits > 10) {
+				return Long.MIN_VALUE;
+			}
+			value = value * 10 + digit;
+		}
+		if (digits == 0) {
+			return Long.MIN_VALUE;
+		}
+		return negative ? -value : value;
+	}
+
+	/** The latest market data message for one key, queued in the place of the first message for the key */
+	private static final class Slot {
+		private final long m_key;
+		private EMessage m_msg;
+
+		private Slot(long key, EMessage msg) {
+			m_key = key;
+			m_msg = msg;
+		}
+	}
+}
@@ -6,8 +6,8 @@ package com.ib.client;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInput;
+import java.nio.charset.StandardCharsets;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -20,8 +20,8 @@ import java.util.Set;
 class EDecoder implements ObjectInput {
     // incoming msg id's
     private static final int END_CONN           = -1;
-    private static final int TICK_PRICE		= 1;
-    private static final int TICK_SIZE		= 2;
+    static final int TICK_PRICE		= 1;
+    static final int TICK_SIZE		= 2;
     private static final int ORDER_STATUS	= 3;
     private static final int ERR_MSG		= 4;
     private static final int OPEN_ORDER         = 5;
@@ -40,12 +40,12 @@ class EDecoder implements ObjectInput {
     private static final int BOND_CONTRACT_DATA = 18;
     private static final int SCANNER_PARAMETERS = 19;
     private static final int SCANNER_DATA       = 20;
-    private static final int TICK_OPTION_COMPUTATION = 21;
-    private static final int TICK_GENERIC = 45;
-    private static final int TICK_STRING = 46;
+    static final int TICK_OPTION_COMPUTATION = 21;
+    static final int TICK_GENERIC = 45;
+    static final int TICK_STRING = 46;
     private static final int TICK_EFP = 47;
     private static final int CURRENT_TIME = 49;
-    private static final int REAL_TIME_BARS = 50;
+    static final int REAL_TIME_BARS = 50;
     private static final int FUNDAMENTAL_DATA = 51;
     private static final int CONTRACT_DATA_END = 52;
     private static final int OPEN_ORDER_END = 53;
@@ -101,7 +101,7 @@ class EDecoder implements ObjectInput {
     private EClientMsgSink m_clientMsgSink;
     private EWrapper m_EWrapper;
     private int m_serverVersion;
-	private IMessageReader m_messageReader;
+	private final ByteArrayMessageReader m_messageReader = new ByteArrayMessageReader();
 
 	public EDecoder(int serverVersion, EWrapper callback) {
 		this(serverVersion, callback, null);
@@ -144,13 +144,13 @@ class EDecoder implements ObjectInput {
 		m_EWrapper.connectAck();
     } 
     
-    private boolean readMessageToInternalBuf(InputStream dis) {
-  		m_messageReader = new PreV100MessageReader(dis);
+    private boolean readMessageToInternalBuf(EMessage msg) {
+    	m_messageReader.reset(msg.buf(), msg.offset(), msg.length());
     	return true;
     }
     
     public int processMsg(EMessage msg) throws IOException {
-    	if (!readMessageToInternalBuf(msg.getStream())) {
+    	if (!readMessageToInternalBuf(msg)) {
     		return 0;
     	}
     	
@@ -2076,78 +2076,228 @@ class EDecoder implements ObjectInput {
     }
 
     private boolean readBoolFromInt() throws IOException {
-        String str = readStr();
-        return str != null && (Integer.parseInt(str) != 0);
+        return m_messageReader.readInt(0) != 0;
     }
 
     public int readInt() throws IOException {
-        String str = readStr();
-        return str == null ? 0 : Integer.parseInt( str);
+        return m_messageReader.readInt(0);
     }
 
     private int readIntMax() throws IOException {
-        String str = readStr();
-        return (str == null || str.length() == 0) ? Integer.MAX_VALUE
-        	                                      : Integer.parseInt( str);
+        return m_messageReader.readInt(Integer.MAX_VALUE);
     }
 
     public long readLong() throws IOException {
-        String str = readStr();
-        return str == null ? 0L : Long.parseLong(str);
+        return m_messageReader.readLong(0L);
     }
 
     public double readDouble() throws IOException {
-        String str = readStr();
-        return str == null ? 0 : Double.parseDouble( str);
+        return m_messageReader.readDouble(0);
     }
 
     private double readDoubleMax() throws IOException {
-        String str = readStr();
-        return (str == null || str.length() == 0) ? Double.MAX_VALUE
-        	                                      : Double.parseDouble( str);
+        return m_messageReader.readDouble(Double.MAX_VALUE);
     }
 
     /** Message reader interface */
     private interface IMessageReader extends Closeable {
     	String readStr() throws IOException;
+    	/** Reads an int field, returning {@code emptyValue} if the field is empty */
+    	int readInt(int emptyValue) throws IOException;
+    	long readLong(long emptyValue) throws IOException;
+    	double readDouble(double emptyValue) throws IOException;
     	int msgLength();
     }
 
-    private static class PreV100MessageReader implements IMessageReader {
-    	private final InputStream m_din;
-    	private int m_msgLength = 0;
-    	
-    	PreV100MessageReader( InputStream din ) {
-    		m_din = din;
+    /**
+     * Reads the NUL-terminated fields of a message in place. Numbers are parsed straight from the bytes, and Strings
+     * are only created for text fields, with short values such as exchange codes shared between messages.
+     */
+    private static final class ByteArrayMessageReader implements IMessageReader {
+    	private static final int MAX_INT_DIGITS = 9;   // always fits in an int
+    	private static final int MAX_LONG_DIGITS = 18; // always fits in a long
+    	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    	private static final double[] POWERS_OF_TEN = {
+    		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    	};
+    	private static final int MAX_INTERNED_LENGTH = 24;
+    	private static final int INTERNED_SIZE = 1024; // power of two
+
+    	private final String[] m_interned = new String[INTERNED_SIZE];
+    	private byte[] m_buf;
+    	private int m_start;
+    	private int m_pos;
+    	private int m_end;
+
+    	void reset(byte[] buf, int offset, int length) {
+    		m_buf = buf;
+    		m_start = offset;
+    		m_pos = offset;
+    		m_end = offset + length;
     	}
-    	
+
     	@Override
         public int msgLength() {
-    		return m_msgLength;
+    		return m_pos - m_start;
     	}
-    	
+
+    	/** Returns the index of the NUL that ends the current field */
+    	private int fieldEnd() throws EOFException {
+    		for (int i = m_pos; i < m_end; i++) {
+    			if (m_buf[i] == 0) {
+    				return i;
+    			}
+    		}
+    		throw new EOFException();
+    	}
+
     	@Override public String readStr() throws IOException {
-    		 StringBuilder sb = new StringBuilder();
-    		    		 
- 	         for(; true; m_msgLength++) {
- 	            int c = m_din.read();
- 	            if( c <= 0) {
- 	            	if ( c < 0 ) {
- 	            		throw new EOFException();
- 	            	}
- 	            	
- 	            	m_msgLength++;
- 	                break;
- 	            }
- 	            sb.append( (char)c);
- 	        }
- 	
- 	        String str = sb.toString();
- 	        return str.length() == 0 ? null : str;    
- 	    }
-    	
+    		int from = m_pos;
+    		int to = fieldEnd();
+    		m_pos = to + 1;
+
+    		return from == to ? null : toStr(from, to);
+    	}
+
+    	@Override public int readInt(int emptyValue) throws IOException {
+    		int from = m_pos;
+    		int to = fieldEnd();
+    		m_pos = to + 1;
+
+    		if (from == to) {
+    			return emptyValue;
+    		}
+
+    		boolean negative = m_buf[from] == '-';
+    		int i = negative || m_buf[from] == '+' ? from + 1 : from;
+    		if (i == to || to - i > MAX_INT_DIGITS) {
+    			return Integer.parseInt(toStr(from, to));
+    		}
+
+    		int value = 0;
+    		for (; i < to; i++) {
+    			int digit = m_buf[i] - '0';
+    			if (digit < 0 || digit > 9) {
+    				return Integer.parseInt(toStr(from, to));
+    			}
+    			value = value * 10 + digit;
+    		}
+    		return negative ? -value : value;
+    	}
+
+    	@Override public long readLong(long emptyValue) throws IOException {
+    		int from = m_pos;
+    		int to = fieldEnd();
+    		m_pos = to + 1;
+
+    		if (from == to) {
+    			return emptyValue;
+    		}
+
+    		boolean negative = m_buf[from] == '-';
+    		int i = negative || m_buf[from] == '+' ? from + 1 : from;
+    		if (i == to || to - i > MAX_LONG_DIGITS) {
+    			return Long.parseLong(toStr(from, to));
+    		}
+
+    		long value = 0;
+    		for (; i < to; i++) {
+    			int digit = m_buf[i] - '0';
+    			if (digit < 0 || digit > 9) {
+    				return Long.parseLong(toStr(from, to));
+    			}
+    			value = value * 10 + digit;
+    		}
+    		return negative ? -value : value;
+    	}
+
+    	/**
+    	 * Parses plain decimals such as "171.25" directly. A mantissa below 2^53 divided by an exactly representable
+    	 * power of ten is correctly rounded, so the result is identical to {@link Double#parseDouble(String)}, which
+    	 * handles every other form (exponents, long mantissas, NaN, ...).
+    	 */
+    	@Override public double readDouble(double emptyValue) throws IOException {
+    		int from = m_pos;
+    		int to = fieldEnd();
+    		m_pos = to + 1;
+
+    		if (from == to) {
+    			return emptyValue;
+    		}
+
+    		boolean negative = m_buf[from] == '-';
+    		int i = negative || m_buf[from] == '+' ? from + 1 : from;
+    		long mantissa = 0;
+    		int digits = 0;
+    		int fractionDigits = -1; // -1 until the decimal point is seen
+
+    		for (; i < to; i++) {
+    			byte b = m_buf[i];
+    			if (b >= '0' && b <= '9') {
+    				mantissa = mantissa * 10 + (b - '0');
+    				digits++;
+    				if (fractionDigits >= 0) {
+    					fractionDigits++;
+    				}
+    				if (digits > MAX_LONG_DIGITS) {
+    					return Double.parseDouble(toStr(from, to));
+    				}
+    			} else if (b == '.' && fractionDigits < 0) {
+    				fractionDigits = 0;
+    			} else {
+    				return Double.parseDouble(toStr(from, to));
+    			}
+    		}
+
+    		if (digits == 0 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+    			return Double.parseDouble(toStr(from, to));
+    		}
+
+    		double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+    		return negative ? -value : value;
+    	}
+
+    	/**
+    	 * Returns the field as a String, decoding each byte as one char. Short values are looked up in a small cache
+    	 * first, so repeated codes such as "SMART" or "USD" do not allocate.
+    	 */
+    	private String toStr(int from, int to) {
+    		int length = to - from;
+    		if (length > MAX_INTERNED_LENGTH) {
+    			return new String(m_buf, from, length, StandardCharsets.ISO_8859_1);
+    		}
+
+    		int hash = 0;
+    		for (int i = from; i < to; i++) {
+    			hash = 31 * hash + (m_buf[i] & 0xff);
+    		}
+    		int slot = (hash ^ (hash >>> 16)) & (INTERNED_SIZE - 1);
+
+    		String cached = m_interned[slot];
+    		if (cached != null && matches(cached, from, to)) {
+    			return cached;
+    		}
+
+    		String str = new String(m_buf, from, length, StandardCharsets.ISO_8859_1);
+    		m_interned[slot] = str;
+    		return str;
+    	}
+
+    	private boolean matches(String str, int from, int to) {
+    		if (str.length() != to - from) {
+    			return false;
+    		}
+    		for (int i = from; i < to; i++) {
+    			if (str.charAt(i - from) != (char) (m_buf[i] & 0xff)) {
+    				return false;
+    			}
+    		}
+    		return true;
+    	}
+
     	@Override public void close() {
-    	    /* noop in pre-v100 */
+    	    /* noop, the reader is reused for the next message */
     	}
     }
 
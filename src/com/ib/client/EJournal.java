@@ -0,0 +1,237 @@
+package com.ib.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only binary record of the messages exchanged with TWS, for auditing what a strategy saw and replaying it
+ * with {@link EJournalReader}. Attach it with {@link EClientSocket#setJournal(EJournal)}: every message framed by
+ * the {@link EReader} is recorded with the time it was received, and every request with the time it was sent.
+ *
+ * Records are written to memory-mapped segment files of {@code segmentBytes} each, so appending one is a copy into
+ * the page cache; a new segment is started once a record does not fit, and the segment it replaces is written to
+ * disk on a background thread, so that neither the reader nor a request sender waits for it. With a
+ * {@code maxSegments} cap, the oldest segments are deleted on that thread once there are more. Each record is
+ * <pre>int length, byte kind, long timestamp in nanoseconds since the epoch, length bytes of message</pre>
+ * in native byte order, and a record length of 0 ends a segment. Messages are recorded without their length prefix.
+ *
+ * A separate index file holds an entry of timestamp, position and server version every {@code INDEX_INTERVAL}
+ * bytes and at the start of every segment, so that a reader can start at a point in time without scanning the
+ * segments before it. Entries for deleted segments stay in the index; {@link EJournalReader} skips them.
+ */
+public class EJournal implements Closeable {
+	/** A message received from TWS */
+	public static final byte INBOUND = 1;
+	/** A request sent to TWS */
+	public static final byte OUTBOUND = 2;
+	/** The server version of a new connection, which the messages after it are decoded with */
+	public static final byte SERVER_VERSION = 3;
+
+	static final int HEADER_LENGTH = Integer.BYTES + 1 + Long.BYTES;
+	static final int INDEX_ENTRY_LENGTH = 3 * Long.BYTES;
+	static final String SEGMENT_SUFFIX = ".journal";
+	static final String INDEX_FILE = "index";
+	public static final int DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+	private static final int INDEX_INTERVAL = 64 * 1024;
+
+	private final Path m_directory;
+	private final int m_segmentBytes;
+	private final int m_maxSegments;
+	// forces replaced segments to disk and deletes the segments over m_maxSegments
+	private final ExecutorService m_flusher;
+	private volatile IOException m_flushFailure;
+	private final FileChannel m_index;
+	private final ByteBuffer m_indexEntry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH).order(ByteOrder.nativeOrder());
+	// nanosecond timestamps are System.nanoTime() offset to the wall clock at the time the journal was opened
+	private final long m_epochNanosAtOpen;
+	private final long m_nanoTimeAtOpen;
+
+	private MappedByteBuffer m_segment;
+	private int m_segmentNumber;
+	private int m_nextIndexPosition;
+	private int m_serverVersion;
+	private boolean m_closed;
+
+	public EJournal(Path directory) throws IOException {
+		this(directory, DEFAULT_SEGMENT_BYTES, 0);
+	}
+
+	public EJournal(Path directory, int segmentBytes) throws IOException {
+		this(directory, segmentBytes, 0);
+	}
+
+	/**
+	 * Opens a journal in {@code directory}, creating it if needed. Records are appended to a new segment after any
+	 * segments already in the directory.
+	 * @param segmentBytes size of each segment file; a message too big for one gets a segment of its own
+	 * @param maxSegments segments kept in the directory, including the one being written, or 0 to keep them all
+	 */
+	public EJournal(Path directory, int segmentBytes, int maxSegments) throws IOException {
+		if (segmentBytes <= HEADER_LENGTH + Integer.BYTES) {
+			throw new IllegalArgumentException("segmentBytes is too small: " + segmentBytes);
+		}
+		if (maxSegments < 0) {
+			throw new IllegalArgumentException("maxSegments is negative: " + maxSegments);
+		}
+		Files.createDirectories(directory);
+		m_directory = directory;
+		m_segmentBytes = segmentBytes;
+		m_maxSegments = maxSegments;
+		m_index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+
+		Instant now = Instant.now();
+		m_nanoTimeAtOpen = System.nanoTime();
+		m_epochNanosAtOpen = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+
+		List<Path> segments = EJournalReader.segments(directory);
+		m_segmentNumber = segments.isEmpty() ? -1 : EJournalReader.segmentNumber(segments.get(segments.size() - 1));
+
+		m_flusher = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "EJournal flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/** Records a message framed by the {@link EReader}; called on the thread that reads the socket */
+	void appendInbound(EMessage msg) throws IOException {
+		append(INBOUND, msg.buf(), msg.offset(), msg.length());
+	}
+
+	/** Records a request as it is sent, without its length prefix */
+	void appendOutbound(byte[] buf, int offset, int length) throws IOException {
+		append(OUTBOUND, buf, offset, length);
+	}
+
+	void appendServerVersion(int serverVersion) throws IOException {
+		byte[] version = new byte[Integer.BYTES];
+		ByteBuffer.wrap(version).order(ByteOrder.nativeOrder()).putInt(serverVersion);
+
+		synchronized (this) {
+			m_serverVersion = serverVersion;
+			append(SERVER_VERSION, version, 0, version.length);
+		}
+	}
+
+	private synchronized void append(byte kind, byte[] buf, int offset, int length) throws IOException {
+		if (m_closed) {
+			return; // messages still arriving while the client disconnects
+		}
+		if (m_flushFailure != null) {
+			throw m_flushFailure;
+		}
+
+		long timestamp = m_epochNanosAtOpen + (System.nanoTime() - m_nanoTimeAtOpen);
+		int recordLength = HEADER_LENGTH + length;
+
+		// keep room for the 0 length that ends the segment
+		if (m_segment == null || m_segment.remaining() < recordLength + Integer.BYTES) {
+			roll(recordLength + Integer.BYTES);
+		}
+		int position = m_segment.position();
+		if (position >= m_nextIndexPosition) {
+			appendIndexEntry(timestamp, position);
+		}
+
+		m_segment.putInt(length);
+		m_segment.put(kind);
+		m_segment.putLong(timestamp);
+		m_segment.put(buf, offset, length);
+	}
+
+	private void roll(int minBytes) throws IOException {
+		MappedByteBuffer replaced = m_segment;
+
+		m_segmentNumber++;
+		Path path = m_directory.resolve(EJournalReader.segmentFileName(m_segmentNumber));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			// the mapping stays valid after the channel is closed
+			m_segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(m_segmentBytes, minBytes));
+		}
+		m_segment.order(ByteOrder.nativeOrder());
+		m_nextIndexPosition = 0;
+
+		// once the new segment exists, so that it counts towards the segments kept
+		if (replaced != null) {
+			m_flusher.execute(() -> forceAndTrim(replaced));
+		}
+	}
+
+	/** Runs on the flusher: writes a replaced segment to disk, then deletes the oldest segments over the cap */
+	private void forceAndTrim(MappedByteBuffer replaced) {
+		try {
+			replaced.force();
+			if (m_maxSegments > 0) {
+				List<Path> segments = EJournalReader.segments(m_directory);
+				for (int i = 0; i < segments.size() - m_maxSegments; i++) {
+					Files.deleteIfExists(segments.get(i));
+				}
+			}
+		} catch (IOException e) {
+			m_flushFailure = e;
+		} catch (UncheckedIOException e) {
+			m_flushFailure = e.getCause();
+		}
+	}
+
+	private void appendIndexEntry(long timestamp, int position) throws IOException {
+		m_indexEntry.clear();
+		m_indexEntry.putLong(timestamp);
+		m_indexEntry.putLong((long)m_segmentNumber << 32 | position);
+		m_indexEntry.putLong(m_serverVersion);
+		m_indexEntry.flip();
+		while (m_indexEntry.hasRemaining()) {
+			m_index.write(m_indexEntry);
+		}
+		m_nextIndexPosition = position + INDEX_INTERVAL;
+	}
+
+	/** Writes the records appended so far to disk; segments already replaced are written by the flusher */
+	public synchronized void force() throws IOException {
+		if (m_segment != null) {
+			m_segment.force();
+		}
+		m_index.force(false);
+	}
+
+	public Path directory() {
+		return m_directory;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (m_closed) {
+			return;
+		}
+		force();
+		m_closed = true;
+		m_segment = null;
+		m_index.close();
+
+		// the replaced segments are on disk once close returns
+		m_flusher.shutdown();
+		try {
+			m_flusher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (m_flushFailure != null) {
+			throw m_flushFailure;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package com.ib.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads the records of an {@link EJournal} in the order they were written, and replays the messages received from
+ * TWS through an {@link EDecoder} into any {@link EWrapper}, e.g. to run a strategy again on what it saw live.
+ *
+ * Reads the segments that exist when it is opened; the journal should be closed or {@link EJournal#force() forced}
+ * first.
+ */
+public class EJournalReader implements Closeable {
+	private final List<Path> m_segments;
+	private final ByteBuffer m_index;
+	private MappedByteBuffer m_segment;
+	private int m_segmentIndex = -1;
+
+	private byte m_kind;
+	private long m_timestamp;
+	private byte[] m_message = new byte[1024];
+	private int m_length;
+	private int m_serverVersion;
+	/** Number of connections recorded since the journal was opened or last sought */
+	private int m_connection;
+
+	public EJournalReader(Path directory) throws IOException {
+		m_segments = segments(directory);
+
+		Path indexPath = directory.resolve(EJournal.INDEX_FILE);
+		if (Files.exists(indexPath)) {
+			try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+				long entries = channel.size() / EJournal.INDEX_ENTRY_LENGTH;
+				m_index = channel.map(FileChannel.MapMode.READ_ONLY, 0, entries * EJournal.INDEX_ENTRY_LENGTH)
+						.order(ByteOrder.nativeOrder());
+			}
+		} else {
+			m_index = ByteBuffer.allocate(0);
+		}
+	}
+
+	/**
+	 * Moves to the next record.
+	 * @return false once every record has been read
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			if (m_segment != null && m_segment.remaining() >= EJournal.HEADER_LENGTH) {
+				int length = m_segment.getInt();
+
+				if (length > 0) {
+					m_kind = m_segment.get();
+					m_timestamp = m_segment.getLong();
+					if (length > m_message.length) {
+						m_message = new byte[Math.max(length, m_message.length * 2)];
+					}
+					m_segment.get(m_message, 0, length);
+					m_length = length;
+
+					if (m_kind == EJournal.SERVER_VERSION) {
+						m_connection++;
+						m_serverVersion = ByteBuffer.wrap(m_message, 0, Integer.BYTES).order(ByteOrder.nativeOrder())
+								.getInt();
+					}
+					return true;
+				}
+			}
+			if (m_segmentIndex + 1 >= m_segments.size()) {
+				m_segment = null;
+				return false;
+			}
+			openSegment(m_segmentIndex + 1, 0);
+		}
+	}
+
+	/**
+	 * Moves to just before the first record at or after {@code timestampNanos}, so that {@link #next()} returns it.
+	 * Uses the index to skip the segments before it. If the segment it is in has been deleted, moves to the first
+	 * record of the oldest segment kept.
+	 */
+	public void seek(long timestampNanos) throws IOException {
+		m_connection = 0;
+		int entries = m_index.limit() / EJournal.INDEX_ENTRY_LENGTH;
+
+		// last index entry at or before the timestamp
+		int low = 0;
+		int high = entries - 1;
+		int found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (m_index.getLong(mid * EJournal.INDEX_ENTRY_LENGTH) <= timestampNanos) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		// the journal's segment cap may have deleted the segments of the earliest entries; start at the oldest kept
+		int oldestSegment = m_segments.isEmpty() ? Integer.MAX_VALUE : segmentNumber(m_segments.get(0));
+		if (entries > 0 && entrySegment(0) < oldestSegment && (found < 0 || entrySegment(found) < oldestSegment)) {
+			found = Math.max(found, 0);
+			while (found < entries && entrySegment(found) < oldestSegment) {
+				found++;
+			}
+			if (found == entries) {
+				found = -1;
+			}
+		}
+
+		if (found < 0) {
+			m_segment = null;
+			m_segmentIndex = -1;
+			m_serverVersion = 0;
+		} else {
+			int entry = found * EJournal.INDEX_ENTRY_LENGTH;
+			long position = m_index.getLong(entry + Long.BYTES);
+			int segment = m_segments.indexOf(findSegment((int)(position >>> 32)));
+			if (segment < 0) {
+				throw new IOException("segment " + (position >>> 32) + " of the index is missing");
+			}
+			openSegment(segment, (int)position);
+			m_serverVersion = (int)m_index.getLong(entry + 2 * Long.BYTES);
+		}
+
+		// skip to the record itself, remembering where it starts
+		while (true) {
+			int segmentIndex = m_segmentIndex;
+			int position = m_segment != null ? m_segment.position() : 0;
+			int serverVersion = m_serverVersion;
+			int connection = m_connection;
+
+			if (!next()) {
+				return;
+			}
+			if (m_timestamp >= timestampNanos) {
+				openSegment(segmentIndex < 0 ? 0 : segmentIndex, segmentIndex < 0 ? 0 : position);
+				m_serverVersion = serverVersion;
+				m_connection = connection;
+				return;
+			}
+		}
+	}
+
+	/** Kind of the current record: {@link EJournal#INBOUND}, {@link EJournal#OUTBOUND} or {@link EJournal#SERVER_VERSION} */
+	public byte kind() {
+		return m_kind;
+	}
+
+	/** Time the current record was received or sent, in nanoseconds since the epoch */
+	public long timestampNanos() {
+		return m_timestamp;
+	}
+
+	/** Returns the message of the current record; valid until the next call to {@link #next()} */
+	public EMessage message() {
+		return new EMessage(null, m_message, 0, m_length);
+	}
+
+	/** Server version of the connection the current record belongs to, or 0 if no connection has been recorded */
+	public int serverVersion() {
+		return m_serverVersion;
+	}
+
+	/**
+	 * Number of the connection the current record belongs to, counted from 1 by the connections recorded since the
+	 * journal was opened or last sought; 0 before the first. Request ids are only unique within a connection.
+	 */
+	public int connection() {
+		return m_connection;
+	}
+
+	/**
+	 * Decodes the messages received from {@code fromNanos} up to but excluding {@code toNanos} into {@code wrapper}.
+	 * @param isOriginalSpeed true to wait between messages as long as they were apart when received, false to
+	 *        replay as fast as they can be decoded
+	 * @return the number of messages decoded
+	 */
+	public long replay(EWrapper wrapper, long fromNanos, long toNanos, boolean isOriginalSpeed) throws IOException {
+		seek(fromNanos);
+
+		EDecoder decoder = new EDecoder(m_serverVersion, wrapper);
+		long replayed = 0;
+		long firstTimestamp = 0;
+		long startNanoTime = 0;
+
+		while (next() && m_timestamp < toNanos) {
+			if (m_kind == EJournal.SERVER_VERSION) {
+				decoder = new EDecoder(m_serverVersion, wrapper);
+				continue;
+			}
+			if (m_kind != EJournal.INBOUND) {
+				continue;
+			}
+
+			if (isOriginalSpeed) {
+				if (replayed == 0) {
+					firstTimestamp = m_timestamp;
+					startNanoTime = System.nanoTime();
+				}
+				long due = startNanoTime + (m_timestamp - firstTimestamp);
+				long wait;
+				while ((wait = due - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+				}
+			}
+
+			decoder.processMsg(message());
+			replayed++;
+		}
+		return replayed;
+	}
+
+	/** Replays every message received into {@code wrapper} as fast as possible */
+	public long replay(EWrapper wrapper) throws IOException {
+		return replay(wrapper, Long.MIN_VALUE, Long.MAX_VALUE, false);
+	}
+
+	private void openSegment(int segmentIndex, int position) throws IOException {
+		if (segmentIndex != m_segmentIndex || m_segment == null) {
+			try (FileChannel channel = FileChannel.open(m_segments.get(segmentIndex), StandardOpenOption.READ)) {
+				m_segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			m_segment.order(ByteOrder.nativeOrder());
+			m_segmentIndex = segmentIndex;
+		}
+		m_segment.position(position);
+	}
+
+	private int entrySegment(int entry) {
+		return (int)(m_index.getLong(entry * EJournal.INDEX_ENTRY_LENGTH + Long.BYTES) >>> 32);
+	}
+
+	private Path findSegment(int segmentNumber) {
+		for (Path segment : m_segments) {
+			if (segmentNumber(segment) == segmentNumber) {
+				return segment;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() {
+		m_segment = null;
+	}
+
+	/** Returns the segment files of the journal in {@code directory}, in the order they were written */
+	static List<Path> segments(Path directory) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			return new ArrayList<>();
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(path -> path.getFileName().toString().endsWith(EJournal.SEGMENT_SUFFIX))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	static String segmentFileName(int segmentNumber) {
+		return String.format("%010d%s", segmentNumber, EJournal.SEGMENT_SUFFIX);
+	}
+
+	static int segmentNumber(Path segment) {
+		String name = segment.getFileName().toString();
+		return Integer.parseInt(name.substring(0, name.length() - EJournal.SEGMENT_SUFFIX.length()));
+	}
+}
@@ -0,0 +1,24 @@
+package com.ib.client;
+
+import java.util.Deque;
+import java.util.LinkedList;
+
+/** Unbounded queue guarded by its own monitor; the default queue of {@link EReader} */
+public class ELinkedMessageQueue implements EMessageQueue {
+	private final Deque<EMessage> m_msgQueue = new LinkedList<>();
+
+	@Override
+	public boolean put(EMessage msg) {
+		synchronized (m_msgQueue) {
+			m_msgQueue.addFirst(msg);
+		}
+		return true;
+	}
+
+	@Override
+	public EMessage poll() {
+		synchronized (m_msgQueue) {
+			return m_msgQueue.isEmpty() ? null : m_msgQueue.removeLast();
+		}
+	}
+}
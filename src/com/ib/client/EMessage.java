@@ -1,31 +1,73 @@
 package com.ib.client;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 
 public class EMessage {
-	ByteArrayOutputStream m_buf;
+	private final byte[] m_buf;
+	private final int m_offset;
+	private final int m_len;
+	private final EMessageFramer.Chunk m_chunk; // null if the message owns m_buf
 	
 	public EMessage(byte[] buf, int len) {
-		m_buf = new ByteArrayOutputStream();
-		
-		m_buf.write(buf, 0, len);
+		this(null, Arrays.copyOf(buf, len), 0, len);
 	}
 	
+	/**
+	 * Views the bytes built so far without copying them, so the message must be sent before {@code buf} is written
+	 * to again or reused.
+	 */
 	public EMessage(Builder buf) throws IOException {
-		m_buf = new ByteArrayOutputStream();
-		
-			buf.writeTo(new DataOutputStream(m_buf));
+		this(null, buf.buf(), 0, buf.size());
+	}
+	
+	/** Views {@code len} bytes of a chunk owned by {@link EMessageFramer} without copying them */
+	EMessage(EMessageFramer.Chunk chunk, byte[] buf, int offset, int len) {
+		m_buf = buf;
+		m_offset = offset;
+		m_len = len;
+		m_chunk = chunk;
 	}
 	
 	public InputStream getStream() {
-		return new ByteArrayInputStream(m_buf.toByteArray());
+		return new ByteArrayInputStream(m_buf, m_offset, m_len);
+	}
+	
+	byte[] buf() {
+		return m_buf;
+	}
+	
+	int offset() {
+		return m_offset;
+	}
+	
+	int length() {
+		return m_len;
 	}
 	
 	public byte[] getRawData() {		
-		return m_buf.toByteArray();
+		return Arrays.copyOfRange(m_buf, m_offset, m_offset + m_len);
+	}
+	
+	/**
+	 * Returns a message with its own copy of the bytes and releases this one, so that a message kept for long does
+	 * not keep the whole chunk it was framed in from being reused
+	 */
+	EMessage detach() {
+		if (m_chunk == null) {
+			return this;
+		}
+		EMessage copy = new EMessage(null, getRawData(), 0, m_len);
+		release();
+		return copy;
+	}
+	
+	/** Hands the bytes of a framed message back to its chunk; the message must not be read afterwards */
+	void release() {
+		if (m_chunk != null) {
+			m_chunk.release();
+		}
 	}
 }
@@ -0,0 +1,142 @@
+package com.ib.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Frames length-prefixed (V100+) messages in place. Bytes are read from the socket in bulk into pooled heap chunks,
+ * and each complete message is handed out as an {@link EMessage} that views its bytes inside the chunk, so no
+ * per-message buffer is allocated and the payload is never copied before decoding.
+ *
+ * A chunk is returned to the pool once the framer has moved past it and every message framed in it has been
+ * released, which {@link EReader#processMsgs()} does after decoding.
+ */
+class EMessageFramer {
+	static final int CHUNK_SIZE = 64 * 1024;
+	private static final int HEADER_LENGTH = 4;
+	private static final int MAX_POOLED_CHUNKS = 16;
+
+	/** Source of raw bytes, e.g. {@link EClientSocket#read(byte[], int, int)}; non-blocking sources return 0 */
+	interface ByteSource {
+		int read(byte[] buf, int off, int len) throws IOException;
+	}
+
+	private final ByteSource m_source;
+	private final ArrayBlockingQueue<Chunk> m_pool = new ArrayBlockingQueue<>(MAX_POOLED_CHUNKS);
+	private Chunk m_chunk;
+	private int m_position; // start of the first byte not yet framed
+	private int m_limit;    // end of the bytes read from the source
+	private int m_allocatedChunks;
+
+	EMessageFramer(ByteSource source) {
+		m_source = source;
+		m_chunk = acquire(CHUNK_SIZE);
+	}
+
+	/**
+	 * Returns the next message, reading from the source until it is complete.
+	 * @return null if the source is non-blocking and has no more bytes for now; the bytes read so far are kept
+	 * @throws EOFException if the source is closed before a complete message is read
+	 */
+	EMessage nextMessage() throws IOException {
+		while (true) {
+			int available = m_limit - m_position;
+
+			if (available >= HEADER_LENGTH) {
+				int msgSize = m_chunk.m_buffer.getInt(m_position);
+
+				if (msgSize < 0 || msgSize > EReader.MAX_MSG_LENGTH) {
+					throw new EReader.InvalidMessageLengthException("message is too long: " + msgSize);
+				}
+
+				if (available - HEADER_LENGTH >= msgSize) {
+					int offset = m_position + HEADER_LENGTH;
+					m_position = offset + msgSize;
+					return m_chunk.slice(offset, msgSize);
+				}
+
+				ensureRoom(HEADER_LENGTH + msgSize);
+			} else {
+				ensureRoom(HEADER_LENGTH);
+			}
+
+			byte[] data = m_chunk.m_buffer.array();
+			int n = m_source.read(data, m_limit, data.length - m_limit);
+
+			if (n < 0) {
+				throw new EOFException();
+			}
+			if (n == 0) {
+				return null;
+			}
+			m_limit += n;
+		}
+	}
+
+	/** Makes sure the current chunk can hold {@code frameSize} bytes from the start of the unframed bytes */
+	private void ensureRoom(int frameSize) {
+		if (m_chunk.m_buffer.capacity() - m_position >= frameSize) {
+			return;
+		}
+
+		// only the tail of a partially read message is carried over to the next chunk
+		Chunk next = acquire(Math.max(CHUNK_SIZE, frameSize));
+		int carried = m_limit - m_position;
+
+		System.arraycopy(m_chunk.m_buffer.array(), m_position, next.m_buffer.array(), 0, carried);
+		m_chunk.release();
+
+		m_chunk = next;
+		m_position = 0;
+		m_limit = carried;
+	}
+
+	private Chunk acquire(int size) {
+		Chunk chunk = size == CHUNK_SIZE ? m_pool.poll() : null;
+
+		if (chunk == null) {
+			chunk = new Chunk(this, size);
+			m_allocatedChunks++;
+		}
+		chunk.m_refCount.set(1); // held by the framer while it is the current chunk
+		return chunk;
+	}
+
+	/** Returns a chunk whose last reference has been released; oversized chunks are left to the GC */
+	private void recycle(Chunk chunk) {
+		if (chunk.m_buffer.capacity() == CHUNK_SIZE) {
+			m_pool.offer(chunk);
+		}
+	}
+
+	/** Number of chunks allocated so far, for tests and benchmarks */
+	int allocatedChunks() {
+		return m_allocatedChunks;
+	}
+
+	/** A reference-counted buffer that messages are framed in */
+	static final class Chunk {
+		private final EMessageFramer m_owner;
+		private final ByteBuffer m_buffer;
+		private final AtomicInteger m_refCount = new AtomicInteger();
+
+		private Chunk(EMessageFramer owner, int size) {
+			m_owner = owner;
+			m_buffer = ByteBuffer.allocate(size);
+		}
+
+		private EMessage slice(int offset, int length) {
+			m_refCount.incrementAndGet();
+			return new EMessage(this, m_buffer.array(), offset, length);
+		}
+
+		void release() {
+			if (m_refCount.decrementAndGet() == 0) {
+				m_owner.recycle(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.ib.client;
+
+/**
+ * Hands messages from the {@link EReader} thread that reads them to the thread that calls
+ * {@link EReader#processMsgs()}. Messages are taken in the order they were put.
+ */
+public interface EMessageQueue {
+	/**
+	 * Adds {@code msg}, waiting for space if the queue is bounded and full.
+	 * @return false if the thread was interrupted while waiting; {@code msg} has then not been added, and the
+	 *         interrupt flag is left set so that the caller stops
+	 */
+	boolean put(EMessage msg);
+
+	/**
+	 * Adds {@code msg} if that does not need to wait for space.
+	 * @return false if the queue is bounded and full; {@code msg} has then not been added
+	 */
+	default boolean offer(EMessage msg) {
+		return put(msg);
+	}
+
+	/** Removes and returns the oldest message, or null if the queue is empty */
+	EMessage poll();
+}
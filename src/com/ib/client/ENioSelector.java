@@ -0,0 +1,193 @@
+package com.ib.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Reads from any number of TWS connections on one thread. An {@link EClientSocket} constructed with a selector
+ * connects through a {@link SocketChannel}, and its {@link EReader} registers the channel here when started instead
+ * of running a thread of its own, so several clientIds can share a JVM without a reader thread per connection.
+ *
+ * Messages are framed on the selector thread and put on each reader's queue as before, so the thread calling
+ * {@link EReader#processMsgs()} and the EWrapper are unaffected. Each connection puts at most
+ * {@link EReader#MAX_MSGS_PER_READ} messages at a time, so that a busy connection takes turns with the others. A
+ * connection whose bounded queue is full is not read, and its socket left to fill, until its processing thread has
+ * drained the queue; the other connections are read meanwhile.
+ */
+public class ENioSelector implements Closeable {
+	private final Selector m_selector;
+	private final ConcurrentLinkedQueue<EReader> m_pendingRegistrations = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<EReader> m_pendingResumes = new ConcurrentLinkedQueue<>();
+	// registered readers and their channels, touched only by the selector thread
+	private final Map<EReader, SocketChannel> m_channels = new IdentityHashMap<>();
+	// keys whose reader stopped at its limit, to be read again without waiting for the socket; selector thread only
+	private Set<SelectionKey> m_backlog = new LinkedHashSet<>();
+	private Set<SelectionKey> m_spareBacklog = new LinkedHashSet<>();
+	private final Thread m_thread;
+
+	public ENioSelector() throws IOException {
+		m_selector = Selector.open();
+		m_thread = new Thread(this::run, "ENioSelector");
+		m_thread.setDaemon(true);
+		m_thread.start();
+	}
+
+	/** Makes the selector thread read {@code reader}'s channel; the channel is switched to non-blocking mode */
+	void register(EReader reader) {
+		m_pendingRegistrations.add(reader);
+		m_selector.wakeup();
+	}
+
+	/** Makes the selector thread read the channel of a reader that paused because its queue was full */
+	void resume(EReader reader) {
+		m_pendingResumes.add(reader);
+		m_selector.wakeup();
+	}
+
+	/** Makes the selector thread notice that a registered channel has been closed by its client socket */
+	void wakeup() {
+		m_selector.wakeup();
+	}
+
+	/** Number of connections currently registered */
+	public int connectionCount() {
+		try {
+			return m_selector.keys().size();
+		} catch (ClosedSelectorException e) {
+			return 0;
+		}
+	}
+
+	private void run() {
+		try {
+			while (m_selector.isOpen()) {
+				// the bytes a backlogged reader has read ahead do not make its socket readable
+				if (m_backlog.isEmpty()) {
+					m_selector.select();
+				} else {
+					m_selector.selectNow();
+				}
+				Set<SelectionKey> backlog = m_backlog;
+				m_backlog = m_spareBacklog;
+				m_spareBacklog = backlog;
+				registerPending();
+				resumePending();
+
+				Iterator<SelectionKey> keys = m_selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					backlog.remove(key);
+					read(key);
+				}
+				for (SelectionKey key : backlog) {
+					read(key);
+				}
+				backlog.clear();
+				removeClosed();
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			// closed
+		}
+	}
+
+	private void registerPending() {
+		EReader reader;
+		while ((reader = m_pendingRegistrations.poll()) != null) {
+			SocketChannel channel = reader.channel();
+			if (channel == null) {
+				continue; // disconnected before the reader was started
+			}
+			try {
+				channel.configureBlocking(false);
+				SelectionKey key = channel.register(m_selector, SelectionKey.OP_READ, reader);
+				m_channels.put(reader, channel);
+
+				// bytes read ahead during the handshake are waiting in the framer rather than the socket
+				read(key);
+			} catch (IOException e) {
+				reader.readFailed(e);
+			}
+		}
+	}
+
+	private void resumePending() {
+		EReader reader;
+		while ((reader = m_pendingResumes.poll()) != null) {
+			SocketChannel channel = m_channels.get(reader);
+			SelectionKey key = channel == null ? null : channel.keyFor(m_selector);
+			if (key == null || !key.isValid()) {
+				continue; // disconnected while paused
+			}
+			try {
+				key.interestOps(SelectionKey.OP_READ);
+			} catch (CancelledKeyException e) {
+				continue;
+			}
+			// the message that did not fit and any bytes read ahead do not make the socket readable
+			m_backlog.add(key);
+		}
+	}
+
+	/**
+	 * Reads the messages available to the reader of {@code key}. OP_READ is cleared while the reader is paused for
+	 * want of space in its queue, and set again by {@link #resume(EReader)}.
+	 */
+	private void read(SelectionKey key) {
+		if (!key.isValid()) {
+			return; // the connection was closed while the key was selected or backlogged; see removeClosed
+		}
+		EReader reader = (EReader)key.attachment();
+		try {
+			switch (reader.readAvailable()) {
+				case EReader.READ_FAILED:
+					key.cancel();
+					m_channels.remove(reader);
+					break;
+				case EReader.READ_MORE:
+					m_backlog.add(key);
+					break;
+				case EReader.READ_PAUSED:
+					key.interestOps(0);
+					break;
+				default:
+					break;
+			}
+		} catch (CancelledKeyException e) {
+			// the connection was closed while it was being read; see removeClosed
+		}
+	}
+
+	/**
+	 * Stops reading channels that their client socket has closed. A closed channel is never selected, so its reader
+	 * is failed here, as a reader thread blocked on a socket that is closed would fail, to wake its processing thread.
+	 */
+	private void removeClosed() {
+		Iterator<Map.Entry<EReader, SocketChannel>> entries = m_channels.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<EReader, SocketChannel> entry = entries.next();
+			if (!entry.getValue().isOpen()) {
+				EReader reader = entry.getKey();
+				entries.remove();
+				reader.readFailed(new ClosedChannelException());
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_selector.close();
+	}
+}
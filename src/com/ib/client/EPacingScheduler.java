@@ -0,0 +1,344 @@
+package com.ib.client;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Paces the requests an {@link EClientSocket} sends to TWS, which rejects a client that sends more than 50 messages a
+ * second. Attach it with {@link EClientSocket#setPacing(EPacingScheduler)} before connecting.
+ *
+ * Requests are queued in priority {@link Lane}s instead of being written at once, and a sender thread writes them
+ * out as a token bucket of {@code messagesPerSecond} with bursts of up to {@code burst} allows: always from the
+ * highest lane that has a request waiting, so an order is never stuck behind a loop of market data requests. A lane
+ * can be limited further with {@link #setLaneRate(Lane, double, int)}, e.g. for the historical data pacing rules.
+ * Each lane is written in the order it was queued. A cancellation is queued in the lane of the request it cancels, so
+ * it is written after that request, and is not held back by the lane's own limit.
+ *
+ * Messages that are not requests, i.e. the handshake, are written at once. Queue depth, messages sent and the time
+ * requests waited are kept per lane, and can be read from any thread. Requests dropped on {@link #close()} are never
+ * written, so they are not passed to the hook given to {@link #attach(ETransport, Consumer)} either.
+ */
+public class EPacingScheduler implements ETransport {
+	/** Request lanes, in the order they are served */
+	public enum Lane {
+		/** Orders, their cancellations, and connection control */
+		ORDERS,
+		/** Market data, account and other subscriptions, contract details and other lookups, and their cancellations */
+		SUBSCRIPTIONS,
+		/** The requests paced by TWS's historical data rules: historical data, head timestamps, histograms and ticks */
+		HISTORICAL
+	}
+
+	private static final Lane[] LANES = Lane.values();
+	private static final int HEADER_LENGTH = 4; // requests are paced with V100+ framing only
+	private static final int NO_MSG_ID = -1;
+
+	private final TokenBucket m_bucket;
+	private final TokenBucket[] m_laneBuckets = new TokenBucket[LANES.length]; // null if only paced globally
+	private final List<ArrayDeque<Request>> m_queues = new ArrayList<>(LANES.length);
+
+	private ETransport m_transport;  // set while attached to a connection
+	private Consumer<byte[]> m_onWritten; // given each request once it has been written, null if none
+	private Thread m_sender;
+	private boolean m_closed = true;
+	private IOException m_sendFailure; // from the sender thread, reported to the next caller
+
+	// metrics, per lane
+	private final int[] m_queueDepth = new int[LANES.length];
+	private final int[] m_maxQueueDepth = new int[LANES.length];
+	private final long[] m_sent = new long[LANES.length];
+	private final long[] m_waitNanos = new long[LANES.length];
+	private final long[] m_maxWaitNanos = new long[LANES.length];
+	private long m_dropped;
+
+	/**
+	 * @param messagesPerSecond requests written per second on average, over all lanes
+	 * @param burst requests that can be written back to back after the connection has been quiet
+	 */
+	public EPacingScheduler(double messagesPerSecond, int burst) {
+		m_bucket = new TokenBucket(messagesPerSecond, burst);
+		for (int i = 0; i < LANES.length; i++) {
+			m_queues.add(new ArrayDeque<>());
+		}
+	}
+
+	/** Limits {@code lane} to {@code messagesPerSecond} with bursts of {@code burst}, within the overall rate */
+	public synchronized void setLaneRate(Lane lane, double messagesPerSecond, int burst) {
+		m_laneBuckets[lane.ordinal()] = new TokenBucket(messagesPerSecond, burst);
+	}
+
+	/** Starts writing requests to {@code transport} */
+	void attach(ETransport transport) {
+		attach(transport, null);
+	}
+
+	/**
+	 * Starts writing requests to {@code transport}, passing each request, with its length prefix, to {@code onWritten}
+	 * on the sender thread right after it has been written; called by {@link EClientSocket} as it connects
+	 */
+	synchronized void attach(ETransport transport, Consumer<byte[]> onWritten) {
+		m_transport = transport;
+		m_onWritten = onWritten;
+		m_closed = false;
+		m_sendFailure = null;
+		m_sender = new Thread(this::sendRequests, "EPacingScheduler sender");
+		m_sender.setDaemon(true);
+		m_sender.start();
+	}
+
+	@Override
+	public void send(EMessage msg) throws IOException {
+		int msgId = msgIdOf(msg);
+		if (msgId == NO_MSG_ID) {
+			// not a request; the handshake is written before any request is queued
+			ETransport transport;
+			synchronized (this) {
+				checkSendFailure();
+				transport = m_transport;
+			}
+			synchronized (transport) {
+				transport.send(msg);
+			}
+			return;
+		}
+
+		// the message views the client's reused buffer, so it is copied before it is queued
+		byte[] bytes = msg.getRawData();
+		synchronized (this) {
+			checkSendFailure();
+			if (m_closed) {
+				throw new IOException("the pacing scheduler is closed");
+			}
+			int index = EClient.pacingLaneOf(msgId).ordinal();
+			m_queues.get(index).add(new Request(bytes, System.nanoTime(), !EClient.isPacingCancel(msgId)));
+			m_queueDepth[index]++;
+			if (m_queueDepth[index] > m_maxQueueDepth[index]) {
+				m_maxQueueDepth[index] = m_queueDepth[index];
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Reports a failure to write a request, if any. Queued requests are written out as the rate allows, and the
+	 * transport is flushed whenever the sender has nothing it may write, so there is nothing to flush here.
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		checkSendFailure();
+	}
+
+	/** Drops the requests still queued and closes the transport */
+	@Override
+	public void close() throws IOException {
+		ETransport transport;
+		synchronized (this) {
+			if (m_closed) {
+				return;
+			}
+			m_closed = true;
+			for (int i = 0; i < LANES.length; i++) {
+				m_dropped += m_queues.get(i).size();
+				m_queues.get(i).clear();
+				m_queueDepth[i] = 0;
+			}
+			transport = m_transport;
+			m_transport = null;
+			notifyAll();
+		}
+		synchronized (transport) {
+			transport.close();
+		}
+	}
+
+	private void sendRequests() {
+		ETransport transport;
+		Consumer<byte[]> onWritten;
+		synchronized (this) {
+			transport = m_transport;
+			onWritten = m_onWritten;
+		}
+
+		try {
+			boolean isFlushed = true;
+			while (true) {
+				Request request;
+				int lane;
+
+				synchronized (this) {
+					long waitNanos;
+					while (true) {
+						if (m_closed || m_sender != Thread.currentThread()) {
+							return; // closed, or reattached to a new connection with a sender of its own
+						}
+						long now = System.nanoTime();
+						waitNanos = Long.MAX_VALUE;
+						lane = -1;
+
+						for (int i = 0; i < LANES.length; i++) {
+							if (m_queues.get(i).isEmpty()) {
+								continue;
+							}
+							boolean isLanePaced = m_laneBuckets[i] != null && m_queues.get(i).peek().m_isLanePaced;
+							long laneWait = isLanePaced ? m_laneBuckets[i].nanosUntilToken(now) : 0;
+							if (laneWait == 0) {
+								lane = i;
+								waitNanos = m_bucket.nanosUntilToken(now);
+								break;
+							}
+							waitNanos = Math.min(waitNanos, laneWait);
+						}
+						if (lane >= 0 && waitNanos == 0) {
+							break;
+						}
+
+						if (!isFlushed) {
+							break; // flushes outside the lock before waiting
+						}
+						if (waitNanos == Long.MAX_VALUE) {
+							wait();
+						} else {
+							TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+						}
+					}
+
+					if (lane < 0 || waitNanos > 0) {
+						request = null;
+					} else {
+						m_bucket.take();
+						request = m_queues.get(lane).poll();
+						if (m_laneBuckets[lane] != null && request.m_isLanePaced) {
+							m_laneBuckets[lane].take();
+						}
+						m_queueDepth[lane]--;
+						m_sent[lane]++;
+						long waited = System.nanoTime() - request.m_queuedNanos;
+						m_waitNanos[lane] += waited;
+						if (waited > m_maxWaitNanos[lane]) {
+							m_maxWaitNanos[lane] = waited;
+						}
+					}
+				}
+
+				synchronized (transport) {
+					if (request == null) {
+						transport.flush();
+						isFlushed = true;
+						continue;
+					}
+					transport.send(new EMessage(null, request.m_bytes, 0, request.m_bytes.length));
+					if (lane == Lane.ORDERS.ordinal()) {
+						transport.flush();
+					} else {
+						isFlushed = false;
+					}
+				}
+				if (onWritten != null) {
+					onWritten.accept(request.m_bytes);
+				}
+			}
+		} catch (IOException e) {
+			synchronized (this) {
+				if (!m_closed && m_sender == Thread.currentThread()) {
+					m_sendFailure = e;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void checkSendFailure() throws IOException {
+		IOException failure = m_sendFailure;
+		if (failure != null) {
+			m_sendFailure = null;
+			throw failure;
+		}
+	}
+
+	/** Returns the message id of a request, or NO_MSG_ID if the message does not start with one */
+	private static int msgIdOf(EMessage msg) {
+		byte[] buf = msg.buf();
+		int end = msg.offset() + msg.length();
+		int msgId = 0;
+		int i = msg.offset() + HEADER_LENGTH;
+		for (; i < end && buf[i] != 0; i++) {
+			if (buf[i] < '0' || buf[i] > '9') {
+				return NO_MSG_ID;
+			}
+			msgId = msgId * 10 + (buf[i] - '0');
+		}
+		return i == msg.offset() + HEADER_LENGTH || i == end ? NO_MSG_ID : msgId;
+	}
+
+	public synchronized int queueDepth(Lane lane)   { return m_queueDepth[lane.ordinal()]; }
+	public synchronized int maxQueueDepth(Lane lane) { return m_maxQueueDepth[lane.ordinal()]; }
+	public synchronized long sentCount(Lane lane)   { return m_sent[lane.ordinal()]; }
+	public synchronized long maxWaitNanos(Lane lane) { return m_maxWaitNanos[lane.ordinal()]; }
+	/** Requests dropped because the connection closed before they were written */
+	public synchronized long droppedCount()         { return m_dropped; }
+
+	/** Average time from a request being sent by the client to it being written to the connection */
+	public synchronized double averageWaitNanos(Lane lane) {
+		long sent = m_sent[lane.ordinal()];
+		return sent == 0 ? 0 : (double) m_waitNanos[lane.ordinal()] / sent;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Lane lane : LANES) {
+			builder.append(String.format("%s: queued=%d maxQueued=%d sent=%d avgWait=%.1fms maxWait=%.1fms; ",
+					lane, queueDepth(lane), maxQueueDepth(lane), sentCount(lane), averageWaitNanos(lane) / 1e6,
+					maxWaitNanos(lane) / 1e6));
+		}
+		return builder.append("dropped=").append(m_dropped).toString();
+	}
+
+	/** A request waiting in a lane, with the time it was queued */
+	private static final class Request {
+		private final byte[] m_bytes;
+		private final long m_queuedNanos;
+		/** False for a cancellation, which only the overall rate holds back */
+		private final boolean m_isLanePaced;
+
+		Request(byte[] bytes, long queuedNanos, boolean isLanePaced) {
+			m_bytes = bytes;
+			m_queuedNanos = queuedNanos;
+			m_isLanePaced = isLanePaced;
+		}
+	}
+
+	/** Tokens accrue at {@code ratePerSecond} up to {@code capacity}; each request written takes one */
+	private static final class TokenBucket {
+		private final double m_tokensPerNano;
+		private final double m_capacity;
+		private double m_tokens;
+		private long m_lastRefillNanos;
+
+		TokenBucket(double ratePerSecond, int capacity) {
+			if (ratePerSecond <= 0 || capacity < 1) {
+				throw new IllegalArgumentException("rate and burst must be positive: " + ratePerSecond + ", " + capacity);
+			}
+			m_tokensPerNano = ratePerSecond / 1e9;
+			m_capacity = capacity;
+			m_tokens = capacity;
+			m_lastRefillNanos = System.nanoTime();
+		}
+
+		/** Returns 0 if a token is available at {@code now}, otherwise how long until one is */
+		long nanosUntilToken(long now) {
+			m_tokens = Math.min(m_capacity, m_tokens + (now - m_lastRefillNanos) * m_tokensPerNano);
+			m_lastRefillNanos = now;
+			return m_tokens >= 1 ? 0 : Math.max(1, (long) Math.ceil((1 - m_tokens) / m_tokensPerNano));
+		}
+
+		void take() {
+			m_tokens -= 1;
+		}
+	}
+}
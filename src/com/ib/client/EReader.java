@@ -5,9 +5,9 @@ package com.ib.client;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.channels.SocketChannel;
 import java.util.Arrays;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 
@@ -26,7 +26,12 @@ public class EReader extends Thread {
     private static final int IN_BUF_SIZE_DEFAULT = 8192;
     private byte[] m_iBuf = new byte[IN_BUF_SIZE_DEFAULT];
     private int m_iBufLen = 0;
-    private final Deque<EMessage> m_msgQueue = new LinkedList<>();
+    private final EMessageQueue m_msgQueue;
+    private final EReaderMetrics m_metrics = new EReaderMetrics();
+    // a message framed on the ENioSelector thread that did not fit in the msg queue; selector thread only
+    private EMessage m_pending;
+    // set by the selector thread when it stops reading for want of space, cleared by the thread that makes space
+    private final AtomicBoolean m_paused = new AtomicBoolean();
     
     protected boolean isUseV100Plus() {
 		return m_clientSocket.isUseV100Plus();
@@ -41,8 +46,18 @@ public class EReader extends Thread {
      * @param signal A callback that informs that there are messages in msg queue.
      */
     public EReader(EClientSocket parent, EReaderSignal signal) {
+    	this(parent, signal, new ELinkedMessageQueue());
+    }
+
+    /**
+     * Construct the EReader with its own message queue, e.g. an {@link ESpscMessageQueue} together with an
+     * {@link EWaitStrategySignal}.
+     * @param queue Must allow this reader's thread to put and the thread calling processMsgs to poll.
+     */
+    public EReader(EClientSocket parent, EReaderSignal signal, EMessageQueue queue) {
     	m_clientSocket = parent;
         m_signal = signal;
+        m_msgQueue = queue;
         m_processMsgsDecoder = new EDecoder(parent.serverVersion(), parent.wrapper(), parent);
     }
     
@@ -59,31 +74,133 @@ public class EReader extends Thread {
             }
         }
         catch ( Exception ex ) {
-        	//if (parent().isConnected()) {
-        		if( ex instanceof EOFException ) {
-            		eWrapper().error(EClientErrors.NO_VALID_ID, EClientErrors.BAD_LENGTH.code(),
-            				EClientErrors.BAD_LENGTH.msg() + " " + ex.getMessage());
-        		}
-        		else {
-        			eWrapper().error( ex);
-        		}
-        		
-        		parent().eDisconnect();
-        	//}
+        	readFailed(ex);
+        	return;
         } 
         
         m_signal.issueSignal();
     }
 
+    /**
+     * Starts reading: on a thread of its own, or on the {@link ENioSelector} the client socket was constructed with.
+     */
+    @Override
+    public synchronized void start() {
+    	ENioSelector selector = m_clientSocket.selector();
+    	
+    	if (selector == null) {
+    		super.start();
+    	} else {
+    		selector.register(this);
+    	}
+    }
+
+    SocketChannel channel() {
+    	return m_clientSocket.channel();
+    }
+
+    /** Most messages put per {@link #readAvailable()}, so that the connections sharing a selector take turns */
+    static final int MAX_MSGS_PER_READ = 256;
+    /** Results of {@link #readAvailable()} */
+    static final int READ_FAILED = -1;
+    static final int READ_ALL = 0;
+    static final int READ_MORE = 1;
+    static final int READ_PAUSED = 2;
+
+    /**
+     * Called on the {@link ENioSelector} thread: puts up to {@link #MAX_MSGS_PER_READ} messages that can be framed
+     * without blocking to the msg queue, and signals once for them. If the queue is full, the message that did not
+     * fit is kept for the next call and reading pauses until {@link #processMsgs(int)} has drained the queue, so that
+     * the selector thread never waits for space and the other connections on it are still read.
+     * @return READ_FAILED if the connection has failed or been closed, READ_PAUSED if the queue is full, READ_MORE if
+     *         it stopped at the limit and more messages may be framed without the socket becoming readable again,
+     *         READ_ALL otherwise
+     */
+    int readAvailable() {
+    	try {
+    		int unsignalled = 0;
+    		
+    		if (m_pending != null) {
+    			if (!m_msgQueue.offer(m_pending)) {
+    				return pause();
+    			}
+    			m_pending = null;
+    			unsignalled++;
+    		}
+    		for (int read = unsignalled; read < MAX_MSGS_PER_READ; read++) {
+    			EMessage msg = m_clientSocket.framer().nextMessage();
+    			if (msg == null) {
+    				signal(unsignalled);
+    				return READ_ALL;
+    			}
+    			m_clientSocket.journalInbound(msg);
+    			if (!m_msgQueue.offer(msg)) {
+    				m_pending = msg;
+    				return pause();
+    			}
+    			unsignalled++;
+    		}
+    		signal(unsignalled);
+    		return READ_MORE;
+    	}
+    	catch ( Exception ex ) {
+    		readFailed(ex);
+    		return READ_FAILED;
+    	}
+    }
+
+    /**
+     * Marks this reader paused, then signals even if nothing new was put: the processing thread resumes it once it
+     * has drained the queue, and the signal makes sure that it drains the queue after the mark is visible.
+     */
+    private int pause() {
+    	m_paused.set(true);
+    	m_signal.issueSignal();
+    	return READ_PAUSED;
+    }
+
+    /** Called once the msg queue has been drained: has the selector read this reader's connection again if paused */
+    private void resumeIfPaused() {
+    	if (m_paused.compareAndSet(true, false)) {
+    		ENioSelector selector = m_clientSocket.selector();
+    		if (selector != null) {
+    			selector.resume(this);
+    		}
+    	}
+    }
+
+    private void signal(int unsignalled) {
+    	if (unsignalled > 0) {
+    		m_signal.issueSignal();
+    	}
+    }
+
+    /** Reports why reading stopped, disconnects, and wakes the processing thread */
+    void readFailed(Exception ex) {
+    	//if (parent().isConnected()) {
+    		if( ex instanceof EOFException ) {
+        		eWrapper().error(EClientErrors.NO_VALID_ID, EClientErrors.BAD_LENGTH.code(),
+        				EClientErrors.BAD_LENGTH.msg() + " " + ex.getMessage());
+    		}
+    		else {
+    			eWrapper().error( ex);
+    		}
+    		
+    		parent().eDisconnect();
+    	//}
+    	
+    	m_signal.issueSignal();
+    }
+
 	public boolean putMessageToQueue() throws IOException {
 		EMessage msg = readSingleMessage();
 		
 		if (msg == null)
 			return false;
 		
-		synchronized(m_msgQueue) {
-			m_msgQueue.addFirst(msg);
-		}
+		m_clientSocket.journalInbound(msg);
+		if (!m_msgQueue.put(msg))
+			return false; // interrupted
 		
 		m_signal.issueSignal();
 		
@@ -91,14 +208,12 @@ public class EReader extends Thread {
 	}   
 
 	protected EMessage getMsg() {
-    	synchronized (m_msgQueue) {
-    		return m_msgQueue.isEmpty() ? null : m_msgQueue.removeLast();
-		}
+		return m_msgQueue.poll();
     }
 	
     static final int MAX_MSG_LENGTH = 0xffffff;
 
-	private static class InvalidMessageLengthException extends IOException {
+	static class InvalidMessageLengthException extends IOException {
 		private static final long serialVersionUID = 1L;
 
 		InvalidMessageLengthException(String message) {
@@ -107,31 +222,76 @@ public class EReader extends Thread {
     }
     
     public void processMsgs() throws IOException {
-    	EMessage msg = getMsg();
+    	processMsgs(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Drains the msg queue in batches of at most {@code maxBatchSize} messages, decoding each batch back to back
+     * and then calling {@link EBatchListener#onBatchEnd(int)} if the wrapper implements it. Messages put while
+     * draining are processed as well, so none are left waiting for the next signal.
+     * @return the number of messages processed
+     */
+    public int processMsgs(int maxBatchSize) throws IOException {
+    	if (maxBatchSize <= 0) {
+    		throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+    	}
+    	int total = 0;
     	
-    	while (msg != null && m_processMsgsDecoder.processMsg(msg) > 0) {
-    		msg = getMsg();
+    	while (true) {
+    		long start = System.nanoTime();
+    		int batchSize = 0;
+    		boolean drained = false;
+    		
+    		try {
+    			while (batchSize < maxBatchSize) {
+    				EMessage msg = getMsg();
+    				
+    				if (msg == null || processAndRelease(msg) <= 0) {
+    					drained = true;
+    					break;
+    				}
+    				batchSize++;
+    			}
+    		} finally {
+    			if (batchSize > 0) {
+    				endBatch(batchSize, start);
+    			}
+    		}
+    		total += batchSize;
+    		
+    		if (drained) {
+    			resumeIfPaused();
+    			return total;
+    		}
+    	}
+    }
+
+    private void endBatch(int batchSize, long start) {
+    	EWrapper wrapper = eWrapper();
+    	
+    	if (wrapper instanceof EBatchListener) {
+    		((EBatchListener)wrapper).onBatchEnd(batchSize);
+    	}
+    	m_metrics.recordBatch(batchSize, System.nanoTime() - start);
+    }
+
+    /** Batch size and drain latency of processMsgs, readable from any thread */
+    public EReaderMetrics metrics() {
+    	return m_metrics;
+    }
+
+    /** Decodes {@code msg} and then returns its bytes to the framer they were read into */
+    private int processAndRelease(EMessage msg) throws IOException {
+    	try {
+    		return m_processMsgsDecoder.processMsg(msg);
+    	} finally {
+    		msg.release();
     	}
     }
 
 	private EMessage readSingleMessage() throws IOException {
 		if (isUseV100Plus()) {
-			int msgSize = m_clientSocket.readInt();
-
-			if (msgSize > MAX_MSG_LENGTH) {
-				throw new InvalidMessageLengthException("message is too long: "
-						+ msgSize);
-			}
-			
-			byte[] buf = new byte[msgSize];
-			
-			int offset = 0;
-			
-			while (offset < msgSize) {
-				offset += m_clientSocket.read(buf, offset, msgSize - offset);
-			}
-						
-			return new EMessage(buf, buf.length);
+			return m_clientSocket.framer().nextMessage();
 		}
 		
 		if (m_iBufLen == 0) {
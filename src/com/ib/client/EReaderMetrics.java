@@ -0,0 +1,52 @@
+package com.ib.client;
+
+/**
+ * Batch statistics of an {@link EReader}. Only the thread calling processMsgs writes them, so they can be read from
+ * any thread without locking; a reader may see the counters of different batches.
+ */
+public class EReaderMetrics {
+	private volatile long m_batches;
+	private volatile long m_messages;
+	private volatile int m_lastBatchSize;
+	private volatile int m_maxBatchSize;
+	private volatile long m_drainNanos;
+	private volatile long m_maxDrainNanos;
+
+	/** Records a batch of {@code batchSize} messages that took {@code drainNanos} to take and decode */
+	void recordBatch(int batchSize, long drainNanos) {
+		m_batches = m_batches + 1;
+		m_messages = m_messages + batchSize;
+		m_lastBatchSize = batchSize;
+		if (batchSize > m_maxBatchSize) {
+			m_maxBatchSize = batchSize;
+		}
+		m_drainNanos = m_drainNanos + drainNanos;
+		if (drainNanos > m_maxDrainNanos) {
+			m_maxDrainNanos = drainNanos;
+		}
+	}
+
+	public long batchCount()      { return m_batches; }
+	public long messageCount()    { return m_messages; }
+	public int lastBatchSize()    { return m_lastBatchSize; }
+	public int maxBatchSize()     { return m_maxBatchSize; }
+	public long maxDrainNanos()   { return m_maxDrainNanos; }
+
+	public double averageBatchSize() {
+		long batches = m_batches;
+		return batches == 0 ? 0 : (double) m_messages / batches;
+	}
+
+	/** Average time from taking the first message of a batch to the end of its last callback */
+	public double averageDrainNanos() {
+		long batches = m_batches;
+		return batches == 0 ? 0 : (double) m_drainNanos / batches;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("batches=%d messages=%d avgBatch=%.1f maxBatch=%d avgDrain=%.1fus maxDrain=%.1fus",
+				batchCount(), messageCount(), averageBatchSize(), maxBatchSize(),
+				averageDrainNanos() / 1000, maxDrainNanos() / 1000.0);
+	}
+}
@@ -0,0 +1,623 @@
+package com.ib.client;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatches the callbacks of an {@link EClientSocket} from the thread calling {@link EReader#processMsgs()} to
+ * worker lanes, so that a slow callback for one symbol does not hold up the data of every other symbol.
+ *
+ * Market data callbacks are assigned to one of the symbol lanes by their reqId/tickerId, so the callbacks of a request
+ * run in the order they were decoded while different requests run in parallel. An error for a request that has had
+ * market data runs on that request's lane, after its data. All other callbacks, i.e. orders, executions, account and
+ * portfolio updates, other errors and connection events, run in order on a single control lane.
+ *
+ * Each lane holds at most {@code laneCapacity} callbacks that have not run yet. Dispatching to a full lane waits for
+ * it to make room, so that a burst backs up into the {@link EReader}'s queue, where an
+ * {@link EConflatingMessageQueue} can conflate it, rather than piling up on the heap behind a slow callback.
+ *
+ * If the delegate is an {@link EBatchListener}, the end of each batch is passed on to every symbol lane that received
+ * callbacks during the batch, after those callbacks; the delegate then gets one onBatchEnd per lane, on that lane's
+ * thread, and must keep any per-batch state per lane.
+ */
+public class EShardedWrapper implements EWrapper, EBatchListener, AutoCloseable {
+	private final EWrapper m_delegate;
+	private final Lane[] m_symbolLanes;
+	private final Lane m_controlLane;
+	/**
+	 * The reqIds of requests that have had callbacks on a symbol lane and have not ended; looked up by the processMsgs
+	 * thread, and written under its own lock since {@link #requestEnded(int)} may be called from any thread
+	 */
+	private final IntHashMap<Boolean> m_symbolReqIds = new IntHashMap<>();
+
+	public static final int DEFAULT_LANE_CAPACITY = 1024;
+
+	public EShardedWrapper(EWrapper delegate, int symbolLanes) {
+		this(delegate, symbolLanes, DEFAULT_LANE_CAPACITY);
+	}
+
+	/**
+	 * @param delegate the wrapper the callbacks are dispatched to
+	 * @param symbolLanes number of lanes, i.e. threads, that market data callbacks are spread over
+	 * @param laneCapacity callbacks each lane holds before dispatching to it waits
+	 */
+	public EShardedWrapper(EWrapper delegate, int symbolLanes, int laneCapacity) {
+		if (symbolLanes <= 0) {
+			throw new IllegalArgumentException("symbolLanes must be positive: " + symbolLanes);
+		}
+		if (laneCapacity <= 0) {
+			throw new IllegalArgumentException("laneCapacity must be positive: " + laneCapacity);
+		}
+		m_delegate = delegate;
+		m_symbolLanes = new Lane[symbolLanes];
+		for (int i = 0; i < symbolLanes; i++) {
+			m_symbolLanes[i] = new Lane("EShardedWrapper symbol lane " + i, laneCapacity);
+		}
+		m_controlLane = new Lane("EShardedWrapper control lane", laneCapacity);
+	}
+
+	public EWrapper delegate() {
+		return m_delegate;
+	}
+
+	public int symbolLaneCount() {
+		return m_symbolLanes.length;
+	}
+
+	/** Returns the index of the symbol lane that callbacks for {@code reqId} run on */
+	public int symbolLaneOf(int reqId) {
+		// reqIds are usually handed out sequentially, so the remainder spreads them evenly
+		return Math.floorMod(reqId, m_symbolLanes.length);
+	}
+
+	private Lane symbolLane(int reqId) {
+		if (reqId != IntHashMap.EMPTY_KEY && m_symbolReqIds.get(reqId) == null) {
+			synchronized (m_symbolReqIds) {
+				m_symbolReqIds.put(reqId, Boolean.TRUE);
+			}
+		}
+		Lane lane = m_symbolLanes[symbolLaneOf(reqId)];
+		lane.m_batchSize++;
+		return lane;
+	}
+
+	/**
+	 * Forgets {@code reqId}, e.g. once its request has been cancelled, so that errors for it run on the control lane
+	 * again. Requests that end with a callback, such as historicalDataEnd, tickSnapshotEnd or an error, are forgotten
+	 * without this.
+	 */
+	public void requestEnded(int reqId) {
+		if (reqId != IntHashMap.EMPTY_KEY && m_symbolReqIds.get(reqId) != null) {
+			synchronized (m_symbolReqIds) {
+				m_symbolReqIds.remove(reqId);
+			}
+		}
+	}
+
+	@Override
+	public void onBatchEnd(int batchSize) {
+		if (!(m_delegate instanceof EBatchListener)) {
+			return;
+		}
+		EBatchListener listener = (EBatchListener)m_delegate;
+
+		for (Lane lane : m_symbolLanes) {
+			int laneBatchSize = lane.m_batchSize;
+
+			if (laneBatchSize > 0) {
+				lane.m_batchSize = 0;
+				lane.execute(() -> listener.onBatchEnd(laneBatchSize));
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting callbacks and waits up to {@code timeout} for the callbacks already dispatched to run.
+	 * @return true if every lane finished in time
+	 */
+	public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		for (Lane lane : m_symbolLanes) {
+			lane.m_executor.shutdown();
+		}
+		m_controlLane.m_executor.shutdown();
+
+		boolean terminated = true;
+		for (Lane lane : m_symbolLanes) {
+			terminated &= lane.m_executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+		return m_controlLane.m_executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+				&& terminated;
+	}
+
+	/**
+	 * Stops accepting callbacks and waits for the callbacks already dispatched to run; stops waiting if the calling
+	 * thread is interrupted, leaving its interrupt flag set.
+	 */
+	@Override
+	public void close() {
+		try {
+			while (!close(1, TimeUnit.MINUTES)) {
+				// keep waiting for a slow callback
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** A single thread running the callbacks dispatched to it in order, from a queue of bounded capacity */
+	private static final class Lane {
+		private final ThreadPoolExecutor m_executor;
+		// market data callbacks dispatched since the last batch end, touched only by the processMsgs thread
+		private int m_batchSize;
+
+		private Lane(String name, int capacity) {
+			m_executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity),
+					runnable -> {
+						Thread thread = new Thread(runnable, name);
+						thread.setDaemon(true);
+						return thread;
+					},
+					Lane::waitForSpace);
+		}
+
+		/** Runs when the queue is full: waits for the lane thread to make room instead of rejecting the callback */
+		private static void waitForSpace(Runnable callback, ThreadPoolExecutor executor) {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("lane has been closed");
+			}
+			BlockingQueue<Runnable> queue = executor.getQueue();
+			try {
+				queue.put(callback);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RejectedExecutionException("interrupted while waiting for space in the lane", e);
+			}
+		}
+
+		private void execute(Runnable callback) {
+			m_executor.execute(callback);
+		}
+	}
+
+	@Override
+	public void tickPrice(int tickerId, int field, double price, TickAttr attrib) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickPrice(tickerId, field, price, attrib));
+	}
+
+	@Override
+	public void tickSize(int tickerId, int field, int size) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickSize(tickerId, field, size));
+	}
+
+	@Override
+	public void tickOptionComputation(int tickerId, int field, double impliedVol, double delta, double optPrice,
+			double pvDividend, double gamma, double vega, double theta, double undPrice) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickOptionComputation(tickerId, field, impliedVol, delta,
+				optPrice, pvDividend, gamma, vega, theta, undPrice));
+	}
+
+	@Override
+	public void tickGeneric(int tickerId, int tickType, double value) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickGeneric(tickerId, tickType, value));
+	}
+
+	@Override
+	public void tickString(int tickerId, int tickType, String value) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickString(tickerId, tickType, value));
+	}
+
+	@Override
+	public void tickEFP(int tickerId, int tickType, double basisPoints, String formattedBasisPoints,
+			double impliedFuture, int holdDays, String futureLastTradeDate, double dividendImpact,
+			double dividendsToLastTradeDate) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickEFP(tickerId, tickType, basisPoints, formattedBasisPoints,
+				impliedFuture, holdDays, futureLastTradeDate, dividendImpact, dividendsToLastTradeDate));
+	}
+
+	@Override
+	public void orderStatus(int orderId, String status, double filled, double remaining, double avgFillPrice,
+			int permId, int parentId, double lastFillPrice, int clientId, String whyHeld, double mktCapPrice) {
+		m_controlLane.execute(() -> m_delegate.orderStatus(orderId, status, filled, remaining, avgFillPrice, permId,
+				parentId, lastFillPrice, clientId, whyHeld, mktCapPrice));
+	}
+
+	@Override
+	public void openOrder(int orderId, Contract contract, Order order, OrderState orderState) {
+		m_controlLane.execute(() -> m_delegate.openOrder(orderId, contract, order, orderState));
+	}
+
+	@Override
+	public void openOrderEnd() {
+		m_controlLane.execute(() -> m_delegate.openOrderEnd());
+	}
+
+	@Override
+	public void updateAccountValue(String key, String value, String currency, String accountName) {
+		m_controlLane.execute(() -> m_delegate.updateAccountValue(key, value, currency, accountName));
+	}
+
+	@Override
+	public void updatePortfolio(Contract contract, double position, double marketPrice, double marketValue,
+			double averageCost, double unrealizedPNL, double realizedPNL, String accountName) {
+		m_controlLane.execute(() -> m_delegate.updatePortfolio(contract, position, marketPrice, marketValue,
+				averageCost, unrealizedPNL, realizedPNL, accountName));
+	}
+
+	@Override
+	public void updateAccountTime(String timeStamp) {
+		m_controlLane.execute(() -> m_delegate.updateAccountTime(timeStamp));
+	}
+
+	@Override
+	public void accountDownloadEnd(String accountName) {
+		m_controlLane.execute(() -> m_delegate.accountDownloadEnd(accountName));
+	}
+
+	@Override
+	public void nextValidId(int orderId) {
+		m_controlLane.execute(() -> m_delegate.nextValidId(orderId));
+	}
+
+	@Override
+	public void contractDetails(int reqId, ContractDetails contractDetails) {
+		m_controlLane.execute(() -> m_delegate.contractDetails(reqId, contractDetails));
+	}
+
+	@Override
+	public void bondContractDetails(int reqId, ContractDetails contractDetails) {
+		m_controlLane.execute(() -> m_delegate.bondContractDetails(reqId, contractDetails));
+	}
+
+	@Override
+	public void contractDetailsEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.contractDetailsEnd(reqId));
+	}
+
+	@Override
+	public void execDetails(int reqId, Contract contract, Execution execution) {
+		m_controlLane.execute(() -> m_delegate.execDetails(reqId, contract, execution));
+	}
+
+	@Override
+	public void execDetailsEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.execDetailsEnd(reqId));
+	}
+
+	@Override
+	public void updateMktDepth(int tickerId, int position, int operation, int side, double price, int size) {
+		symbolLane(tickerId).execute(() -> m_delegate.updateMktDepth(tickerId, position, operation, side, price, size));
+	}
+
+	@Override
+	public void updateMktDepthL2(int tickerId, int position, String marketMaker, int operation, int side, double price,
+			int size) {
+		symbolLane(tickerId).execute(() -> m_delegate.updateMktDepthL2(tickerId, position, marketMaker, operation,
+				side, price, size));
+	}
+
+	@Override
+	public void updateNewsBulletin(int msgId, int msgType, String message, String origExchange) {
+		m_controlLane.execute(() -> m_delegate.updateNewsBulletin(msgId, msgType, message, origExchange));
+	}
+
+	@Override
+	public void managedAccounts(String accountsList) {
+		m_controlLane.execute(() -> m_delegate.managedAccounts(accountsList));
+	}
+
+	@Override
+	public void receiveFA(int faDataType, String xml) {
+		m_controlLane.execute(() -> m_delegate.receiveFA(faDataType, xml));
+	}
+
+	@Override
+	public void historicalData(int reqId, Bar bar) {
+		symbolLane(reqId).execute(() -> m_delegate.historicalData(reqId, bar));
+	}
+
+	@Override
+	public void scannerParameters(String xml) {
+		m_controlLane.execute(() -> m_delegate.scannerParameters(xml));
+	}
+
+	@Override
+	public void scannerData(int reqId, int rank, ContractDetails contractDetails, String distance, String benchmark,
+			String projection, String legsStr) {
+		m_controlLane.execute(() -> m_delegate.scannerData(reqId, rank, contractDetails, distance, benchmark,
+				projection, legsStr));
+	}
+
+	@Override
+	public void scannerDataEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.scannerDataEnd(reqId));
+	}
+
+	@Override
+	public void realtimeBar(int reqId, long time, double open, double high, double low, double close, long volume,
+			double wap, int count) {
+		symbolLane(reqId).execute(() -> m_delegate.realtimeBar(reqId, time, open, high, low, close, volume, wap,
+				count));
+	}
+
+	@Override
+	public void currentTime(long time) {
+		m_controlLane.execute(() -> m_delegate.currentTime(time));
+	}
+
+	@Override
+	public void fundamentalData(int reqId, String data) {
+		m_controlLane.execute(() -> m_delegate.fundamentalData(reqId, data));
+	}
+
+	@Override
+	public void deltaNeutralValidation(int reqId, DeltaNeutralContract underComp) {
+		m_controlLane.execute(() -> m_delegate.deltaNeutralValidation(reqId, underComp));
+	}
+
+	@Override
+	public void tickSnapshotEnd(int reqId) {
+		symbolLane(reqId).execute(() -> m_delegate.tickSnapshotEnd(reqId));
+		requestEnded(reqId);
+	}
+
+	@Override
+	public void marketDataType(int reqId, int marketDataType) {
+		symbolLane(reqId).execute(() -> m_delegate.marketDataType(reqId, marketDataType));
+	}
+
+	@Override
+	public void commissionReport(CommissionReport commissionReport) {
+		m_controlLane.execute(() -> m_delegate.commissionReport(commissionReport));
+	}
+
+	@Override
+	public void position(String account, Contract contract, double pos, double avgCost) {
+		m_controlLane.execute(() -> m_delegate.position(account, contract, pos, avgCost));
+	}
+
+	@Override
+	public void positionEnd() {
+		m_controlLane.execute(() -> m_delegate.positionEnd());
+	}
+
+	@Override
+	public void accountSummary(int reqId, String account, String tag, String value, String currency) {
+		m_controlLane.execute(() -> m_delegate.accountSummary(reqId, account, tag, value, currency));
+	}
+
+	@Override
+	public void accountSummaryEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.accountSummaryEnd(reqId));
+	}
+
+	@Override
+	public void verifyMessageAPI(String apiData) {
+		m_controlLane.execute(() -> m_delegate.verifyMessageAPI(apiData));
+	}
+
+	@Override
+	public void verifyCompleted(boolean isSuccessful, String errorText) {
+		m_controlLane.execute(() -> m_delegate.verifyCompleted(isSuccessful, errorText));
+	}
+
+	@Override
+	public void verifyAndAuthMessageAPI(String apiData, String xyzChallenge) {
+		m_controlLane.execute(() -> m_delegate.verifyAndAuthMessageAPI(apiData, xyzChallenge));
+	}
+
+	@Override
+	public void verifyAndAuthCompleted(boolean isSuccessful, String errorText) {
+		m_controlLane.execute(() -> m_delegate.verifyAndAuthCompleted(isSuccessful, errorText));
+	}
+
+	@Override
+	public void displayGroupList(int reqId, String groups) {
+		m_controlLane.execute(() -> m_delegate.displayGroupList(reqId, groups));
+	}
+
+	@Override
+	public void displayGroupUpdated(int reqId, String contractInfo) {
+		m_controlLane.execute(() -> m_delegate.displayGroupUpdated(reqId, contractInfo));
+	}
+
+	@Override
+	public void error(Exception e) {
+		m_controlLane.execute(() -> m_delegate.error(e));
+	}
+
+	@Override
+	public void error(String str) {
+		m_controlLane.execute(() -> m_delegate.error(str));
+	}
+
+	@Override
+	public void error(int id, int errorCode, String errorMsg) {
+		if (id > 0 && m_symbolReqIds.get(id) != null) {
+			symbolLane(id).execute(() -> m_delegate.error(id, errorCode, errorMsg));
+			requestEnded(id);
+		} else {
+			m_controlLane.execute(() -> m_delegate.error(id, errorCode, errorMsg));
+		}
+	}
+
+	@Override
+	public void connectionClosed() {
+		m_controlLane.execute(() -> m_delegate.connectionClosed());
+	}
+
+	@Override
+	public void connectAck() {
+		m_controlLane.execute(() -> m_delegate.connectAck());
+	}
+
+	@Override
+	public void positionMulti(int reqId, String account, String modelCode, Contract contract, double pos,
+			double avgCost) {
+		m_controlLane.execute(() -> m_delegate.positionMulti(reqId, account, modelCode, contract, pos, avgCost));
+	}
+
+	@Override
+	public void positionMultiEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.positionMultiEnd(reqId));
+	}
+
+	@Override
+	public void accountUpdateMulti(int reqId, String account, String modelCode, String key, String value,
+			String currency) {
+		m_controlLane.execute(() -> m_delegate.accountUpdateMulti(reqId, account, modelCode, key, value, currency));
+	}
+
+	@Override
+	public void accountUpdateMultiEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.accountUpdateMultiEnd(reqId));
+	}
+
+	@Override
+	public void securityDefinitionOptionalParameter(int reqId, String exchange, int underlyingConId,
+			String tradingClass, String multiplier, Set<String> expirations, Set<Double> strikes) {
+		m_controlLane.execute(() -> m_delegate.securityDefinitionOptionalParameter(reqId, exchange, underlyingConId,
+				tradingClass, multiplier, expirations, strikes));
+	}
+
+	@Override
+	public void securityDefinitionOptionalParameterEnd(int reqId) {
+		m_controlLane.execute(() -> m_delegate.securityDefinitionOptionalParameterEnd(reqId));
+	}
+
+	@Override
+	public void softDollarTiers(int reqId, SoftDollarTier[] tiers) {
+		m_controlLane.execute(() -> m_delegate.softDollarTiers(reqId, tiers));
+	}
+
+	@Override
+	public void familyCodes(FamilyCode[] familyCodes) {
+		m_controlLane.execute(() -> m_delegate.familyCodes(familyCodes));
+	}
+
+	@Override
+	public void symbolSamples(int reqId, ContractDescription[] contractDescriptions) {
+		m_controlLane.execute(() -> m_delegate.symbolSamples(reqId, contractDescriptions));
+	}
+
+	@Override
+	public void historicalDataEnd(int reqId, String startDateStr, String endDateStr) {
+		symbolLane(reqId).execute(() -> m_delegate.historicalDataEnd(reqId, startDateStr, endDateStr));
+		requestEnded(reqId);
+	}
+
+	@Override
+	public void mktDepthExchanges(DepthMktDataDescription[] depthMktDataDescriptions) {
+		m_controlLane.execute(() -> m_delegate.mktDepthExchanges(depthMktDataDescriptions));
+	}
+
+	@Override
+	public void tickNews(int tickerId, long timeStamp, String providerCode, String articleId, String headline,
+			String extraData) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickNews(tickerId, timeStamp, providerCode, articleId, headline,
+				extraData));
+	}
+
+	@Override
+	public void smartComponents(int reqId, Map<Integer, Entry<String, Character>> theMap) {
+		m_controlLane.execute(() -> m_delegate.smartComponents(reqId, theMap));
+	}
+
+	@Override
+	public void tickReqParams(int tickerId, double minTick, String bboExchange, int snapshotPermissions) {
+		symbolLane(tickerId).execute(() -> m_delegate.tickReqParams(tickerId, minTick, bboExchange,
+				snapshotPermissions));
+	}
+
+	@Override
+	public void newsProviders(NewsProvider[] newsProviders) {
+		m_controlLane.execute(() -> m_delegate.newsProviders(newsProviders));
+	}
+
+	@Override
+	public void newsArticle(int requestId, int articleType, String articleText) {
+		m_controlLane.execute(() -> m_delegate.newsArticle(requestId, articleType, articleText));
+	}
+
+	@Override
+	public void historicalNews(int requestId, String time, String providerCode, String articleId, String headline) {
+		m_controlLane.execute(() -> m_delegate.historicalNews(requestId, time, providerCode, articleId, headline));
+	}
+
+	@Override
+	public void historicalNewsEnd(int requestId, boolean hasMore) {
+		m_controlLane.execute(() -> m_delegate.historicalNewsEnd(requestId, hasMore));
+	}
+
+	@Override
+	public void headTimestamp(int reqId, String headTimestamp) {
+		m_controlLane.execute(() -> m_delegate.headTimestamp(reqId, headTimestamp));
+	}
+
+	@Override
+	public void histogramData(int reqId, List<HistogramEntry> items) {
+		m_controlLane.execute(() -> m_delegate.histogramData(reqId, items));
+	}
+
+	@Override
+	public void historicalDataUpdate(int reqId, Bar bar) {
+		symbolLane(reqId).execute(() -> m_delegate.historicalDataUpdate(reqId, bar));
+	}
+
+	@Override
+	public void rerouteMktDataReq(int reqId, int conId, String exchange) {
+		symbolLane(reqId).execute(() -> m_delegate.rerouteMktDataReq(reqId, conId, exchange));
+	}
+
+	@Override
+	public void rerouteMktDepthReq(int reqId, int conId, String exchange) {
+		symbolLane(reqId).execute(() -> m_delegate.rerouteMktDepthReq(reqId, conId, exchange));
+	}
+
+	@Override
+	public void marketRule(int marketRuleId, PriceIncrement[] priceIncrements) {
+		m_controlLane.execute(() -> m_delegate.marketRule(marketRuleId, priceIncrements));
+	}
+
+	@Override
+	public void pnl(int reqId, double dailyPnL, double unrealizedPnL, double realizedPnL) {
+		m_controlLane.execute(() -> m_delegate.pnl(reqId, dailyPnL, unrealizedPnL, realizedPnL));
+	}
+
+	@Override
+	public void pnlSingle(int reqId, int pos, double dailyPnL, double unrealizedPnL, double realizedPnL, double value) {
+		m_controlLane.execute(() -> m_delegate.pnlSingle(reqId, pos, dailyPnL, unrealizedPnL, realizedPnL, value));
+	}
+
+	@Override
+	public void historicalTicks(int reqId, List<HistoricalTick> ticks, boolean done) {
+		symbolLane(reqId).execute(() -> m_delegate.historicalTicks(reqId, ticks, done));
+		if (done) {
+			requestEnded(reqId);
+		}
+	}
+
+	@Override
+	public void historicalTicksBidAsk(int reqId, List<HistoricalTickBidAsk> ticks, boolean done) {
+		symbolLane(reqId).execute(() -> m_delegate.historicalTicksBidAsk(reqId, ticks, done));
+		if (done) {
+			requestEnded(reqId);
+		}
+	}
+
+	@Override
+	public void historicalTicksLast(int reqId, List<HistoricalTickLast> ticks, boolean done) {
+		symbolLane(reqId).execute(() -> m_delegate.historicalTicksLast(reqId, ticks, done));
+		if (done) {
+			requestEnded(reqId);
+		}
+	}
+}
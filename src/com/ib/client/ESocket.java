@@ -2,6 +2,7 @@ package com.ib.client;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.Socket;
 
 public class ESocket implements ETransport {
@@ -10,13 +11,15 @@ public class ESocket implements ETransport {
 
     @Override
     public void send(EMessage msg) throws IOException {
-        byte[] buf = msg.getRawData();
-
-        m_dos.write(buf, 0, buf.length);
+        m_dos.write(msg.buf(), msg.offset(), msg.length());
     }
 
     ESocket(Socket s) throws IOException {
-        m_dos = new DataOutputStream(s.getOutputStream());
+        this(s.getOutputStream());
+    }
+
+    ESocket(OutputStream out) {
+        m_dos = new DataOutputStream(out);
     }
 
     // Sends String without length prefix (pre-V100 style)
@@ -0,0 +1,72 @@
+package com.ib.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads and writes a TWS connection's {@link SocketChannel} in blocking mode during the handshake and in
+ * non-blocking mode once its {@link EReader} is registered with an {@link ENioSelector}.
+ */
+class ESocketChannel {
+	private final SocketChannel m_channel;
+	private ByteBuffer m_readView; // wraps the framer's current chunk, so that reads do not allocate
+	private final OutputStream m_out = new ChannelOutputStream();
+
+	ESocketChannel(SocketChannel channel) {
+		m_channel = channel;
+	}
+
+	SocketChannel channel() {
+		return m_channel;
+	}
+
+	/**
+	 * Reads what is available into {@code buf}.
+	 * @return the number of bytes read, 0 if a non-blocking channel has nothing to read, or -1 at end of stream
+	 */
+	int read(byte[] buf, int off, int len) throws IOException {
+		if (m_readView == null || m_readView.array() != buf) {
+			m_readView = ByteBuffer.wrap(buf);
+		}
+		m_readView.clear().position(off).limit(off + len);
+		return m_channel.read(m_readView);
+	}
+
+	/** The channel as a stream for {@link ESocket}; closing it closes the channel */
+	OutputStream outputStream() {
+		return m_out;
+	}
+
+	private class ChannelOutputStream extends OutputStream {
+		private ByteBuffer m_writeView;
+
+		@Override
+		public synchronized void write(byte[] b, int off, int len) throws IOException {
+			if (m_writeView == null || m_writeView.array() != b) {
+				m_writeView = ByteBuffer.wrap(b);
+			}
+			m_writeView.clear().position(off).limit(off + len);
+
+			while (m_writeView.hasRemaining()) {
+				if (m_channel.write(m_writeView) == 0) {
+					// the socket send buffer is full; rare for request-sized writes, so wait briefly rather than
+					// hand the rest to the selector thread
+					LockSupport.parkNanos(EWaitStrategy.PARK_NANOS);
+				}
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte)b }, 0, 1);
+		}
+
+		@Override
+		public void close() throws IOException {
+			m_channel.close();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.ib.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free queue for exactly one producer thread (the {@link EReader}) and one consumer thread (the one
+ * calling {@link EReader#processMsgs()}). Messages live in a preallocated ring, so putting one allocates nothing.
+ * When the ring is full the producer waits with the given {@link EWaitStrategy}, which stops reading the socket and
+ * lets TCP flow control slow down TWS.
+ */
+public class ESpscMessageQueue implements EMessageQueue {
+	private final EMessage[] m_ring;
+	private final int m_mask;
+	private final EWaitStrategy m_waitStrategy;
+
+	// written by the producer only
+	private final AtomicLong m_tail = new PaddedAtomicLong();
+	private long m_cachedHead;
+	// written by the consumer only
+	private final AtomicLong m_head = new PaddedAtomicLong();
+	private long m_cachedTail;
+
+	/** @param capacity rounded up to a power of two */
+	public ESpscMessageQueue(int capacity, EWaitStrategy waitStrategy) {
+		int size = 2;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		m_ring = new EMessage[size];
+		m_mask = size - 1;
+		m_waitStrategy = waitStrategy;
+	}
+
+	@Override
+	public boolean put(EMessage msg) {
+		while (!offer(msg)) {
+			// isInterrupted() leaves the flag set for the caller to see
+			if (Thread.currentThread().isInterrupted()) {
+				return false; // the reader is being stopped
+			}
+			m_waitStrategy.idle();
+		}
+		return true;
+	}
+
+	@Override
+	public boolean offer(EMessage msg) {
+		long tail = m_tail.get();
+
+		if (tail - m_cachedHead == m_ring.length) {
+			m_cachedHead = m_head.get();
+			if (tail - m_cachedHead == m_ring.length) {
+				return false;
+			}
+		}
+
+		m_ring[(int) tail & m_mask] = msg;
+		m_tail.lazySet(tail + 1); // publishes the slot to the consumer
+		return true;
+	}
+
+	@Override
+	public EMessage poll() {
+		long head = m_head.get();
+
+		if (head == m_cachedTail) {
+			m_cachedTail = m_tail.get();
+			if (head == m_cachedTail) {
+				return null;
+			}
+		}
+
+		int index = (int) head & m_mask;
+		EMessage msg = m_ring[index];
+		m_ring[index] = null;
+		m_head.lazySet(head + 1); // hands the slot back to the producer
+		return msg;
+	}
+
+	public int capacity() {
+		return m_ring.length;
+	}
+
+	/** Number of queued messages; exact only when called from the producer or consumer thread */
+	public int size() {
+		return (int) (m_tail.get() - m_head.get());
+	}
+
+	/** Keeps the producer's and consumer's counters on separate cache lines */
+	@SuppressWarnings("unused")
+	private static final class PaddedAtomicLong extends AtomicLong {
+		private static final long serialVersionUID = 1L;
+		private long p1, p2, p3, p4, p5, p6, p7;
+	}
+}
@@ -5,4 +5,8 @@ import java.io.IOException;
 
 public interface ETransport extends Closeable {
 	void send(EMessage msg) throws IOException;
+
+	/** Writes out any messages the transport is holding back; transports that write immediately do nothing */
+	default void flush() throws IOException {
+	}
 }
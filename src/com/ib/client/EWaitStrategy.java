@@ -0,0 +1,25 @@
+package com.ib.client;
+
+import java.util.concurrent.locks.LockSupport;
+
+/** How a thread waits for a message, or for room in a full queue, without holding a lock */
+public enum EWaitStrategy {
+	/** Lowest latency; keeps a core busy while waiting */
+	BUSY_SPIN {
+		@Override void idle() { } // checks again straight away; Thread.onSpinWait() would need Java 9
+	},
+	/** Gives the core to other runnable threads between checks */
+	YIELD {
+		@Override void idle() { Thread.yield(); }
+	},
+	/** Sleeps until woken by the producer; lowest CPU use, but each wake-up costs a context switch */
+	PARK {
+		@Override void idle() { LockSupport.parkNanos(PARK_NANOS); }
+	};
+
+	/** Upper bound on a single park, so that a missed wake-up only delays the waiter */
+	static final long PARK_NANOS = 50_000;
+
+	/** Waits once before the caller checks its condition again */
+	abstract void idle();
+}
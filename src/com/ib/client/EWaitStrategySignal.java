@@ -0,0 +1,52 @@
+package com.ib.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link EReaderSignal} that waits with an {@link EWaitStrategy} instead of a monitor, for use with
+ * {@link ESpscMessageQueue}. Supports one waiting thread, like the message processing loop.
+ */
+public class EWaitStrategySignal implements EReaderSignal {
+	private final EWaitStrategy m_waitStrategy;
+	private final AtomicBoolean m_open = new AtomicBoolean();
+	private volatile Thread m_waiter;
+
+	public EWaitStrategySignal(EWaitStrategy waitStrategy) {
+		m_waitStrategy = waitStrategy;
+	}
+
+	@Override
+	public void issueSignal() {
+		if (m_open.get()) {
+			return; // already signalled and not yet consumed
+		}
+		m_open.set(true);
+
+		Thread waiter = m_waiter;
+		if (waiter != null) {
+			LockSupport.unpark(waiter);
+		}
+	}
+
+	@Override
+	public void waitForSignal() {
+		if (m_waitStrategy == EWaitStrategy.PARK) {
+			m_waiter = Thread.currentThread();
+		}
+		try {
+			while (!m_open.compareAndSet(true, false)) {
+				if (Thread.currentThread().isInterrupted()) {
+					return;
+				}
+				if (m_waitStrategy == EWaitStrategy.PARK) {
+					LockSupport.park(this);
+				} else {
+					m_waitStrategy.idle();
+				}
+			}
+		} finally {
+			m_waiter = null;
+		}
+	}
+}
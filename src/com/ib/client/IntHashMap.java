@@ -0,0 +1,175 @@
+package com.ib.client;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Map of int keys, e.g. request ids, to values, looked up without boxing the key or taking a lock.
+ *
+ * Keys and values are kept in an open-addressing table with linear probing, and read with volatile semantics, so a
+ * lookup on any thread that finds a key sees the value put under it. Changes must be made by one thread at a time,
+ * e.g. under the owner's lock. A removed entry keeps its key, with a null value, until the table is rebuilt, so that
+ * entries never move under a lookup and a lookup never finds the value of one key under another. The table is rebuilt,
+ * and replaced as a whole, when it grows or when removed entries fill it.
+ */
+public class IntHashMap<V> {
+	/** Marks an unused entry in the table, so it cannot be used as a key */
+	public static final int EMPTY_KEY = Integer.MIN_VALUE;
+	private static final int MIN_CAPACITY = 16;
+
+	private final int m_minCapacity;
+	private volatile Table<V> m_table;
+	private int m_size;
+	/** Entries of the table with a key, including removed ones */
+	private int m_used;
+
+	public IntHashMap() {
+		this(0);
+	}
+
+	/** @param expectedSize number of entries the table is sized for up front, and never shrinks below */
+	public IntHashMap(int expectedSize) {
+		m_minCapacity = capacityFor(expectedSize);
+		m_table = new Table<>(m_minCapacity);
+	}
+
+	/** Returns the value put under {@code key}, or null if there is none */
+	public V get(int key) {
+		return m_table.get(key);
+	}
+
+	/**
+	 * Puts {@code value} under {@code key}, replacing the value put under it; null removes it.
+	 * @return the value replaced, or null if there was none
+	 */
+	public V put(int key, V value) {
+		if (value == null) {
+			return remove(key);
+		}
+		if (key == EMPTY_KEY) {
+			throw new IllegalArgumentException("invalid key: " + key);
+		}
+
+		Table<V> table = m_table;
+		int index = table.indexOf(key);
+		V previous = null;
+		if (table.m_keys.get(index) == key) {
+			previous = table.m_values.get(index);
+			table.m_values.set(index, value);
+		} else {
+			// the value is set before the key, so that a lookup that finds the key finds the value
+			table.m_values.set(index, value);
+			table.m_keys.set(index, key);
+			m_used++;
+		}
+		if (previous == null) {
+			m_size++;
+		}
+
+		// keep at most half of the table used so that probe sequences stay short
+		if (m_used * 2 > table.m_capacity) {
+			rebuild();
+		}
+		return previous;
+	}
+
+	/** Removes the value put under {@code key} and returns it, or null if there is none */
+	public V remove(int key) {
+		Table<V> table = m_table;
+		int index = table.indexOf(key);
+		if (table.m_keys.get(index) != key) {
+			return null;
+		}
+		V value = table.m_values.get(index);
+		if (value != null) {
+			table.m_values.set(index, null);
+			m_size--;
+		}
+		return value;
+	}
+
+	public int size() {
+		return m_size;
+	}
+
+	public void clear() {
+		m_table = new Table<>(m_minCapacity);
+		m_size = 0;
+		m_used = 0;
+	}
+
+	/** Number of entries of the table */
+	int capacity() {
+		return m_table.m_capacity;
+	}
+
+	/** Replaces the table with one that holds the current entries at a load factor of at most a quarter */
+	private void rebuild() {
+		Table<V> old = m_table;
+		Table<V> table = new Table<>(Math.max(m_minCapacity, capacityFor(m_size * 2)));
+		for (int i = 0; i < old.m_capacity; i++) {
+			V value = old.m_values.get(i);
+			if (value != null) {
+				int index = table.indexOf(old.m_keys.get(i));
+				table.m_values.set(index, value);
+				table.m_keys.set(index, old.m_keys.get(i));
+			}
+		}
+		m_used = m_size;
+		m_table = table;
+	}
+
+	/** Returns the smallest power of two that keeps {@code size} entries at or below half load */
+	private static int capacityFor(int size) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < size * 2) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static final class Table<V> {
+		private final int m_capacity;
+		private final int m_mask;
+		private final AtomicIntegerArray m_keys;
+		private final AtomicReferenceArray<V> m_values;
+
+		Table(int capacity) {
+			m_capacity = capacity;
+			m_mask = capacity - 1;
+			m_keys = new AtomicIntegerArray(capacity);
+			for (int i = 0; i < capacity; i++) {
+				m_keys.set(i, EMPTY_KEY);
+			}
+			m_values = new AtomicReferenceArray<>(capacity);
+		}
+
+		V get(int key) {
+			int index = mix(key) & m_mask;
+			int entryKey;
+			while ((entryKey = m_keys.get(index)) != EMPTY_KEY) {
+				if (entryKey == key) {
+					return m_values.get(index);
+				}
+				index = (index + 1) & m_mask;
+			}
+			return null;
+		}
+
+		/** Returns the index of the entry of {@code key}, or of the empty entry it would be added at */
+		int indexOf(int key) {
+			int index = mix(key) & m_mask;
+			int entryKey;
+			while ((entryKey = m_keys.get(index)) != EMPTY_KEY && entryKey != key) {
+				index = (index + 1) & m_mask;
+			}
+			return index;
+		}
+
+		/** Request ids are handed out sequentially, so they are scrambled before masking to spread them */
+		private static int mix(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -3,6 +3,7 @@
 
 package com.ib.client;
 
+import java.util.Arrays;
 
 public enum TickType {
     BID_SIZE( 0, "bidSize" ),
@@ -107,13 +108,32 @@ public enum TickType {
         m_field = field;
     }
     
-    public static TickType get(int ndx) {
+    /** The tick types by index, so that a tick is looked up without scanning (and copying) values() */
+    private static final TickType[] BY_INDEX;
+
+    static {
+        int maxIndex = 0;
+        for( TickType tt : values() ) {
+            if( tt != UNKNOWN) {
+                maxIndex = Math.max( maxIndex, tt.m_ndx);
+            }
+        }
+        BY_INDEX = new TickType[maxIndex + 1];
+        Arrays.fill( BY_INDEX, UNKNOWN);
         for( TickType tt : values() ) {
-            if( tt.m_ndx == ndx) {
-                return tt;
+            if( tt != UNKNOWN) {
+                BY_INDEX[tt.m_ndx] = tt;
             }
         }
-        return UNKNOWN;
+    }
+
+    /** Returns the largest index of a known tick type */
+    public static int maxIndex() {
+        return BY_INDEX.length - 1;
+    }
+
+    public static TickType get(int ndx) {
+        return ndx >= 0 && ndx < BY_INDEX.length ? BY_INDEX[ndx] : UNKNOWN;
     }
 
     public static String getField(int tickType) {
@@ -269,16 +269,21 @@ public class Types {
 	public enum DeepType {
 	    INSERT, UPDATE, DELETE;
 
+	    /** values() copies the array on each call; depth updates are looked up in this one instead */
+	    private static final DeepType[] VALUES = values();
+
 	    public static DeepType get( int ordinal) {
-	    	return getEnum( ordinal, values() );
+	    	return getEnum( ordinal, VALUES);
 	    }
 	}
 
 	public enum DeepSide {
 	    SELL, BUY;
 
+	    private static final DeepSide[] VALUES = values();
+
 	    public static DeepSide get( int ordinal) {
-	    	return getEnum( ordinal, values() );
+	    	return getEnum( ordinal, VALUES);
 	    }
 	}
 
@@ -12,6 +12,7 @@ import com.ib.client.EClientErrors;
 import com.ib.client.EClientSocket;
 import com.ib.client.EJavaSignal;
 import com.ib.client.EMessage;
+import com.ib.client.ENioSelector;
 import com.ib.client.EWrapper;
 import com.ib.client.Order;
 
@@ -30,7 +31,12 @@ public class ApiConnection extends EClientSocket {
 	private static final EJavaSignal m_signal = new EJavaSignal();
 
 	public ApiConnection(EWrapper wrapper, ILogger inLogger, ILogger outLogger) {
-		super( wrapper, m_signal);
+		this( wrapper, inLogger, outLogger, null);
+	}
+
+	/** @param selector reads this connection together with others on one thread; null for a reader thread */
+	public ApiConnection(EWrapper wrapper, ILogger inLogger, ILogger outLogger, ENioSelector selector) {
+		super( wrapper, m_signal, selector);
 		m_inLogger = inLogger;
 		m_outLogger = outLogger;
 	}
@@ -58,7 +64,9 @@ public class ApiConnection extends EClientSocket {
 	public int read(byte[] buf, int off, int len) throws IOException {
 		int n = super.read(buf, off, len);
 		
-		m_inLogger.log(new String(buf, 0, n, StandardCharsets.UTF_8));
+		if (n > 0) {
+			m_inLogger.log(new String(buf, off, n, StandardCharsets.UTF_8));
+		}
 		
 		return n;
 	}
@@ -7,15 +7,14 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.ib.client.*;
-import com.ib.client.Bar;
 import com.ib.client.Types.BarSize;
 import com.ib.client.Types.DeepSide;
 import com.ib.client.Types.DeepType;
@@ -28,10 +27,14 @@ import com.ib.client.Types.WhatToShow;
 import com.ib.controller.ApiConnection.ILogger;
 
 public class ApiController implements EWrapper {
+	/** Upper bound on messages decoded per batch, so that a burst does not hold the processing thread indefinitely */
+	private static final int MAX_MSGS_PER_BATCH = 256;
+
 	private ApiConnection m_client;
+	private volatile EReaderMetrics m_readerMetrics;
 	private final ILogger m_outLogger;
 	private final ILogger m_inLogger;
-	private int m_reqId;	// used for all requests except orders; designed not to conflict with m_orderId
+	private final AtomicInteger m_reqId = new AtomicInteger();	// used for all requests except orders, from any thread; designed not to conflict with m_orderId
 	private int m_orderId;
 
 	private final IConnectionHandler m_connectionHandler;
@@ -40,39 +43,43 @@ public class ApiController implements EWrapper {
 	private IScannerHandler m_scannerHandler;
 	private ITimeHandler m_timeHandler;
 	private IBulletinHandler m_bulletinHandler;
-	private final Map<Integer,IInternalHandler> m_contractDetailsMap = new HashMap<>();
-	private final Map<Integer,IOptHandler> m_optionCompMap = new HashMap<>();
-	private final Map<Integer,IEfpHandler> m_efpMap = new HashMap<>();
-	private final Map<Integer,ITopMktDataHandler> m_topMktDataMap = new HashMap<>();
-	private final Map<Integer,IDeepMktDataHandler> m_deepMktDataMap = new HashMap<>();
-	private final Map<Integer, IScannerHandler> m_scannerMap = new HashMap<>();
-	private final Map<Integer, IRealTimeBarHandler> m_realTimeBarMap = new HashMap<>();
-	private final Map<Integer, IHistoricalDataHandler> m_historicalDataMap = new HashMap<>();
-	private final Map<Integer, IHeadTimestampHandler> m_headTimestampMap = new HashMap<>();
-	private final Map<Integer, IHistogramDataHandler> m_histogramDataMap = new HashMap<>();
-	private final Map<Integer, IFundamentalsHandler> m_fundMap = new HashMap<>();
-	private final Map<Integer, IOrderHandler> m_orderHandlers = new HashMap<>();
-	private final Map<Integer,IAccountSummaryHandler> m_acctSummaryHandlers = new HashMap<>();
-	private final Map<Integer,IMarketValueSummaryHandler> m_mktValSummaryHandlers = new HashMap<>();
+	private final HandlerRegistry<IInternalHandler> m_contractDetailsMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IOptHandler> m_optionCompMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IEfpHandler> m_efpMap = new HandlerRegistry<>();
+	private final HandlerRegistry<ITopMktDataHandler> m_topMktDataMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IDeepMktDataHandler> m_deepMktDataMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IScannerHandler> m_scannerMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IRealTimeBarHandler> m_realTimeBarMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IHistoricalDataHandler> m_historicalDataMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IHeadTimestampHandler> m_headTimestampMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IHistogramDataHandler> m_histogramDataMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IFundamentalsHandler> m_fundMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IOrderHandler> m_orderHandlers = new HandlerRegistry<>();
+	private final HandlerRegistry<IAccountSummaryHandler> m_acctSummaryHandlers = new HandlerRegistry<>();
+	private final HandlerRegistry<IMarketValueSummaryHandler> m_mktValSummaryHandlers = new HandlerRegistry<>();
 	private final Set<IPositionHandler> m_positionHandlers = new ConcurrentHashSet<>();
 	private final Set<IAccountHandler> m_accountHandlers = new ConcurrentHashSet<>();
 	private final Set<ILiveOrderHandler> m_liveOrderHandlers = new ConcurrentHashSet<>();
-	private final Map<Integer, IPositionMultiHandler> m_positionMultiMap = new HashMap<>();
-	private final Map<Integer, IAccountUpdateMultiHandler> m_accountUpdateMultiMap = new HashMap<>();
-	private final Map<Integer, ISecDefOptParamsReqHandler> m_secDefOptParamsReqMap = new HashMap<>();
-	private final Map<Integer, ISoftDollarTiersReqHandler> m_softDollarTiersReqMap = new HashMap<>();
+	private final HandlerRegistry<IPositionMultiHandler> m_positionMultiMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IAccountUpdateMultiHandler> m_accountUpdateMultiMap = new HandlerRegistry<>();
+	private final HandlerRegistry<ISecDefOptParamsReqHandler> m_secDefOptParamsReqMap = new HandlerRegistry<>();
+	private final HandlerRegistry<ISoftDollarTiersReqHandler> m_softDollarTiersReqMap = new HandlerRegistry<>();
 	private final Set<IFamilyCodesHandler> m_familyCodesHandlers = new ConcurrentHashSet<>();
-	private final Map<Integer, ISymbolSamplesHandler> m_symbolSamplesHandlerMap = new HashMap<>();
+	private final HandlerRegistry<ISymbolSamplesHandler> m_symbolSamplesHandlerMap = new HandlerRegistry<>();
 	private final Set<IMktDepthExchangesHandler> m_mktDepthExchangesHandlers = new ConcurrentHashSet<>();
-	private final Map<Integer, ITickNewsHandler> m_tickNewsHandlerMap = new HashMap<>();
-	private final Map<Integer, ISmartComponentsHandler> m_smartComponentsHandler = new HashMap<>();
+	private final HandlerRegistry<ITickNewsHandler> m_tickNewsHandlerMap = new HandlerRegistry<>();
+	private final HandlerRegistry<ISmartComponentsHandler> m_smartComponentsHandler = new HandlerRegistry<>();
+	private final SharedSubscriptions<ITopMktDataHandler, MarketDataFanOut.TopMktData> m_sharedTopMktData = new SharedSubscriptions<>(MarketDataFanOut.TopMktData::new);
+	private final SharedSubscriptions<IDeepMktDataHandler, MarketDataFanOut.DeepMktData> m_sharedDeepMktData = new SharedSubscriptions<>(MarketDataFanOut.DeepMktData::new);
+	private final SharedSubscriptions<IRealTimeBarHandler, MarketDataFanOut.RealTimeBars> m_sharedRealTimeBars = new SharedSubscriptions<>(MarketDataFanOut.RealTimeBars::new);
 	private final Set<INewsProvidersHandler> m_newsProvidersHandlers = new ConcurrentHashSet<>();
-	private final Map<Integer, INewsArticleHandler> m_newsArticleHandlerMap = new HashMap<>();
-	private final Map<Integer, IHistoricalNewsHandler> m_historicalNewsHandlerMap = new HashMap<>();
+	private final HandlerRegistry<INewsArticleHandler> m_newsArticleHandlerMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IHistoricalNewsHandler> m_historicalNewsHandlerMap = new HandlerRegistry<>();
 	private final Set<IMarketRuleHandler> m_marketRuleHandlers = new ConcurrentHashSet<>();
-    private final Map<Integer, IPnLHandler> m_pnlMap = new HashMap<>();
-    private final Map<Integer, IPnLSingleHandler> m_pnlSingleMap = new HashMap<>();
-    private final Map<Integer, IHistoricalTickHandler> m_historicalTicksMap = new HashMap<>();
+    private final HandlerRegistry<IPnLHandler> m_pnlMap = new HandlerRegistry<>();
+    private final HandlerRegistry<IPnLSingleHandler> m_pnlSingleMap = new HandlerRegistry<>();
+    private final HandlerRegistry<IHistoricalTickHandler> m_historicalTicksMap = new HandlerRegistry<>();
+	private final HandlerRegistry<IRequestErrorHandler> m_requestErrorMap = new HandlerRegistry<>();
 	private boolean m_connected = false;
 
 	public ApiConnection client() { return m_client; }
@@ -88,8 +95,16 @@ public class ApiController implements EWrapper {
 	}
 
 	public ApiController( IConnectionHandler handler, ILogger inLogger, ILogger outLogger) {
+		this( handler, inLogger, outLogger, null);
+	}
+
+	/**
+	 * @param selector shared by controllers that connect with different clientIds so that one thread reads all of
+	 * their connections; null to read this controller's connection on a thread of its own
+	 */
+	public ApiController( IConnectionHandler handler, ILogger inLogger, ILogger outLogger, ENioSelector selector) {
 		m_connectionHandler = handler;
-		m_client = new ApiConnection( this, inLogger, outLogger);
+		m_client = new ApiConnection( this, inLogger, outLogger, selector);
 		m_inLogger = inLogger;
 		m_outLogger = outLogger;
 	}
@@ -98,13 +113,14 @@ public class ApiController implements EWrapper {
 		final EReaderSignal signal = new EJavaSignal();		
 		final EReader reader = new EReader(client(), signal);
 		
+		m_readerMetrics = reader.metrics();
 		reader.start();
 		
 		new Thread(() -> {
             while (client().isConnected()) {
                 signal.waitForSignal();
                 try {
-                    reader.processMsgs();
+                    reader.processMsgs(MAX_MSGS_PER_BATCH);
                 } catch (IOException e) {
                     error(e);
                 }
@@ -112,6 +128,11 @@ public class ApiController implements EWrapper {
         }).start();
 	}
 
+	/** Batch statistics of the current connection's reader, or null before the first connect */
+	public EReaderMetrics readerMetrics() {
+		return m_readerMetrics;
+	}
+
 	public void connect( String host, int port, int clientId, String connectionOpts ) {
 		if(!m_client.isConnected()){
 			m_client.eConnect(host, port, clientId);
@@ -125,6 +146,7 @@ public class ApiController implements EWrapper {
 			return;
 
 		m_client.eDisconnect();
+		endSharedSubscriptions();
 		m_connectionHandler.disconnected();
 		m_connected = false;
 		sendEOM();
@@ -141,7 +163,7 @@ public class ApiController implements EWrapper {
 
 	@Override public void nextValidId(int orderId) {
 		m_orderId = orderId;
-		m_reqId = m_orderId + 10000000; // let order id's not collide with other request id's
+		m_reqId.set( m_orderId + 10000000); // let order id's not collide with other request id's
 		m_connected  = true;
 		if (m_connectionHandler != null) {
 			m_connectionHandler.connected();
@@ -153,7 +175,110 @@ public class ApiController implements EWrapper {
 		m_connectionHandler.error( e);
 	}
 
+	/**
+	 * Implemented by the handler of a request that wants the errors TWS reports for it; supported by
+	 * reqContractDetails, reqHistoricalData, reqHeadTimestamp and reqMatchingSymbols. The handler is also told when
+	 * the request cannot be sent because the controller is not connected.
+	 *
+	 * The handlers of a shared market data subscription (reqTopMktData, reqDeepMktData and reqRealTimeBars) are told
+	 * of the error that ends it; they have then left it.
+	 */
+	public interface IRequestErrorHandler {
+		void requestError(int errorCode, String errorMsg);
+	}
+
+	/** Registers before the request is sent, as its error can arrive before the call that sent it returns */
+	private void watchErrors(int reqId, Object handler) {
+		if (handler instanceof IRequestErrorHandler) {
+			m_requestErrorMap.put( reqId, (IRequestErrorHandler) handler);
+		}
+	}
+
+	/**
+	 * Forgets the request of {@code handler}, answered or not, so that nothing of it is passed on to the handler any more,
+	 * as when the caller has given up on it. TWS is not told; cancel the request first where the API allows it.
+	 */
+	public void forgetRequest(IRequestErrorHandler handler) {
+		int reqId = m_requestErrorMap.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
+			// contract details are registered under an internal handler, and end on an error through m_orderHandlers
+			m_contractDetailsMap.remove( reqId);
+			m_orderHandlers.remove( reqId);
+		}
+		if (handler instanceof IHistoricalDataHandler) {
+			m_historicalDataMap.removeHandler( (IHistoricalDataHandler) handler);
+		}
+		if (handler instanceof IHeadTimestampHandler) {
+			m_headTimestampMap.removeHandler( (IHeadTimestampHandler) handler);
+		}
+		if (handler instanceof ISymbolSamplesHandler) {
+			m_symbolSamplesHandlerMap.removeHandler( (ISymbolSamplesHandler) handler);
+		}
+	}
+
+	/** Returns whether the request of {@code handler} has been sent and is neither answered nor forgotten yet */
+	boolean isRequestPending(IRequestErrorHandler handler) {
+		return m_requestErrorMap.idOf( handler) != HandlerRegistry.NO_ID;
+	}
+
+	/** TWS reports these errors without ending the request they are for */
+	static boolean isWarning(int errorCode) {
+		return errorCode >= 2100 && errorCode < 2200 // e.g. data farm connection status
+				|| errorCode == 10090 // part of the requested market data is not subscribed
+				|| errorCode == 10167; // displaying delayed market data
+	}
+
+	/** Drops a shared subscription TWS has ended with an error, so that its next handler requests it again */
+	private void endSharedSubscription(int reqId, int errorCode, String errorMsg) {
+		ITopMktDataHandler topMktData = m_topMktDataMap.get( reqId);
+		if (topMktData instanceof MarketDataFanOut.TopMktData) {
+			m_topMktDataMap.remove( reqId);
+			tellRequestError( m_sharedTopMktData.end( (MarketDataFanOut.TopMktData) topMktData), errorCode, errorMsg);
+		}
+		IDeepMktDataHandler deepMktData = m_deepMktDataMap.get( reqId);
+		if (deepMktData instanceof MarketDataFanOut.DeepMktData) {
+			m_deepMktDataMap.remove( reqId);
+			tellRequestError( m_sharedDeepMktData.end( (MarketDataFanOut.DeepMktData) deepMktData), errorCode, errorMsg);
+		}
+		IRealTimeBarHandler realTimeBars = m_realTimeBarMap.get( reqId);
+		if (realTimeBars instanceof MarketDataFanOut.RealTimeBars) {
+			m_realTimeBarMap.remove( reqId);
+			tellRequestError( m_sharedRealTimeBars.end( (MarketDataFanOut.RealTimeBars) realTimeBars), errorCode, errorMsg);
+		}
+	}
+
+	private static void tellRequestError(List<?> handlers, int errorCode, String errorMsg) {
+		for (Object handler : handlers) {
+			if (handler instanceof IRequestErrorHandler) {
+				((IRequestErrorHandler) handler).requestError( errorCode, errorMsg);
+			}
+		}
+	}
+
+	/** Drops the shared subscriptions of a connection that has closed; they are requested again as handlers join */
+	private void endSharedSubscriptions() {
+		for (MarketDataFanOut.TopMktData fanOut : m_sharedTopMktData.endAll()) {
+			m_topMktDataMap.removeHandler( fanOut);
+		}
+		for (MarketDataFanOut.DeepMktData fanOut : m_sharedDeepMktData.endAll()) {
+			m_deepMktDataMap.removeHandler( fanOut);
+		}
+		for (MarketDataFanOut.RealTimeBars fanOut : m_sharedRealTimeBars.endAll()) {
+			m_realTimeBarMap.removeHandler( fanOut);
+		}
+	}
+
 	@Override public void error(int id, int errorCode, String errorMsg) {
+		// first, so that the request fails before an error-terminated callback below ends it normally
+		IRequestErrorHandler requestErrorHandler = m_requestErrorMap.get( id);
+		if (requestErrorHandler != null) {
+			requestErrorHandler.requestError( errorCode, errorMsg);
+		}
+
+		if (id >= 0 && !isWarning( errorCode)) {
+			endSharedSubscription( id, errorCode, errorMsg);
+		}
+
 		IOrderHandler handler = m_orderHandlers.get( id);
 		if (handler != null) {
 			handler.handle( errorCode, errorMsg);
@@ -176,6 +301,7 @@ public class ApiController implements EWrapper {
 	}
 
 	@Override public void connectionClosed() {
+		endSharedSubscriptions();
 		m_connectionHandler.disconnected();
 		m_connected = false;
 	}
@@ -257,7 +383,7 @@ public class ApiController implements EWrapper {
 			sb.append( tag);
 		}
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_acctSummaryHandlers.put( reqId, handler);
 		m_client.reqAccountSummary( reqId, group, sb.toString() );
 		sendEOM();
@@ -271,8 +397,8 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 		
-		Integer reqId = getAndRemoveKey( m_acctSummaryHandlers, handler);
-		if (reqId != null) {
+		int reqId = m_acctSummaryHandlers.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
 			m_client.cancelAccountSummary( reqId);
 			sendEOM();
 		}
@@ -282,7 +408,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_mktValSummaryHandlers.put( reqId, handler);
 		m_client.reqAccountSummary( reqId, group, "$LEDGER");
 		sendEOM();
@@ -292,8 +418,8 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_mktValSummaryHandlers, handler);
-		if (reqId != null) {
+		int reqId = m_mktValSummaryHandlers.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
 			m_client.cancelAccountSummary( reqId);
 			sendEOM();
 		}
@@ -375,7 +501,7 @@ public class ApiController implements EWrapper {
 	}
 
 	public void reqContractDetails( Contract contract, final IContractDetailsHandler processor) {
-		if (!checkConnection())
+		if (!checkConnection( processor))
 			return;
 
 		final List<ContractDetails> list = new ArrayList<>();
@@ -386,7 +512,7 @@ public class ApiController implements EWrapper {
 			@Override public void contractDetailsEnd() {
 				processor.contractDetails( list);
 			}
-		});
+		}, processor);
 		sendEOM();
 	}
 
@@ -395,9 +521,11 @@ public class ApiController implements EWrapper {
 		void contractDetailsEnd();
 	}
 
-	private void internalReqContractDetails( Contract contract, final IInternalHandler processor) {
-		int reqId = m_reqId++;
+	/** @param handler the caller's handler, which is told of the request's errors if it is an IRequestErrorHandler */
+	private void internalReqContractDetails( Contract contract, final IInternalHandler processor, Object handler) {
+		int reqId = m_reqId.getAndIncrement();
 		m_contractDetailsMap.put( reqId, processor);
+		watchErrors( reqId, handler);
 		m_orderHandlers.put(reqId, new IOrderHandler() { public void handle(int errorCode, String errorMsg) { processor.contractDetailsEnd();}
 
 		@Override
@@ -441,6 +569,8 @@ public class ApiController implements EWrapper {
 	}
 
 	@Override public void contractDetailsEnd(int reqId) {
+		m_orderHandlers.remove( reqId);
+		m_requestErrorMap.remove( reqId);
 		IInternalHandler handler = m_contractDetailsMap.remove( reqId);
 		if (handler != null) {
 			handler.contractDetailsEnd();
@@ -484,13 +614,27 @@ public class ApiController implements EWrapper {
 		}
 	}
 
+    /** Streaming requests for the same contract and generic ticks share one market data line; snapshots are not shared */
     public void reqTopMktData(Contract contract, String genericTickList, boolean snapshot, boolean regulatorySnapshot, ITopMktDataHandler handler) {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
-    	m_topMktDataMap.put( reqId, handler);
-    	m_client.reqMktData( reqId, contract, genericTickList, snapshot, regulatorySnapshot, Collections.emptyList() );
+    	if (snapshot || regulatorySnapshot) {
+    		int reqId = m_reqId.getAndIncrement();
+    		m_topMktDataMap.put( reqId, handler);
+    		m_client.reqMktData( reqId, contract, genericTickList, snapshot, regulatorySnapshot, Collections.emptyList() );
+    	}
+    	else {
+    		MarketDataFanOut.TopMktData fanOut = m_sharedTopMktData.join( SharedSubscriptions.key( contract, genericTickList), handler);
+    		if (fanOut != null) {
+    			int reqId = m_reqId.getAndIncrement();
+    			m_topMktDataMap.put( reqId, fanOut);
+    			m_client.reqMktData( reqId, contract, genericTickList, false, false, Collections.emptyList() );
+    			if (m_sharedTopMktData.requested( fanOut)) {
+    				cancelTopMktData( fanOut); // its handler left while it was being requested
+    			}
+    		}
+    	}
 		sendEOM();
     }
 
@@ -498,7 +642,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
     	m_topMktDataMap.put( reqId, handler);
     	m_optionCompMap.put( reqId, handler);
     	m_client.reqMktData( reqId, contract, genericTickList, snapshot, regulatorySnapshot, Collections.emptyList() );
@@ -509,7 +653,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
     	m_topMktDataMap.put( reqId, handler);
     	m_efpMap.put( reqId, handler);
     	m_client.reqMktData( reqId, contract, genericTickList, snapshot, regulatorySnapshot, Collections.emptyList() );
@@ -520,8 +664,16 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_topMktDataMap, handler);
-    	if (reqId != null) {
+		if (m_sharedTopMktData.isJoined( handler)) {
+			MarketDataFanOut.TopMktData fanOut = m_sharedTopMktData.leave( handler);
+			if (fanOut != null) {
+				cancelTopMktData( fanOut);
+			}
+			return;
+		}
+
+		int reqId = m_topMktDataMap.removeHandler( handler);
+    	if (reqId != HandlerRegistry.NO_ID) {
     		m_client.cancelMktData( reqId);
     	}
     	else {
@@ -532,12 +684,12 @@ public class ApiController implements EWrapper {
 
     public void cancelOptionMktData( IOptHandler handler) {
     	cancelTopMktData( handler);
-    	getAndRemoveKey( m_optionCompMap, handler);
+    	m_optionCompMap.removeHandler( handler);
     }
 
     public void cancelEfpMktData( IEfpHandler handler) {
     	cancelTopMktData( handler);
-    	getAndRemoveKey( m_efpMap, handler);
+    	m_efpMap.removeHandler( handler);
     }
 
 	public void reqMktDataType( int mktDataType) {
@@ -573,10 +725,13 @@ public class ApiController implements EWrapper {
 		recEOM();
 	}
 
+	/** The attributes of generic ticks, which have none; shared, so handlers must not modify it */
+	private static final TickAttr NO_TICK_ATTRIBS = new TickAttr();
+
 	@Override public void tickGeneric(int reqId, int tickType, double value) {
 		ITopMktDataHandler handler = m_topMktDataMap.get( reqId);
 		if (handler != null) {
-			handler.tickPrice( TickType.get( tickType), value, new TickAttr());
+			handler.tickPrice( TickType.get( tickType), value, NO_TICK_ATTRIBS);
 		}
 		recEOM();
 	}
@@ -627,14 +782,21 @@ public class ApiController implements EWrapper {
 		void updateMktDepth(int position, String marketMaker, DeepType operation, DeepSide side, double price, int size);
 	}
 
+    /** Requests for the same contract and number of rows share one subscription */
     public void reqDeepMktData( Contract contract, int numRows, IDeepMktDataHandler handler) {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
-    	m_deepMktDataMap.put( reqId, handler);
-    	List<TagValue> mktDepthOptions = new ArrayList<>();
-    	m_client.reqMktDepth( reqId, contract, numRows, mktDepthOptions);
+    	MarketDataFanOut.DeepMktData fanOut = m_sharedDeepMktData.join( SharedSubscriptions.key( contract, numRows), handler);
+    	if (fanOut != null) {
+    		int reqId = m_reqId.getAndIncrement();
+    		m_deepMktDataMap.put( reqId, fanOut);
+    		List<TagValue> mktDepthOptions = new ArrayList<>();
+    		m_client.reqMktDepth( reqId, contract, numRows, mktDepthOptions);
+    		if (m_sharedDeepMktData.requested( fanOut)) {
+    			cancelSharedDeepMktData( fanOut); // its handler left while it was being requested
+    		}
+    	}
 		sendEOM();
     }
 
@@ -642,8 +804,15 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	Integer reqId = getAndRemoveKey( m_deepMktDataMap, handler);
-    	if (reqId != null) {
+    	MarketDataFanOut.DeepMktData fanOut = m_sharedDeepMktData.leave( handler);
+    	if (fanOut != null) {
+    		cancelSharedDeepMktData( fanOut);
+    	}
+    }
+
+    private void cancelSharedDeepMktData( MarketDataFanOut.DeepMktData fanOut) {
+    	int reqId = m_deepMktDataMap.removeHandler( fanOut);
+    	if (reqId != HandlerRegistry.NO_ID) {
     		m_client.cancelMktDepth( reqId);
     		sendEOM();
     	}
@@ -670,7 +839,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_optionCompMap.put( reqId, handler);
 		m_client.calculateImpliedVolatility( reqId, c, optPrice, underPrice);
 		sendEOM();
@@ -680,7 +849,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_optionCompMap.put( reqId, handler);
 		m_client.calculateOptionPrice(reqId, c, vol, underPrice);
 		sendEOM();
@@ -690,8 +859,8 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_optionCompMap, handler);
-		if (reqId != null) {
+		int reqId = m_optionCompMap.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
 			m_client.cancelCalculateOptionPrice( reqId);
 			sendEOM();
 		}
@@ -721,7 +890,7 @@ public class ApiController implements EWrapper {
 			return;
 
     	m_tradeReportHandler = handler;
-    	m_client.reqExecutions( m_reqId++, filter);
+    	m_client.reqExecutions( m_reqId.getAndIncrement(), filter);
 		sendEOM();
     }
 
@@ -856,12 +1025,12 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		m_client.exerciseOptions( m_reqId++, contract, type.ordinal(), quantity, account, override ? 1 : 0);
+		m_client.exerciseOptions( m_reqId.getAndIncrement(), contract, type.ordinal(), quantity, account, override ? 1 : 0);
 		sendEOM();
 	}
 
 	public void removeOrderHandler( IOrderHandler handler) {
-		getAndRemoveKey(m_orderHandlers, handler);
+		m_orderHandlers.removeHandler( handler);
 	}
 
 
@@ -960,7 +1129,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_scannerMap.put( reqId, handler);
 		List<TagValue> scannerSubscriptionOptions = new ArrayList<>();
 		m_client.reqScannerSubscription( reqId, sub, scannerSubscriptionOptions);
@@ -971,8 +1140,8 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_scannerMap, handler);
-		if (reqId != null) {
+		int reqId = m_scannerMap.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
 			m_client.cancelScannerSubscription( reqId);
 			sendEOM();
 		}
@@ -1009,11 +1178,12 @@ public class ApiController implements EWrapper {
 	/** @param endDateTime format is YYYYMMDD HH:MM:SS [TMZ]
 	 *  @param duration is number of durationUnits */
     public void reqHistoricalData(Contract contract, String endDateTime, int duration, DurationUnit durationUnit, BarSize barSize, WhatToShow whatToShow, boolean rthOnly, boolean keepUpToDate, IHistoricalDataHandler handler) {
-		if (!checkConnection())
+		if (!checkConnection( handler))
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
     	m_historicalDataMap.put( reqId, handler);
+    	watchErrors( reqId, handler);
     	String durationStr = duration + " " + durationUnit.toString().charAt( 0);
     	m_client.reqHistoricalData(reqId, contract, endDateTime, durationStr, barSize.toString(), whatToShow.toString(), rthOnly ? 1 : 0, 2, keepUpToDate, Collections.emptyList());
 		sendEOM();
@@ -1023,8 +1193,9 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_historicalDataMap, handler);
-    	if (reqId != null) {
+		int reqId = m_historicalDataMap.removeHandler( handler);
+    	if (reqId != HandlerRegistry.NO_ID) {
+    		m_requestErrorMap.remove( reqId);
     		m_client.cancelHistoricalData( reqId);
     		sendEOM();
     	}
@@ -1034,6 +1205,7 @@ public class ApiController implements EWrapper {
 		IHistoricalDataHandler handler = m_historicalDataMap.get( reqId);
 		if (handler != null) {
 			if (bar.time().startsWith( "finished")) {
+				m_requestErrorMap.remove( reqId);
 				handler.historicalDataEnd();
 			}
 			else {
@@ -1047,7 +1219,7 @@ public class ApiController implements EWrapper {
 				else {
 					longDate = Long.parseLong( bar.time());
 				}
-				com.ib.client.Bar bar2 = new com.ib.client.Bar(Long.toString(longDate), bar.high(), bar.low(), bar.open(), bar.close(), (long) bar.wap(), (int) bar.volume(), bar.count());
+				com.ib.client.Bar bar2 = new com.ib.client.Bar(Long.toString(longDate), bar.open(), bar.high(), bar.low(), bar.close(), bar.volume(), bar.count(), bar.wap());
 				handler.historicalData(bar2);
 			}
 		}
@@ -1058,16 +1230,28 @@ public class ApiController implements EWrapper {
 	//----------------------------------------- Real-time bars --------------------------------------
 	public interface IRealTimeBarHandler {
 		void realtimeBar(com.ib.client.Bar bar); // time is in seconds since epoch
+
+		/** Receives the fields of each bar; override to store them without allocating a Bar per bar */
+		default void realtimeBar(long time, double open, double high, double low, double close, long volume, double wap, int count) {
+			realtimeBar(new com.ib.client.Bar(Long.toString(time), open, high, low, close, volume, count, wap));
+		}
 	}
 
+    /** Requests for the same contract, bar type and trading hours share one subscription */
     public void reqRealTimeBars(Contract contract, WhatToShow whatToShow, boolean rthOnly, IRealTimeBarHandler handler) {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
-    	m_realTimeBarMap.put( reqId, handler);
-    	List<TagValue> realTimeBarsOptions = new ArrayList<>();
-    	m_client.reqRealTimeBars(reqId, contract, 0, whatToShow.toString(), rthOnly, realTimeBarsOptions);
+    	MarketDataFanOut.RealTimeBars fanOut = m_sharedRealTimeBars.join( SharedSubscriptions.key( contract, whatToShow, rthOnly), handler);
+    	if (fanOut != null) {
+    		int reqId = m_reqId.getAndIncrement();
+    		m_realTimeBarMap.put( reqId, fanOut);
+    		List<TagValue> realTimeBarsOptions = new ArrayList<>();
+    		m_client.reqRealTimeBars(reqId, contract, 0, whatToShow.toString(), rthOnly, realTimeBarsOptions);
+    		if (m_sharedRealTimeBars.requested( fanOut)) {
+    			cancelSharedRealTimeBars( fanOut); // its handler left while it was being requested
+    		}
+    	}
 		sendEOM();
     }
 
@@ -1075,8 +1259,15 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	Integer reqId = getAndRemoveKey( m_realTimeBarMap, handler);
-    	if (reqId != null) {
+    	MarketDataFanOut.RealTimeBars fanOut = m_sharedRealTimeBars.leave( handler);
+    	if (fanOut != null) {
+    		cancelSharedRealTimeBars( fanOut);
+    	}
+    }
+
+    private void cancelSharedRealTimeBars( MarketDataFanOut.RealTimeBars fanOut) {
+    	int reqId = m_realTimeBarMap.removeHandler( fanOut);
+    	if (reqId != HandlerRegistry.NO_ID) {
     		m_client.cancelRealTimeBars( reqId);
     		sendEOM();
     	}
@@ -1085,8 +1276,7 @@ public class ApiController implements EWrapper {
     @Override public void realtimeBar(int reqId, long time, double open, double high, double low, double close, long volume, double wap, int count) {
     	IRealTimeBarHandler handler = m_realTimeBarMap.get( reqId);
 		if (handler != null) {
-			com.ib.client.Bar bar = new Bar(Long.toString(time), high, low, open, close, (long) wap, (int) volume, count);
-			handler.realtimeBar( bar);
+			handler.realtimeBar(time, open, high, low, close, volume, wap, count);
 		}
 		recEOM();
 	}
@@ -1100,7 +1290,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
     	m_fundMap.put( reqId, handler);
     	m_client.reqFundamentalData( reqId, contract, reportType.getApiString());
 		sendEOM();
@@ -1137,6 +1327,14 @@ public class ApiController implements EWrapper {
 		return true;
 	}
 
+	/** Like {@link #checkConnection()}, and tells {@code handler} if it is an IRequestErrorHandler */
+	private boolean checkConnection(Object handler) {
+		if (!isConnected() && handler instanceof IRequestErrorHandler) {
+			((IRequestErrorHandler) handler).requestError(EClientErrors.NOT_CONNECTED.code(), EClientErrors.NOT_CONNECTED.msg());
+		}
+		return checkConnection();
+	}
+
 	@Override public void currentTime(long time) {
 		m_timeHandler.currentTime(time);
 		recEOM();
@@ -1178,7 +1376,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_positionMultiMap.put( reqId, handler);
 		m_client.reqPositionsMulti( reqId, account, modelCode);
 		sendEOM();
@@ -1188,8 +1386,8 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_positionMultiMap, handler);
-		if (reqId != null) {
+		int reqId = m_positionMultiMap.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
 			m_client.cancelPositionsMulti( reqId);
 			sendEOM();
 		}
@@ -1221,7 +1419,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_accountUpdateMultiMap.put( reqId, handler);
 		m_client.reqAccountUpdatesMulti( reqId, account, modelCode, ledgerAndNLV);
 		sendEOM();
@@ -1231,8 +1429,8 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey( m_accountUpdateMultiMap, handler);
-		if (reqId != null) {
+		int reqId = m_accountUpdateMultiMap.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
 			m_client.cancelAccountUpdatesMulti( reqId);
 			sendEOM();
 		}
@@ -1280,16 +1478,6 @@ public class ApiController implements EWrapper {
 		m_connectionHandler.show( string);
 	}
 
-    private static <K,V> K getAndRemoveKey( Map<K,V> map, V value) {
-    	for (Entry<K,V> entry : map.entrySet() ) {
-    		if (entry.getValue() == value) {
-    			map.remove( entry.getKey() );
-    			return entry.getKey();
-    		}
-    	}
-		return null;
-    }
-
 	/** Obsolete, never called. */
 	@Override public void error(String str) {
 		throw new RuntimeException();
@@ -1305,7 +1493,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		m_secDefOptParamsReqMap.put( reqId, handler);
 		m_client.reqSecDefOptParams(reqId, underlyingSymbol, futFopExchange, /*currency,*/ underlyingSecType, underlyingConId);
 		sendEOM();
@@ -1344,7 +1532,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
     	
 		m_softDollarTiersReqMap.put(reqId, handler);		
 		m_client.reqSoftDollarTiers(reqId);
@@ -1386,19 +1574,22 @@ public class ApiController implements EWrapper {
     }
 
     public void reqMatchingSymbols(String pattern, ISymbolSamplesHandler handler) {
-        if (!checkConnection())
+        if (!checkConnection(handler))
             return;
         
-        int reqId = m_reqId++;
+        int reqId = m_reqId.getAndIncrement();
 
         m_symbolSamplesHandlerMap.put(reqId, handler);
+        watchErrors(reqId, handler);
         m_client.reqMatchingSymbols(reqId, pattern);
         sendEOM();
     }
 
     @Override
     public void symbolSamples(int reqId, ContractDescription[] contractDescriptions) {
-        ISymbolSamplesHandler handler = m_symbolSamplesHandlerMap.get(reqId);
+        // answered once
+        ISymbolSamplesHandler handler = m_symbolSamplesHandlerMap.remove(reqId);
+        m_requestErrorMap.remove(reqId);
 
         if (handler != null) {
             handler.symbolSamples(contractDescriptions);
@@ -1411,6 +1602,7 @@ public class ApiController implements EWrapper {
 		IHistoricalDataHandler handler = m_historicalDataMap.get(reqId);
 		
 		if (handler != null) {
+			m_requestErrorMap.remove(reqId);
 			handler.historicalDataEnd();
 		}
 	}
@@ -1444,7 +1636,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int tickerId = m_reqId++;
+		int tickerId = m_reqId.getAndIncrement();
 
 		m_tickNewsHandlerMap.put(tickerId, handler);
 		m_client.reqMktData(tickerId, contract, "mdoff,292", false, false, Collections.emptyList());
@@ -1480,7 +1672,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 		
-		int reqId = m_reqId++;
+		int reqId = m_reqId.getAndIncrement();
 		
 		m_smartComponentsHandler.put(reqId, handler);
 		m_client.reqSmartComponents(reqId, bboExchange);
@@ -1527,7 +1719,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int requestId = m_reqId++;
+		int requestId = m_reqId.getAndIncrement();
 
 		m_newsArticleHandlerMap.put(requestId, handler);
 		m_client.reqNewsArticle(requestId, providerCode, articleId, Collections.emptyList());
@@ -1553,7 +1745,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		int requestId = m_reqId++;
+		int requestId = m_reqId.getAndIncrement();
 		m_historicalNewsHandlerMap.put( requestId, handler);
 		m_client.reqHistoricalNews( requestId, conId, providerCodes, startDateTime, endDateTime, totalResults, Collections.emptyList());
 		sendEOM();
@@ -1582,18 +1774,33 @@ public class ApiController implements EWrapper {
 	}
 	
 	public void reqHeadTimestamp(Contract contract, WhatToShow whatToShow, boolean rthOnly, IHeadTimestampHandler handler) {
-		if (!checkConnection())
+		if (!checkConnection(handler))
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
 		
     	m_headTimestampMap.put(reqId, handler);
+    	watchErrors(reqId, handler);
     	m_client.reqHeadTimestamp(reqId, contract, whatToShow.toString(), rthOnly ? 1 : 0, 2);
 	}
 
+	public void cancelHeadTimestamp(IHeadTimestampHandler handler) {
+		if (!checkConnection())
+			return;
+
+		int reqId = m_headTimestampMap.removeHandler( handler);
+		if (reqId != HandlerRegistry.NO_ID) {
+			m_requestErrorMap.remove( reqId);
+			m_client.cancelHeadTimestamp( reqId);
+			sendEOM();
+		}
+	}
+
 	@Override
 	public void headTimestamp(int reqId, String headTimestamp) {
-		IHeadTimestampHandler handler = m_headTimestampMap.get(reqId);
+		// answered once
+		IHeadTimestampHandler handler = m_headTimestampMap.remove(reqId);
+		m_requestErrorMap.remove(reqId);
 		
 		if (handler != null) {
 			handler.headTimestamp(reqId, Long.parseLong(headTimestamp));
@@ -1612,7 +1819,7 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-    	int reqId = m_reqId++;
+    	int reqId = m_reqId.getAndIncrement();
     	String durationStr = duration + " " + durationUnit.toString().toLowerCase() + "s";
     	
     	m_histogramDataMap.put(reqId, handler);
@@ -1623,9 +1830,9 @@ public class ApiController implements EWrapper {
 		if (!checkConnection())
 			return;
 
-		Integer reqId = getAndRemoveKey(m_histogramDataMap, handler);
+		int reqId = m_histogramDataMap.removeHandler( handler);
 		
-    	if (reqId != null) {
+    	if (reqId != HandlerRegistry.NO_ID) {
     		m_client.cancelHistoricalData(reqId);
     		sendEOM();
     	}
@@ -1687,7 +1894,7 @@ public class ApiController implements EWrapper {
 	    if (!checkConnection())
 	        return;
 
-	    int reqId = m_reqId++;
+	    int reqId = m_reqId.getAndIncrement();
 
 	    m_pnlMap.put(reqId, handler);
 
@@ -1698,9 +1905,9 @@ public class ApiController implements EWrapper {
 	    if (!checkConnection())
 	        return;
 
-	    Integer reqId = getAndRemoveKey(m_pnlMap, handler);
+	    int reqId = m_pnlMap.removeHandler( handler);
 
-	    if (reqId != null) {
+	    if (reqId != HandlerRegistry.NO_ID) {
 	        m_client.cancelPnL(reqId);
 	        sendEOM();
 	    }
@@ -1727,7 +1934,7 @@ public class ApiController implements EWrapper {
         if (!checkConnection())
             return;
 
-        int reqId = m_reqId++;
+        int reqId = m_reqId.getAndIncrement();
 
         m_pnlSingleMap.put(reqId, handler);
 
@@ -1738,9 +1945,9 @@ public class ApiController implements EWrapper {
         if (!checkConnection())
             return;
 
-        Integer reqId = getAndRemoveKey(m_pnlSingleMap, handler);
+        int reqId = m_pnlSingleMap.removeHandler( handler);
 
-        if (reqId != null) {
+        if (reqId != HandlerRegistry.NO_ID) {
             m_client.cancelPnLSingle(reqId);
             sendEOM();
         }
@@ -1770,7 +1977,7 @@ public class ApiController implements EWrapper {
         if (!checkConnection())
             return;
 
-        int reqId = m_reqId++;
+        int reqId = m_reqId.getAndIncrement();
 
         m_historicalTicksMap.put(reqId, handler);
 
@@ -0,0 +1,160 @@
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.ib.client.Bar;
+import com.ib.client.Contract;
+import com.ib.client.ContractDescription;
+import com.ib.client.ContractDetails;
+import com.ib.client.Types.BarSize;
+import com.ib.client.Types.DurationUnit;
+import com.ib.client.Types.WhatToShow;
+import com.ib.controller.ApiController.IContractDetailsHandler;
+import com.ib.controller.ApiController.IHeadTimestampHandler;
+import com.ib.controller.ApiController.IHistoricalDataHandler;
+import com.ib.controller.ApiController.IRequestErrorHandler;
+import com.ib.controller.ApiController.ISymbolSamplesHandler;
+
+/**
+ * The request/response calls of an {@link ApiController} as futures, so that a caller does not write a handler, nor
+ * block a thread per request until it is answered.
+ *
+ * Each future completes with the answer when TWS ends it, fails with a {@link RequestFailedException} on an error TWS
+ * reports for the request, and fails with a {@link java.util.concurrent.TimeoutException} if it is not answered in
+ * time. A request whose future fails or is cancelled is cancelled in TWS where the API allows it. Futures are
+ * completed on the thread that processes messages from TWS, so work that takes long should be chained with the async
+ * methods of CompletableFuture, or run on the caller's own (possibly virtual) threads.
+ */
+public class ApiFutures {
+	/** Fails the futures that are not answered in time; shared by all instances, as it only waits */
+	private static final ScheduledThreadPoolExecutor TIMEOUTS = new ScheduledThreadPoolExecutor(1, runnable -> {
+		Thread thread = new Thread(runnable, "ApiFutures timeouts");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	static {
+		// most requests are answered in time, so their timeouts should not pile up until they are due
+		TIMEOUTS.setRemoveOnCancelPolicy(true);
+	}
+
+	private final ApiController m_controller;
+	private final long m_timeout;
+	private final TimeUnit m_timeoutUnit;
+
+	public ApiFutures(ApiController controller, long timeout, TimeUnit timeoutUnit) {
+		m_controller = controller;
+		m_timeout = timeout;
+		m_timeoutUnit = timeoutUnit;
+	}
+
+	/** Returns the futures of the same controller with another timeout */
+	public ApiFutures withTimeout(long timeout, TimeUnit timeoutUnit) {
+		return new ApiFutures(m_controller, timeout, timeoutUnit);
+	}
+
+	public CompletableFuture<List<ContractDetails>> reqContractDetails(Contract contract) {
+		ContractDetailsRequest request = new ContractDetailsRequest();
+		return send(request, () -> m_controller.reqContractDetails(contract, request), null);
+	}
+
+	/** Requests bars up to {@code endDateTime}, without keeping them up to date */
+	public CompletableFuture<List<Bar>> reqHistoricalData(Contract contract, String endDateTime, int duration, DurationUnit durationUnit, BarSize barSize, WhatToShow whatToShow, boolean rthOnly) {
+		HistoricalDataRequest request = new HistoricalDataRequest();
+		return send(request,
+				() -> m_controller.reqHistoricalData(contract, endDateTime, duration, durationUnit, barSize, whatToShow, rthOnly, false, request),
+				() -> m_controller.cancelHistoricalData(request));
+	}
+
+	/** Returns the time of the earliest data available, in seconds since epoch */
+	public CompletableFuture<Long> reqHeadTimestamp(Contract contract, WhatToShow whatToShow, boolean rthOnly) {
+		HeadTimestampRequest request = new HeadTimestampRequest();
+		return send(request,
+				() -> m_controller.reqHeadTimestamp(contract, whatToShow, rthOnly, request),
+				() -> m_controller.cancelHeadTimestamp(request));
+	}
+
+	public CompletableFuture<ContractDescription[]> reqMatchingSymbols(String pattern) {
+		SymbolSamplesRequest request = new SymbolSamplesRequest();
+		return send(request, () -> m_controller.reqMatchingSymbols(pattern, request), null);
+	}
+
+	/** @param cancel cancels the request in TWS, or null if it cannot be cancelled */
+	private <T> CompletableFuture<T> send(Request<T> request, Runnable send, Runnable cancel) {
+		CompletableFuture<T> future = request.m_future;
+		ScheduledFuture<?> timeout = TIMEOUTS.schedule(() -> future.completeExceptionally(new TimeoutException()),
+				m_timeout, m_timeoutUnit);
+		future.whenComplete((result, failure) -> {
+			timeout.cancel(false);
+			// cancelled even after an error, which does not end every request in TWS, but only if it was sent at all
+			if (failure != null && cancel != null && m_controller.isRequestPending(request)) {
+				cancel.run();
+			}
+			m_controller.forgetRequest(request);
+		});
+		send.run();
+		return future;
+	}
+
+	/** The error TWS reported for a request */
+	public static class RequestFailedException extends Exception {
+		private static final long serialVersionUID = 1L;
+		private final int m_errorCode;
+
+		public RequestFailedException(int errorCode, String errorMsg) {
+			super(errorCode + ": " + errorMsg);
+			m_errorCode = errorCode;
+		}
+
+		public int errorCode() {
+			return m_errorCode;
+		}
+	}
+
+	/** The handler of one request, which completes its future */
+	private abstract static class Request<T> implements IRequestErrorHandler {
+		final CompletableFuture<T> m_future = new CompletableFuture<>();
+
+		@Override public void requestError(int errorCode, String errorMsg) {
+			if (!ApiController.isWarning(errorCode)) {
+				m_future.completeExceptionally(new RequestFailedException(errorCode, errorMsg));
+			}
+		}
+	}
+
+	private static class ContractDetailsRequest extends Request<List<ContractDetails>> implements IContractDetailsHandler {
+		@Override public void contractDetails(List<ContractDetails> list) {
+			m_future.complete(list);
+		}
+	}
+
+	private static class HistoricalDataRequest extends Request<List<Bar>> implements IHistoricalDataHandler {
+		private final List<Bar> m_bars = new ArrayList<>();
+
+		@Override public void historicalData(Bar bar) {
+			m_bars.add(bar);
+		}
+
+		@Override public void historicalDataEnd() {
+			m_future.complete(m_bars);
+		}
+	}
+
+	private static class HeadTimestampRequest extends Request<Long> implements IHeadTimestampHandler {
+		@Override public void headTimestamp(int reqId, long headTimestamp) {
+			m_future.complete(headTimestamp);
+		}
+	}
+
+	private static class SymbolSamplesRequest extends Request<ContractDescription[]> implements ISymbolSamplesHandler {
+		@Override public void symbolSamples(ContractDescription[] contractDescriptions) {
+			m_future.complete(contractDescriptions);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.ib.controller;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.ib.client.IntHashMap;
+
+/**
+ * Handlers of an {@link ApiController} by request id, registered from caller threads and looked up from the thread
+ * that processes messages from TWS.
+ *
+ * Lookups take no lock and do not box the id: handlers are kept in an {@link IntHashMap}, and changes are made under
+ * the registry's lock. Each handler is also indexed by identity to the ids it is registered under, so that a
+ * cancellation by handler does not scan the table.
+ */
+public class HandlerRegistry<H> {
+	/** Returned by {@link #removeHandler(Object)} when the handler is not registered */
+	public static final int NO_ID = Integer.MIN_VALUE;
+
+	private final IntHashMap<H> m_handlers = new IntHashMap<>();
+	/** The ids of each handler, oldest first; usually just one */
+	private final Map<H, int[]> m_ids = new IdentityHashMap<>();
+
+	/** Returns the handler registered under {@code id}, or null if there is none */
+	public H get(int id) {
+		return m_handlers.get(id);
+	}
+
+	/** Registers {@code handler} under {@code id}, replacing any handler registered under it; null removes it */
+	public synchronized void put(int id, H handler) {
+		if (handler == null) {
+			remove(id);
+			return;
+		}
+		H previous = m_handlers.put(id, handler);
+		if (previous != null) {
+			removeId(previous, id);
+		}
+		addId(handler, id);
+	}
+
+	/** Removes the handler registered under {@code id} and returns it, or null if there is none */
+	public synchronized H remove(int id) {
+		H handler = m_handlers.remove(id);
+		if (handler != null) {
+			removeId(handler, id);
+		}
+		return handler;
+	}
+
+	/**
+	 * Removes {@code handler} from the id it was registered under first, if it is registered under several.
+	 * @return the id, or {@link #NO_ID} if the handler is not registered
+	 */
+	public synchronized int removeHandler(H handler) {
+		int[] ids = m_ids.get(handler);
+		if (ids == null) {
+			return NO_ID;
+		}
+		int id = ids[0];
+		remove(id);
+		return id;
+	}
+
+	/** Returns the id {@code handler} was registered under first, or {@link #NO_ID} if it is not registered */
+	public synchronized int idOf(H handler) {
+		int[] ids = m_ids.get(handler);
+		return ids == null ? NO_ID : ids[0];
+	}
+
+	public synchronized int size() {
+		return m_handlers.size();
+	}
+
+	private void addId(H handler, int id) {
+		int[] ids = m_ids.get(handler);
+		if (ids == null) {
+			m_ids.put(handler, new int[] { id });
+		} else {
+			int[] added = Arrays.copyOf(ids, ids.length + 1);
+			added[ids.length] = id;
+			m_ids.put(handler, added);
+		}
+	}
+
+	private void removeId(H handler, int id) {
+		int[] ids = m_ids.get(handler);
+		if (ids.length == 1) {
+			m_ids.remove(handler);
+			return;
+		}
+		int index = 0;
+		while (ids[index] != id) {
+			index++;
+		}
+		int[] removed = new int[ids.length - 1];
+		System.arraycopy(ids, 0, removed, 0, index);
+		System.arraycopy(ids, index + 1, removed, index, ids.length - index - 1);
+		m_ids.put(handler, removed);
+	}
+}
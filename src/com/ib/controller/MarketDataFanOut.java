@@ -0,0 +1,158 @@
+package com.ib.controller;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.ib.client.TickAttr;
+import com.ib.client.TickType;
+import com.ib.client.Types.DeepSide;
+import com.ib.client.Types.DeepType;
+import com.ib.controller.ApiController.IDeepMktDataHandler;
+import com.ib.controller.ApiController.IRealTimeBarHandler;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+
+/** The {@link SharedSubscriptions.FanOut}s of the market data streams that {@link ApiController} shares */
+public class MarketDataFanOut {
+	private MarketDataFanOut() {
+	}
+
+	/** Top of book; replays the latest value of each tick type, the market data type and the request parameters */
+	public static class TopMktData extends SharedSubscriptions.FanOut<ITopMktDataHandler> implements ITopMktDataHandler {
+		private final Map<TickType, Double> m_prices = new EnumMap<>(TickType.class);
+		private final Map<TickType, TickAttr> m_attribs = new EnumMap<>(TickType.class);
+		private final Map<TickType, Integer> m_sizes = new EnumMap<>(TickType.class);
+		private final Map<TickType, String> m_strings = new EnumMap<>(TickType.class);
+		private int m_marketDataType = -1;
+		private boolean m_hasReqParams;
+		private int m_tickerId;
+		private double m_minTick;
+		private String m_bboExchange;
+		private int m_snapshotPermissions;
+
+		@Override public synchronized void tickPrice(TickType tickType, double price, TickAttr attribs) {
+			m_prices.put(tickType, price);
+			m_attribs.put(tickType, attribs);
+			for (ITopMktDataHandler handler : m_handlers) {
+				handler.tickPrice(tickType, price, attribs);
+			}
+		}
+
+		@Override public synchronized void tickSize(TickType tickType, int size) {
+			m_sizes.put(tickType, size);
+			for (ITopMktDataHandler handler : m_handlers) {
+				handler.tickSize(tickType, size);
+			}
+		}
+
+		@Override public synchronized void tickString(TickType tickType, String value) {
+			m_strings.put(tickType, value);
+			for (ITopMktDataHandler handler : m_handlers) {
+				handler.tickString(tickType, value);
+			}
+		}
+
+		@Override public synchronized void tickSnapshotEnd() {
+			for (ITopMktDataHandler handler : m_handlers) {
+				handler.tickSnapshotEnd();
+			}
+		}
+
+		@Override public synchronized void marketDataType(int marketDataType) {
+			m_marketDataType = marketDataType;
+			for (ITopMktDataHandler handler : m_handlers) {
+				handler.marketDataType(marketDataType);
+			}
+		}
+
+		@Override public synchronized void tickReqParams(int tickerId, double minTick, String bboExchange, int snapshotPermissions) {
+			m_hasReqParams = true;
+			m_tickerId = tickerId;
+			m_minTick = minTick;
+			m_bboExchange = bboExchange;
+			m_snapshotPermissions = snapshotPermissions;
+			for (ITopMktDataHandler handler : m_handlers) {
+				handler.tickReqParams(tickerId, minTick, bboExchange, snapshotPermissions);
+			}
+		}
+
+		@Override protected void replay(ITopMktDataHandler handler) {
+			if (m_hasReqParams) {
+				handler.tickReqParams(m_tickerId, m_minTick, m_bboExchange, m_snapshotPermissions);
+			}
+			if (m_marketDataType != -1) {
+				handler.marketDataType(m_marketDataType);
+			}
+			for (Map.Entry<TickType, Double> price : m_prices.entrySet()) {
+				handler.tickPrice(price.getKey(), price.getValue(), m_attribs.get(price.getKey()));
+			}
+			for (Map.Entry<TickType, Integer> size : m_sizes.entrySet()) {
+				handler.tickSize(size.getKey(), size.getValue());
+			}
+			for (Map.Entry<TickType, String> string : m_strings.entrySet()) {
+				handler.tickString(string.getKey(), string.getValue());
+			}
+		}
+	}
+
+	/** Real time bars; replays the latest bar */
+	public static class RealTimeBars extends SharedSubscriptions.FanOut<IRealTimeBarHandler> implements IRealTimeBarHandler {
+		private boolean m_hasBar;
+		private long m_time;
+		private double m_open;
+		private double m_high;
+		private double m_low;
+		private double m_close;
+		private long m_volume;
+		private double m_wap;
+		private int m_count;
+
+		@Override public void realtimeBar(com.ib.client.Bar bar) {
+			realtimeBar(Long.parseLong(bar.time()), bar.open(), bar.high(), bar.low(), bar.close(), bar.volume(), bar.wap(), bar.count());
+		}
+
+		@Override public synchronized void realtimeBar(long time, double open, double high, double low, double close, long volume, double wap, int count) {
+			m_hasBar = true;
+			m_time = time;
+			m_open = open;
+			m_high = high;
+			m_low = low;
+			m_close = close;
+			m_volume = volume;
+			m_wap = wap;
+			m_count = count;
+			for (IRealTimeBarHandler handler : m_handlers) {
+				handler.realtimeBar(time, open, high, low, close, volume, wap, count);
+			}
+		}
+
+		@Override protected void replay(IRealTimeBarHandler handler) {
+			if (m_hasBar) {
+				handler.realtimeBar(m_time, m_open, m_high, m_low, m_close, m_volume, m_wap, m_count);
+			}
+		}
+	}
+
+	/** Market depth; keeps the rows of the book and replays them as inserts */
+	public static class DeepMktData extends SharedSubscriptions.FanOut<IDeepMktDataHandler> implements IDeepMktDataHandler {
+		private final OrderBook m_book = new OrderBook();
+
+		@Override public synchronized void updateMktDepth(int position, String marketMaker, DeepType operation, DeepSide side, double price, int size) {
+			m_book.updateMktDepth(position, marketMaker, operation, side, price, size);
+			for (IDeepMktDataHandler handler : m_handlers) {
+				handler.updateMktDepth(position, marketMaker, operation, side, price, size);
+			}
+		}
+
+		@Override protected void replay(IDeepMktDataHandler handler) {
+			replay(handler, DeepSide.BUY);
+			replay(handler, DeepSide.SELL);
+		}
+
+		private void replay(IDeepMktDataHandler handler, DeepSide side) {
+			for (int i = 0; i < m_book.rows(side); i++) {
+				String marketMaker = OrderBook.marketMaker(m_book.marketMakerId(side, i));
+				handler.updateMktDepth(i, marketMaker, DeepType.INSERT, side, m_book.price(side, i), m_book.size(side, i));
+			}
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package com.ib.controller;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ib.client.Types.DeepSide;
+import com.ib.client.Types.DeepType;
+import com.ib.controller.ApiController.IDeepMktDataHandler;
+
+/**
+ * The rows of one market depth subscription, kept up to date from the insert, update and delete by position that TWS
+ * sends; subscribe it with {@link ApiController#reqDeepMktData}.
+ *
+ * Each side keeps its prices, sizes and market makers in primitive arrays in the order of the book, best first, so an
+ * update shifts at most the rows behind it and allocates nothing once the arrays have grown to the depth of the book.
+ * Market makers are interned to ids shared by all books. Cumulative sizes are kept as prefix sums that a change
+ * invalidates only from the row it changed, and a query brings them up to date only as far as the rows it covers. An
+ * update followed by a query of the first k rows therefore costs the rows between the two, not the depth of the book,
+ * and once updates stop, repeated queries cost O(1). The best price is answered in O(1), and rows by price are found
+ * in O(log n) by binary search, which relies on TWS keeping each side sorted by price.
+ */
+public class OrderBook implements IDeepMktDataHandler {
+	/** The id of the market maker of rows received without one */
+	public static final int NO_MARKET_MAKER = 0;
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final Map<String, Integer> MARKET_MAKER_IDS = new ConcurrentHashMap<>();
+	private static volatile String[] marketMakers = new String[] { null };
+
+	private final Side m_bids = new Side(true);
+	private final Side m_asks = new Side(false);
+	private long m_updates;
+
+	/** Returns the id of {@code marketMaker}, assigning the next one the first time it is seen */
+	public static int marketMakerId(String marketMaker) {
+		if (marketMaker == null) {
+			return NO_MARKET_MAKER;
+		}
+		Integer id = MARKET_MAKER_IDS.get(marketMaker);
+		return id != null ? id : addMarketMaker(marketMaker);
+	}
+
+	private static synchronized int addMarketMaker(String marketMaker) {
+		Integer id = MARKET_MAKER_IDS.get(marketMaker);
+		if (id != null) {
+			return id;
+		}
+		String[] added = Arrays.copyOf(marketMakers, marketMakers.length + 1);
+		added[added.length - 1] = marketMaker;
+		// published before the id, so that the name of an id handed out can always be read
+		marketMakers = added;
+		MARKET_MAKER_IDS.put(marketMaker, added.length - 1);
+		return added.length - 1;
+	}
+
+	/** Returns the market maker of {@code id}; null for {@link #NO_MARKET_MAKER} */
+	public static String marketMaker(int id) {
+		return marketMakers[id];
+	}
+
+	@Override public synchronized void updateMktDepth(int position, String marketMaker, DeepType operation, DeepSide side, double price, int size) {
+		Side rows = side == DeepSide.BUY ? m_bids : m_asks;
+		if (position < 0) {
+			return;
+		}
+		switch (operation) {
+			case INSERT:
+				rows.insert(position, price, size, marketMakerId(marketMaker));
+				break;
+			case UPDATE:
+				rows.update(position, price, size, marketMakerId(marketMaker));
+				break;
+			case DELETE:
+				rows.delete(position);
+				break;
+		}
+		m_updates++;
+	}
+
+	/** Removes all rows, as when the subscription is restarted */
+	public synchronized void clear() {
+		m_bids.m_count = 0;
+		m_bids.m_accumulated = 0;
+		m_asks.m_count = 0;
+		m_asks.m_accumulated = 0;
+	}
+
+	/** Number of updates applied so far */
+	public synchronized long updates() {
+		return m_updates;
+	}
+
+	/** Best bid, or NaN if there is none */
+	public synchronized double bestBid() {
+		return m_bids.m_count == 0 ? Double.NaN : m_bids.m_prices[0];
+	}
+
+	/** Best ask, or NaN if there is none */
+	public synchronized double bestAsk() {
+		return m_asks.m_count == 0 ? Double.NaN : m_asks.m_prices[0];
+	}
+
+	/** Number of rows on {@code side} */
+	public synchronized int rows(DeepSide side) {
+		return side(side).m_count;
+	}
+
+	public synchronized double price(DeepSide side, int position) {
+		Side rows = side(side);
+		rows.check(position);
+		return rows.m_prices[position];
+	}
+
+	public synchronized int size(DeepSide side, int position) {
+		Side rows = side(side);
+		rows.check(position);
+		return rows.m_sizes[position];
+	}
+
+	public synchronized int marketMakerId(DeepSide side, int position) {
+		Side rows = side(side);
+		rows.check(position);
+		return rows.m_marketMakers[position];
+	}
+
+	/** Total size of the rows on {@code side} at {@code price} */
+	public synchronized long sizeAt(DeepSide side, double price) {
+		Side rows = side(side);
+		long through = rows.cumulative(rows.end(price));
+		return through - rows.cumulative(rows.start(price));
+	}
+
+	/** Total size of the first {@code rows} rows on {@code side}, or of all of them if there are fewer */
+	public synchronized long cumulativeSize(DeepSide side, int rows) {
+		Side book = side(side);
+		return book.cumulative(Math.max(0, Math.min(rows, book.m_count)));
+	}
+
+	/** Total size of the rows on {@code side} at {@code price} or better */
+	public synchronized long cumulativeSizeThrough(DeepSide side, double price) {
+		Side rows = side(side);
+		return rows.cumulative(rows.end(price));
+	}
+
+	private Side side(DeepSide side) {
+		return side == DeepSide.BUY ? m_bids : m_asks;
+	}
+
+	/** The rows of one side, best first */
+	private static final class Side {
+		/** Bids are sorted by descending price, asks by ascending */
+		private final boolean m_descending;
+		private double[] m_prices = new double[INITIAL_CAPACITY];
+		private int[] m_sizes = new int[INITIAL_CAPACITY];
+		private int[] m_marketMakers = new int[INITIAL_CAPACITY];
+		/** Size of the rows before each position; valid up to and including m_accumulated */
+		private long[] m_cumulative = new long[INITIAL_CAPACITY + 1];
+		private int m_accumulated;
+		private int m_count;
+
+		Side(boolean descending) {
+			m_descending = descending;
+		}
+
+		void check(int position) {
+			if (position < 0 || position >= m_count) {
+				throw new IndexOutOfBoundsException("position " + position + " of " + m_count + " rows");
+			}
+		}
+
+		void insert(int position, double price, int size, int marketMaker) {
+			if (m_count == m_prices.length) {
+				grow();
+			}
+			position = Math.min(position, m_count);
+			int moved = m_count - position;
+			System.arraycopy(m_prices, position, m_prices, position + 1, moved);
+			System.arraycopy(m_sizes, position, m_sizes, position + 1, moved);
+			System.arraycopy(m_marketMakers, position, m_marketMakers, position + 1, moved);
+			set(position, price, size, marketMaker);
+			m_count++;
+		}
+
+		/** An update past the last row adds a row, as TWS can send one before the insert it follows from */
+		void update(int position, double price, int size, int marketMaker) {
+			if (position >= m_count) {
+				insert(m_count, price, size, marketMaker);
+			} else {
+				set(position, price, size, marketMaker);
+			}
+		}
+
+		void delete(int position) {
+			if (position >= m_count) {
+				return;
+			}
+			int moved = m_count - position - 1;
+			System.arraycopy(m_prices, position + 1, m_prices, position, moved);
+			System.arraycopy(m_sizes, position + 1, m_sizes, position, moved);
+			System.arraycopy(m_marketMakers, position + 1, m_marketMakers, position, moved);
+			m_count--;
+			invalidateAfter(position);
+		}
+
+		private void set(int position, double price, int size, int marketMaker) {
+			m_prices[position] = price;
+			m_sizes[position] = size;
+			m_marketMakers[position] = marketMaker;
+			invalidateAfter(position);
+		}
+
+		/** The rows before {@code position} are unchanged, so the sums up to and including it stay valid */
+		private void invalidateAfter(int position) {
+			if (position < m_accumulated) {
+				m_accumulated = position;
+			}
+		}
+
+		private void grow() {
+			int capacity = m_prices.length * 2;
+			m_prices = Arrays.copyOf(m_prices, capacity);
+			m_sizes = Arrays.copyOf(m_sizes, capacity);
+			m_marketMakers = Arrays.copyOf(m_marketMakers, capacity);
+			m_cumulative = Arrays.copyOf(m_cumulative, capacity + 1);
+		}
+
+		/** Total size of the rows before {@code position}, summing only the rows changed since it was last known */
+		long cumulative(int position) {
+			for (int i = m_accumulated; i < position; i++) {
+				m_cumulative[i + 1] = m_cumulative[i] + m_sizes[i];
+			}
+			if (position > m_accumulated) {
+				m_accumulated = position;
+			}
+			return m_cumulative[position];
+		}
+
+		/** Returns whether {@code price} is better than {@code other} on this side */
+		private boolean isBetter(double price, double other) {
+			return m_descending ? price > other : price < other;
+		}
+
+		/** Position of the first row at {@code price} or worse */
+		int start(double price) {
+			int low = 0;
+			int high = m_count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (isBetter(m_prices[middle], price)) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/** Position of the first row worse than {@code price} */
+		int end(double price) {
+			int low = 0;
+			int high = m_count;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (isBetter(price, m_prices[middle])) {
+					high = middle;
+				} else {
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+	}
+}
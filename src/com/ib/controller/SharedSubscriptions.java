@@ -0,0 +1,249 @@
+package com.ib.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+import com.ib.client.Contract;
+import com.ib.client.Util;
+
+/**
+ * Shares one upstream subscription per contract among the handlers of an {@link ApiController}, so that two handlers
+ * watching the same contract take one market data line and receive its messages once.
+ *
+ * The subscription of a contract is represented by a {@link FanOut}, which is registered as the handler of its
+ * request and passes every message on to the handlers that joined it. The fan-out keeps the last known state of the
+ * stream and replays it to a handler that joins once the stream is running. Handlers are counted: the caller
+ * requests the subscription when the first handler joins, and cancels it when the last one leaves. A subscription
+ * that TWS ends, with an error or by disconnecting, is ended here too, so that the next handler requests it again.
+ *
+ * The last handler may leave while the first is still requesting the subscription. The caller reports with
+ * {@link #requested(FanOut)} once the request has been sent, and the cancel then falls to whichever of the two comes
+ * last, so that it is never sent before the request or not at all.
+ *
+ * Subscriptions are keyed on the contract, by conid and exchange if it has a conid, otherwise by the fields of
+ * {@link Contract#equals(Object)}, and on the parameters of the request.
+ */
+public class SharedSubscriptions<H, F extends SharedSubscriptions.FanOut<H>> {
+	private final Supplier<F> m_factory;
+	private final Map<Key, F> m_byKey = new HashMap<>();
+	private final Map<H, F> m_byHandler = new IdentityHashMap<>();
+	private final Map<F, Key> m_keys = new IdentityHashMap<>();
+	/** Handlers that have joined each fan-out and not left */
+	private final Map<F, Integer> m_counts = new IdentityHashMap<>();
+
+	public SharedSubscriptions(Supplier<F> factory) {
+		m_factory = factory;
+	}
+
+	/** Returns the key of the subscription to {@code contract} requested with {@code parameters} */
+	public static Key key(Contract contract, Object... parameters) {
+		return new Key(contract, parameters);
+	}
+
+	/**
+	 * Adds {@code handler} to the subscription of {@code key}; if it is running, the handler receives the last known
+	 * state of the stream first.
+	 * @return the fan-out of a new subscription, which the caller must register as its handler, request, and then
+	 * pass to {@link #requested(FanOut)}; null if the handler joined a subscription that has been requested already
+	 */
+	public F join(Key key, H handler) {
+		F fanOut;
+		boolean isNew;
+		synchronized (this) {
+			if (m_byHandler.containsKey(handler)) {
+				throw new IllegalArgumentException("the handler has already subscribed to a shared subscription");
+			}
+			fanOut = m_byKey.get(key);
+			isNew = fanOut == null;
+			if (isNew) {
+				fanOut = m_factory.get();
+				m_byKey.put(key, fanOut);
+				m_keys.put(fanOut, key);
+			}
+			m_byHandler.put(handler, fanOut);
+			m_counts.merge(fanOut, 1, Integer::sum);
+		}
+		// outside this lock: the fan-out calls the handler while replaying, which may subscribe or cancel in turn
+		fanOut.add(handler);
+		return isNew ? fanOut : null;
+	}
+
+	/**
+	 * Records that the subscription of {@code fanOut}, returned by {@link #join}, has been requested.
+	 * @return true if its last handler left before then, so that the caller must cancel it now
+	 */
+	public synchronized boolean requested(F fanOut) {
+		fanOut.m_requested = true;
+		return fanOut.m_abandoned;
+	}
+
+	public synchronized boolean isJoined(H handler) {
+		return m_byHandler.containsKey(handler);
+	}
+
+	/**
+	 * Removes {@code handler} from its subscription.
+	 * @return the fan-out of the subscription if the handler was the last to leave it and it has been requested,
+	 * which the caller must cancel; null otherwise, or if the handler has not joined a subscription
+	 */
+	public F leave(H handler) {
+		F fanOut;
+		boolean isToCancel;
+		synchronized (this) {
+			fanOut = m_byHandler.remove(handler);
+			if (fanOut == null) {
+				return null;
+			}
+			int count = m_counts.merge(fanOut, -1, Integer::sum);
+			isToCancel = false;
+			if (count == 0) {
+				m_counts.remove(fanOut);
+				m_byKey.remove(m_keys.remove(fanOut));
+				// one that is still being requested is cancelled by its requester once the request has been sent
+				isToCancel = fanOut.m_requested;
+				fanOut.m_abandoned = !fanOut.m_requested;
+			}
+		}
+		fanOut.remove(handler);
+		return isToCancel ? fanOut : null;
+	}
+
+	/**
+	 * Ends the subscription of {@code fanOut}, as when TWS has reported an error for it; a handler that joins its key
+	 * later starts a new one.
+	 * @return the handlers that had joined it, which receive no more of its messages
+	 */
+	public List<H> end(F fanOut) {
+		List<H> handlers = new ArrayList<>();
+		synchronized (this) {
+			Key key = m_keys.remove(fanOut);
+			if (key == null) {
+				return handlers;
+			}
+			m_byKey.remove(key);
+			m_counts.remove(fanOut);
+			for (Iterator<Map.Entry<H, F>> i = m_byHandler.entrySet().iterator(); i.hasNext(); ) {
+				Map.Entry<H, F> entry = i.next();
+				if (entry.getValue() == fanOut) {
+					handlers.add(entry.getKey());
+					i.remove();
+				}
+			}
+		}
+		fanOut.clear();
+		return handlers;
+	}
+
+	/**
+	 * Ends all subscriptions, as when the connection is closed.
+	 * @return their fan-outs
+	 */
+	public List<F> endAll() {
+		List<F> fanOuts;
+		synchronized (this) {
+			fanOuts = new ArrayList<>(m_keys.keySet());
+			m_byKey.clear();
+			m_byHandler.clear();
+			m_keys.clear();
+			m_counts.clear();
+		}
+		for (F fanOut : fanOuts) {
+			fanOut.clear();
+		}
+		return fanOuts;
+	}
+
+	/** Number of upstream subscriptions */
+	public synchronized int subscriptionCount() {
+		return m_byKey.size();
+	}
+
+	/** Number of handlers sharing the upstream subscriptions */
+	public synchronized int handlerCount() {
+		return m_byHandler.size();
+	}
+
+	/**
+	 * Passes the messages of one upstream subscription on to the handlers that joined it, and keeps the state needed
+	 * to bring a handler that joins later up to date. Messages are passed on and the state is replayed under the
+	 * fan-out's lock, so that a joining handler receives each message either in the replay or after it, never both.
+	 */
+	public abstract static class FanOut<H> {
+		/** Copied on write, so that a handler can leave while a message is being passed on to it */
+		protected final List<H> m_handlers = new CopyOnWriteArrayList<>();
+		// guarded by the lock of the SharedSubscriptions the fan-out belongs to
+		boolean m_requested;
+		boolean m_abandoned;
+
+		synchronized void add(H handler) {
+			replay(handler);
+			m_handlers.add(handler);
+		}
+
+		synchronized void remove(H handler) {
+			for (int i = 0; i < m_handlers.size(); i++) {
+				if (m_handlers.get(i) == handler) {
+					m_handlers.remove(i);
+					return;
+				}
+			}
+		}
+
+		synchronized void clear() {
+			m_handlers.clear();
+		}
+
+		public int handlerCount() {
+			return m_handlers.size();
+		}
+
+		/** Brings {@code handler} up to date with the state received so far; called under the fan-out's lock */
+		protected abstract void replay(H handler);
+	}
+
+	/** Identity of a contract and the parameters it was requested with */
+	public static final class Key {
+		private final int m_conid;
+		private final String m_exchange;
+		private final Contract m_contract; // null if keyed by conid
+		private final List<Object> m_parameters;
+
+		Key(Contract contract, Object[] parameters) {
+			m_conid = contract.conid();
+			m_exchange = contract.exchange();
+			// copied, as the caller may reuse the contract for another request
+			m_contract = m_conid == 0 ? contract.clone() : null;
+			m_parameters = Arrays.asList(parameters.clone());
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Key)) {
+				return false;
+			}
+			Key key = (Key) other;
+			if (m_conid != key.m_conid || !m_parameters.equals(key.m_parameters)) {
+				return false;
+			}
+			return m_conid != 0
+					? Util.StringCompare(m_exchange, key.m_exchange) == 0
+					: m_contract.equals(key.m_contract);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = m_conid != 0 ? m_conid : m_contract.hashCode();
+			return result * 31 + m_parameters.hashCode();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.ib.controller;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import com.ib.client.TickAttr;
+import com.ib.client.TickType;
+import com.ib.controller.ApiController.TopMktDataAdapter;
+
+/**
+ * The latest bid, ask, last, sizes, volume and daily prices of one top of book subscription; subscribe it with
+ * {@link ApiController#reqTopMktData} and read it from any thread.
+ *
+ * Ticks are stored in a primitive array through a table indexed by tick type id, so an update neither allocates nor
+ * searches. Delayed ticks are stored with their real time counterparts. Readers take no lock: updates are guarded by a
+ * sequence number that is odd while an update is in progress, and a reader copies the values and retries if the
+ * sequence changed meanwhile (a seqlock). A snapshot is consistent with the ticks received up to a point in time; as
+ * TWS sends a price and its size as separate ticks, it can hold a new price with the size of the previous one.
+ */
+public class TopOfBookCache extends TopMktDataAdapter {
+	private static final int BID = 0;
+	private static final int ASK = 1;
+	private static final int LAST = 2;
+	private static final int BID_SIZE = 3;
+	private static final int ASK_SIZE = 4;
+	private static final int LAST_SIZE = 5;
+	private static final int VOLUME = 6;
+	private static final int HIGH = 7;
+	private static final int LOW = 8;
+	private static final int OPEN = 9;
+	private static final int CLOSE = 10;
+	private static final int COLUMNS = 11;
+	private static final int NO_COLUMN = -1;
+
+	/** The column of each tick type id, or NO_COLUMN for the tick types that are not cached */
+	private static final int[] COLUMN_OF_TICK = new int[TickType.maxIndex() + 1];
+
+	static {
+		Arrays.fill(COLUMN_OF_TICK, NO_COLUMN);
+		map(BID, TickType.BID, TickType.DELAYED_BID);
+		map(ASK, TickType.ASK, TickType.DELAYED_ASK);
+		map(LAST, TickType.LAST, TickType.DELAYED_LAST);
+		map(BID_SIZE, TickType.BID_SIZE, TickType.DELAYED_BID_SIZE);
+		map(ASK_SIZE, TickType.ASK_SIZE, TickType.DELAYED_ASK_SIZE);
+		map(LAST_SIZE, TickType.LAST_SIZE, TickType.DELAYED_LAST_SIZE);
+		map(VOLUME, TickType.VOLUME, TickType.DELAYED_VOLUME);
+		map(HIGH, TickType.HIGH, TickType.DELAYED_HIGH);
+		map(LOW, TickType.LOW, TickType.DELAYED_LOW);
+		map(OPEN, TickType.OPEN, TickType.DELAYED_OPEN);
+		map(CLOSE, TickType.CLOSE, TickType.DELAYED_CLOSE);
+	}
+
+	private static final AtomicLongFieldUpdater<TopOfBookCache> SEQUENCE =
+			AtomicLongFieldUpdater.newUpdater(TopOfBookCache.class, "m_sequence");
+
+	private final double[] m_values = new double[COLUMNS];
+	/** Twice the number of updates, plus one while an update is in progress */
+	private volatile long m_sequence;
+
+	public TopOfBookCache() {
+		Arrays.fill(m_values, Double.NaN);
+	}
+
+	private static void map(int column, TickType... tickTypes) {
+		for (TickType tickType : tickTypes) {
+			COLUMN_OF_TICK[tickType.index()] = column;
+		}
+	}
+
+	/** Returns whether ticks of {@code tickType} are cached */
+	public static boolean isCached(TickType tickType) {
+		return columnOf(tickType.index()) != NO_COLUMN;
+	}
+
+	private static int columnOf(int tickIndex) {
+		return tickIndex >= 0 && tickIndex < COLUMN_OF_TICK.length ? COLUMN_OF_TICK[tickIndex] : NO_COLUMN;
+	}
+
+	@Override public void tickPrice(TickType tickType, double price, TickAttr attribs) {
+		update(tickType.index(), price);
+	}
+
+	@Override public void tickSize(TickType tickType, int size) {
+		update(tickType.index(), size);
+	}
+
+	/** Stores one tick; updates are serialized so that the cache stays consistent if it is subscribed more than once */
+	public synchronized void update(int tickIndex, double value) {
+		int column = columnOf(tickIndex);
+		if (column == NO_COLUMN) {
+			return;
+		}
+		long sequence = m_sequence;
+		// a volatile store, so that the value is not stored before the odd sequence is visible
+		m_sequence = sequence + 1;
+		m_values[column] = value;
+		// only needs to be ordered after the value, which the cheaper lazySet is
+		SEQUENCE.lazySet(this, sequence + 2);
+	}
+
+	/** Number of ticks stored so far; a reader can compare it with {@link Snapshot#updates()} to skip a copy */
+	public long updates() {
+		return m_sequence >>> 1;
+	}
+
+	/** Copies the cached ticks into {@code snapshot}, which can be reused from one read to the next, and returns it */
+	public Snapshot read(Snapshot snapshot) {
+		while (true) {
+			long before = m_sequence;
+			if ((before & 1) == 0) {
+				System.arraycopy(m_values, 0, snapshot.m_values, 0, COLUMNS);
+				if (m_sequence == before) {
+					snapshot.m_updates = before >>> 1;
+					return snapshot;
+				}
+			}
+			// an update is in progress or has just been made; it is a single store, so retrying at once is cheapest
+		}
+	}
+
+	/** Returns a new snapshot of the cached ticks */
+	public Snapshot read() {
+		return read(new Snapshot());
+	}
+
+	/** The ticks of a {@link TopOfBookCache} at one point in time; a tick not received yet is NaN */
+	public static final class Snapshot {
+		private final double[] m_values = new double[COLUMNS];
+		private long m_updates;
+
+		public Snapshot() {
+			Arrays.fill(m_values, Double.NaN);
+		}
+
+		public double bid()       { return m_values[BID]; }
+		public double ask()       { return m_values[ASK]; }
+		public double last()      { return m_values[LAST]; }
+		public double bidSize()   { return m_values[BID_SIZE]; }
+		public double askSize()   { return m_values[ASK_SIZE]; }
+		public double lastSize()  { return m_values[LAST_SIZE]; }
+		public double volume()    { return m_values[VOLUME]; }
+		public double high()      { return m_values[HIGH]; }
+		public double low()       { return m_values[LOW]; }
+		public double open()      { return m_values[OPEN]; }
+		public double close()     { return m_values[CLOSE]; }
+
+		/** Returns the value of {@code tickType}, or NaN if it has not been received or is not cached */
+		public double get(TickType tickType) {
+			int column = columnOf(tickType.index());
+			return column == NO_COLUMN ? Double.NaN : m_values[column];
+		}
+
+		/** Number of ticks the cache had stored when the snapshot was taken */
+		public long updates() {
+			return m_updates;
+		}
+	}
+}
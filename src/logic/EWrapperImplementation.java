@@ -1,6 +1,7 @@
 package logic;
 
 import java.text.DecimalFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -12,18 +13,29 @@ import com.ib.client.*;
 import model.ContractBuilder;
 import model.ContractWithPriceDetail;
 import model.Model;
+import model.SignalTable;
 import model.UniqueContractList;
 import model.exceptions.DuplicateContractException;
 import model.exceptions.FullContractListException;
 
-public class EWrapperImplementation implements EWrapper {
+public class EWrapperImplementation implements EWrapper, EBatchListener {
     private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
 
     private EReaderSignal readerSignal;
     private EClientSocket clientSocket;
     private Model model;
 
-    private int currentOrderId = -1;
+    private EShardedWrapper dispatcher;
+
+    // set by nextValidId on the control lane and read by order placement on the symbol lanes
+    private volatile int currentOrderId = -1;
+
+    /**
+     * Prices of the contracts updated by realtimeBar in the current batch, by request id. Kept per thread, as with
+     * a {@link EShardedWrapper} each symbol lane runs its own batches.
+     */
+    private final ThreadLocal<LinkedHashMap<Integer, PendingPrice>> pendingPrices =
+            ThreadLocal.withInitial(LinkedHashMap::new);
 
     public EWrapperImplementation() {
         readerSignal = new EJavaSignal();
@@ -36,6 +48,17 @@ public class EWrapperImplementation implements EWrapper {
         setModel(model);
     }
 
+    /**
+     * Creates an EWrapperImplementation whose callbacks are dispatched by an {@link EShardedWrapper}, so that
+     * contracts are evaluated on {@code symbolLanes} threads in parallel while each contract's bars stay in order
+     */
+    public EWrapperImplementation(Model model, int symbolLanes) {
+        setModel(model);
+        readerSignal = new EJavaSignal();
+        dispatcher = new EShardedWrapper(this, symbolLanes);
+        clientSocket = new EClientSocket(dispatcher, readerSignal);
+    }
+
     public void setModel(Model model) {
         this.model = model;
     }
@@ -48,6 +71,11 @@ public class EWrapperImplementation implements EWrapper {
         return readerSignal;
     }
 
+    /** Returns the dispatcher the callbacks run through, or null if they run on the processMsgs thread */
+    public EShardedWrapper getDispatcher() {
+        return dispatcher;
+    }
+
     public int getCurrentOrderId() {
         return currentOrderId;
     }
@@ -58,27 +86,54 @@ public class EWrapperImplementation implements EWrapper {
 
     /**
      * Handles the call back from reqRealTimeBar.
-     * Sets the opening price, if none, of a {@code ContractWithPriceDetail}
-     * Checks if ContractWithPriceDetail is ready for order submission
+     * Stores the bar in the model's {@see RealTimeBarStore} and records its opening price; the
+     * {@code ContractWithPriceDetail} is checked for order submission once per batch in {@link #onBatchEnd(int)},
+     * however many bars the batch held for it.
      */
     @Override
     public void realtimeBar(int reqId, long time, double open, double high,
                             double low, double close, long volume, double wap, int count) {
-        // retrieve contract by reqId
-        ContractWithPriceDetail contract = model.retrieveContractWithPriceDetailByReqId(reqId);
+        model.getRealTimeBarStore().write(reqId, time, open, high, low, close, volume, wap, count);
+
+        LinkedHashMap<Integer, PendingPrice> batch = pendingPrices.get();
+        PendingPrice pendingPrice = batch.get(reqId);
+        if (pendingPrice == null) {
+            batch.put(reqId, new PendingPrice(open));
+        } else {
+            pendingPrice.update(open);
+        }
+    }
 
-//        LOGGER.info("=============================[ Handling realTimeBars callback for " +  contract.symbol() +
-//                " ]===========================");
+    /**
+     * Checks each contract updated during the batch if it is ready for order submission. The lowest price of the
+     * batch is checked, so a contract is submitted whenever any of its bars would have met the criteria on its own.
+     */
+    @Override
+    public void onBatchEnd(int batchSize) {
+        LinkedHashMap<Integer, PendingPrice> batch = pendingPrices.get();
+        for (Entry<Integer, PendingPrice> entry : batch.entrySet()) {
+            // retrieve contract by reqId
+            ContractWithPriceDetail contract = model.retrieveContractWithPriceDetailByReqId(entry.getKey());
 
-//        System.out.println("[EWrapperImpl] RealTimeBars. " + reqId + " - Time: " + time + ", Open: " + open
-//                + ", High: " + high + ", Low: " + low + ", Close: " + close);
+            // request has been cancelled
+            if (contract == null) {
+                continue;
+            }
 
-        if (isReadyForOrderSubmissionAtCurrentPrice(contract, open)) {
-            LOGGER.info("=============================[ " +  contract.symbol() +
-                    " is ready for order submission! ]===========================");
+            PendingPrice pendingPrice = entry.getValue();
+            if (isReadyForOrderSubmissionAtCurrentPrice(contract, pendingPrice.lowest)) {
+                LOGGER.info("=============================[ " +  contract.symbol() +
+                        " is ready for order submission! ]===========================");
 
-            addContractToUniqueOrderList(contract);
+                addContractToUniqueOrderList(contract);
+            }
+
+            // keep the latest price below the opening price as the current price, as checking each bar would
+            if (pendingPrice.latest < contract.getDayOpeningPrice()) {
+                contract.setCurrentPrice(pendingPrice.latest);
+            }
         }
+        batch.clear();
     }
 
     private void addContractToUniqueOrderList(ContractWithPriceDetail contract) {
@@ -87,14 +142,19 @@ public class EWrapperImplementation implements EWrapper {
 
     /**
      * Takes in the {@param currentPrice} and checks if a ContractWithPriceDetail is ready to be submitted for
-     * ordering at the current price (i.e. meets the 16% decrease criteria)
+     * ordering at the current price (i.e. meets the 16% decrease criteria). Contracts in the model's
+     * {@see SignalTable} are checked against their precomputed trigger price, and are only ready the first time.
      * @return true if ContractWithPriceDetail can be submitted for purchase
      */
     private boolean isReadyForOrderSubmissionAtCurrentPrice(ContractWithPriceDetail contract, double currentPrice) {
 //        LOGGER.info("=============================[ Checking if " + contract.symbol() +
 //                " is ready for order submission ]=============================");
 
-        return contract.hasFallenBelowPercentage(currentPrice);
+        int signalId = contract.getSignalId();
+        if (signalId == SignalTable.NO_ID) {
+            return contract.hasFallenBelowPercentage(currentPrice);
+        }
+        return model.getSignalTable().hasFallenBelowTrigger(signalId, currentPrice);
     }
     //@@author
 
@@ -742,4 +802,22 @@ public class EWrapperImplementation implements EWrapper {
         }
     }
     //! [historicaltickslast]
+
+    //@@author zenghou
+    /** Lowest and latest opening price of a contract's bars within a batch */
+    private static class PendingPrice {
+        private double lowest;
+        private double latest;
+
+        PendingPrice(double price) {
+            lowest = price;
+            latest = price;
+        }
+
+        void update(double price) {
+            lowest = Math.min(lowest, price);
+            latest = price;
+        }
+    }
+    //@@author
 }
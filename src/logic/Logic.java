@@ -17,6 +17,12 @@ public interface Logic extends Observer {
      */
     void placeLimitBuyOrder(ContractWithPriceDetail contract, double percentageBelow, double sum);
 
+    /**
+     * Makes {@link #getRealTimeBars()} and contracts added later go through {@code subscriptionRotation} instead of
+     * being subscribed to at once; null to subscribe to every contract
+     */
+    void setSubscriptionRotation(SubscriptionRotation subscriptionRotation);
+
     /**
      * Cancels the real time bar subscription for {@code ContractWithPriceDetail}
      */
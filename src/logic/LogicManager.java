@@ -6,6 +6,7 @@ import java.util.Observable;
 import java.util.logging.Logger;
 
 import com.ib.client.EClientSocket;
+import com.ib.client.EShardedWrapper;
 import com.ib.client.Order;
 
 import model.ContractWithPriceDetail;
@@ -18,19 +19,31 @@ public class LogicManager implements Logic{
     private EClientSocket eClientSocket;
     private EWrapperImplementation eWrapperImplementation;
     private Parser parser;
+    private SubscriptionRotation subscriptionRotation; // null unless subscriptions are rotated
 
     private int requestId = 1;
 
     public LogicManager(Model modelManager, EClientSocket eClientSocket, EWrapperImplementation eWrapperImplementation) {
-        this.model = modelManager;
-        this.eClientSocket = eClientSocket;
-        this.eWrapperImplementation = eWrapperImplementation;
+        this(modelManager, eClientSocket, eWrapperImplementation,
+                new Parser("/Users/ZengHou/Desktop/tickersWithPrice.csv", modelManager));
 
-        parser = new Parser("/Users/ZengHou/Desktop/tickersWithPrice.csv", model);
         parser.readDataUpdateModel();
 
         // called after listOfSymbol is populated by parser#readDataUpdateModel()
         model.initializeModel();
+    }
+
+    /**
+     * Creates a LogicManager for a model that the caller has already initialized, e.g. a backtest that sets up its
+     * contracts from recorded bars. {@code parser} is only returned by {@link #getParser()}.
+     */
+    public LogicManager(Model modelManager, EClientSocket eClientSocket, EWrapperImplementation eWrapperImplementation,
+                        Parser parser) {
+        this.model = modelManager;
+        this.eClientSocket = eClientSocket;
+        this.eWrapperImplementation = eWrapperImplementation;
+        this.parser = parser;
+
         model.getUniqueOrderContractList().setLogic(this);
     }
 
@@ -39,6 +52,11 @@ public class LogicManager implements Logic{
         return parser;
     }
 
+    @Override
+    public void setSubscriptionRotation(SubscriptionRotation subscriptionRotation) {
+        this.subscriptionRotation = subscriptionRotation;
+    }
+
     /**
      * Loops through model's contract list and retrieves realtimebars for each stock inside
      * eClientSocket to transmit request message from client to TWS server
@@ -59,10 +77,12 @@ public class LogicManager implements Logic{
             // set unique req Id for each contract
             setRequestIdForContractWithPriceDetail(requestId, contract);
 
-            eClientSocket.reqRealTimeBars(requestId, contract, 5, "MIDPOINT",
-                    true, null);
+            requestRealTimeBars(contract);
             requestId++;
         }
+
+        // requests are batched by the client socket; send the last partial batch right away
+        eClientSocket.flush();
     }
 
     /**
@@ -78,16 +98,37 @@ public class LogicManager implements Logic{
         // set unique req Id for each contract
         setRequestIdForContractWithPriceDetail(requestId, contract);
 
-        eClientSocket.reqRealTimeBars(requestId, contract, 5, "MIDPOINT",
-                true, null);
+        requestRealTimeBars(contract);
 
         requestId++;
     }
 
+    /** Subscribes to the real time bars of {@code contract}, or leaves it to the subscription rotation if there is one */
+    private void requestRealTimeBars(ContractWithPriceDetail contract) {
+        if (subscriptionRotation != null) {
+            subscriptionRotation.add(contract);
+            return;
+        }
+        eClientSocket.reqRealTimeBars(contract.getRequestId(), contract, 5, "MIDPOINT",
+                true, null);
+    }
+
     @Override
     public void cancelRealTimeBarsForContract(ContractWithPriceDetail contract) {
         int contractRequestId = contract.getRequestId();
-        eClientSocket.cancelRealTimeBars(contractRequestId);
+        if (subscriptionRotation != null) {
+            // only cancelled if it is live, and not subscribed to again
+            subscriptionRotation.remove(contract);
+        } else {
+            eClientSocket.cancelRealTimeBars(contractRequestId);
+        }
+
+        // bars that were already in flight for this request are dropped instead of being matched to the contract
+        model.unregisterContractWithPriceDetailRequestId(contract);
+        EShardedWrapper dispatcher = eWrapperImplementation.getDispatcher();
+        if (dispatcher != null) {
+            dispatcher.requestEnded(contractRequestId);
+        }
 
         LOGGER.info("=============================[ Cancelling realTimeBars for ID:  " + requestId + ", Symbol: " +
                 contract.symbol() + " ]=============================");
@@ -105,6 +146,7 @@ public class LogicManager implements Logic{
                     " ]===========================");
 
             contract.setRequestId(reqId);
+            model.registerContractWithPriceDetailRequestId(contract);
         } catch (Exception e) {
             LOGGER.severe("=============================[ Unable to assign reqId to " + contract.symbol() +
                     " ]===========================");
@@ -131,9 +173,17 @@ public class LogicManager implements Logic{
         LOGGER.severe("=============================[ Attempting to place order for " + quantityToBePurchased + " of " +
                 contractWithPriceDetail.symbol() + " at " + limitPrice + " ]===========================");
 
+        placeOrderWithNextId(contractWithPriceDetail, orderToBeSubmitted);
+    }
+
+    /**
+     * Places {@code order} under the next valid order id. Orders can be placed from several symbol lanes at once, so
+     * taking the id and sending the order happen under one lock, which keeps the ids TWS receives increasing.
+     */
+    private synchronized void placeOrderWithNextId(ContractWithPriceDetail contractWithPriceDetail, Order order) {
         int currentOrderId = eWrapperImplementation.getCurrentOrderId();
 
-        eClientSocket.placeOrder(currentOrderId, contractWithPriceDetail, orderToBeSubmitted);
+        eClientSocket.placeOrder(currentOrderId, contractWithPriceDetail, order);
 
         eWrapperImplementation.incrementOrderId();
 
@@ -201,13 +251,7 @@ public class LogicManager implements Logic{
             LOGGER.severe("=============================[ Attempting to place order for " + quantityToBeSold + " of " +
                     contractWithPriceDetail.symbol() + " at market price: " + marketPrice + " ]===========================");
 
-            int currentOrderId = eWrapperImplementation.getCurrentOrderId();
-
-            eClientSocket.placeOrder(currentOrderId, contractWithPriceDetail, sellOrder);
-
-            eWrapperImplementation.incrementOrderId();
-
-            System.out.println("Current id: " + currentOrderId + " next valid is: " + eWrapperImplementation.getCurrentOrderId());
+            placeOrderWithNextId(contractWithPriceDetail, sellOrder);
         }
     }
 
@@ -1,33 +1,56 @@
 //@@author zenghou
 package logic;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.HashMap;
-import java.util.Scanner;
 import java.util.TimerTask;
+import java.util.logging.Logger;
 
 import model.ContractBuilder;
 import model.Model;
 
 /**
  * Parses a CSV file of ticker symbols and adds Contracts to the {@see UniqueContractList} periodically (estimated to be
- * every 30 seconds)
+ * every 30 seconds), or as soon as the file changes once {@link #startWatching()} is called.
+ *
+ * The file is only ever appended to, so the parser remembers how far it has read and parses only the lines appended
+ * since. It reads the whole file again only when the file has been truncated or replaced by a new file.
  */
 public class Parser extends TimerTask {
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
     private Model model;
-    private Scanner scanner;
     private String filepath;
+    private Path path;
+
+    /** Number of bytes of the file that have been parsed; just after a line separator, or at the end of a last line */
+    private long offset = 0;
+    /** Identity of the file that {@code offset} refers to, used to detect that the file has been replaced */
+    private Object fileIdentity = null;
+    /** Size and identity of the file seen by the previous scheduled run, used to tell that a last line is complete */
+    private long sizeAtLastRun = -1;
+    private Object identityAtLastRun = null;
+
+    private WatchService watchService;
 
     public Parser(String filepath, Model model) {
         this.filepath = filepath;
+        this.path = Paths.get(filepath);
         setModel(model);
-
-        try {
-            scanner = new Scanner(new File(filepath));
-        } catch (FileNotFoundException fnfe) {
-            fnfe.printStackTrace();
-        }
     }
 
     /** Called by constructor to set Model of this parser */
@@ -36,55 +59,196 @@ public class Parser extends TimerTask {
     }
 
     /**
-     * Reads CSV file from filepath with Scanner and adds each symbol into Model's {@code tickerPriceHashMap}
+     * Reads CSV file from filepath and adds each symbol into Model's {@code tickerPriceHashMap}
      * for the first time
      */
     public void readDataUpdateModel() {
-        while (scanner.hasNextLine()) {
-            // separate each line with a space
-            String eachLine = scanner.nextLine();
-            String[] tickerPriceList = eachLine.split(" ");
-            String ticker = tickerPriceList[0];
-            Double price = Double.parseDouble(tickerPriceList[1]);
-
-            HashMap<String, Double> tickerPriceHashMap = model.getTickerPriceHashMap();
-            tickerPriceHashMap.put(ticker, price);
+        try {
+            readAppendedLines(false, false);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
         }
     }
 
     /**
-     * Continually opens and checks a CSV file for updated ticker symbols and adds them to the model's
+     * Checks the CSV file for lines appended since the last check and adds their ticker symbols to the model's
      * {@see UniqueContractList}
-     * @throws FileNotFoundException
+     * @param isScheduledRun whether this check is a scheduled run rather than one triggered by a change to the file
+     * @throws IOException
+     */
+    void checkForUpdates(boolean isScheduledRun) throws IOException {
+        readAppendedLines(true, isScheduledRun);
+    }
+
+    /**
+     * Parses the complete lines that have been appended to the file since the last read. A trailing line without a
+     * line separator may still be being written, so it is left unread until its line separator arrives, or until a
+     * scheduled run finds the file unchanged since the previous scheduled run.
+     */
+    private synchronized void readAppendedLines(boolean isUpdatingContractList, boolean isScheduledRun)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Object currentIdentity = identityOf(path);
+            long size = channel.size();
+
+            // file was truncated or rotated, so what has been read no longer matches its contents
+            if (!currentIdentity.equals(fileIdentity) || size < offset) {
+                offset = 0;
+                fileIdentity = currentIdentity;
+            }
+
+            boolean isLastLineComplete = false;
+            if (isScheduledRun) {
+                isLastLineComplete = size == sizeAtLastRun && currentIdentity.equals(identityAtLastRun);
+                sizeAtLastRun = size;
+                identityAtLastRun = currentIdentity;
+            }
+
+            if (size == offset) {
+                return;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (size - offset));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    break;
+                }
+            }
+
+            byte[] bytes = buffer.array();
+            int length = buffer.position();
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] == '\n') {
+                    parseLine(new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8),
+                            isUpdatingContractList);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < length && isLastLineComplete) {
+                parseLine(new String(bytes, lineStart, length - lineStart, StandardCharsets.UTF_8),
+                        isUpdatingContractList);
+                lineStart = length;
+            }
+            offset += lineStart;
+        } catch (NoSuchFileException nsfe) {
+            // file is being rotated; the new file will be read from the start
+            offset = 0;
+            fileIdentity = null;
+            sizeAtLastRun = -1;
+            identityAtLastRun = null;
+        }
+    }
+
+    /**
+     * Parses a line of the form "TICKER PRICE" and adds the ticker to the model if it has not been seen before. A line
+     * whose price is not a number is logged and skipped.
      */
-    private void checkForUpdates() throws FileNotFoundException {
-        Scanner scanner = new Scanner(new File(filepath));
+    private void parseLine(String eachLine, boolean isUpdatingContractList) {
+        String line = eachLine.trim();
+        int separator = line.indexOf(' ');
+        if (separator <= 0) {
+            return;
+        }
 
-        while (scanner.hasNextLine()) {
-            String eachLine = scanner.nextLine();
-            String[] tickerPriceList = eachLine.split(" ");
-            String ticker = tickerPriceList[0];
-            Double price = Double.parseDouble(tickerPriceList[1]);
+        String ticker = line.substring(0, separator);
+        Double price;
+        try {
+            price = Double.parseDouble(line.substring(separator + 1).trim());
+        } catch (NumberFormatException nfe) {
+            LOGGER.warning("=============================[ Skipping malformed line in " + filepath + ": " + line +
+                    " ]=============================");
+            return;
+        }
 
-            HashMap<String, Double> tickerPriceHashMap = model.getTickerPriceHashMap();
+        HashMap<String, Double> tickerPriceHashMap = model.getTickerPriceHashMap();
 
-            // only add to tickerPriceHashMap if ticker is inside
-            if (!tickerPriceHashMap.containsKey(ticker)) {
-                tickerPriceHashMap.put(ticker, price);
+        // only add to tickerPriceHashMap if ticker is not inside
+        if (!tickerPriceHashMap.containsKey(ticker)) {
+            tickerPriceHashMap.put(ticker, price);
 
+            if (isUpdatingContractList) {
                 model.updateUniqueContractList(ContractBuilder.buildContractWithPriceDetail(ticker, price));
             }
+        }
+    }
+
+    /**
+     * Returns an object that identifies the file at {@code path}, which changes when the file is replaced by another
+     * file with the same name. Uses the file key (device and inode) where the file system provides one.
+     */
+    private static Object identityOf(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return fileKey != null ? fileKey : attributes.creationTime();
+    }
+
+    /**
+     * Watches the directory of the CSV file and checks for updates as soon as the file is modified or replaced, so
+     * that new symbols are picked up without waiting for the next scheduled run.
+     */
+    public void startWatching() throws IOException {
+        Path directory = path.toAbsolutePath().getParent();
+        Path fileName = path.getFileName();
+
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread watcher = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    boolean isFileChanged = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (fileName.equals(event.context())) {
+                            isFileChanged = true;
+                        }
+                    }
+                    if (isFileChanged) {
+                        checkForUpdatesQuietly(false);
+                    }
+                    if (!key.reset()) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // watching has been stopped
+            }
+        }, "Parser watcher for " + filepath);
+        watcher.setDaemon(true);
+        watcher.start();
+    }
 
+    /** Stops watching the CSV file; scheduled runs are unaffected */
+    public void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
         }
     }
 
     // To be called by Timer object
     @Override
     public void run() {
+        checkForUpdatesQuietly(true);
+    }
+
+    private void checkForUpdatesQuietly(boolean isScheduledRun) {
         try {
-            checkForUpdates();
-        } catch (FileNotFoundException e) {
+            checkForUpdates(isScheduledRun);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    @Override
+    public boolean cancel() {
+        stopWatching();
+        return super.cancel();
+    }
 }
@@ -0,0 +1,284 @@
+//@@author zenghou
+package logic;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.ib.client.EClientSocket;
+
+import model.ContractWithPriceDetail;
+import model.RealTimeBarStore;
+
+/**
+ * Cycles a watchlist of more contracts than TWS allows real time bar subscriptions for at once through a fixed number
+ * of live slots, when run periodically, e.g. every second by a {@link java.util.Timer}.
+ *
+ * A contract stays live until it has received a bar and been live for the minimum dwell time, or for the maximum dwell
+ * time if no bar arrives, e.g. when it is not trading. Its slot then goes to the most urgent waiting contract: the one
+ * that has waited longest relative to how far its price is from the price that triggers an order, so that a contract
+ * 1% from its trigger is revisited ten times as often as one 10% from it. Live contracts farthest from their trigger
+ * give up their slots first, and those within {@code pinDistancePercent} of it keep theirs, up to half of the slots.
+ *
+ * A contract keeps the request id it was assigned and is subscribed again under it whenever it gets a slot, so its
+ * bars keep going to the same contract and {@see RealTimeBarStore} slot. The requests sent per rotation are capped,
+ * so that rotating leaves room within the pacing limit for orders.
+ */
+public class SubscriptionRotation extends TimerTask {
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    public static final double DEFAULT_PIN_DISTANCE_PERCENT = 1.00;
+    /** Contracts at least this close to their trigger are equally urgent, so that one at its trigger is not infinitely so */
+    private static final double MIN_DISTANCE_PERCENT = 0.25;
+    private static final int BAR_SIZE_SECONDS = 5;
+
+    private final EClientSocket eClientSocket;
+    private final RealTimeBarStore realTimeBarStore;
+    private final int liveSlots;
+    private final int maxRequestsPerRotation;
+    private final long minDwellNanos;
+    private final long maxDwellNanos;
+    private double pinDistancePercent = DEFAULT_PIN_DISTANCE_PERCENT;
+
+    /** Contracts being rotated, by request id */
+    private final Map<Integer, Watch> watchlist = new LinkedHashMap<>();
+    private int liveCount = 0;
+    private long subscriptionCount = 0;
+
+    /**
+     * @param liveSlots real time bar subscriptions that may be open at once
+     * @param maxRequestsPerRotation subscriptions and cancellations sent per rotation, at most
+     * @param minDwell time a contract stays live once it has received a bar
+     * @param maxDwell time a contract stays live without receiving a bar
+     */
+    public SubscriptionRotation(EClientSocket eClientSocket, RealTimeBarStore realTimeBarStore, int liveSlots,
+                                int maxRequestsPerRotation, long minDwell, long maxDwell, TimeUnit unit) {
+        if (liveSlots < 1 || maxRequestsPerRotation < 2) {
+            throw new IllegalArgumentException("at least 1 slot and 2 requests per rotation are needed: " + liveSlots
+                    + ", " + maxRequestsPerRotation);
+        }
+        this.eClientSocket = eClientSocket;
+        this.realTimeBarStore = realTimeBarStore;
+        this.liveSlots = liveSlots;
+        this.maxRequestsPerRotation = maxRequestsPerRotation;
+        this.minDwellNanos = unit.toNanos(minDwell);
+        this.maxDwellNanos = unit.toNanos(maxDwell);
+    }
+
+    /** Live contracts within {@code pinDistancePercent} of their trigger keep their slots, up to half of the slots */
+    public synchronized void setPinDistancePercent(double pinDistancePercent) {
+        this.pinDistancePercent = pinDistancePercent;
+    }
+
+    /**
+     * Adds {@code contract} to the watchlist; it is subscribed when it gets a slot. The contract must have been
+     * assigned its request id and registered with the model.
+     */
+    public void add(ContractWithPriceDetail contract) {
+        add(contract, System.nanoTime());
+    }
+
+    synchronized void add(ContractWithPriceDetail contract, long nowNanos) {
+        watchlist.putIfAbsent(contract.getRequestId(), new Watch(contract, nowNanos));
+    }
+
+    /** Removes {@code contract} from the watchlist, cancelling its real time bars if it is live */
+    public synchronized void remove(ContractWithPriceDetail contract) {
+        Watch watch = watchlist.remove(contract.getRequestId());
+        if (watch != null && watch.isLive) {
+            eClientSocket.cancelRealTimeBars(watch.requestId);
+            liveCount--;
+        }
+    }
+
+    /**
+     * Rotates the slots. A failed rotation is logged rather than thrown, since a task that throws cancels the
+     * {@link java.util.Timer} running it and so stops every later rotation.
+     */
+    @Override
+    public void run() {
+        try {
+            rotate(System.nanoTime());
+        } catch (RuntimeException e) {
+            LOGGER.severe("=============================[ Subscription rotation failed: " + e +
+                    " ]=============================");
+        }
+    }
+
+    /** Fills free slots, then gives the slots of contracts whose dwell is over to the most urgent waiting contracts */
+    synchronized void rotate(long nowNanos) {
+        List<Watch> live = new ArrayList<>();
+        List<Watch> waiting = new ArrayList<>();
+        for (Watch watch : watchlist.values()) {
+            watch.update(nowNanos);
+            if (watch.isLive) {
+                live.add(watch);
+            } else {
+                watch.urgency = (nowNanos - watch.lastVisitNanos) / Math.max(watch.distancePercent,
+                        MIN_DISTANCE_PERCENT);
+                waiting.add(watch);
+            }
+        }
+        if (waiting.isEmpty()) {
+            return;
+        }
+        waiting.sort(Comparator.comparingDouble((Watch watch) -> watch.urgency).reversed());
+
+        // closest to their trigger are pinned, farthest give up their slots first
+        live.sort(Comparator.comparingDouble((Watch watch) -> watch.distancePercent));
+        List<Watch> evictable = new ArrayList<>();
+        int pinned = 0;
+        for (Watch watch : live) {
+            if (watch.distancePercent <= pinDistancePercent && pinned < liveSlots / 2) {
+                pinned++;
+            } else if (watch.isDwellOver(nowNanos)) {
+                evictable.add(watch);
+            }
+        }
+
+        int requests = 0;
+        int next = 0;
+        while (liveCount < liveSlots && next < waiting.size() && requests < maxRequestsPerRotation) {
+            subscribe(waiting.get(next++), nowNanos);
+            requests++;
+        }
+        for (int i = evictable.size() - 1; i >= 0 && next < waiting.size()
+                && requests + 2 <= maxRequestsPerRotation; i--) {
+            unsubscribe(evictable.get(i), nowNanos);
+            subscribe(waiting.get(next++), nowNanos);
+            requests += 2;
+        }
+
+        if (requests > 0) {
+            // requests are batched by the client socket; send them right away
+            eClientSocket.flush();
+        }
+    }
+
+    private void subscribe(Watch watch, long nowNanos) {
+        eClientSocket.reqRealTimeBars(watch.requestId, watch.contract, BAR_SIZE_SECONDS, "MIDPOINT", true, null);
+        watch.isLive = true;
+        watch.subscribedNanos = nowNanos;
+        watch.hasBarSinceSubscribed = false;
+        liveCount++;
+        subscriptionCount++;
+    }
+
+    private void unsubscribe(Watch watch, long nowNanos) {
+        eClientSocket.cancelRealTimeBars(watch.requestId);
+        watch.isLive = false;
+        watch.lastVisitNanos = nowNanos;
+        liveCount--;
+    }
+
+    public synchronized boolean isLive(ContractWithPriceDetail contract) {
+        Watch watch = watchlist.get(contract.getRequestId());
+        return watch != null && watch.isLive;
+    }
+
+    public synchronized int getLiveCount() {
+        return liveCount;
+    }
+
+    public synchronized int getWatchlistSize() {
+        return watchlist.size();
+    }
+
+    /** Number of real time bar subscriptions sent since the rotation was created */
+    public synchronized long getSubscriptionCount() {
+        return subscriptionCount;
+    }
+
+    /**
+     * Returns the time since {@code contract} last received a bar as of the last rotation, or since it was added if
+     * it has not received one; -1 if it is not in the watchlist
+     */
+    public long getStalenessNanos(ContractWithPriceDetail contract) {
+        return getStalenessNanos(contract, System.nanoTime());
+    }
+
+    synchronized long getStalenessNanos(ContractWithPriceDetail contract, long nowNanos) {
+        Watch watch = watchlist.get(contract.getRequestId());
+        return watch == null ? -1 : nowNanos - watch.lastBarNanos;
+    }
+
+    /** Returns the staleness of the contract that has gone longest without a bar */
+    public long getMaxStalenessNanos() {
+        return getMaxStalenessNanos(System.nanoTime());
+    }
+
+    synchronized long getMaxStalenessNanos(long nowNanos) {
+        long maxStaleness = 0;
+        for (Watch watch : watchlist.values()) {
+            maxStaleness = Math.max(maxStaleness, nowNanos - watch.lastBarNanos);
+        }
+        return maxStaleness;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d of %d slots live for %d contracts, %d subscriptions sent, max staleness %.1fs",
+                liveCount, liveSlots, watchlist.size(), subscriptionCount, getMaxStalenessNanos() / 1e9);
+    }
+
+    /** Rotation state of one contract */
+    private class Watch {
+        private final ContractWithPriceDetail contract;
+        private final int requestId;
+
+        private boolean isLive = false;
+        private long subscribedNanos;
+        private boolean hasBarSinceSubscribed;
+        /** When the contract last gave up its slot, or was added */
+        private long lastVisitNanos;
+        /** When the contract was last seen to have received a bar, or was added */
+        private long lastBarNanos;
+        private long barsSeen = 0;
+
+        /** Percentage the price still has to fall to trigger an order; as of the last rotation */
+        private double distancePercent;
+        private double urgency;
+
+        Watch(ContractWithPriceDetail contract, long nowNanos) {
+            this.contract = contract;
+            this.requestId = contract.getRequestId();
+            this.lastVisitNanos = nowNanos;
+            this.lastBarNanos = nowNanos;
+            this.distancePercent = contract.getPercentage();
+        }
+
+        /** Picks up the bars received since the last rotation and the latest price from the real time bar store */
+        void update(long nowNanos) {
+            int slot = realTimeBarStore.slotOf(requestId);
+            if (slot == RealTimeBarStore.NO_SLOT) {
+                LOGGER.warning("=============================[ " + contract.symbol() + " has no real time bars " +
+                        "registered for reqId " + requestId + " ]===========================");
+                return;
+            }
+
+            long bars = realTimeBarStore.totalBarCount(slot);
+            if (bars > barsSeen) {
+                barsSeen = bars;
+                lastBarNanos = nowNanos;
+                if (isLive) {
+                    hasBarSinceSubscribed = true;
+                }
+            }
+            if (realTimeBarStore.barCount(slot) > 0) {
+                double openingPrice = contract.getDayOpeningPrice();
+                double decrease = (openingPrice - realTimeBarStore.close(slot, 0)) / openingPrice * 100.00;
+                distancePercent = contract.getPercentage() - decrease;
+            }
+        }
+
+        boolean isDwellOver(long nowNanos) {
+            long dwell = nowNanos - subscribedNanos;
+            return hasBarSinceSubscribed ? dwell >= minDwellNanos : dwell >= maxDwellNanos;
+        }
+    }
+}
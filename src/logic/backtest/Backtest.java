@@ -0,0 +1,237 @@
+//@@author zenghou
+package logic.backtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.ib.client.Contract;
+
+import logic.EWrapperImplementation;
+import logic.LogicManager;
+import model.ModelManager;
+import model.StrategySettings;
+
+/**
+ * Runs the strategy of {@see EWrapperImplementation} and {@see LogicManager} over recorded bars instead of a
+ * connection to TWS, and reports the profit and loss of the orders it would have placed.
+ *
+ * Each symbol's day opening price is the open of its first bar. Bars are fed through
+ * {@link EWrapperImplementation#realtimeBar} one batch per bar, exactly as they arrive live, while a
+ * {@see SimulatedClient} takes the place of the client socket: it records the real time bar subscriptions and keeps
+ * the orders placed, which are filled by the bars after them. Symbols are independent of each other, so they are
+ * replayed in parallel on a fork-join pool, each symbol's bars in order on one thread at a time.
+ *
+ * The strategy is traded with the given {@see StrategySettings}. Unless they are given, the number of orders is not
+ * capped, so that the result of every symbol is the same however the symbols are scheduled. With a cap, run on one
+ * thread with {@link BacktestClock#BAR_BY_BAR} for the orders to go to the contracts that fell first.
+ */
+public class Backtest {
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    private static final long NO_MORE_BARS = Long.MAX_VALUE;
+    private static final int FIRST_ORDER_ID = 1;
+
+    private final BacktestClock clock;
+    private final int parallelism;
+
+    public Backtest() {
+        this(BacktestClock.MAXIMUM_SPEED, Runtime.getRuntime().availableProcessors());
+    }
+
+    public Backtest(BacktestClock clock, int parallelism) {
+        this.clock = clock;
+        this.parallelism = parallelism;
+    }
+
+    /** Replays {@code universe} with the settings traded live, except for any number of orders */
+    public BacktestReport run(List<BarSeries> universe) throws InterruptedException, ExecutionException {
+        return run(universe, StrategySettings.DEFAULT.withMaxOrders(Math.max(1, universe.size())));
+    }
+
+    /**
+     * Replays {@code universe}, one {@link BarSeries} per symbol, trading with {@code settings}; any later series of
+     * a symbol already in it are skipped. {@code universe} is only read, so it can be shared by concurrent backtests.
+     */
+    public BacktestReport run(List<BarSeries> universe, StrategySettings settings)
+            throws InterruptedException, ExecutionException {
+        long startNanoTime = System.nanoTime();
+
+        Map<String, BarSeries> seriesBySymbol = new LinkedHashMap<>();
+        for (BarSeries series : universe) {
+            if (series.size() == 0) {
+                continue;
+            }
+            if (seriesBySymbol.putIfAbsent(series.getSymbol(), series) != null) {
+                LOGGER.warning("=============================[ Skipping another series of " + series.getSymbol() +
+                        " ]===========================");
+            }
+        }
+
+        ModelManager model = new ModelManager(Math.max(1, seriesBySymbol.size()), settings);
+        for (BarSeries series : seriesBySymbol.values()) {
+            model.getTickerPriceHashMap().put(series.getSymbol(), series.open(0));
+        }
+        model.initializeModel();
+
+        EWrapperImplementation wrapper = new EWrapperImplementation(model);
+        SimulatedClient client = new SimulatedClient(wrapper);
+        LogicManager logic = new LogicManager(model, client, wrapper, null);
+        wrapper.nextValidId(FIRST_ORDER_ID);
+        logic.getRealTimeBars();
+
+        Map<String, Integer> reqIdBySymbol = new HashMap<>();
+        for (Map.Entry<Integer, Contract> subscription : client.getSubscriptions().entrySet()) {
+            reqIdBySymbol.put(subscription.getValue().symbol(), subscription.getKey());
+        }
+        List<SymbolReplay> replays = new ArrayList<>();
+        for (BarSeries series : seriesBySymbol.values()) {
+            replays.add(new SymbolReplay(series, reqIdBySymbol.get(series.getSymbol()), wrapper, client));
+        }
+
+        // on one thread the bars are fed on the calling thread, e.g. by a ParameterSweep that runs backtests in parallel
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            long nextBarTime = nextBarTime(replays);
+            clock.start(nextBarTime);
+
+            while (nextBarTime != NO_MORE_BARS) {
+                feedUntil(replays, clock.awaitBars(nextBarTime), pool);
+                nextBarTime = nextBarTime(replays);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+
+        List<BacktestReport.SymbolResult> results = new ArrayList<>();
+        long bars = 0;
+        for (SymbolReplay replay : replays) {
+            BarSeries series = replay.series;
+            results.add(new BacktestReport.SymbolResult(series.getSymbol(), client.getOrders(series.getSymbol()),
+                    series.close(series.size() - 1)));
+            bars += replay.barsFed;
+        }
+        return new BacktestReport(results, bars, System.nanoTime() - startNanoTime);
+    }
+
+    private static void feedUntil(List<SymbolReplay> replays, long until, ForkJoinPool pool)
+            throws InterruptedException, ExecutionException {
+        if (pool == null) {
+            for (SymbolReplay replay : replays) {
+                replay.feedUntil(until);
+            }
+            return;
+        }
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (SymbolReplay replay : replays) {
+            if (replay.nextBarTime() <= until) {
+                tasks.add(() -> replay.feedUntil(until));
+            }
+        }
+        for (Future<Void> task : pool.invokeAll(tasks)) {
+            task.get();
+        }
+    }
+
+    private static long nextBarTime(List<SymbolReplay> replays) {
+        long nextBarTime = NO_MORE_BARS;
+        for (SymbolReplay replay : replays) {
+            nextBarTime = Math.min(nextBarTime, replay.nextBarTime());
+        }
+        return nextBarTime;
+    }
+
+    /** The bars of one symbol and how far they have been fed; only touched by one thread at a time */
+    private static class SymbolReplay {
+        private final BarSeries series;
+        private final int reqId;
+        private final EWrapperImplementation wrapper;
+        private final SimulatedClient client;
+        private int next;
+        private long barsFed;
+
+        private SymbolReplay(BarSeries series, int reqId, EWrapperImplementation wrapper, SimulatedClient client) {
+            this.series = series;
+            this.reqId = reqId;
+            this.wrapper = wrapper;
+            this.client = client;
+        }
+
+        private long nextBarTime() {
+            return next < series.size() ? series.time(next) : NO_MORE_BARS;
+        }
+
+        /**
+         * Feeds the bars up to {@code until}. Each bar first fills the orders placed before it, then goes to the
+         * strategy, unless its real time bars have been cancelled.
+         */
+        private Void feedUntil(long until) {
+            String symbol = series.getSymbol();
+            while (next < series.size() && series.time(next) <= until) {
+                long time = series.time(next);
+                client.matchOrders(symbol, time, series.open(next), series.high(next), series.low(next));
+
+                if (client.isSubscribed(reqId)) {
+                    wrapper.realtimeBar(reqId, time, series.open(next), series.high(next), series.low(next),
+                            series.close(next), series.volume(next), series.wap(next), series.count(next));
+                    wrapper.onBatchEnd(1);
+                    barsFed++;
+                }
+                next++;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Reads the bars in {@code path}: a journal directory written by {@see EJournal}, a directory of bar files or a
+     * single bar file, see {@link BarSeries}
+     */
+    public static List<BarSeries> readUniverse(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            List<BarSeries> universe = new ArrayList<>();
+            universe.add(BarSeries.readFile(path));
+            return universe;
+        }
+
+        boolean isJournal;
+        try (Stream<Path> files = Files.list(path)) {
+            isJournal = files.anyMatch(file -> file.getFileName().toString().endsWith(".journal"));
+        }
+        return isJournal ? BarSeries.readJournal(path) : BarSeries.readDirectory(path);
+    }
+
+    /**
+     * Usage: Backtest path [speed]
+     * Replays the bars in {@code path} as fast as possible, or {@code speed} times faster than they arrived.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: Backtest <journal directory | bar directory | bar file> [speed]");
+            System.exit(1);
+        }
+        LOGGER.setLevel(Level.WARNING);
+
+        List<BarSeries> universe = readUniverse(Paths.get(args[0]));
+        BacktestClock clock = args.length > 1 ? BacktestClock.scaled(Double.parseDouble(args[1]))
+                : BacktestClock.MAXIMUM_SPEED;
+
+        BacktestReport report = new Backtest(clock, Runtime.getRuntime().availableProcessors()).run(universe);
+        System.out.print(report);
+    }
+}
@@ -0,0 +1,75 @@
+//@@author zenghou
+package logic.backtest;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decides when the bars of a {@see Backtest} are fed to the strategy. {@link #MAXIMUM_SPEED} lets every symbol run
+ * through all of its bars as fast as they can be evaluated; {@link #BAR_BY_BAR} feeds the bars of all symbols
+ * together, one bar time at a time, as fast as they can be evaluated; {@link #scaled(double)} does too, but waits
+ * as long as the bars were apart divided by a speed-up.
+ */
+public interface BacktestClock {
+    BacktestClock MAXIMUM_SPEED = new BacktestClock() {
+        @Override
+        public void start(long firstBarTime) {
+        }
+
+        @Override
+        public long awaitBars(long barTime) {
+            return Long.MAX_VALUE;
+        }
+    };
+
+    /**
+     * Feeds the symbols' bars in the order of their times without waiting, e.g. so that a limited number of orders
+     * goes to the contracts that fell first
+     */
+    BacktestClock BAR_BY_BAR = new BacktestClock() {
+        @Override
+        public void start(long firstBarTime) {
+        }
+
+        @Override
+        public long awaitBars(long barTime) {
+            return barTime;
+        }
+    };
+
+    /** Called once before any bar is fed, with the time of the earliest bar in seconds since the epoch */
+    void start(long firstBarTime);
+
+    /**
+     * Returns once the bars at {@code barTime}, the earliest not fed yet, are due.
+     * @return the time up to which bars can be fed before this is called again
+     */
+    long awaitBars(long barTime);
+
+    /** Returns a clock that replays {@code speed} times faster than the bars arrived, 1 being the original speed */
+    static BacktestClock scaled(double speed) {
+        if (speed <= 0) {
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        }
+
+        return new BacktestClock() {
+            private long firstBarTime;
+            private long startNanoTime;
+
+            @Override
+            public void start(long firstBarTime) {
+                this.firstBarTime = firstBarTime;
+                this.startNanoTime = System.nanoTime();
+            }
+
+            @Override
+            public long awaitBars(long barTime) {
+                long due = startNanoTime + (long) ((barTime - firstBarTime) * 1_000_000_000L / speed);
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                return barTime;
+            }
+        };
+    }
+}
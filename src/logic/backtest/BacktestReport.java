@@ -0,0 +1,176 @@
+//@@author zenghou
+package logic.backtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Results of a {@see Backtest}: the orders placed and filled for each symbol, and the profit and loss of the filled
+ * orders with open positions marked to the close of the symbol's last bar.
+ */
+public class BacktestReport {
+    private final List<SymbolResult> results;
+    private final long bars;
+    private final long elapsedNanos;
+
+    public BacktestReport(List<SymbolResult> results, long bars, long elapsedNanos) {
+        this.results = results;
+        this.bars = bars;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<SymbolResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /** Returns the result of {@code symbol}, or null if it was not in the backtest */
+    public SymbolResult getResult(String symbol) {
+        for (SymbolResult result : results) {
+            if (result.getSymbol().equals(symbol)) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** Number of bars fed to the strategy, excluding those after a symbol's real time bars were cancelled */
+    public long getBars() {
+        return bars;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getOrdersPlaced() {
+        int orders = 0;
+        for (SymbolResult result : results) {
+            orders += result.getOrders().size();
+        }
+        return orders;
+    }
+
+    public int getOrdersFilled() {
+        int orders = 0;
+        for (SymbolResult result : results) {
+            orders += result.getOrdersFilled();
+        }
+        return orders;
+    }
+
+    /** Amount paid for the filled buy orders */
+    public double getCostOfPurchases() {
+        double cost = 0;
+        for (SymbolResult result : results) {
+            cost += result.getCostOfPurchases();
+        }
+        return cost;
+    }
+
+    public double getProfitAndLoss() {
+        double profitAndLoss = 0;
+        for (SymbolResult result : results) {
+            profitAndLoss += result.getProfitAndLoss();
+        }
+        return profitAndLoss;
+    }
+
+    /** Summary of the backtest, followed by each symbol an order was placed for, most profitable first */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Backtest of %d symbols, %d bars in %.2fs: %d orders placed, %d filled, "
+                        + "P&L %.2f%n", results.size(), bars, elapsedNanos / 1e9, getOrdersPlaced(), getOrdersFilled(),
+                getProfitAndLoss()));
+
+        List<SymbolResult> traded = new ArrayList<>();
+        for (SymbolResult result : results) {
+            if (!result.getOrders().isEmpty()) {
+                traded.add(result);
+            }
+        }
+        traded.sort(Comparator.comparingDouble(SymbolResult::getProfitAndLoss).reversed());
+
+        for (SymbolResult result : traded) {
+            builder.append(result).append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    /** Orders and profit and loss of one symbol */
+    public static class SymbolResult {
+        private final String symbol;
+        private final List<SimulatedOrder> orders;
+        private final double lastClose;
+
+        public SymbolResult(String symbol, List<SimulatedOrder> orders, double lastClose) {
+            this.symbol = symbol;
+            this.orders = orders;
+            this.lastClose = lastClose;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public List<SimulatedOrder> getOrders() {
+            return Collections.unmodifiableList(orders);
+        }
+
+        public int getOrdersFilled() {
+            int filled = 0;
+            for (SimulatedOrder order : orders) {
+                if (order.isFilled()) {
+                    filled++;
+                }
+            }
+            return filled;
+        }
+
+        /** Shares held after the filled orders, negative if more were sold than bought */
+        public double getPosition() {
+            double position = 0;
+            for (SimulatedOrder order : orders) {
+                if (order.isFilled()) {
+                    position += order.isBuy() ? order.getQuantity() : -order.getQuantity();
+                }
+            }
+            return position;
+        }
+
+        /** Amount paid for the filled buy orders */
+        public double getCostOfPurchases() {
+            double cost = 0;
+            for (SimulatedOrder order : orders) {
+                if (order.isFilled() && order.isBuy()) {
+                    cost += order.getQuantity() * order.getFillPrice();
+                }
+            }
+            return cost;
+        }
+
+        public double getLastClose() {
+            return lastClose;
+        }
+
+        /** Cash received for the filled orders, less cash paid, plus the position valued at the last close */
+        public double getProfitAndLoss() {
+            double cash = 0;
+            for (SimulatedOrder order : orders) {
+                if (order.isFilled()) {
+                    double value = order.getQuantity() * order.getFillPrice();
+                    cash += order.isBuy() ? -value : value;
+                }
+            }
+            return cash + getPosition() * lastClose;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d orders, %d filled, position %.0f, last close %.4f, P&L %.2f", symbol,
+                    orders.size(), getOrdersFilled(), getPosition(), lastClose, getProfitAndLoss());
+        }
+    }
+}
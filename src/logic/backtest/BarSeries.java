@@ -0,0 +1,238 @@
+//@@author zenghou
+package logic.backtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.ib.client.DefaultEWrapper;
+import com.ib.client.EJournal;
+import com.ib.client.EJournalReader;
+
+/**
+ * The bars of one symbol for a {@see Backtest}, oldest first, kept in primitive columns. Bars can be read from files
+ * of one symbol each, or from the real time bars recorded in an {@see EJournal}.
+ */
+public class BarSeries {
+    /** Time format of bars returned by reqHistoricalData with formatDate 1 */
+    private static final DateTimeFormatter HISTORICAL_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd  HH:mm:ss");
+    private static final String HISTORICAL_DATA_PREFIX = "HistoricalData.";
+    /** Message id and the server version from which conId precedes the symbol, see EClient#reqRealTimeBars */
+    private static final int REQ_REAL_TIME_BARS = 50;
+    private static final int MIN_SERVER_VER_TRADING_CLASS = 68;
+
+    private final String symbol;
+    private int size;
+    private long[] times;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private long[] volumes;
+    private double[] waps;
+    private int[] counts;
+
+    public BarSeries(String symbol) {
+        this.symbol = symbol;
+        allocate(64);
+    }
+
+    public void add(long time, double open, double high, double low, double close, long volume, double wap,
+                    int count) {
+        if (size == times.length) {
+            allocate(size * 2);
+        }
+        times[size] = time;
+        opens[size] = open;
+        highs[size] = high;
+        lows[size] = low;
+        closes[size] = close;
+        volumes[size] = volume;
+        waps[size] = wap;
+        counts[size] = count;
+        size++;
+    }
+
+    private void allocate(int capacity) {
+        times = times == null ? new long[capacity] : Arrays.copyOf(times, capacity);
+        opens = opens == null ? new double[capacity] : Arrays.copyOf(opens, capacity);
+        highs = highs == null ? new double[capacity] : Arrays.copyOf(highs, capacity);
+        lows = lows == null ? new double[capacity] : Arrays.copyOf(lows, capacity);
+        closes = closes == null ? new double[capacity] : Arrays.copyOf(closes, capacity);
+        volumes = volumes == null ? new long[capacity] : Arrays.copyOf(volumes, capacity);
+        waps = waps == null ? new double[capacity] : Arrays.copyOf(waps, capacity);
+        counts = counts == null ? new int[capacity] : Arrays.copyOf(counts, capacity);
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Time of bar {@code i} in seconds since the epoch */
+    public long time(int i) {
+        return times[i];
+    }
+
+    public double open(int i) {
+        return opens[i];
+    }
+
+    public double high(int i) {
+        return highs[i];
+    }
+
+    public double low(int i) {
+        return lows[i];
+    }
+
+    public double close(int i) {
+        return closes[i];
+    }
+
+    public long volume(int i) {
+        return volumes[i];
+    }
+
+    public double wap(int i) {
+        return waps[i];
+    }
+
+    public int count(int i) {
+        return counts[i];
+    }
+
+    /**
+     * Reads the bars of one symbol, named after the file without its extension. Each line is either
+     * "time,open,high,low,close,volume,wap,count", with time in seconds since the epoch or as returned by
+     * reqHistoricalData, or a line printed by {@see EWrapperImplementation#historicalData}. Other lines, e.g. a
+     * header, are skipped.
+     */
+    public static BarSeries readFile(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        int extension = fileName.lastIndexOf('.');
+        BarSeries series = new BarSeries(extension > 0 ? fileName.substring(0, extension) : fileName);
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.startsWith(HISTORICAL_DATA_PREFIX)) {
+                series.addHistoricalDataLine(line);
+            } else if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                series.addCsvLine(line);
+            }
+        }
+        return series;
+    }
+
+    /** Reads every file in {@code directory} with {@link #readFile(Path)}, skipping files without bars */
+    public static List<BarSeries> readDirectory(Path directory) throws IOException {
+        List<BarSeries> universe = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                BarSeries series = readFile(file);
+                if (series.size() > 0) {
+                    universe.add(series);
+                }
+            }
+        }
+        return universe;
+    }
+
+    /**
+     * Reads the real time bars received in the journal in {@code directory}, one series per reqRealTimeBars request,
+     * named after the symbol it requested. Each connection numbers its requests anew, so requests and bars are
+     * matched within the connection they belong to.
+     */
+    public static List<BarSeries> readJournal(Path directory) throws IOException {
+        Map<Long, String> symbols = new HashMap<>();
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            while (reader.next()) {
+                if (reader.kind() == EJournal.OUTBOUND) {
+                    readRealTimeBarsRequest(reader.message().getRawData(), reader.serverVersion(),
+                            reader.connection(), symbols);
+                }
+            }
+        }
+
+        Map<Long, BarSeries> seriesByRequest = new LinkedHashMap<>();
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            reader.replay(new DefaultEWrapper() {
+                @Override
+                public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                                        long volume, double wap, int count) {
+                    long request = requestKey(reader.connection(), reqId);
+                    String symbol = symbols.get(request);
+                    if (symbol != null) {
+                        seriesByRequest.computeIfAbsent(request, key -> new BarSeries(symbol))
+                                .add(time, open, high, low, close, volume, wap, count);
+                    }
+                }
+            });
+        }
+        return new ArrayList<>(seriesByRequest.values());
+    }
+
+    /** Identifies a request by the connection it was sent on and its reqId */
+    private static long requestKey(int connection, int reqId) {
+        return (long) connection << 32 | (reqId & 0xFFFFFFFFL);
+    }
+
+    /** Records the symbol of a reqRealTimeBars request by its connection and reqId */
+    private static void readRealTimeBarsRequest(byte[] message, int serverVersion, int connection,
+                                                Map<Long, String> symbols) {
+        String[] fields = new String(message, StandardCharsets.UTF_8).split("\0", 6);
+        if (fields.length < 5 || !fields[0].equals(Integer.toString(REQ_REAL_TIME_BARS))) {
+            return;
+        }
+        // msgId, version, reqId, conId (from MIN_SERVER_VER_TRADING_CLASS), symbol
+        int symbolField = serverVersion >= MIN_SERVER_VER_TRADING_CLASS ? 4 : 3;
+        symbols.put(requestKey(connection, Integer.parseInt(fields[2])), fields[symbolField]);
+    }
+
+    private void addCsvLine(String line) {
+        String[] fields = line.split(",");
+        add(parseTime(fields[0].trim()), Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+                fields.length > 5 ? Long.parseLong(fields[5].trim()) : 0,
+                fields.length > 6 ? Double.parseDouble(fields[6]) : Double.parseDouble(fields[4]),
+                fields.length > 7 ? Integer.parseInt(fields[7].trim()) : 0);
+    }
+
+    /** Parses "HistoricalData. reqId - Date: time, Open: o, High: h, Low: l, Close: c, Volume: v, Count: n, WAP: w" */
+    private void addHistoricalDataLine(String line) {
+        Map<String, String> values = new HashMap<>();
+        for (String field : line.substring(line.indexOf(" - ") + 3).split(", ")) {
+            int separator = field.indexOf(": ");
+            values.put(field.substring(0, separator), field.substring(separator + 2).trim());
+        }
+        add(parseTime(values.get("Date")), Double.parseDouble(values.get("Open")),
+                Double.parseDouble(values.get("High")), Double.parseDouble(values.get("Low")),
+                Double.parseDouble(values.get("Close")), Long.parseLong(values.get("Volume")),
+                Double.parseDouble(values.get("WAP")), Integer.parseInt(values.get("Count")));
+    }
+
+    /** Parses seconds since the epoch, or a reqHistoricalData time in the system time zone, as TWS sends it */
+    private static long parseTime(String time) {
+        if (time.chars().allMatch(Character::isDigit)) {
+            return Long.parseLong(time);
+        }
+        String normalized = time.contains("  ") ? time : time.replaceFirst(" ", "  ");
+        return LocalDateTime.parse(normalized, HISTORICAL_TIME_FORMAT).atZone(ZoneId.systemDefault())
+                .toEpochSecond();
+    }
+}
@@ -0,0 +1,170 @@
+//@@author zenghou
+package logic.backtest;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import model.StrategySettings;
+
+/**
+ * Runs a {@see Backtest} for every combination in a grid of {@see StrategySettings} over the same bars, and ranks the
+ * settings by their profit and loss.
+ *
+ * The bars are read and decoded into {@see BarSeries} once for the whole sweep, and shared read-only by every
+ * backtest. The backtests run in parallel on a fork-join pool, each on a single thread with
+ * {@link BacktestClock#BAR_BY_BAR}, so that a cap on the number of orders is filled by the contracts that fell first,
+ * as it would be live, and every run of the sweep gives the same results.
+ */
+public class ParameterSweep {
+    private static final Logger LOGGER = Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+
+    private final int parallelism;
+
+    public ParameterSweep(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /** Returns every combination of the given settings, see {@link StrategySettings} */
+    public static List<StrategySettings> grid(double[] minimumPercentageDecreases, double[] percentagesBelowOpening,
+                                              double[] sumsPerOrder, int[] maxOrders) {
+        List<StrategySettings> grid = new ArrayList<>();
+        for (double minimumPercentageDecrease : minimumPercentageDecreases) {
+            for (double percentageBelowOpening : percentagesBelowOpening) {
+                for (double sumPerOrder : sumsPerOrder) {
+                    for (int orders : maxOrders) {
+                        grid.add(new StrategySettings(minimumPercentageDecrease, percentageBelowOpening, sumPerOrder,
+                                orders));
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Backtests each of {@code grid} over {@code universe}.
+     * @return the results, most profitable first
+     */
+    public List<SweepResult> run(List<BarSeries> universe, List<StrategySettings> grid)
+            throws InterruptedException, ExecutionException {
+        List<Callable<SweepResult>> tasks = new ArrayList<>();
+        for (StrategySettings settings : grid) {
+            tasks.add(() -> new SweepResult(settings,
+                    new Backtest(BacktestClock.BAR_BY_BAR, 1).run(universe, settings)));
+        }
+
+        List<SweepResult> results = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Future<SweepResult> task : pool.invokeAll(tasks)) {
+                results.add(task.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        results.sort(Comparator.comparingDouble(SweepResult::getProfitAndLoss).reversed());
+        return results;
+    }
+
+    /** Formats {@code results} as a table, one row per settings in the order given */
+    public static String toTable(List<SweepResult> results) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%4s %9s %8s %10s %6s %7s %7s %12s %12s %8s%n", "rank", "decrease%", "limit%",
+                "sum/order", "max", "orders", "filled", "cost", "P&L", "return%"));
+
+        int rank = 1;
+        for (SweepResult result : results) {
+            StrategySettings settings = result.getSettings();
+            BacktestReport report = result.getReport();
+            double cost = report.getCostOfPurchases();
+
+            table.append(String.format("%4d %9.2f %8.2f %10.2f %6d %7d %7d %12.2f %12.2f %8.2f%n", rank++,
+                    settings.getMinimumPercentageDecrease(), settings.getPercentageBelowOpening(),
+                    settings.getSumPerOrder(), settings.getMaxOrders(), report.getOrdersPlaced(),
+                    report.getOrdersFilled(), cost, report.getProfitAndLoss(),
+                    cost > 0 ? report.getProfitAndLoss() / cost * 100 : 0));
+        }
+        return table.toString();
+    }
+
+    /** The settings of one backtest of a sweep and its report */
+    public static class SweepResult {
+        private final StrategySettings settings;
+        private final BacktestReport report;
+
+        public SweepResult(StrategySettings settings, BacktestReport report) {
+            this.settings = settings;
+            this.report = report;
+        }
+
+        public StrategySettings getSettings() {
+            return settings;
+        }
+
+        public BacktestReport getReport() {
+            return report;
+        }
+
+        public double getProfitAndLoss() {
+            return report.getProfitAndLoss();
+        }
+    }
+
+    /**
+     * Usage: ParameterSweep path [decreases [limits [sums [maxOrders]]]]
+     * Sweeps the bars in {@code path}, see {@link Backtest#readUniverse}, over comma separated lists of the minimum
+     * percentage decrease, the percentage below opening of the limit price, the sum per order and the maximum number
+     * of orders. Lists not given default to a range around the settings traded live.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ParameterSweep <journal directory | bar directory | bar file> "
+                    + "[decreases [limits [sums [maxOrders]]]]");
+            System.exit(1);
+        }
+        // every order placed is logged as severe
+        LOGGER.setLevel(Level.OFF);
+
+        double[] decreases = args.length > 1 ? parseDoubles(args[1]) : new double[] {10, 13, 16, 20};
+        double[] limits = args.length > 2 ? parseDoubles(args[2]) : new double[] {13, 16, 20};
+        double[] sums = args.length > 3 ? parseDoubles(args[3]) : new double[] {StrategySettings.DEFAULT_SUM_PER_ORDER};
+        int[] maxOrders = args.length > 4 ? parseInts(args[4]) : new int[] {StrategySettings.DEFAULT_MAX_ORDERS, 50};
+
+        long start = System.nanoTime();
+        List<BarSeries> universe = Backtest.readUniverse(Paths.get(args[0]));
+        long decoded = System.nanoTime();
+        List<StrategySettings> grid = grid(decreases, limits, sums, maxOrders);
+        List<SweepResult> results = new ParameterSweep(Runtime.getRuntime().availableProcessors()).run(universe, grid);
+
+        System.out.printf("Decoded %d symbols in %.2fs, swept %d settings in %.2fs%n", universe.size(),
+                (decoded - start) / 1e9, grid.size(), (System.nanoTime() - decoded) / 1e9);
+        System.out.print(toTable(results));
+    }
+
+    private static double[] parseDoubles(String list) {
+        String[] values = list.split(",");
+        double[] parsed = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Double.parseDouble(values[i].trim());
+        }
+        return parsed;
+    }
+
+    private static int[] parseInts(String list) {
+        String[] values = list.split(",");
+        int[] parsed = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            parsed[i] = Integer.parseInt(values[i].trim());
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,85 @@
+//@@author zenghou
+package logic.backtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ib.client.Contract;
+import com.ib.client.EClientSocket;
+import com.ib.client.EJavaSignal;
+import com.ib.client.EWrapper;
+import com.ib.client.Order;
+import com.ib.client.TagValue;
+
+/**
+ * Stands in for the connection to TWS during a {@see Backtest}. Real time bar subscriptions are only recorded, as the
+ * backtest feeds the bars itself, and orders are kept as working orders of their symbol until a later bar fills them.
+ *
+ * Each symbol is replayed on one thread, and the strategy places a symbol's orders on the thread its bars are fed on,
+ * so the orders of a symbol are only ever touched by one thread at a time.
+ */
+public class SimulatedClient extends EClientSocket {
+    private final Map<Integer, Contract> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, List<SimulatedOrder>> ordersBySymbol = new ConcurrentHashMap<>();
+
+    public SimulatedClient(EWrapper wrapper) {
+        super(wrapper, new EJavaSignal());
+    }
+
+    @Override
+    public synchronized void reqRealTimeBars(int tickerId, Contract contract, int barSize, String whatToShow,
+                                             boolean useRTH, List<TagValue> realTimeBarsOptions) {
+        subscriptions.put(tickerId, contract);
+    }
+
+    @Override
+    public synchronized void cancelRealTimeBars(int tickerId) {
+        subscriptions.remove(tickerId);
+    }
+
+    @Override
+    public synchronized void placeOrder(int id, Contract contract, Order order) {
+        ordersBySymbol.computeIfAbsent(contract.symbol(), symbol -> new ArrayList<>())
+                .add(new SimulatedOrder(id, contract.symbol(), order));
+    }
+
+    @Override
+    public synchronized void reqAccountUpdates(boolean subscribe, String acctCode) {
+        // there is no account to report on
+    }
+
+    @Override
+    public void flush() {
+        // nothing is sent
+    }
+
+    /** Returns the request ids of the real time bars subscribed to, with the contract of each */
+    public Map<Integer, Contract> getSubscriptions() {
+        return subscriptions;
+    }
+
+    public boolean isSubscribed(int reqId) {
+        return subscriptions.containsKey(reqId);
+    }
+
+    /** Returns the orders placed for {@code symbol} so far, filled or not */
+    public List<SimulatedOrder> getOrders(String symbol) {
+        List<SimulatedOrder> orders = ordersBySymbol.get(symbol);
+        return orders != null ? orders : new ArrayList<>();
+    }
+
+    /** Fills the working orders of {@code symbol} that the bar from {@code open} to {@code low} and {@code high} reaches */
+    public void matchOrders(String symbol, long time, double open, double high, double low) {
+        List<SimulatedOrder> orders = ordersBySymbol.get(symbol);
+        if (orders == null) {
+            return;
+        }
+        for (SimulatedOrder order : orders) {
+            if (!order.isFilled()) {
+                order.match(time, open, high, low);
+            }
+        }
+    }
+}
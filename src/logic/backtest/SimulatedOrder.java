@@ -0,0 +1,81 @@
+//@@author zenghou
+package logic.backtest;
+
+import com.ib.client.Order;
+
+/**
+ * An order placed with the {@see SimulatedClient}, filled in full by the first bar that reaches its price.
+ * A limit buy fills at its limit price, or at the bar's open if the bar opens below it; a limit sell likewise fills at
+ * its limit or a higher open. Any other order fills at the open of the next bar.
+ */
+public class SimulatedOrder {
+    private final int orderId;
+    private final String symbol;
+    private final boolean isBuy;
+    private final boolean isLimit;
+    private final double quantity;
+    private final double limitPrice;
+
+    private boolean isFilled;
+    private double fillPrice;
+    private long fillTime;
+
+    public SimulatedOrder(int orderId, String symbol, Order order) {
+        this.orderId = orderId;
+        this.symbol = symbol;
+        this.isBuy = "BUY".equals(order.getAction());
+        this.isLimit = "LMT".equals(order.getOrderType());
+        this.quantity = order.totalQuantity();
+        this.limitPrice = order.lmtPrice();
+    }
+
+    /** Fills the order if the bar from {@code open} to {@code low} and {@code high} reaches its price */
+    void match(long time, double open, double high, double low) {
+        if (!isLimit) {
+            fill(time, open);
+        } else if (isBuy && low <= limitPrice) {
+            fill(time, Math.min(open, limitPrice));
+        } else if (!isBuy && high >= limitPrice) {
+            fill(time, Math.max(open, limitPrice));
+        }
+    }
+
+    private void fill(long time, double price) {
+        isFilled = true;
+        fillTime = time;
+        fillPrice = price;
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public boolean isBuy() {
+        return isBuy;
+    }
+
+    public double getQuantity() {
+        return quantity;
+    }
+
+    public double getLimitPrice() {
+        return limitPrice;
+    }
+
+    public boolean isFilled() {
+        return isFilled;
+    }
+
+    public double getFillPrice() {
+        return fillPrice;
+    }
+
+    /** Time of the bar that filled the order, in seconds since the epoch */
+    public long getFillTime() {
+        return fillTime;
+    }
+}
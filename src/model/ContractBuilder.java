@@ -14,8 +14,17 @@ public class ContractBuilder {
      * @return a ContractWithPriceDetail object
      */
     public static ContractWithPriceDetail buildContractWithPriceDetail(String ticker, double openingPrice) {
+        return buildContractWithPriceDetail(ticker, openingPrice, MINIMUM_PERCENTAGE_DECREASE);
+    }
+
+    /**
+     * Creates a {@see ContractWithPriceDetail} object that is ready for purchase once its price falls more than
+     * {@code minimumPercentageDecrease} percent below {@code openingPrice}
+     */
+    public static ContractWithPriceDetail buildContractWithPriceDetail(String ticker, double openingPrice,
+                                                                       double minimumPercentageDecrease) {
         ContractWithPriceDetail contract = new ContractWithPriceDetail(openingPrice,
-                MINIMUM_PERCENTAGE_DECREASE);
+                minimumPercentageDecrease);
 
         contract.symbol(ticker);
         contract.secType("STK");
@@ -0,0 +1,62 @@
+//@@author zenghou
+package model;
+
+import java.util.Objects;
+
+import com.ib.client.Contract;
+
+/**
+ * Identifies a {@see Contract} within a {@see UniqueContractList}. Uses the contract id when IB has assigned one;
+ * otherwise the symbol, security type, exchange and currency, which is all that {@see ContractBuilder} sets.
+ */
+public final class ContractKey {
+    private final int conid;
+    private final String symbol;
+    private final String secType;
+    private final String exchange;
+    private final String currency;
+    private final int hash;
+
+    private ContractKey(int conid, String symbol, String secType, String exchange, String currency) {
+        this.conid = conid;
+        this.symbol = symbol;
+        this.secType = secType;
+        this.exchange = exchange;
+        this.currency = currency;
+        this.hash = conid != 0 ? conid : Objects.hash(symbol, secType, exchange, currency);
+    }
+
+    public static ContractKey of(Contract contract) {
+        if (contract.conid() > 0) {
+            return new ContractKey(contract.conid(), null, null, null, null);
+        }
+        return new ContractKey(0, contract.symbol(), contract.getSecType(), contract.exchange(),
+                contract.currency());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ContractKey)) {
+            return false;
+        }
+        ContractKey otherKey = (ContractKey) other;
+        return conid == otherKey.conid
+                && Objects.equals(symbol, otherKey.symbol)
+                && Objects.equals(secType, otherKey.secType)
+                && Objects.equals(exchange, otherKey.exchange)
+                && Objects.equals(currency, otherKey.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return conid != 0 ? String.valueOf(conid) : symbol + " " + secType + " @ " + exchange + " " + currency;
+    }
+}
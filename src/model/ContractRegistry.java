@@ -0,0 +1,62 @@
+//@@author zenghou
+package model;
+
+import com.ib.client.IntHashMap;
+
+/**
+ * Maps the request id of a {@see ContractWithPriceDetail} to the contract itself so that callbacks from TWS (e.g.
+ * realtimeBar) can be matched to their contract in constant time. Contracts are kept in an {@see IntHashMap}, so
+ * lookups do not box the id, walk the contract list or take a lock.
+ */
+public class ContractRegistry {
+    /** Request id of a ContractWithPriceDetail that has not been assigned one */
+    private static final int NO_REQUEST_ID = -1;
+    private static final int DEFAULT_CAPACITY = 2048;
+
+    private final IntHashMap<ContractWithPriceDetail> contracts;
+
+    public ContractRegistry() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ContractRegistry(int expectedNumberOfContracts) {
+        contracts = new IntHashMap<>(expectedNumberOfContracts);
+    }
+
+    /**
+     * Registers {@code contract} under its request id, replacing any contract previously registered under that id.
+     * Contracts without a request id are ignored.
+     */
+    public synchronized void register(ContractWithPriceDetail contract) {
+        int reqId = contract.getRequestId();
+        if (reqId != NO_REQUEST_ID) {
+            contracts.put(reqId, contract);
+        }
+    }
+
+    /** Returns the contract registered under {@code reqId}, or null if there is none */
+    public ContractWithPriceDetail get(int reqId) {
+        return contracts.get(reqId);
+    }
+
+    /** Removes the contract registered under {@code reqId}, if any, and returns it */
+    public synchronized ContractWithPriceDetail remove(int reqId) {
+        return contracts.remove(reqId);
+    }
+
+    /** Removes {@code contract} from the registry only if it is the contract registered under its request id */
+    public synchronized void unregister(ContractWithPriceDetail contract) {
+        int reqId = contract.getRequestId();
+        if (get(reqId) == contract) {
+            remove(reqId);
+        }
+    }
+
+    public synchronized int size() {
+        return contracts.size();
+    }
+
+    public synchronized void clear() {
+        contracts.clear();
+    }
+}
@@ -12,6 +12,7 @@ public class ContractWithPriceDetail extends Contract{
     private double dayOpeningPrice;
     private double percentage;
     private int requestId;
+    private int signalId = SignalTable.NO_ID; // index of the contract in the model's SignalTable
     private double currentPrice;
     private double position; // number of shares
 
@@ -91,6 +92,21 @@ public class ContractWithPriceDetail extends Contract{
         return requestId;
     }
 
+    /** Assigns this Contract its index in a {@see SignalTable} */
+    public void setSignalId(int signalId) {
+        this.signalId = signalId;
+    }
+
+    /** Returns the index of this Contract in a {@see SignalTable}, or {@link SignalTable#NO_ID} if it has none */
+    public int getSignalId() {
+        return signalId;
+    }
+
+    /** Returns the percentage below the day's opening price that the stock has to fall to be ready for purchase */
+    public double getPercentage() {
+        return percentage;
+    }
+
     public double getDayOpeningPrice() {
         return dayOpeningPrice;
     }
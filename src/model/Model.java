@@ -20,9 +20,24 @@ public interface Model {
     /** Returns an String Double Hash Map for the {@see Parser} to populate with ticker and prices */
     HashMap<String, Double> getTickerPriceHashMap();
 
-    /** Retrieves a ContractWithPriceDetails by requestId and returns it to caller*/
+    /**
+     * Retrieves a ContractWithPriceDetails by requestId and returns it to caller. Returns null if no contract is
+     * registered under requestId, e.g. a late callback for a cancelled request.
+     */
     ContractWithPriceDetail retrieveContractWithPriceDetailByReqId(int reqId);
 
+    /** Makes a ContractWithPriceDetail retrievable by the requestId it has just been assigned */
+    void registerContractWithPriceDetailRequestId(ContractWithPriceDetail contract);
+
+    /** Stops a ContractWithPriceDetail from being retrievable by its requestId, e.g. once its request is cancelled */
+    void unregisterContractWithPriceDetailRequestId(ContractWithPriceDetail contract);
+
+    /** Returns the recent real time bars of the contracts whose requestId is registered, by requestId */
+    RealTimeBarStore getRealTimeBarStore();
+
+    /** Returns the buy signals of the contracts whose requestId has been registered, by their signalId */
+    SignalTable getSignalTable();
+
     /** Returns a UniqueOrderContractList object */
     UniqueOrderContractList getUniqueOrderContractList();
 
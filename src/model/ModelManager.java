@@ -9,6 +9,10 @@ import model.exceptions.DuplicateContractException;
 import model.exceptions.FullContractListException;
 
 public class ModelManager implements Model {
+    /** As many contracts as uniqueContractList holds by default, each with the last 10 minutes of 5 second bars */
+    private static final int MAX_CONTRACTS_WITH_BARS = 1000;
+    private static final int BARS_PER_CONTRACT = 120;
+
     /** List of symbols prepared after {@code Parser} reads the csv file */
     private HashMap<String, Double> tickerPriceHashMap;
     private UniqueContractList uniqueContractList;
@@ -16,14 +20,38 @@ public class ModelManager implements Model {
 
     private UniqueContractList uniqueContractToCloseList;
 
+    private RealTimeBarStore realTimeBarStore;
+    private SignalTable signalTable;
+
+    private final StrategySettings strategySettings;
+
     public ModelManager() {
         uniqueContractList = new UniqueContractList();
         tickerPriceHashMap = new HashMap<>();
+        strategySettings = StrategySettings.DEFAULT;
 
         // uniqueOrderContractList holds at most 15 contracts
-        uniqueOrderContractList = new UniqueOrderContractList(15);
+        uniqueOrderContractList = new UniqueOrderContractList(strategySettings.getMaxOrders());
 
         uniqueContractToCloseList = new UniqueContractList();
+
+        realTimeBarStore = new RealTimeBarStore(MAX_CONTRACTS_WITH_BARS, BARS_PER_CONTRACT);
+        signalTable = new SignalTable(MAX_CONTRACTS_WITH_BARS);
+    }
+
+    /**
+     * Creates a model for a universe of {@code maxNumberOfContracts} contracts, traded with {@code strategySettings}
+     * instead of the settings traded live, e.g. for a backtest
+     */
+    public ModelManager(int maxNumberOfContracts, StrategySettings strategySettings) {
+        uniqueContractList = new UniqueContractList(maxNumberOfContracts);
+        tickerPriceHashMap = new HashMap<>();
+        this.strategySettings = strategySettings;
+        uniqueOrderContractList = new UniqueOrderContractList(strategySettings.getMaxOrders(),
+                strategySettings.getPercentageBelowOpening(), strategySettings.getSumPerOrder());
+        uniqueContractToCloseList = new UniqueContractList();
+        realTimeBarStore = new RealTimeBarStore(maxNumberOfContracts, BARS_PER_CONTRACT);
+        signalTable = new SignalTable(maxNumberOfContracts);
     }
 
     /**
@@ -58,16 +86,39 @@ public class ModelManager implements Model {
 
     @Override
     public ContractWithPriceDetail retrieveContractWithPriceDetailByReqId(int reqId) {
-        ContractWithPriceDetail contractWithPriceDetail = null;
-        for (ContractWithPriceDetail contract: uniqueContractList
-                .getContractArrayWithPriceDetailList()) {
-            if (contract.getRequestId() == reqId) {
-                contractWithPriceDetail = contract;
-                break;
-            }
+        return uniqueContractList.getContractByRequestId(reqId);
+    }
+
+    /**
+     * Also adds the contract to the {@see SignalTable}; if the table is full, the contract keeps no signalId and is
+     * evaluated with {@link ContractWithPriceDetail#hasFallenBelowPercentage(double)} instead.
+     */
+    @Override
+    public void registerContractWithPriceDetailRequestId(ContractWithPriceDetail contract) {
+        uniqueContractList.registerRequestId(contract);
+        realTimeBarStore.open(contract.getRequestId());
+        if (contract.getSignalId() == SignalTable.NO_ID) {
+            contract.setSignalId(signalTable.add(contract.getDayOpeningPrice(), contract.getPercentage()));
+        }
+    }
+
+    @Override
+    public void unregisterContractWithPriceDetailRequestId(ContractWithPriceDetail contract) {
+        uniqueContractList.unregisterRequestId(contract);
+        realTimeBarStore.close(contract.getRequestId());
+        if (contract.getSignalId() != SignalTable.NO_ID) {
+            signalTable.retire(contract.getSignalId());
         }
-        assert(contractWithPriceDetail != null);
-        return contractWithPriceDetail;
+    }
+
+    @Override
+    public RealTimeBarStore getRealTimeBarStore() {
+        return realTimeBarStore;
+    }
+
+    @Override
+    public SignalTable getSignalTable() {
+        return signalTable;
     }
 
     /**
@@ -81,7 +132,8 @@ public class ModelManager implements Model {
 
                 String ticker = entry.getKey();
                 Double price = entry.getValue();
-                uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail(ticker, price));
+                uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail(ticker, price,
+                        strategySettings.getMinimumPercentageDecrease()));
             }
         } catch (DuplicateContractException dce) {
             System.out.println(dce.getMessage() + "\n" + "There should not be any duplicate symbols");
@@ -109,7 +161,6 @@ public class ModelManager implements Model {
      * to be ready for order submission {@link ContractWithPriceDetail#hasFallenBelowPercentage(double)}.
      */
     public void addContractWithPriceDetailToOrderList(ContractWithPriceDetail contractWithPriceDetail) {
-        // TODO: check for size of OrderList; if maximum size, stop requesting for data.
         try {
             uniqueOrderContractList.addContract(contractWithPriceDetail);
         } catch (DuplicateContractException dce) {
@@ -0,0 +1,206 @@
+//@@author zenghou
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.ib.client.IntHashMap;
+
+/**
+ * Keeps the last {@code barsPerContract} real time bars of each contract, by the request id of its reqRealTimeBars.
+ *
+ * Bars are stored off-heap, one column per field (time, open, high, low, close, volume, wap and count), each column
+ * holding a ring of {@code barsPerContract} values for every contract slot. All memory is allocated up front, so the
+ * store takes {@link #bytesFor(int, int)} bytes however many bars arrive, and writing or reading a bar allocates
+ * nothing and puts no load on the GC. E.g. 10,000 contracts with 720 bars (an hour of 5 second bars) take 432MB.
+ *
+ * Each contract has a single writer, the thread its realtimeBar callbacks run on. Bars are read by how many bars ago
+ * they arrived, 0 being the latest; a reader on another thread sees a bar completely once {@link #barCount(int)}
+ * includes it, as long as it is not overwritten by newer bars while being read.
+ */
+public class RealTimeBarStore {
+    public static final int NO_SLOT = -1;
+    private static final int BYTES_PER_BAR = 8 * 7 + 4;
+
+    private final int maxContracts;
+    private final int barsPerContract;
+
+    private final ByteBuffer times;
+    private final ByteBuffer opens;
+    private final ByteBuffer highs;
+    private final ByteBuffer lows;
+    private final ByteBuffer closes;
+    private final ByteBuffer volumes;
+    private final ByteBuffer waps;
+    private final ByteBuffer counts;
+    /**
+     * Bars written to each slot so far; a slot's next bar goes to index {@code written % barsPerContract}. Set after
+     * the bar's columns, so that readers that see the count see the complete bar.
+     */
+    private final AtomicLongArray written;
+
+    /** Slots by request id, looked up without a lock by the threads that write and read bars */
+    private final IntHashMap<Integer> slots;
+    private final int[] freeSlots;
+    private int freeSlotCount;
+
+    public RealTimeBarStore(int maxContracts, int barsPerContract) {
+        if (maxContracts <= 0 || barsPerContract <= 0) {
+            throw new IllegalArgumentException("maxContracts and barsPerContract must be positive");
+        }
+        long values = (long) maxContracts * barsPerContract;
+        if (values * Long.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a column of " + values + " bars does not fit in one buffer");
+        }
+
+        this.maxContracts = maxContracts;
+        this.barsPerContract = barsPerContract;
+
+        times = column(values, Long.BYTES);
+        opens = column(values, Double.BYTES);
+        highs = column(values, Double.BYTES);
+        lows = column(values, Double.BYTES);
+        closes = column(values, Double.BYTES);
+        volumes = column(values, Long.BYTES);
+        waps = column(values, Double.BYTES);
+        counts = column(values, Integer.BYTES);
+        written = new AtomicLongArray(maxContracts);
+
+        slots = new IntHashMap<>(maxContracts);
+        freeSlots = new int[maxContracts];
+        for (int i = 0; i < maxContracts; i++) {
+            freeSlots[i] = maxContracts - 1 - i;
+        }
+        freeSlotCount = maxContracts;
+    }
+
+    private static ByteBuffer column(long values, int bytesPerValue) {
+        return ByteBuffer.allocateDirect((int) (values * bytesPerValue)).order(ByteOrder.nativeOrder());
+    }
+
+    /** Returns the off-heap bytes taken by a store of {@code maxContracts} with {@code barsPerContract} each */
+    public static long bytesFor(int maxContracts, int barsPerContract) {
+        return (long) maxContracts * barsPerContract * BYTES_PER_BAR;
+    }
+
+    public int getMaxContracts() {
+        return maxContracts;
+    }
+
+    public int getBarsPerContract() {
+        return barsPerContract;
+    }
+
+    /**
+     * Assigns a slot to the bars of {@code reqId}, which starts out empty. Must be called before the bars are
+     * requested.
+     * @return the slot, or {@link #NO_SLOT} if every slot is taken
+     */
+    public synchronized int open(int reqId) {
+        int existing = slotOf(reqId);
+        if (existing != NO_SLOT) {
+            return existing;
+        }
+        if (freeSlotCount == 0) {
+            return NO_SLOT;
+        }
+
+        int slot = freeSlots[--freeSlotCount];
+        written.set(slot, 0);
+        slots.put(reqId, slot);
+        return slot;
+    }
+
+    /** Frees the slot of {@code reqId}, e.g. once its real time bars are cancelled; later bars for it are dropped */
+    public synchronized void close(int reqId) {
+        Integer slot = slots.remove(reqId);
+        if (slot != null) {
+            freeSlots[freeSlotCount++] = slot;
+        }
+    }
+
+    /** Returns the slot of {@code reqId}, or {@link #NO_SLOT} if it has not been opened */
+    public int slotOf(int reqId) {
+        Integer slot = slots.get(reqId);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    /**
+     * Appends a bar to the bars of {@code reqId}, overwriting its oldest bar once it has {@code barsPerContract}.
+     * @return false if {@code reqId} has not been opened, in which case the bar is dropped
+     */
+    public boolean write(int reqId, long time, double open, double high, double low, double close, long volume,
+                         double wap, int count) {
+        int slot = slotOf(reqId);
+        if (slot == NO_SLOT) {
+            return false;
+        }
+
+        long bar = written.get(slot);
+        int index = slot * barsPerContract + (int) (bar % barsPerContract);
+
+        times.putLong(index * Long.BYTES, time);
+        opens.putDouble(index * Double.BYTES, open);
+        highs.putDouble(index * Double.BYTES, high);
+        lows.putDouble(index * Double.BYTES, low);
+        closes.putDouble(index * Double.BYTES, close);
+        volumes.putLong(index * Long.BYTES, volume);
+        waps.putDouble(index * Double.BYTES, wap);
+        counts.putInt(index * Integer.BYTES, count);
+
+        written.lazySet(slot, bar + 1);
+        return true;
+    }
+
+    /** Returns the number of bars that can be read for {@code slot}, at most {@code barsPerContract} */
+    public int barCount(int slot) {
+        return (int) Math.min(written.get(slot), barsPerContract);
+    }
+
+    /** Returns the number of bars written to {@code slot} since it was opened, including overwritten ones */
+    public long totalBarCount(int slot) {
+        return written.get(slot);
+    }
+
+    public long time(int slot, int barsAgo) {
+        return times.getLong(indexOf(slot, barsAgo) * Long.BYTES);
+    }
+
+    public double open(int slot, int barsAgo) {
+        return opens.getDouble(indexOf(slot, barsAgo) * Double.BYTES);
+    }
+
+    public double high(int slot, int barsAgo) {
+        return highs.getDouble(indexOf(slot, barsAgo) * Double.BYTES);
+    }
+
+    public double low(int slot, int barsAgo) {
+        return lows.getDouble(indexOf(slot, barsAgo) * Double.BYTES);
+    }
+
+    public double close(int slot, int barsAgo) {
+        return closes.getDouble(indexOf(slot, barsAgo) * Double.BYTES);
+    }
+
+    public long volume(int slot, int barsAgo) {
+        return volumes.getLong(indexOf(slot, barsAgo) * Long.BYTES);
+    }
+
+    public double wap(int slot, int barsAgo) {
+        return waps.getDouble(indexOf(slot, barsAgo) * Double.BYTES);
+    }
+
+    public int count(int slot, int barsAgo) {
+        return counts.getInt(indexOf(slot, barsAgo) * Integer.BYTES);
+    }
+
+    /** Returns the column index of the bar that arrived {@code barsAgo} bars before the latest bar of {@code slot} */
+    private int indexOf(int slot, int barsAgo) {
+        long bar = written.get(slot) - 1 - barsAgo;
+        if (barsAgo < 0 || barsAgo >= barsPerContract || bar < 0) {
+            throw new IndexOutOfBoundsException("no bar " + barsAgo + " bars ago in slot " + slot);
+        }
+        return slot * barsPerContract + (int) (bar % barsPerContract);
+    }
+}
@@ -0,0 +1,157 @@
+//@@author zenghou
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Evaluates the buy signal of a universe of contracts, each indexed by a dense id handed out by {@link #add}.
+ *
+ * The opening price, trigger price, latest price and state of the contracts are kept in parallel primitive arrays
+ * rather than in each {@see ContractWithPriceDetail}. The trigger price, the price below which the contract has
+ * fallen more than its percentage below its opening price, is computed once when the contract is added, so that
+ * checking a bar is a single comparison instead of a division, and touches two doubles instead of a whole contract.
+ * A contract is triggered once: later bars below its trigger price are not reported again.
+ *
+ * The arrays are allocated up front for {@code capacity} contracts, so ids stay valid and checks need no lock. Each
+ * contract has a single writer, the thread its bars are evaluated on. {@link #evaluateAll(int[])} and
+ * {@link #setPercentage(double)} go over the whole universe in one loop over the arrays that the JIT can unroll and
+ * vectorize; they should only run while no bars are being evaluated, e.g. after a change of settings.
+ */
+public class SignalTable {
+    /** Id of a contract that is not in a table */
+    public static final int NO_ID = -1;
+
+    private static final byte WATCHING = 0;
+    private static final byte TRIGGERED = 1;
+    /** No longer evaluated, e.g. once its real time bars are cancelled */
+    private static final byte RETIRED = 2;
+
+    private final double[] openingPrices;
+    private final double[] percentages;
+    private final double[] triggerPrices;
+    /** Price of the last bar checked, NaN until the first; NaN is never below a trigger price */
+    private final double[] latestPrices;
+    private final byte[] states;
+    private volatile int size = 0;
+
+    public SignalTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        openingPrices = new double[capacity];
+        percentages = new double[capacity];
+        triggerPrices = new double[capacity];
+        latestPrices = new double[capacity];
+        Arrays.fill(latestPrices, Double.NaN);
+        states = new byte[capacity];
+    }
+
+    /**
+     * Adds a contract that is triggered once its price falls more than {@code percentage} percent below
+     * {@code openingPrice}.
+     * @return the id of the contract, or {@link #NO_ID} if the table is full
+     */
+    public synchronized int add(double openingPrice, double percentage) {
+        int id = size;
+        if (id == openingPrices.length) {
+            return NO_ID;
+        }
+        openingPrices[id] = openingPrice;
+        percentages[id] = percentage;
+        triggerPrices[id] = triggerPrice(openingPrice, percentage);
+        states[id] = WATCHING;
+        // publishes the contract's values to threads that read size
+        size = id + 1;
+        return id;
+    }
+
+    /** Stops evaluating contract {@code id} */
+    public void retire(int id) {
+        states[id] = RETIRED;
+    }
+
+    /**
+     * Checks {@code price} against the trigger price of contract {@code id}. Equivalent to
+     * {@link ContractWithPriceDetail#hasFallenBelowPercentage(double)} without its division, except at the trigger
+     * price itself, which the division can round to just over the percentage.
+     * @return true if the contract is triggered by this price, i.e. it has fallen below its trigger price for the
+     * first time
+     */
+    public boolean hasFallenBelowTrigger(int id, double price) {
+        latestPrices[id] = price;
+        if (price < triggerPrices[id] && states[id] == WATCHING) {
+            states[id] = TRIGGERED;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets the percentage of every contract and recomputes their trigger prices, e.g. when risk adjustments change.
+     * Contracts already triggered stay triggered; {@link #evaluateAll(int[])} finds those the change triggers.
+     */
+    public synchronized void setPercentage(double percentage) {
+        int n = size;
+        Arrays.fill(percentages, 0, n, percentage);
+        for (int i = 0; i < n; i++) {
+            triggerPrices[i] = triggerPrice(openingPrices[i], percentage);
+        }
+    }
+
+    /**
+     * Checks the latest price of every contract that has not been triggered or retired against its trigger price.
+     * @param triggeredIds receives the ids of the contracts triggered; at least {@link #size()} long
+     * @return the number of contracts triggered
+     */
+    public synchronized int evaluateAll(int[] triggeredIds) {
+        int n = size;
+        if (triggeredIds.length < n) {
+            throw new IllegalArgumentException("triggeredIds holds " + triggeredIds.length + " of " + n + " ids");
+        }
+
+        // branch free: every id is written, and kept by advancing past it only if it is triggered
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            triggeredIds[count] = i;
+            count += (latestPrices[i] < triggerPrices[i]) & (states[i] == WATCHING) ? 1 : 0;
+        }
+        for (int i = 0; i < count; i++) {
+            states[triggeredIds[i]] = TRIGGERED;
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return openingPrices.length;
+    }
+
+    public double getOpeningPrice(int id) {
+        return openingPrices[id];
+    }
+
+    public double getPercentage(int id) {
+        return percentages[id];
+    }
+
+    public double getTriggerPrice(int id) {
+        return triggerPrices[id];
+    }
+
+    /** Returns the price of the last bar checked for contract {@code id}, or NaN if none has been */
+    public double getLatestPrice(int id) {
+        return latestPrices[id];
+    }
+
+    public boolean isTriggered(int id) {
+        return states[id] == TRIGGERED;
+    }
+
+    /** Price at which a stock opening at {@code openingPrice} has fallen {@code percentage} percent */
+    private static double triggerPrice(double openingPrice, double percentage) {
+        return openingPrice * (100.00 - percentage) / 100.00;
+    }
+}
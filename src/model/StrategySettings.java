@@ -0,0 +1,67 @@
+//@@author zenghou
+package model;
+
+/**
+ * The settings of the strategy: how far below its opening price a contract has to fall before it is bought, how far
+ * below the opening price the limit buy order is placed, how much is spent on each order and how many orders are
+ * placed at most. {@link #DEFAULT} holds the settings traded live.
+ */
+public class StrategySettings {
+    public static final double DEFAULT_PERCENTAGE_BELOW_OPENING = 16.00;
+    public static final double DEFAULT_SUM_PER_ORDER = 100.00;
+    public static final int DEFAULT_MAX_ORDERS = 15;
+
+    public static final StrategySettings DEFAULT = new StrategySettings(ContractBuilder.MINIMUM_PERCENTAGE_DECREASE,
+            DEFAULT_PERCENTAGE_BELOW_OPENING, DEFAULT_SUM_PER_ORDER, DEFAULT_MAX_ORDERS);
+
+    private final double minimumPercentageDecrease;
+    private final double percentageBelowOpening;
+    private final double sumPerOrder;
+    private final int maxOrders;
+
+    /**
+     * @param minimumPercentageDecrease decrease from the opening price, in percent, beyond which a contract is bought
+     * @param percentageBelowOpening the limit price of a buy order, in percent below the opening price
+     * @param sumPerOrder amount spent on each order, which buys as many whole shares as it can at the limit price
+     * @param maxOrders number of contracts that are bought at most
+     */
+    public StrategySettings(double minimumPercentageDecrease, double percentageBelowOpening, double sumPerOrder,
+                            int maxOrders) {
+        if (minimumPercentageDecrease < 0 || percentageBelowOpening < 0 || percentageBelowOpening >= 100
+                || sumPerOrder <= 0 || maxOrders <= 0) {
+            throw new IllegalArgumentException("invalid strategy settings: " + minimumPercentageDecrease + "%, "
+                    + percentageBelowOpening + "%, " + sumPerOrder + ", " + maxOrders);
+        }
+        this.minimumPercentageDecrease = minimumPercentageDecrease;
+        this.percentageBelowOpening = percentageBelowOpening;
+        this.sumPerOrder = sumPerOrder;
+        this.maxOrders = maxOrders;
+    }
+
+    public double getMinimumPercentageDecrease() {
+        return minimumPercentageDecrease;
+    }
+
+    public double getPercentageBelowOpening() {
+        return percentageBelowOpening;
+    }
+
+    public double getSumPerOrder() {
+        return sumPerOrder;
+    }
+
+    public int getMaxOrders() {
+        return maxOrders;
+    }
+
+    /** Returns these settings with at most {@code maxOrders} orders */
+    public StrategySettings withMaxOrders(int maxOrders) {
+        return new StrategySettings(minimumPercentageDecrease, percentageBelowOpening, sumPerOrder, maxOrders);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("buy below -%.2f%% at -%.2f%%, %.2f per order, at most %d orders",
+                minimumPercentageDecrease, percentageBelowOpening, sumPerOrder, maxOrders);
+    }
+}
@@ -2,41 +2,62 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.Observable;
 
 import model.exceptions.DuplicateContractException;
 import model.exceptions.FullContractListException;
 
 /**
- * Stores a list of unique ContractWithPriceDetail which are to be monitored with live stream of price data
+ * Stores a list of unique ContractWithPriceDetail which are to be monitored with live stream of price data.
+ * Contracts are indexed by their {@see ContractKey}, so adding, checking for and removing a contract take constant
+ * time, while iteration follows the order in which contracts were added. The list is synchronized, as contracts are
+ * added from every lane of an {@see com.ib.client.EShardedWrapper}.
  */
 public class UniqueContractList extends Observable {
     private final int DEFAULT_ARRAY_SIZE = 1000;
     // default array size will be 1000
     private int arraySize = DEFAULT_ARRAY_SIZE;
 
-    private final ArrayList <ContractWithPriceDetail> contractWithPriceDetailArrayList;
+    // insertion-ordered, so that real time bars are requested in the order contracts were added
+    private final LinkedHashMap<ContractKey, ContractWithPriceDetail> contractWithPriceDetailMap;
 
-    // initializes a contractWithPriceDetailArrayList that can hold 1000 contracts
+    // indexes the contracts in contractWithPriceDetailMap by their request id
+    private final ContractRegistry contractRegistry;
+
+    // initializes a contractWithPriceDetailMap that can hold 1000 contracts
     public UniqueContractList() {
-        contractWithPriceDetailArrayList = new ArrayList<>(arraySize);
+        contractWithPriceDetailMap = new LinkedHashMap<>(arraySize * 4 / 3 + 1);
+        contractRegistry = new ContractRegistry(arraySize);
     }
 
     public UniqueContractList(int maxNumberOfContracts) {
         // replace default array size
         arraySize = maxNumberOfContracts;
-        contractWithPriceDetailArrayList = new ArrayList<>(maxNumberOfContracts);
+        contractWithPriceDetailMap = new LinkedHashMap<>(maxNumberOfContracts * 4 / 3 + 1);
+        contractRegistry = new ContractRegistry(maxNumberOfContracts);
     }
 
-    public void addContract(ContractWithPriceDetail contract) throws FullContractListException,
+    public synchronized void addContract(ContractWithPriceDetail contract) throws FullContractListException,
             DuplicateContractException {
-        if (contractWithPriceDetailArrayList.size() == arraySize) {
+        if (contractWithPriceDetailMap.size() == arraySize) {
             throw new FullContractListException();
         }
-        if (contractWithPriceDetailArrayList.contains(contract)) {
+        ContractKey key = ContractKey.of(contract);
+        if (contractWithPriceDetailMap.containsKey(key)) {
             throw new DuplicateContractException();
         }
-        contractWithPriceDetailArrayList.add(contract);
+        contractWithPriceDetailMap.put(key, contract);
+        contractRegistry.register(contract);
+    }
+
+    /** Returns true if a contract with the same {@see ContractKey} as {@code contract} is in the list */
+    public synchronized boolean contains(ContractWithPriceDetail contract) {
+        return contractWithPriceDetailMap.containsKey(ContractKey.of(contract));
+    }
+
+    public synchronized int size() {
+        return contractWithPriceDetailMap.size();
     }
 
     public void updateContractList(ContractWithPriceDetail contract) throws FullContractListException,
@@ -48,11 +69,36 @@ public class UniqueContractList extends Observable {
         notifyObservers(contract);
     }
 
-    public void removeContract(ContractWithPriceDetail contract) {
-        contractWithPriceDetailArrayList.remove(contract);
+    public synchronized void removeContract(ContractWithPriceDetail contract) {
+        ContractWithPriceDetail removed = contractWithPriceDetailMap.remove(ContractKey.of(contract));
+        if (removed != null) {
+            contractRegistry.unregister(removed);
+        }
+    }
+
+    /**
+     * Indexes {@code contract} by its request id. Called after the contract is assigned a request id, which happens
+     * only after it has been added to the list.
+     */
+    public void registerRequestId(ContractWithPriceDetail contract) {
+        contractRegistry.register(contract);
+    }
+
+    /**
+     * Stops matching callbacks with the request id of {@code contract} to it, e.g. after its real time bars are
+     * cancelled. The contract itself stays in the list.
+     */
+    public void unregisterRequestId(ContractWithPriceDetail contract) {
+        contractRegistry.unregister(contract);
+    }
+
+    /** Returns the contract with request id {@code reqId}, or null if no contract is registered under it */
+    public ContractWithPriceDetail getContractByRequestId(int reqId) {
+        return contractRegistry.get(reqId);
     }
 
-    public ArrayList<ContractWithPriceDetail> getContractArrayWithPriceDetailList() {
-        return contractWithPriceDetailArrayList;
+    /** Returns a copy of the contracts in the order they were added */
+    public synchronized ArrayList<ContractWithPriceDetail> getContractArrayWithPriceDetailList() {
+        return new ArrayList<>(contractWithPriceDetailMap.values());
     }
 }
@@ -12,14 +12,29 @@ import model.exceptions.FullContractListException;
  */
 public class UniqueOrderContractList extends UniqueContractList {
     private Logic logic = null;
+    private final double percentageBelowOpening;
+    private final double sumPerOrder;
 
     // use superclass's default constructor
     public UniqueOrderContractList() {
         super();
+        percentageBelowOpening = StrategySettings.DEFAULT_PERCENTAGE_BELOW_OPENING;
+        sumPerOrder = StrategySettings.DEFAULT_SUM_PER_ORDER;
     }
 
     public UniqueOrderContractList(int maxNumberOfContracts) {
+        this(maxNumberOfContracts, StrategySettings.DEFAULT_PERCENTAGE_BELOW_OPENING,
+                StrategySettings.DEFAULT_SUM_PER_ORDER);
+    }
+
+    /**
+     * Creates a list of at most {@code maxNumberOfContracts}, each bought with a limit order
+     * {@code percentageBelowOpening} percent below its opening price for {@code sumPerOrder}
+     */
+    public UniqueOrderContractList(int maxNumberOfContracts, double percentageBelowOpening, double sumPerOrder) {
         super(maxNumberOfContracts);
+        this.percentageBelowOpening = percentageBelowOpening;
+        this.sumPerOrder = sumPerOrder;
     }
 
     public void setLogic(Logic logic) {
@@ -34,7 +49,13 @@ public class UniqueOrderContractList extends UniqueContractList {
     @Override
     public void addContract(ContractWithPriceDetail contract) throws FullContractListException,
             DuplicateContractException {
-        super.addContract(contract);
+        try {
+            super.addContract(contract);
+        } catch (FullContractListException fcle) {
+            // no more orders will be placed, so its real time bars are of no further use
+            cancelRealTimeBarRequestForContract(contract);
+            throw fcle;
+        }
 
         // notify Logic to send order
         newContractAddedNotifyLogicToSendOrder(contract);
@@ -51,7 +72,7 @@ public class UniqueOrderContractList extends UniqueContractList {
         // logic must be set up
         assert(logic != null);
 
-        logic.placeLimitBuyOrder(contract, 16, 100);
+        logic.placeLimitBuyOrder(contract, percentageBelowOpening, sumPerOrder);
     }
 
     private void cancelRealTimeBarRequestForContract(ContractWithPriceDetail contract) {
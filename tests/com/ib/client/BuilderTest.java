@@ -0,0 +1,117 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BuilderTest {
+    private static final long[] LONGS = {
+        0, 1, -1, 9, 10, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+    };
+    private static final double[] DOUBLES = {
+        0.0, -0.0, 1.0, -1.0, 0.001, 0.0001, 171.25, 100, 0.1, 0.3, 0.30000000000000004, 1.0 / 3, 9999999.99,
+        1e7, 12345678.5, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.POSITIVE_INFINITY, -171.125,
+        123456.12345678, 0.123456789
+    };
+
+    @Test
+    public void send_long_encodesLikeStringValueOf() {
+        for (long value : LONGS) {
+            Builder b = new Builder(16);
+            b.send(value);
+            assertEquals(String.valueOf(value) + '\0', contentOf(b));
+        }
+    }
+
+    @Test
+    public void send_double_encodesLikeStringValueOf() {
+        for (double value : DOUBLES) {
+            assertDoubleEncoding(value);
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // prices with up to 8 decimals, and arbitrary doubles
+            int fractionDigits = random.nextInt(9);
+            double price = Math.round(random.nextDouble() * 1e6 * Math.pow(10, fractionDigits))
+                    / Math.pow(10, fractionDigits);
+            assertDoubleEncoding(price);
+            assertDoubleEncoding(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10));
+        }
+    }
+
+    @Test
+    public void sendMax_maxValues_encodeAsEmptyFields() {
+        Builder b = new Builder(16);
+        b.sendMax(Integer.MAX_VALUE);
+        b.sendMax(Double.MAX_VALUE);
+        b.sendMax(7);
+        b.sendMax(7.5);
+        assertEquals("\0\0" + "7\0" + "7.5\0", contentOf(b));
+    }
+
+    @Test
+    public void send_strings_encodeAsUtf8() {
+        Builder b = new Builder(4);
+        String longSymbol = new String(new char[200]).replace('\0', 'A');
+        b.send("AAPL");
+        b.send((String) null);
+        b.send("");
+        b.send("Z\u00fcrich");
+        b.send(longSymbol);
+        b.send("SMART");
+
+        byte[] expected = ("AAPL\0\0\0Z\u00fcrich\0" + longSymbol + "\0SMART\0").getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(expected, Arrays.copyOf(b.buf(), b.size()));
+    }
+
+    @Test
+    public void closeAndSend_reusedBuffer_sendsEachRequestCompletely() throws IOException {
+        RecordingTransport transport = new RecordingTransport();
+        EClientSocket client = new EClientSocket(new DefaultEWrapper(), new EJavaSignal());
+        client.m_socketTransport = transport;
+
+        Builder first = client.prepareBuffer();
+        first.send("a much longer first request");
+        client.closeAndSend(first);
+
+        Builder second = client.prepareBuffer();
+        second.send(42);
+        client.closeAndSend(second);
+
+        assertEquals(first, second);
+        assertEquals(2, transport.sent.size());
+        assertArrayEquals(new byte[] {0, 0, 0, 3, '4', '2', 0}, transport.sent.get(1));
+    }
+
+    private static void assertDoubleEncoding(double value) {
+        Builder b = new Builder(16);
+        b.send(value);
+        assertEquals(String.valueOf(value) + '\0', contentOf(b));
+    }
+
+    private static String contentOf(Builder b) {
+        return new String(b.buf(), 0, b.size(), StandardCharsets.UTF_8);
+    }
+
+    private static class RecordingTransport implements ETransport {
+        private final List<byte[]> sent = new ArrayList<>();
+
+        @Override
+        public void send(EMessage msg) {
+            sent.add(msg.getRawData());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
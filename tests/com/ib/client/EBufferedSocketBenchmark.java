@@ -0,0 +1,89 @@
+package com.ib.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends reqRealTimeBars for 1000 symbols back to back, as LogicManager#getRealTimeBars does, to a stand-in TWS on a
+ * loopback socket, writing each request to the socket against batching them in {@link EBufferedSocket}. Reports the
+ * time until TWS has received every request and how many reads it took TWS to receive them.
+ * Run with {@code java com.ib.client.EBufferedSocketBenchmark}.
+ */
+public class EBufferedSocketBenchmark {
+    private static final int SYMBOLS = 1000;
+    private static final int ROUNDS = 20;
+    private static final int[] BATCH_SIZES = {0, 4 * 1024, 16 * 1024, 64 * 1024};
+
+    // when TWS last received bytes, as seen by waitForQuiet
+    private static long lastByteNanos;
+
+    public static void main(String[] args) throws Exception {
+        // EClient logs every reqRealTimeBars at INFO
+        Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(Level.WARNING);
+
+        Contract[] contracts = new Contract[SYMBOLS];
+        for (int i = 0; i < SYMBOLS; i++) {
+            contracts[i] = new Contract();
+            contracts[i].symbol("SYM" + i);
+            contracts[i].secType("STK");
+            contracts[i].exchange("SMART");
+            contracts[i].currency("USD");
+        }
+
+        System.out.printf("%12s %16s %16s%n", "batch bytes", "us per 1000 reqs", "TWS reads");
+        for (int batchSize : BATCH_SIZES) {
+            EClientSocket client = new EClientSocket(new DefaultEWrapper(), new EJavaSignal());
+            client.setWriteBatching(batchSize, 1, TimeUnit.MILLISECONDS);
+
+            try (LoopbackTws tws = new LoopbackTws()) {
+                tws.connect(client);
+                long elapsed = 0;
+                long reads = 0;
+
+                for (int round = 0; round < ROUNDS; round++) {
+                    long bytesBefore = waitForQuiet(tws);
+                    long readsBefore = tws.reads();
+                    long start = System.nanoTime();
+
+                    for (int reqId = 0; reqId < SYMBOLS; reqId++) {
+                        client.reqRealTimeBars(reqId, contracts[reqId], 5, "MIDPOINT", true, null);
+                    }
+                    client.flush();
+                    long bytesSent = waitForQuiet(tws) - bytesBefore;
+
+                    // the first half of the rounds warms up the JIT
+                    if (round >= ROUNDS / 2) {
+                        elapsed += lastByteNanos - start;
+                        reads += tws.reads() - readsBefore;
+                    }
+                    if (bytesSent == 0) {
+                        throw new IllegalStateException("nothing sent");
+                    }
+                }
+                int measured = ROUNDS - ROUNDS / 2;
+                System.out.printf("%12s %16.0f %16.0f%n", batchSize == 0 ? "unbatched" : batchSize,
+                        elapsed / 1000.0 / measured, reads / (double) measured);
+                client.eDisconnect();
+            }
+        }
+    }
+
+    /** Waits until TWS has received nothing for a while and returns the bytes received so far */
+    private static long waitForQuiet(LoopbackTws tws) throws InterruptedException {
+        long bytes = tws.bytesReceived();
+        long lastChange = System.nanoTime();
+        lastByteNanos = lastChange;
+
+        while (System.nanoTime() - lastChange < TimeUnit.MILLISECONDS.toNanos(20)) {
+            long now = tws.bytesReceived();
+            if (now != bytes) {
+                bytes = now;
+                lastChange = System.nanoTime();
+                lastByteNanos = lastChange;
+            }
+            Thread.yield(); // leaves the CPU to the TWS drainer on small machines
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EBufferedSocketTest {
+    private ServerSocket serverSocket;
+    private Socket clientSide;
+    private DataInputStream serverIn;
+
+    @Before
+    public void connect() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        clientSide = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        Socket serverSide = serverSocket.accept();
+        serverSide.setSoTimeout(5000);
+        serverIn = new DataInputStream(serverSide.getInputStream());
+    }
+
+    @After
+    public void close() throws IOException {
+        clientSide.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void send_belowThreshold_holdsMessagesUntilFlush() throws IOException {
+        EBufferedSocket socket = new EBufferedSocket(clientSide, 1024, 0);
+        socket.send(message(1, 2, 3));
+        socket.send(message(4, 5));
+
+        assertEquals(5, socket.pendingBytes());
+
+        socket.flush();
+
+        assertEquals(0, socket.pendingBytes());
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, read(5));
+    }
+
+    @Test
+    public void send_thresholdReached_writesBatch() throws IOException {
+        EBufferedSocket socket = new EBufferedSocket(clientSide, 4, 0);
+        socket.send(message(1, 2, 3));
+        socket.send(message(4, 5));
+
+        // the first message is written to make room for the second
+        assertEquals(2, socket.pendingBytes());
+        assertArrayEquals(new byte[] {1, 2, 3}, read(3));
+
+        socket.send(message(6, 7));
+
+        assertEquals(0, socket.pendingBytes());
+        assertArrayEquals(new byte[] {4, 5, 6, 7}, read(4));
+    }
+
+    @Test
+    public void send_largerThanBuffer_writesDirectlyInOrder() throws IOException {
+        EBufferedSocket socket = new EBufferedSocket(clientSide, 4, 0);
+        socket.send(message(1));
+        socket.send(message(2, 3, 4, 5, 6));
+
+        assertEquals(0, socket.pendingBytes());
+        assertArrayEquals(new byte[] {1, 2, 3, 4, 5, 6}, read(6));
+    }
+
+    @Test
+    public void send_maxDelay_writesWithoutFlush() throws IOException {
+        EBufferedSocket socket = new EBufferedSocket(clientSide, 1024, TimeUnit.MILLISECONDS.toNanos(1));
+        socket.send(message(1, 2));
+
+        // blocks until the delayed flush, or fails after the read timeout
+        assertArrayEquals(new byte[] {1, 2}, read(2));
+
+        socket.close();
+    }
+
+    @Test
+    public void closeAndFlush_flushesTransport() throws IOException {
+        CountingTransport transport = new CountingTransport();
+        EClientSocket client = new EClientSocket(new DefaultEWrapper(), new EJavaSignal());
+        client.m_socketTransport = transport;
+
+        client.closeAndSend(client.prepareBuffer());
+        assertEquals(0, transport.flushes);
+
+        client.closeAndFlush(client.prepareBuffer());
+        assertEquals(1, transport.flushes);
+    }
+
+    private byte[] read(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        serverIn.readFully(bytes);
+        return bytes;
+    }
+
+    private static EMessage message(int... bytes) {
+        byte[] buf = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            buf[i] = (byte) bytes[i];
+        }
+        return new EMessage(buf, buf.length);
+    }
+
+    private static class CountingTransport implements ETransport {
+        private int flushes;
+
+        @Override
+        public void send(EMessage msg) {
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ib.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends reqRealTimeBars for 1000 symbols, as LogicManager#getRealTimeBars does at startup, and cancels them again
+ * over a loopback socket. Reports requests/sec and bytes allocated per request on the calling thread.
+ * Run with {@code java com.ib.client.EClientEncodeBenchmark}.
+ */
+public class EClientEncodeBenchmark {
+    private static final int SYMBOLS = 1000;
+    private static final int ROUNDS = 50;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        // EClient logs every reqRealTimeBars at INFO
+        Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(Level.WARNING);
+
+        List<Contract> contracts = new ArrayList<>(SYMBOLS);
+        for (int i = 0; i < SYMBOLS; i++) {
+            Contract contract = new Contract();
+            contract.symbol("SYM" + i);
+            contract.secType("STK");
+            contract.exchange("SMART");
+            contract.currency("USD");
+            contracts.add(contract);
+        }
+
+        EClientSocket client = new EClientSocket(new DefaultEWrapper(), new EJavaSignal());
+        try (LoopbackTws tws = new LoopbackTws()) {
+            tws.connect(client);
+            System.out.printf("%8s %14s %14s%n", "round", "requests/sec", "bytes/request");
+
+            for (int round = 1; round <= ROUNDS; round++) {
+                long threadId = Thread.currentThread().getId();
+                long allocatedBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+                long start = System.nanoTime();
+
+                for (int reqId = 0; reqId < SYMBOLS; reqId++) {
+                    client.reqRealTimeBars(reqId, contracts.get(reqId), 5, "TRADES", true, null);
+                }
+                for (int reqId = 0; reqId < SYMBOLS; reqId++) {
+                    client.cancelRealTimeBars(reqId);
+                }
+
+                long elapsed = System.nanoTime() - start;
+                long allocated = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                // earlier rounds warm up the JIT
+                if (round % 10 == 0) {
+                    System.out.printf("%8d %14.0f %14.1f%n", round, 2 * SYMBOLS * 1e9 / elapsed,
+                            allocated / (2.0 * SYMBOLS));
+                }
+            }
+            client.eDisconnect();
+        }
+    }
+}
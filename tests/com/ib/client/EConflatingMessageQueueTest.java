@@ -0,0 +1,114 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class EConflatingMessageQueueTest {
+    private final EConflatingMessageQueue queue = new EConflatingMessageQueue(1024 * 1024);
+
+    @Test
+    public void put_tickPriceForSameReqIdAndTickType_keepsLatestInPlaceOfFirst() {
+        queue.put(tickPrice(7, 1, "10.0"));
+        queue.put(orderStatus(1, "Submitted"));
+        queue.put(tickPrice(7, 1, "10.5"));
+        queue.put(tickPrice(7, 1, "11.0"));
+
+        assertEquals(2, queue.size());
+        assertEquals(text(tickPrice(7, 1, "11.0")), text(queue.poll()));
+        assertEquals(text(orderStatus(1, "Submitted")), text(queue.poll()));
+        assertNull(queue.poll());
+        assertEquals(2, queue.conflatedCount(EDecoder.TICK_PRICE));
+        assertEquals(2, queue.conflatedCount());
+    }
+
+    @Test
+    public void put_differentReqIdsOrTickTypes_areKeptApart() {
+        queue.put(tickPrice(7, 1, "10.0"));
+        queue.put(tickPrice(7, 2, "10.1"));
+        queue.put(tickPrice(8, 1, "20.0"));
+        queue.put(realTimeBar(7, "10.0"));
+
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.conflatedCount());
+    }
+
+    @Test
+    public void put_realTimeBarAfterPoll_isQueuedAgain() {
+        queue.put(realTimeBar(7, "10.0"));
+        queue.put(realTimeBar(7, "10.5"));
+        assertEquals(text(realTimeBar(7, "10.5")), text(queue.poll()));
+
+        queue.put(realTimeBar(7, "11.0"));
+        assertEquals(text(realTimeBar(7, "11.0")), text(queue.poll()));
+        assertEquals(1, queue.conflatedCount(EDecoder.REAL_TIME_BARS));
+    }
+
+    @Test
+    public void put_orderStatusAndErrors_areNeverDropped() {
+        for (int i = 0; i < 100; i++) {
+            queue.put(orderStatus(1, "Submitted"));
+            queue.put(message("4", "2", "1", "201", "Order rejected"));
+        }
+
+        assertEquals(200, queue.size());
+        assertEquals(0, queue.conflatedCount());
+    }
+
+    @Test
+    public void put_overMaxBytes_waitsForPoll() throws Exception {
+        EConflatingMessageQueue bounded = new EConflatingMessageQueue(100);
+        EMessage order = orderStatus(1, "Submitted");
+        int fitting = (100 + order.length() - 1) / order.length();
+        for (int i = 0; i < fitting; i++) {
+            bounded.put(orderStatus(1, "Submitted"));
+        }
+
+        CountDownLatch put = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            bounded.put(orderStatus(2, "Submitted"));
+            put.countDown();
+        });
+        producer.start();
+
+        assertFalse(put.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(fitting, bounded.size());
+
+        bounded.poll();
+        assertTrue(put.await(5, TimeUnit.SECONDS));
+        assertTrue(bounded.maxQueuedBytes() < 100 + order.length());
+        producer.join();
+    }
+
+    private static EMessage tickPrice(int tickerId, int tickType, String price) {
+        return message("1", "6", Integer.toString(tickerId), Integer.toString(tickType), price, "100", "0");
+    }
+
+    private static EMessage realTimeBar(int reqId, String open) {
+        return message("50", "3", Integer.toString(reqId), "1500000000", open, open, open, open, "100", open, "1");
+    }
+
+    private static EMessage orderStatus(int orderId, String status) {
+        return message("3", Integer.toString(orderId), status, "0", "100", "0", "0", "0", "0", "0", "", "0");
+    }
+
+    private static EMessage message(String... fields) {
+        StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            sb.append(field).append('\0');
+        }
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+        return new EMessage(bytes, bytes.length);
+    }
+
+    private static String text(EMessage msg) {
+        return new String(msg.getRawData(), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ib.client;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures EDecoder throughput and allocation per message type, decoding pre-framed messages into a
+ * {@link DefaultEWrapper}. Run with {@code java com.ib.client.EDecoderBenchmark}.
+ */
+public class EDecoderBenchmark {
+    private static final int MESSAGES = 200_000;
+    private static final int ROUNDS = 10;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-16s %12s %12s%n", "message", "ns/msg", "bytes/msg");
+        run("tick price", MessageStreams.tickPrices(MESSAGES, 1000));
+        run("tick size", MessageStreams.tickSizes(MESSAGES, 1000));
+        run("real-time bar", MessageStreams.realTimeBars(MESSAGES, 1000));
+        run("order status", MessageStreams.orderStatuses(MESSAGES));
+        run("open order", MessageStreams.openOrders(MESSAGES / 10));
+    }
+
+    private static void run(String name, byte[] stream) throws IOException {
+        List<EMessage> messages = split(stream);
+        EDecoder decoder = new EDecoder(MessageStreams.SERVER_VERSION, new DefaultEWrapper());
+        long threadId = Thread.currentThread().getId();
+
+        double nanosPerMessage = 0;
+        double bytesPerMessage = 0;
+        // the last round is reported; earlier rounds warm up the JIT
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocatedBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (EMessage msg : messages) {
+                decoder.processMsg(msg);
+            }
+            nanosPerMessage = (System.nanoTime() - start) / (double) messages.size();
+            bytesPerMessage = (THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore)
+                    / (double) messages.size();
+        }
+        System.out.printf("%-16s %12.1f %12.1f%n", name, nanosPerMessage, bytesPerMessage);
+    }
+
+    /** Splits a stream of length-prefixed frames into messages */
+    private static List<EMessage> split(byte[] stream) {
+        List<EMessage> messages = new ArrayList<>();
+        int position = 0;
+        while (position < stream.length) {
+            int length = ((stream[position] & 0xff) << 24) | ((stream[position + 1] & 0xff) << 16)
+                    | ((stream[position + 2] & 0xff) << 8) | (stream[position + 3] & 0xff);
+            byte[] payload = new byte[length];
+            System.arraycopy(stream, position + 4, payload, 0, length);
+            messages.add(new EMessage(payload, length));
+            position += 4 + length;
+        }
+        return messages;
+    }
+}
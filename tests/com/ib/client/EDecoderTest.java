@@ -0,0 +1,100 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EDecoderTest {
+    private static final String[] DOUBLES = {
+        "171.25", "-0.0001", "0", "-0", "5.", ".5", "+3.5", "0.1", "123456789.123456789", "9007199254740993",
+        "1.7976931348623157E308", "1e-7", "NaN", "-Infinity", "0.30000000000000004", "00012.50"
+    };
+
+    @Test
+    public void processMsg_realTimeBar_parsesDoublesLikeDoubleParseDouble() throws IOException {
+        for (String value : DOUBLES) {
+            RecordingWrapper wrapper = new RecordingWrapper();
+            decode(wrapper, "50", "3", "7", "1514903400", value, value, value, value, "-12", value, "2147483647");
+
+            double expected = Double.parseDouble(value);
+            assertEquals(value, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(wrapper.open));
+            assertEquals(value, Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(wrapper.wap));
+            assertEquals(-12L, wrapper.volume);
+            assertEquals(Integer.MAX_VALUE, wrapper.count);
+        }
+    }
+
+    @Test
+    public void processMsg_emptyFields_readAsDefaults() throws IOException {
+        RecordingWrapper wrapper = new RecordingWrapper();
+        decode(wrapper, "50", "3", "7", "", "", "", "", "", "", "", "");
+
+        assertEquals(0L, wrapper.time);
+        assertEquals(0.0, wrapper.open, 0);
+        assertEquals(0, wrapper.count);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void processMsg_malformedInt_throwsNumberFormatException() throws IOException {
+        decode(new RecordingWrapper(), "50", "3", "7x", "1", "1", "1", "1", "1", "1", "1", "1");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void processMsg_intOverflow_throwsNumberFormatException() throws IOException {
+        decode(new RecordingWrapper(), "50", "3", "2147483648", "1", "1", "1", "1", "1", "1", "1", "1");
+    }
+
+    @Test
+    public void processMsg_repeatedTextFields_shareStrings() throws IOException {
+        RecordingWrapper wrapper = new RecordingWrapper();
+        EDecoder decoder = new EDecoder(MessageStreams.SERVER_VERSION, wrapper);
+        // TICK_STRING
+        decoder.processMsg(message("46", "6", "1", "84", "ISLAND"));
+        decoder.processMsg(message("46", "6", "2", "84", "ISLAND"));
+
+        assertEquals("ISLAND", wrapper.strings.get(0));
+        assertSame(wrapper.strings.get(0), wrapper.strings.get(1));
+    }
+
+    private static void decode(EWrapper wrapper, String... fields) throws IOException {
+        new EDecoder(MessageStreams.SERVER_VERSION, wrapper).processMsg(message(fields));
+    }
+
+    private static EMessage message(String... fields) {
+        Builder b = new Builder(256);
+        for (String field : fields) {
+            b.send(field);
+        }
+        byte[] payload = MessageStreams.payloadOf(b);
+        return new EMessage(payload, payload.length);
+    }
+
+    private static class RecordingWrapper extends DefaultEWrapper {
+        private long time;
+        private double open;
+        private long volume;
+        private double wap;
+        private int count;
+        private final List<String> strings = new ArrayList<>();
+
+        @Override
+        public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                long volume, double wap, int count) {
+            this.time = time;
+            this.open = open;
+            this.volume = volume;
+            this.wap = wap;
+            this.count = count;
+        }
+
+        @Override
+        public void tickString(int tickerId, int tickType, String value) {
+            strings.add(value);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void append_manySegments_readsRecordsBackInOrder() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (EJournal journal = new EJournal(directory, 1024)) {
+            journal.appendServerVersion(EClient.MAX_VERSION);
+            for (int i = 0; i < 200; i++) {
+                journal.appendInbound(message("in " + i));
+                journal.appendOutbound(bytes("out " + i), 0, bytes("out " + i).length);
+            }
+        }
+        assertTrue(EJournalReader.segments(directory).size() > 1);
+
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            assertTrue(reader.next());
+            assertEquals(EJournal.SERVER_VERSION, reader.kind());
+            assertEquals(EClient.MAX_VERSION, reader.serverVersion());
+
+            long previous = reader.timestampNanos();
+            for (int i = 0; i < 200; i++) {
+                assertTrue(reader.next());
+                assertEquals(EJournal.INBOUND, reader.kind());
+                assertEquals("in " + i, text(reader.message()));
+                assertTrue(reader.next());
+                assertEquals(EJournal.OUTBOUND, reader.kind());
+                assertEquals("out " + i, text(reader.message()));
+                assertTrue(reader.timestampNanos() >= previous);
+                previous = reader.timestampNanos();
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    public void append_maxSegments_deletesOldestAndReadsFromOldestKept() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (EJournal journal = new EJournal(directory, 1024, 3)) {
+            journal.appendServerVersion(EClient.MAX_VERSION);
+            for (int i = 0; i < 200; i++) {
+                journal.appendInbound(message("in " + i));
+            }
+        }
+        assertEquals(3, EJournalReader.segments(directory).size());
+
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            reader.seek(Long.MIN_VALUE);
+            assertTrue(reader.next());
+            assertEquals(EClient.MAX_VERSION, reader.serverVersion());
+
+            int previous = Integer.parseInt(text(reader.message()).substring(3));
+            assertTrue(previous > 0);
+            while (reader.next()) {
+                int current = Integer.parseInt(text(reader.message()).substring(3));
+                assertEquals(previous + 1, current);
+                previous = current;
+            }
+            assertEquals(199, previous);
+        }
+    }
+
+    @Test
+    public void connection_reconnected_numbersRecordsByConnection() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        try (EJournal journal = new EJournal(directory, 1024)) {
+            journal.appendServerVersion(EClient.MAX_VERSION);
+            journal.appendInbound(message("first"));
+            journal.appendServerVersion(EClient.MAX_VERSION);
+            journal.appendInbound(message("second"));
+        }
+
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            List<String> connections = new ArrayList<>();
+            while (reader.next()) {
+                if (reader.kind() == EJournal.INBOUND) {
+                    connections.add(text(reader.message()) + " " + reader.connection());
+                }
+            }
+            assertEquals("[first 1, second 2]", connections.toString());
+
+            reader.seek(Long.MIN_VALUE);
+            assertEquals(0, reader.connection());
+            assertTrue(reader.next());
+            assertEquals(1, reader.connection());
+        }
+    }
+
+    @Test
+    public void seek_timestamp_startsAtFirstRecordAtOrAfterIt() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        List<Long> timestamps = new ArrayList<>();
+        try (EJournal journal = new EJournal(directory, 4096)) {
+            journal.appendServerVersion(EClient.MAX_VERSION);
+            for (int i = 0; i < 5000; i++) {
+                journal.appendInbound(message("msg " + i));
+            }
+        }
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            while (reader.next()) {
+                if (reader.kind() == EJournal.INBOUND) {
+                    timestamps.add(reader.timestampNanos());
+                }
+            }
+        }
+
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            int target = 3210;
+            // timestamps can repeat, so the first record with the target's timestamp is expected
+            int expected = timestamps.indexOf(timestamps.get(target));
+            reader.seek(timestamps.get(target));
+
+            assertTrue(reader.next());
+            assertEquals("msg " + expected, text(reader.message()));
+            assertEquals(EClient.MAX_VERSION, reader.serverVersion());
+        }
+    }
+
+    @Test
+    public void replay_recordedSession_redrivesBarsIntoWrapper() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        List<String> liveBars = new ArrayList<>();
+        CountDownLatch received = new CountDownLatch(50);
+
+        try (StubTws tws = new StubTws(0, 10_000, 1); EJournal journal = new EJournal(directory, 64 * 1024)) {
+            EReaderSignal signal = new EJavaSignal();
+            EClientSocket client = new EClientSocket(new DefaultEWrapper() {
+                @Override
+                public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                        long volume, double wap, int count) {
+                    synchronized (liveBars) {
+                        liveBars.add(reqId + " " + time + " " + open + " " + close);
+                    }
+                    received.countDown();
+                }
+            }, signal);
+            client.setJournal(journal);
+            client.eConnect("127.0.0.1", tws.getPort(), 0);
+
+            EReader reader = new EReader(client, signal);
+            reader.start();
+            Thread processor = new Thread(() -> {
+                while (client.isConnected()) {
+                    signal.waitForSignal();
+                    try {
+                        reader.processMsgs();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            processor.start();
+
+            Contract contract = new Contract();
+            contract.symbol("AAPL");
+            contract.secType("STK");
+            contract.exchange("SMART");
+            contract.currency("USD");
+            client.reqRealTimeBars(7, contract, 5, "MIDPOINT", true, null);
+
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+            client.setJournal(null);
+            client.eDisconnect();
+            processor.join(5000);
+        }
+
+        List<String> replayedBars = new ArrayList<>();
+        CountDownLatch connectAck = new CountDownLatch(1);
+        int outboundRequests = 0;
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            reader.replay(new DefaultEWrapper() {
+                @Override
+                public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                        long volume, double wap, int count) {
+                    replayedBars.add(reqId + " " + time + " " + open + " " + close);
+                }
+
+                @Override
+                public void connectAck() {
+                    connectAck.countDown();
+                }
+            });
+        }
+        try (EJournalReader reader = new EJournalReader(directory)) {
+            while (reader.next()) {
+                if (reader.kind() == EJournal.OUTBOUND) {
+                    outboundRequests++;
+                }
+            }
+        }
+
+        synchronized (liveBars) {
+            assertEquals(liveBars.subList(0, replayedBars.size()), replayedBars);
+            assertTrue(replayedBars.size() >= 50);
+        }
+        assertEquals(0, connectAck.getCount());
+        // startAPI and reqRealTimeBars
+        assertEquals(2, outboundRequests);
+    }
+
+    private static EMessage message(String text) {
+        byte[] bytes = bytes(text);
+        return new EMessage(bytes, bytes.length);
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static String text(EMessage msg) {
+        return new String(msg.getRawData(), StandardCharsets.US_ASCII);
+    }
+}
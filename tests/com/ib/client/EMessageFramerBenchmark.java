@@ -0,0 +1,108 @@
+package com.ib.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares framing a recorded stream of REAL_TIME_BARS messages the way EReader used to (a byte[] per message copied
+ * into an EMessage, and copied again by getStream) against {@link EMessageFramer}, with and without decoding the
+ * messages. Reports messages/sec and bytes allocated per message.
+ * Run with {@code java com.ib.client.EMessageFramerBenchmark}.
+ */
+public class EMessageFramerBenchmark {
+    private static final int MESSAGES = 200_000;
+    private static final int ROUNDS = 10;
+    // a typical TCP segment payload
+    private static final int BYTES_PER_READ = 1460;
+
+    // consumed so that the JIT cannot drop the framing
+    private static long blackhole;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        byte[] recorded = MessageStreams.realTimeBars(MESSAGES, 1000);
+        System.out.printf("%-18s %14s %14s%n", "path", "msgs/sec", "bytes/msg");
+
+        for (int round = 0; round < ROUNDS; round++) {
+            boolean isReported = round == ROUNDS - 1; // earlier rounds warm up the JIT
+            run("copying (before)", isReported, () -> copying(recorded, false));
+            run("framer", isReported, () -> framed(recorded, false));
+            run("copying + decode", isReported, () -> copying(recorded, true));
+            run("framer + decode", isReported, () -> framed(recorded, true));
+        }
+        System.out.println("(checksum " + blackhole + ")");
+    }
+
+    private static void run(String name, boolean isReported, Round round) throws IOException {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        round.run();
+
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (isReported) {
+            System.out.printf("%-18s %14.0f %14.1f%n", name, MESSAGES * 1e9 / elapsed,
+                    allocated / (double) MESSAGES);
+        }
+    }
+
+    /** EReader's V100+ path before EMessageFramer */
+    private static void copying(byte[] recorded, boolean isDecoding) throws IOException {
+        DataInputStream in = new DataInputStream(socketLike(recorded));
+        EDecoder decoder = new EDecoder(MessageStreams.SERVER_VERSION, new DefaultEWrapper());
+        for (int i = 0; i < MESSAGES; i++) {
+            int msgSize = in.readInt();
+            byte[] buf = new byte[msgSize];
+            in.readFully(buf);
+
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            copy.write(buf, 0, msgSize);
+            byte[] copyAgain = copy.toByteArray();
+            EMessage msg = new EMessage(copyAgain, copyAgain.length);
+            InputStream stream = msg.getStream();
+            if (isDecoding) {
+                decoder.processMsg(msg);
+            } else {
+                blackhole += stream.available();
+            }
+        }
+    }
+
+    private static void framed(byte[] recorded, boolean isDecoding) throws IOException {
+        InputStream in = socketLike(recorded);
+        EMessageFramer framer = new EMessageFramer(in::read);
+        EDecoder decoder = new EDecoder(MessageStreams.SERVER_VERSION, new DefaultEWrapper());
+        for (int i = 0; i < MESSAGES; i++) {
+            EMessage msg = framer.nextMessage();
+            InputStream stream = msg.getStream();
+            if (isDecoding) {
+                decoder.processMsg(msg);
+            } else {
+                blackhole += stream.available();
+            }
+            msg.release();
+        }
+    }
+
+    /** Returns a stream over {@code recorded} that hands out at most one TCP segment per read */
+    private static InputStream socketLike(byte[] recorded) {
+        return new ByteArrayInputStream(recorded) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, BYTES_PER_READ));
+            }
+        };
+    }
+
+    private interface Round {
+        void run() throws IOException;
+    }
+}
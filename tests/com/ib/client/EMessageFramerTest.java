@@ -0,0 +1,68 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EMessageFramerTest {
+    @Test
+    public void nextMessage_framesAcrossReadsAndChunks() throws IOException {
+        List<byte[]> payloads = new ArrayList<>();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(stream);
+        for (int i = 0; i < 5000; i++) {
+            // sizes chosen so that frames straddle chunk boundaries
+            byte[] payload = new byte[(i * 37) % 301];
+            for (int j = 0; j < payload.length; j++) {
+                payload[j] = (byte) (i + j);
+            }
+            payloads.add(payload);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }
+
+        // deliver at most 1000 bytes per read, like a socket would
+        InputStream in = new ByteArrayInputStream(stream.toByteArray());
+        EMessageFramer framer = new EMessageFramer((buf, off, len) -> in.read(buf, off, Math.min(len, 1000)));
+
+        for (byte[] payload : payloads) {
+            EMessage msg = framer.nextMessage();
+            assertArrayEquals(payload, msg.getRawData());
+            msg.release();
+        }
+        // released chunks are reused instead of allocating one per CHUNK_SIZE bytes read
+        assertTrue(stream.size() > 10 * EMessageFramer.CHUNK_SIZE);
+        assertTrue(framer.allocatedChunks() <= 2);
+    }
+
+    @Test
+    public void nextMessage_messageLargerThanChunk_isFramed() throws IOException {
+        byte[] payload = new byte[EMessageFramer.CHUNK_SIZE * 3];
+        payload[payload.length - 1] = 42;
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(payload.length);
+        out.write(payload);
+
+        InputStream in = new ByteArrayInputStream(stream.toByteArray());
+        EMessageFramer framer = new EMessageFramer(in::read);
+
+        assertArrayEquals(payload, framer.nextMessage().getRawData());
+    }
+
+    @Test(expected = EOFException.class)
+    public void nextMessage_truncatedMessage_throwsEOFException() throws IOException {
+        InputStream in = new ByteArrayInputStream(new byte[] {0, 0, 0, 10, 1, 2, 3});
+        new EMessageFramer(in::read).nextMessage();
+    }
+}
@@ -0,0 +1,182 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ENioSelectorTest {
+    private static final int BARS = 5000;
+
+    private ENioSelector selector;
+
+    @Before
+    public void openSelector() throws IOException {
+        selector = new ENioSelector();
+    }
+
+    @After
+    public void closeSelector() throws IOException {
+        selector.close();
+    }
+
+    @Test
+    public void start_twoClients_shareSelectorThread() throws Exception {
+        try (LoopbackTws firstTws = new LoopbackTws(); LoopbackTws secondTws = new LoopbackTws()) {
+            Connection first = new Connection(selector, firstTws, BARS);
+            Connection second = new Connection(selector, secondTws, BARS);
+            byte[] bars = MessageStreams.realTimeBars(BARS, 10);
+
+            sendInPieces(firstTws, bars);
+            sendInPieces(secondTws, bars);
+
+            assertTrue(first.wrapper.received.await(10, TimeUnit.SECONDS));
+            assertTrue(second.wrapper.received.await(10, TimeUnit.SECONDS));
+            assertEquals(2, selector.connectionCount());
+            assertFalse(first.reader.isAlive());
+            assertFalse(second.reader.isAlive());
+
+            first.close();
+            second.close();
+        }
+    }
+
+    /** More messages than fit in the queue arrive at once; the reader signals before it waits for room */
+    @Test
+    public void start_burstIntoSmallQueue_deliversEveryMessage() throws Exception {
+        try (LoopbackTws tws = new LoopbackTws()) {
+            Connection connection = new Connection(selector, tws, BARS, new ESpscMessageQueue(16, EWaitStrategy.PARK));
+
+            tws.send(MessageStreams.realTimeBars(BARS, 10));
+
+            assertTrue(connection.wrapper.received.await(10, TimeUnit.SECONDS));
+            connection.close();
+        }
+    }
+
+    /** A connection whose queue is full pauses rather than blocking the selector thread the others are read on */
+    @Test
+    public void start_fullQueue_otherConnectionsStillRead() throws Exception {
+        try (LoopbackTws stalledTws = new LoopbackTws(); LoopbackTws otherTws = new LoopbackTws()) {
+            Connection stalled = new Connection(selector, stalledTws, BARS,
+                    new ESpscMessageQueue(16, EWaitStrategy.PARK));
+            Connection other = new Connection(selector, otherTws, BARS);
+            CountDownLatch gate = new CountDownLatch(1);
+            stalled.wrapper.gate = gate;
+
+            stalledTws.send(MessageStreams.realTimeBars(BARS, 10));
+            otherTws.send(MessageStreams.realTimeBars(BARS, 10));
+
+            assertTrue(other.wrapper.received.await(10, TimeUnit.SECONDS));
+            assertTrue(stalled.wrapper.received.getCount() > 0);
+
+            gate.countDown();
+            assertTrue(stalled.wrapper.received.await(10, TimeUnit.SECONDS));
+            stalled.close();
+            other.close();
+        }
+    }
+
+    @Test
+    public void start_twsClosesConnection_reportsConnectionClosed() throws Exception {
+        // closed by the test itself, so not a try-with-resources resource
+        LoopbackTws tws = new LoopbackTws();
+        try {
+            Connection connection = new Connection(selector, tws, 0);
+
+            tws.close();
+
+            assertTrue(connection.wrapper.errors.await(10, TimeUnit.SECONDS));
+            // the processing thread stops once the reader has disconnected the client
+            connection.processor.join(10_000);
+            assertFalse(connection.client.isConnected());
+        } finally {
+            tws.close();
+        }
+    }
+
+    /** Splits {@code frames} at arbitrary points, so that messages arrive in several reads */
+    private static void sendInPieces(LoopbackTws tws, byte[] frames) throws Exception {
+        int piece = 1000;
+        for (int offset = 0; offset < frames.length; offset += piece) {
+            tws.send(frames, offset, Math.min(piece, frames.length - offset));
+            Thread.sleep(0, 100_000);
+        }
+    }
+
+    private static class Connection {
+        private final RecordingWrapper wrapper;
+        private final EClientSocket client;
+        private final EReader reader;
+        private final Thread processor;
+
+        Connection(ENioSelector selector, LoopbackTws tws, int expectedBars) throws Exception {
+            this(selector, tws, expectedBars, new ELinkedMessageQueue());
+        }
+
+        Connection(ENioSelector selector, LoopbackTws tws, int expectedBars, EMessageQueue queue) throws Exception {
+            EReaderSignal signal = new EJavaSignal();
+            wrapper = new RecordingWrapper(expectedBars);
+            client = new EClientSocket(wrapper, signal, selector);
+            tws.connect(client);
+
+            reader = new EReader(client, signal, queue);
+            reader.start();
+            processor = new Thread(() -> {
+                while (client.isConnected()) {
+                    signal.waitForSignal();
+                    try {
+                        reader.processMsgs();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            processor.start();
+        }
+
+        void close() throws InterruptedException {
+            client.eDisconnect();
+            processor.join(10_000);
+        }
+    }
+
+    private static class RecordingWrapper extends DefaultEWrapper {
+        private final CountDownLatch received;
+        private final CountDownLatch errors = new CountDownLatch(1);
+        // bars are held here until it is opened, to stall the processing thread
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+
+        RecordingWrapper(int expectedBars) {
+            received = new CountDownLatch(expectedBars);
+        }
+
+        @Override
+        public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                long volume, double wap, int count) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.countDown();
+        }
+
+        @Override
+        public void error(Exception e) {
+            errors.countDown();
+        }
+
+        @Override
+        public void error(int id, int errorCode, String errorMsg) {
+            errors.countDown();
+        }
+    }
+}
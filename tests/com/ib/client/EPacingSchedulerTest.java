@@ -0,0 +1,282 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class EPacingSchedulerTest {
+    private static final int PLACE_ORDER = 3;
+    private static final int REQ_CONTRACT_DATA = 9;
+    private static final int REQ_HISTORICAL_DATA = 20;
+    private static final int REQ_REAL_TIME_BARS = 50;
+    private static final int CANCEL_REAL_TIME_BARS = 51;
+    private static final int CANCEL_HISTORICAL_DATA = 25;
+
+    @Test
+    public void send_overRate_writesAtRateAfterBurst() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(100, 5);
+        RecordingTransport transport = new RecordingTransport(25);
+        pacing.attach(transport);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 25; i++) {
+            pacing.send(request(REQ_REAL_TIME_BARS, i));
+        }
+        assertTrue(transport.written.await(5, TimeUnit.SECONDS));
+
+        // 5 at once, then 20 at 100/s
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(190));
+        assertEquals(25, pacing.sentCount(EPacingScheduler.Lane.SUBSCRIPTIONS));
+        // the sender may write the burst while the rest are still being queued
+        assertTrue(pacing.maxQueueDepth(EPacingScheduler.Lane.SUBSCRIPTIONS) > 5);
+        assertEquals(0, pacing.queueDepth(EPacingScheduler.Lane.SUBSCRIPTIONS));
+        assertTrue(pacing.maxWaitNanos(EPacingScheduler.Lane.SUBSCRIPTIONS) > 0);
+        assertTrue(pacing.averageWaitNanos(EPacingScheduler.Lane.SUBSCRIPTIONS) > 0);
+        for (int i = 0; i < 25; i++) {
+            assertEquals(i, transport.secondFieldOf(i));
+        }
+        pacing.close();
+    }
+
+    @Test
+    public void send_orderBehindSubscriptions_writtenFirst() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(50, 1);
+        RecordingTransport transport = new RecordingTransport(12);
+        pacing.attach(transport);
+
+        for (int i = 0; i < 10; i++) {
+            pacing.send(request(REQ_REAL_TIME_BARS, i));
+        }
+        pacing.send(request(PLACE_ORDER, 100));
+        pacing.send(request(CANCEL_REAL_TIME_BARS, 0));
+        assertTrue(transport.written.await(5, TimeUnit.SECONDS));
+
+        // the first subscription may have gone out before the order was queued
+        int order = transport.msgIds.indexOf(PLACE_ORDER);
+        assertTrue(order <= 1);
+        assertEquals(1, pacing.sentCount(EPacingScheduler.Lane.ORDERS));
+        // orders are flushed as soon as they are written
+        assertTrue(transport.flushes >= 1);
+        // a cancellation stays behind the subscriptions queued before it
+        assertEquals(11, transport.msgIds.indexOf(CANCEL_REAL_TIME_BARS));
+        pacing.close();
+    }
+
+    @Test
+    public void setLaneRate_historicalLimited_subscriptionsOvertake() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(1000, 10);
+        pacing.setLaneRate(EPacingScheduler.Lane.HISTORICAL, 10, 1);
+        RecordingTransport transport = new RecordingTransport(6);
+        pacing.attach(transport);
+
+        pacing.send(request(REQ_HISTORICAL_DATA, 1));
+        pacing.send(request(REQ_HISTORICAL_DATA, 2));
+        pacing.send(request(REQ_HISTORICAL_DATA, 3));
+        for (int i = 0; i < 3; i++) {
+            pacing.send(request(REQ_REAL_TIME_BARS, i));
+        }
+        assertTrue(transport.written.await(5, TimeUnit.SECONDS));
+
+        // the second and third historical requests wait 100ms each for their lane
+        assertEquals(REQ_HISTORICAL_DATA, (int) transport.msgIds.get(4));
+        assertEquals(REQ_HISTORICAL_DATA, (int) transport.msgIds.get(5));
+        assertEquals(3, pacing.sentCount(EPacingScheduler.Lane.HISTORICAL));
+        pacing.close();
+    }
+
+    @Test
+    public void send_cancelOfQueuedRequest_writtenAfterItWithoutLaneLimit() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(1000, 10);
+        pacing.setLaneRate(EPacingScheduler.Lane.HISTORICAL, 5, 1);
+        RecordingTransport transport = new RecordingTransport(4);
+        pacing.attach(transport);
+
+        long start = System.nanoTime();
+        pacing.send(request(REQ_HISTORICAL_DATA, 1));
+        pacing.send(request(REQ_HISTORICAL_DATA, 2));
+        pacing.send(request(CANCEL_HISTORICAL_DATA, 2));
+        pacing.send(request(PLACE_ORDER, 100));
+        assertTrue(transport.written.await(5, TimeUnit.SECONDS));
+
+        int request = transport.msgIds.lastIndexOf(REQ_HISTORICAL_DATA);
+        int cancel = transport.msgIds.indexOf(CANCEL_HISTORICAL_DATA);
+        assertEquals(2, transport.secondFieldOf(request));
+        assertEquals(request + 1, cancel);
+        // the second request waits 200ms for its lane; the cancel follows it without waiting another 200ms
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertTrue(elapsed < TimeUnit.MILLISECONDS.toNanos(350));
+        assertEquals(3, pacing.sentCount(EPacingScheduler.Lane.HISTORICAL));
+        pacing.close();
+    }
+
+    @Test
+    public void send_contractDetails_notLimitedAsHistorical() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(1000, 10);
+        pacing.setLaneRate(EPacingScheduler.Lane.HISTORICAL, 0.1, 1);
+        RecordingTransport transport = new RecordingTransport(5);
+        pacing.attach(transport);
+
+        for (int i = 0; i < 5; i++) {
+            pacing.send(request(REQ_CONTRACT_DATA, i));
+        }
+        assertTrue(transport.written.await(1, TimeUnit.SECONDS));
+        assertEquals(5, pacing.sentCount(EPacingScheduler.Lane.SUBSCRIPTIONS));
+        pacing.close();
+    }
+
+    @Test
+    public void close_dropsQueuedRequests() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(1, 1);
+        RecordingTransport transport = new RecordingTransport(1);
+        pacing.attach(transport);
+
+        for (int i = 0; i < 5; i++) {
+            pacing.send(request(REQ_REAL_TIME_BARS, i));
+        }
+        assertTrue(transport.written.await(5, TimeUnit.SECONDS));
+        pacing.close();
+
+        assertEquals(4, pacing.droppedCount());
+        assertTrue(transport.closed);
+    }
+
+    @Test
+    public void attach_withHook_passesOnlyWrittenRequests() throws Exception {
+        EPacingScheduler pacing = new EPacingScheduler(1, 1);
+        RecordingTransport transport = new RecordingTransport(1);
+        List<byte[]> written = new ArrayList<>();
+        CountDownLatch hooked = new CountDownLatch(1);
+        pacing.attach(transport, request -> {
+            synchronized (written) {
+                written.add(request);
+            }
+            hooked.countDown();
+        });
+
+        for (int i = 0; i < 5; i++) {
+            pacing.send(request(REQ_REAL_TIME_BARS, i));
+        }
+        assertTrue(hooked.await(5, TimeUnit.SECONDS));
+        pacing.close();
+
+        // the dropped requests were never written, so they are not passed on
+        assertEquals(4, pacing.droppedCount());
+        synchronized (written) {
+            assertEquals(1, written.size());
+            byte[] request = written.get(0);
+            assertEquals(REQ_REAL_TIME_BARS + "\0" + 0 + "\0", new String(request, 4, request.length - 4));
+        }
+    }
+
+    @Test
+    public void eConnect_withPacing_staysUnderStubTwsLimit() throws Exception {
+        try (StubTws tws = new StubTws(0, 1000, 10)) {
+            tws.setMaxRequestsPerSecond(50);
+
+            EClientSocket client = connect(tws, new EPacingScheduler(45, 5));
+            for (int i = 0; i < 60; i++) {
+                client.reqRealTimeBars(i, stock("SYM" + i), 5, "MIDPOINT", true, null);
+            }
+            waitForRequests(tws, 61);
+            client.eDisconnect();
+
+            assertEquals(0, tws.pacingViolations());
+            assertEquals(60, client.pacing().sentCount(EPacingScheduler.Lane.SUBSCRIPTIONS));
+        }
+    }
+
+    @Test
+    public void eConnect_withoutPacing_exceedsStubTwsLimit() throws Exception {
+        try (StubTws tws = new StubTws(0, 1000, 10)) {
+            tws.setMaxRequestsPerSecond(50);
+
+            EClientSocket client = connect(tws, null);
+            for (int i = 0; i < 60; i++) {
+                client.reqRealTimeBars(i, stock("SYM" + i), 5, "MIDPOINT", true, null);
+            }
+            waitForRequests(tws, 61);
+            client.eDisconnect();
+
+            assertTrue(tws.pacingViolations() > 0);
+        }
+    }
+
+    private static EClientSocket connect(StubTws tws, EPacingScheduler pacing) {
+        EClientSocket client = new EClientSocket(new DefaultEWrapper(), new EJavaSignal());
+        client.setPacing(pacing);
+        client.eConnect("127.0.0.1", tws.getPort(), 0);
+        assertTrue(client.isConnected());
+        return client;
+    }
+
+    /** Waits for startAPI and the requests after it */
+    private static void waitForRequests(StubTws tws, int requests) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (tws.requestsReceived().size() < requests && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(requests, tws.requestsReceived().size());
+    }
+
+    private static Contract stock(String symbol) {
+        Contract contract = new Contract();
+        contract.symbol(symbol);
+        contract.secType("STK");
+        contract.exchange("SMART");
+        contract.currency("USD");
+        return contract;
+    }
+
+    /** A V100+ request with its message id and one more field */
+    private static EMessage request(int msgId, int field) throws IOException {
+        Builder builder = new Builder(64);
+        builder.allocateLengthHeader();
+        builder.send(msgId);
+        builder.send(field);
+        builder.updateLength(0);
+        return new EMessage(builder);
+    }
+
+    /** Records the message id and second field of each request written */
+    private static class RecordingTransport implements ETransport {
+        private final List<Integer> msgIds = new ArrayList<>();
+        private final List<Integer> secondFields = new ArrayList<>();
+        private final CountDownLatch written;
+        private volatile int flushes;
+        private volatile boolean closed;
+
+        RecordingTransport(int expected) {
+            written = new CountDownLatch(expected);
+        }
+
+        @Override
+        public synchronized void send(EMessage msg) {
+            String[] fields = new String(msg.buf(), msg.offset() + 4, msg.length() - 4).split("\0");
+            msgIds.add(Integer.parseInt(fields[0]));
+            secondFields.add(Integer.parseInt(fields[1]));
+            written.countDown();
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        synchronized int secondFieldOf(int index) {
+            return secondFields.get(index);
+        }
+    }
+}
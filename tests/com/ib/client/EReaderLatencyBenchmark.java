@@ -0,0 +1,123 @@
+package com.ib.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures end-to-end latency from TWS writing a REAL_TIME_BARS message to the loopback socket to the EWrapper
+ * callback, for the default queue and signal against {@link ESpscMessageQueue} with each {@link EWaitStrategy}, and
+ * for a connection read by an {@link ENioSelector}.
+ * Market data arrives in bursts. Run with {@code java com.ib.client.EReaderLatencyBenchmark}.
+ */
+public class EReaderLatencyBenchmark {
+    private static final int MESSAGES_PER_SECOND = 100_000;
+    private static final int BURST = 50;
+    private static final int WARMUP_MESSAGES = 100_000;
+    private static final int MEASURED_MESSAGES = 300_000;
+    private static final int QUEUE_CAPACITY = 4096;
+
+    private static final int WARMUP_REQ_ID = 0;
+    private static final int MEASURED_REQ_ID = 1;
+
+    public static void main(String[] args) throws Exception {
+        run("LinkedList + EJavaSignal", null, null);
+        for (EWaitStrategy waitStrategy : EWaitStrategy.values()) {
+            run("SPSC + " + waitStrategy, waitStrategy, null);
+        }
+        try (ENioSelector selector = new ENioSelector()) {
+            run("ENioSelector + EJavaSignal", null, selector);
+        }
+    }
+
+    /**
+     * @param waitStrategy null for the default queue and signal
+     * @param selector null for a reader thread
+     */
+    private static void run(String name, EWaitStrategy waitStrategy, ENioSelector selector) throws Exception {
+        RecordingWrapper wrapper = new RecordingWrapper(WARMUP_MESSAGES + MEASURED_MESSAGES);
+        EReaderSignal signal = waitStrategy == null ? new EJavaSignal() : new EWaitStrategySignal(waitStrategy);
+        EClientSocket client = new EClientSocket(wrapper, signal, selector);
+
+        try (LoopbackTws tws = new LoopbackTws()) {
+            tws.connect(client);
+
+            EReader reader = waitStrategy == null ? new EReader(client, signal)
+                    : new EReader(client, signal, new ESpscMessageQueue(QUEUE_CAPACITY, waitStrategy));
+            reader.start();
+            Thread processor = new Thread(() -> {
+                while (client.isConnected()) {
+                    signal.waitForSignal();
+                    try {
+                        reader.processMsgs();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }, "processor");
+            processor.start();
+
+            stream(tws, WARMUP_MESSAGES, WARMUP_REQ_ID);
+            stream(tws, MEASURED_MESSAGES, MEASURED_REQ_ID);
+            wrapper.m_done.await();
+
+            client.eDisconnect();
+            processor.join();
+        }
+        System.out.printf("%-28s %s%n", name, wrapper.m_histogram.summary());
+    }
+
+    /** Writes {@code count} bars in bursts at MESSAGES_PER_SECOND, stamped with System.nanoTime() as their time */
+    private static void stream(LoopbackTws tws, int count, int reqId) throws IOException {
+        long burstIntervalNanos = 1_000_000_000L * BURST / MESSAGES_PER_SECOND;
+        long nextBurst = System.nanoTime();
+        ByteArrayOutputStream burst = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(burst);
+
+        for (int sent = 0; sent < count; sent += BURST) {
+            while (System.nanoTime() < nextBurst) {
+                Thread.onSpinWait();
+            }
+            burst.reset();
+            long now = System.nanoTime();
+            for (int i = 0; i < BURST; i++) {
+                Builder b = new Builder(128);
+                b.allocateLengthHeader();
+                b.send(50); // REAL_TIME_BARS
+                b.send(3);
+                b.send(reqId);
+                b.send(String.valueOf(now));
+                b.send(171.25);
+                b.send(171.5);
+                b.send(171.0);
+                b.send(171.3);
+                b.send(1200);
+                b.send(171.27);
+                b.send(17);
+                b.updateLength(0);
+                b.writeTo(out);
+            }
+            tws.send(burst.toByteArray());
+            nextBurst += burstIntervalNanos;
+        }
+    }
+
+    private static class RecordingWrapper extends DefaultEWrapper {
+        private final LatencyHistogram m_histogram = new LatencyHistogram();
+        private final CountDownLatch m_done;
+
+        RecordingWrapper(int expectedMessages) {
+            m_done = new CountDownLatch(expectedMessages);
+        }
+
+        @Override
+        public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                long volume, double wap, int count) {
+            if (reqId == MEASURED_REQ_ID) {
+                m_histogram.record(System.nanoTime() - time);
+            }
+            m_done.countDown();
+        }
+    }
+}
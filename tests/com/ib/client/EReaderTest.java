@@ -0,0 +1,93 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EReaderTest {
+    @Test
+    public void processMsgs_batched_endsEachBatchAfterItsCallbacks() throws IOException {
+        RecordingWrapper wrapper = new RecordingWrapper();
+        ELinkedMessageQueue queue = new ELinkedMessageQueue();
+        EReader reader = readerFor(wrapper, queue);
+        putBars(queue, 10);
+
+        assertEquals(10, reader.processMsgs(4));
+
+        assertEquals(10, wrapper.bars);
+        assertEquals(List.of(4, 4, 2), wrapper.batchSizes);
+        assertEquals(List.of(4, 8, 10), wrapper.barsAtBatchEnd);
+        assertEquals(3, reader.metrics().batchCount());
+        assertEquals(10, reader.metrics().messageCount());
+        assertEquals(4, reader.metrics().maxBatchSize());
+        assertEquals(2, reader.metrics().lastBatchSize());
+    }
+
+    @Test
+    public void processMsgs_unbatched_endsSingleBatch() throws IOException {
+        RecordingWrapper wrapper = new RecordingWrapper();
+        ELinkedMessageQueue queue = new ELinkedMessageQueue();
+        EReader reader = readerFor(wrapper, queue);
+        putBars(queue, 5);
+
+        reader.processMsgs();
+
+        assertEquals(List.of(5), wrapper.batchSizes);
+    }
+
+    @Test
+    public void processMsgs_emptyQueue_endsNoBatch() throws IOException {
+        RecordingWrapper wrapper = new RecordingWrapper();
+        EReader reader = readerFor(wrapper, new ELinkedMessageQueue());
+
+        assertEquals(0, reader.processMsgs(4));
+
+        assertEquals(0, wrapper.batchSizes.size());
+        assertEquals(0, reader.metrics().batchCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void processMsgs_nonPositiveBatchSize_throwsIllegalArgumentException() throws IOException {
+        readerFor(new RecordingWrapper(), new ELinkedMessageQueue()).processMsgs(0);
+    }
+
+    private static EReader readerFor(EWrapper wrapper, EMessageQueue queue) {
+        EClientSocket client = new EClientSocket(wrapper, new EJavaSignal());
+        client.m_serverVersion = MessageStreams.SERVER_VERSION;
+        return new EReader(client, new EJavaSignal(), queue);
+    }
+
+    private static void putBars(EMessageQueue queue, int count) {
+        for (int i = 0; i < count; i++) {
+            Builder b = new Builder(128);
+            for (String field : new String[] {"50", "3", String.valueOf(i), "1514903400", "1", "1", "1", "1", "1",
+                    "1", "1"}) {
+                b.send(field);
+            }
+            byte[] payload = MessageStreams.payloadOf(b);
+            queue.put(new EMessage(payload, payload.length));
+        }
+    }
+
+    private static class RecordingWrapper extends DefaultEWrapper implements EBatchListener {
+        private int bars;
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private final List<Integer> barsAtBatchEnd = new ArrayList<>();
+
+        @Override
+        public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                long volume, double wap, int count) {
+            bars++;
+        }
+
+        @Override
+        public void onBatchEnd(int batchSize) {
+            batchSizes.add(batchSize);
+            barsAtBatchEnd.add(bars);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class EShardedWrapperTest {
+    private static final int LANES = 4;
+
+    private EShardedWrapper dispatcher;
+
+    @After
+    public void close() throws Exception {
+        dispatcher.close(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void realtimeBar_keepsOrderPerReqId() throws Exception {
+        Map<Integer, List<Long>> timesByReqId = new ConcurrentHashMap<>();
+        dispatcher = new EShardedWrapper(new DefaultEWrapper() {
+            @Override
+            public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                    long volume, double wap, int count) {
+                timesByReqId.computeIfAbsent(reqId, id -> new ArrayList<>()).add(time);
+            }
+        }, LANES);
+
+        for (long time = 0; time < 1000; time++) {
+            for (int reqId = 1; reqId <= 10; reqId++) {
+                dispatcher.realtimeBar(reqId, time, 1, 1, 1, 1, 1, 1, 1);
+            }
+        }
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+
+        assertEquals(10, timesByReqId.size());
+        for (List<Long> times : timesByReqId.values()) {
+            assertEquals(1000, times.size());
+            for (int i = 0; i < times.size(); i++) {
+                assertEquals(i, (long) times.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void realtimeBar_slowSymbolDoesNotBlockOtherLanes() throws Exception {
+        CountDownLatch otherSymbolSeen = new CountDownLatch(1);
+        dispatcher = new EShardedWrapper(new DefaultEWrapper() {
+            @Override
+            public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                    long volume, double wap, int count) {
+                if (reqId == 1) {
+                    await(otherSymbolSeen);
+                } else {
+                    otherSymbolSeen.countDown();
+                }
+            }
+        }, LANES);
+        assertNotEquals(dispatcher.symbolLaneOf(1), dispatcher.symbolLaneOf(2));
+
+        dispatcher.realtimeBar(1, 0, 1, 1, 1, 1, 1, 1, 1);
+        dispatcher.realtimeBar(2, 0, 1, 1, 1, 1, 1, 1, 1);
+
+        // reqId 1 only returns once reqId 2 has run alongside it
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void orderAndAccountCallbacks_runInOrderOnOneThread() throws Exception {
+        List<String> calls = new CopyOnWriteArrayList<>();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        dispatcher = new EShardedWrapper(new DefaultEWrapper() {
+            @Override
+            public void orderStatus(int orderId, String status, double filled, double remaining,
+                    double avgFillPrice, int permId, int parentId, double lastFillPrice, int clientId,
+                    String whyHeld, double mktCapPrice) {
+                threads.add(Thread.currentThread());
+                calls.add(orderId + " " + status);
+            }
+
+            @Override
+            public void updateAccountValue(String key, String value, String currency, String accountName) {
+                threads.add(Thread.currentThread());
+                calls.add(key);
+            }
+        }, LANES);
+
+        dispatcher.orderStatus(1, "Submitted", 0, 100, 0, 0, 0, 0, 0, "", 0);
+        dispatcher.updateAccountValue("NetLiquidation", "1", "USD", "DU1");
+        dispatcher.orderStatus(2, "Submitted", 0, 100, 0, 0, 0, 0, 0, "", 0);
+        dispatcher.orderStatus(1, "Filled", 100, 0, 10, 0, 0, 10, 0, "", 0);
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("1 Submitted", "NetLiquidation", "2 Submitted", "1 Filled"), calls);
+        assertEquals(1, threads.size());
+    }
+
+    @Test
+    public void error_ofRequestWithMarketData_runsAfterItsDataOnItsLane() throws Exception {
+        List<String> calls = new CopyOnWriteArrayList<>();
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        CountDownLatch released = new CountDownLatch(1);
+        dispatcher = new EShardedWrapper(new DefaultEWrapper() {
+            @Override
+            public void tickPrice(int tickerId, int field, double price, TickAttr attrib) {
+                // holds up the lane, so that an error on another thread would overtake the tick
+                await(released);
+                threads.put("tick", Thread.currentThread());
+                calls.add("tick " + tickerId);
+            }
+
+            @Override
+            public void orderStatus(int orderId, String status, double filled, double remaining,
+                    double avgFillPrice, int permId, int parentId, double lastFillPrice, int clientId,
+                    String whyHeld, double mktCapPrice) {
+                threads.put("order", Thread.currentThread());
+            }
+
+            @Override
+            public void error(int id, int errorCode, String errorMsg) {
+                threads.put("error " + id, Thread.currentThread());
+                calls.add("error " + id);
+            }
+        }, LANES);
+
+        dispatcher.tickPrice(5, TickType.LAST.index(), 10.5, new TickAttr());
+        dispatcher.error(5, 354, "Requested market data is not subscribed");
+        dispatcher.orderStatus(6, "Submitted", 0, 100, 0, 0, 0, 0, 0, "", 0);
+        dispatcher.error(6, 201, "Order rejected");
+        released.countDown();
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+
+        assertTrue(calls.indexOf("tick 5") < calls.indexOf("error 5"));
+        assertEquals(threads.get("tick"), threads.get("error 5"));
+        assertEquals(threads.get("order"), threads.get("error 6"));
+    }
+
+    @Test
+    public void error_afterRequestEnded_runsOnControlLane() throws Exception {
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        dispatcher = new EShardedWrapper(new DefaultEWrapper() {
+            @Override
+            public void tickPrice(int tickerId, int field, double price, TickAttr attrib) {
+                threads.put("tick", Thread.currentThread());
+            }
+
+            @Override
+            public void orderStatus(int orderId, String status, double filled, double remaining,
+                    double avgFillPrice, int permId, int parentId, double lastFillPrice, int clientId,
+                    String whyHeld, double mktCapPrice) {
+                threads.put("order", Thread.currentThread());
+            }
+
+            @Override
+            public void error(int id, int errorCode, String errorMsg) {
+                threads.put("error " + errorCode, Thread.currentThread());
+            }
+        }, LANES);
+
+        dispatcher.tickPrice(5, TickType.LAST.index(), 10.5, new TickAttr());
+        dispatcher.requestEnded(5);
+        dispatcher.error(5, 300, "Can't find EId with tickerId:5");
+        dispatcher.orderStatus(6, "Submitted", 0, 100, 0, 0, 0, 0, 0, "", 0);
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+
+        assertEquals(threads.get("order"), threads.get("error 300"));
+        assertNotEquals(threads.get("tick"), threads.get("error 300"));
+    }
+
+    @Test
+    public void realtimeBar_fullLane_dispatchWaitsForRoom() throws Exception {
+        CountDownLatch released = new CountDownLatch(1);
+        List<Long> times = new CopyOnWriteArrayList<>();
+        dispatcher = new EShardedWrapper(new DefaultEWrapper() {
+            @Override
+            public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                    long volume, double wap, int count) {
+                await(released);
+                times.add(time);
+            }
+        }, LANES, 2);
+
+        // one bar running and two queued fill the lane, so the fourth waits for the first to finish
+        CountDownLatch dispatched = new CountDownLatch(1);
+        Thread processMsgs = new Thread(() -> {
+            for (long time = 0; time < 4; time++) {
+                dispatcher.realtimeBar(1, time, 1, 1, 1, 1, 1, 1, 1);
+            }
+            dispatched.countDown();
+        });
+        processMsgs.start();
+
+        assertFalse(dispatched.await(200, TimeUnit.MILLISECONDS));
+        released.countDown();
+        assertTrue(dispatched.await(5, TimeUnit.SECONDS));
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0L, 1L, 2L, 3L), times);
+    }
+
+    @Test
+    public void onBatchEnd_followsEachLanesCallbacks() throws Exception {
+        List<String> events = new CopyOnWriteArrayList<>();
+        dispatcher = new EShardedWrapper(new BatchRecordingWrapper(events), LANES);
+
+        dispatcher.realtimeBar(1, 0, 1, 1, 1, 1, 1, 1, 1);
+        dispatcher.realtimeBar(1, 1, 1, 1, 1, 1, 1, 1, 1);
+        dispatcher.realtimeBar(2, 0, 1, 1, 1, 1, 1, 1, 1);
+        dispatcher.onBatchEnd(3);
+        assertTrue(dispatcher.close(5, TimeUnit.SECONDS));
+
+        // one batch end per lane that received bars, counting only that lane's bars
+        assertEquals(5, events.size());
+        assertTrue(events.indexOf("bar 1 1") < events.indexOf("end 2 on lane 1"));
+        assertTrue(events.indexOf("bar 2 0") < events.indexOf("end 1 on lane 2"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class BatchRecordingWrapper extends DefaultEWrapper implements EBatchListener {
+        private final List<String> events;
+        private final ThreadLocal<Integer> lastReqId = new ThreadLocal<>();
+
+        BatchRecordingWrapper(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                long volume, double wap, int count) {
+            lastReqId.set(reqId);
+            events.add("bar " + reqId + " " + time);
+        }
+
+        @Override
+        public void onBatchEnd(int batchSize) {
+            events.add("end " + batchSize + " on lane " + lastReqId.get());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ESpscMessageQueueTest {
+
+    @Test
+    public void put_interruptedWhileFull_returnsFalseAndKeepsInterrupt() {
+        ESpscMessageQueue queue = new ESpscMessageQueue(2, EWaitStrategy.PARK);
+        assertTrue(queue.put(message()));
+        assertTrue(queue.put(message()));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(queue.put(message()));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(2, queue.size());
+    }
+
+    private static EMessage message() {
+        byte[] payload = {'9', 0};
+        return new EMessage(payload, payload.length);
+    }
+}
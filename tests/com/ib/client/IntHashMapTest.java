@@ -0,0 +1,106 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class IntHashMapTest {
+
+    @Test
+    public void put_existingKey_replacesValueAndReturnsIt() {
+        IntHashMap<String> map = new IntHashMap<>();
+        assertNull(map.put(7, "a"));
+        assertEquals("a", map.put(7, "b"));
+
+        assertEquals("b", map.get(7));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void remove_keysInOneProbeSequence_keepsTheOthersReachable() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        // enough sequential keys to share probe sequences in a small table
+        for (int key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+        for (int key = 0; key < 100; key += 3) {
+            assertEquals(Integer.valueOf(key), map.remove(key));
+        }
+
+        for (int key = 0; key < 100; key++) {
+            assertEquals(key % 3 == 0 ? null : Integer.valueOf(key), map.get(key));
+        }
+        assertNull(map.remove(0));
+        assertEquals(66, map.size());
+
+        // a removed key can be put again
+        map.put(3, -3);
+        assertEquals(Integer.valueOf(-3), map.get(3));
+        assertEquals(67, map.size());
+    }
+
+    @Test
+    public void remove_manyShortLivedKeys_reusesSpace() {
+        IntHashMap<String> map = new IntHashMap<>(8);
+        for (int key = 0; key < 100_000; key++) {
+            map.put(key, "value");
+            map.put(key - 1, null);
+        }
+
+        assertEquals(1, map.size());
+        assertEquals("value", map.get(99_999));
+        assertNull(map.get(99_998));
+        assertEquals(16, map.capacity());
+    }
+
+    @Test
+    public void putRemove_randomKeys_behavesLikeHashMap() {
+        IntHashMap<Integer> map = new IntHashMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (int key = -1000; key < 1000; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+    @Test
+    public void clear_removesEveryKey() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(1, "a");
+        map.put(Integer.MAX_VALUE, "b");
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertNull(map.get(1));
+        assertNull(map.get(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void put_emptyKey_isRejected() {
+        new IntHashMap<String>().put(IntHashMap.EMPTY_KEY, "a");
+    }
+
+    @Test
+    public void get_emptyKey_findsNothing() {
+        IntHashMap<String> map = new IntHashMap<>();
+        map.put(0, "a");
+        assertNull(map.get(IntHashMap.EMPTY_KEY));
+        assertNull(map.remove(IntHashMap.EMPTY_KEY));
+        assertEquals(1, map.size());
+    }
+}
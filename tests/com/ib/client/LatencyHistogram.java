@@ -0,0 +1,75 @@
+package com.ib.client;
+
+/**
+ * Records latencies in nanoseconds into log-linear buckets with ~1% precision, in the style of HdrHistogram.
+ * Recording never allocates, so it can run on the thread being measured. Not thread-safe.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1; // values below this are counted exactly
+    private static final int MAX_SHIFT = 40;
+
+    private final long[] m_counts = new long[LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKETS];
+    private long m_totalCount;
+    private long m_max;
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        m_counts[indexOf(v)]++;
+        m_totalCount++;
+        m_max = Math.max(m_max, v);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(m_counts, 0);
+        m_totalCount = 0;
+        m_max = 0;
+    }
+
+    public long totalCount() {
+        return m_totalCount;
+    }
+
+    public long max() {
+        return m_max;
+    }
+
+    /** Returns the value at or below which {@code percentile} percent of the recorded values fall */
+    public long percentile(double percentile) {
+        long threshold = (long) Math.ceil(m_totalCount * percentile / 100.0);
+        long cumulative = 0;
+        for (int i = 0; i < m_counts.length; i++) {
+            cumulative += m_counts[i];
+            if (cumulative >= threshold && cumulative > 0) {
+                return Math.min(highestValueAt(i), m_max);
+            }
+        }
+        return m_max;
+    }
+
+    /** Returns p50, p90, p99, p99.9, p99.99 and max in microseconds */
+    public String summary() {
+        return String.format("p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f us (n=%d)",
+                percentile(50) / 1e3, percentile(90) / 1e3, percentile(99) / 1e3, percentile(99.9) / 1e3,
+                percentile(99.99) / 1e3, m_max / 1e3, m_totalCount);
+    }
+
+    private static int indexOf(long v) {
+        if (v < LINEAR_LIMIT) {
+            return (int) v;
+        }
+        int shift = Math.min(63 - Long.numberOfLeadingZeros(v) - SUB_BUCKET_BITS, MAX_SHIFT);
+        int subBucket = (int) Math.min(v >>> shift, LINEAR_LIMIT - 1) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,156 @@
+package com.ib.client;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Minimal stand-in for TWS on a loopback socket for benchmarks: completes the V100+ handshake with each client, then
+ * discards whatever the client sends and writes whatever the benchmark hands it to the client connected last.
+ * Subclasses answer requests instead by overriding {@link #serve(Socket, DataInputStream)}.
+ */
+public class LoopbackTws implements AutoCloseable {
+    private static final String TWS_TIME = "20180102 09:30:00 EST";
+
+    private final ServerSocket m_serverSocket;
+    private final Semaphore m_handshakes = new Semaphore(0);
+    private volatile Socket m_socket;
+    private volatile OutputStream m_out;
+    private volatile long m_bytesReceived;
+    private volatile long m_reads;
+
+    public LoopbackTws() throws IOException {
+        this(0, 1);
+        startAccepting();
+    }
+
+    /**
+     * Binds the server socket; the subclass calls {@link #startAccepting()} once it is constructed.
+     * @param port 0 for any free port
+     * @param backlog number of connections waiting to be accepted
+     */
+    protected LoopbackTws(int port, int backlog) throws IOException {
+        m_serverSocket = new ServerSocket(port, backlog, InetAddress.getLoopbackAddress());
+    }
+
+    protected void startAccepting() {
+        Thread acceptor = new Thread(this::accept, getClass().getSimpleName() + " acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return m_serverSocket.getLocalPort();
+    }
+
+    /** Connects {@code client} and returns once the handshake is complete */
+    public void connect(EClientSocket client) throws IOException, InterruptedException {
+        m_handshakes.drainPermits();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), getPort());
+        Socket socket = client.selector() == null ? new Socket(address.getAddress(), address.getPort())
+                : SocketChannel.open(address).socket();
+        socket.setTcpNoDelay(true);
+        client.eConnect(socket, 0);
+        m_handshakes.acquire();
+    }
+
+    /** Writes {@code frames} to the client connected last, unsynchronized with whatever a subclass writes to it */
+    public void send(byte[] frames) throws IOException {
+        send(frames, 0, frames.length);
+    }
+
+    public void send(byte[] frames, int offset, int length) throws IOException {
+        m_out.write(frames, offset, length);
+    }
+
+    /** Number of bytes received from the clients after the handshake, unless a subclass serves them */
+    public long bytesReceived() {
+        return m_bytesReceived;
+    }
+
+    /** Number of reads that returned data, roughly the number of separate writes the clients made */
+    public long reads() {
+        return m_reads;
+    }
+
+    /**
+     * Serves one client after the handshake, on a thread of its own, until it disconnects; discards whatever it sends.
+     * @param in the client's input, which may already buffer bytes read past the handshake
+     */
+    protected void serve(Socket socket, DataInputStream in) throws IOException {
+        byte[] buf = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            m_bytesReceived += n;
+            m_reads++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Socket socket = m_socket;
+        if (socket != null) {
+            socket.close();
+        }
+        m_serverSocket.close();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = m_serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread thread = new Thread(() -> session(socket), getClass().getSimpleName() + " session " + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    private void session(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            handshake(in, socket.getOutputStream());
+            m_socket = socket;
+            m_out = socket.getOutputStream();
+            m_handshakes.release();
+            serve(socket, in);
+        } catch (EOFException | SocketException e) {
+            // client disconnected
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /** Reads the client's prefix and supported versions and answers with the server version and the TWS time */
+    private static void handshake(DataInputStream in, OutputStream out) throws IOException {
+        byte[] prefix = new byte[4]; // "API\0"
+        in.readFully(prefix);
+        in.readFully(new byte[in.readInt()]); // supported versions, e.g. "v100..136"
+
+        Builder b = new Builder(64);
+        b.allocateLengthHeader();
+        b.send(MessageStreams.SERVER_VERSION);
+        b.send(TWS_TIME);
+        b.updateLength(0);
+        b.writeTo(new DataOutputStream(out));
+        out.flush();
+    }
+}
@@ -0,0 +1,148 @@
+package com.ib.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Builds byte streams of length-prefixed (V100+) messages, as TWS would send them, for benchmarks and tests */
+public class MessageStreams {
+    public static final int SERVER_VERSION = EClient.MAX_VERSION;
+
+    private static final int TICK_PRICE = 1;
+    private static final int TICK_SIZE = 2;
+    private static final int ORDER_STATUS = 3;
+    private static final int OPEN_ORDER = 5;
+    private static final int REAL_TIME_BARS = 50;
+
+    /** Writes the fields of the {@code i}th message */
+    private interface MessageWriter {
+        void write(Builder b, int i) throws IOException;
+    }
+
+    /** Returns {@code count} REAL_TIME_BARS frames for {@code symbols} request ids */
+    public static byte[] realTimeBars(int count, int symbols) throws IOException {
+        return frames(count, (b, i) -> {
+            b.send(REAL_TIME_BARS);
+            b.send(3); // version
+            b.send(1 + i % symbols);
+            b.send(String.valueOf(1514903400L + 5L * i));
+            b.send(171.25 + (i % 100) / 100.0);
+            b.send(171.5 + (i % 100) / 100.0);
+            b.send(171.0 + (i % 100) / 100.0);
+            b.send(171.3 + (i % 100) / 100.0);
+            b.send(1200 + i % 1000);
+            b.send(171.27);
+            b.send(17);
+        });
+    }
+
+    /** Returns {@code count} TICK_PRICE frames for {@code symbols} ticker ids */
+    public static byte[] tickPrices(int count, int symbols) throws IOException {
+        return frames(count, (b, i) -> {
+            b.send(TICK_PRICE);
+            b.send(6); // version
+            b.send(1 + i % symbols);
+            b.send(i % 2 == 0 ? 1 : 2); // BID or ASK
+            b.send(171.25 + (i % 100) / 100.0);
+            b.send(100 + i % 500);
+            b.send(3); // attribute mask
+        });
+    }
+
+    /** Returns {@code count} TICK_SIZE frames for {@code symbols} ticker ids */
+    public static byte[] tickSizes(int count, int symbols) throws IOException {
+        return frames(count, (b, i) -> {
+            b.send(TICK_SIZE);
+            b.send(6); // version
+            b.send(1 + i % symbols);
+            b.send(8); // VOLUME
+            b.send(250000 + i);
+        });
+    }
+
+    /** Returns {@code count} ORDER_STATUS frames */
+    public static byte[] orderStatuses(int count) throws IOException {
+        return frames(count, (b, i) -> {
+            b.send(ORDER_STATUS);
+            b.send(i);
+            b.send(i % 3 == 0 ? "Filled" : "Submitted");
+            b.send(i % 100);
+            b.send(100 - i % 100);
+            b.send(171.25);
+            b.send(1000000 + i);
+            b.send(0);
+            b.send(171.25);
+            b.send(0);
+            b.send("");
+            b.send(0.0);
+        });
+    }
+
+    /**
+     * Returns {@code count} OPEN_ORDER frames for a limit order on a stock. Fields after the order's account are
+     * left empty, which the decoder reads as unset.
+     */
+    public static byte[] openOrders(int count) throws IOException {
+        return frames(count, (b, i) -> {
+            Builder fields = new Builder(1024);
+            fields.send(OPEN_ORDER);
+            fields.send(34); // version
+            fields.send(i);
+            fields.send(265598); // conid
+            fields.send("AAPL");
+            fields.send("STK");
+            fields.send("");
+            fields.send(0.0);
+            fields.send("");
+            fields.send("");
+            fields.send("SMART");
+            fields.send("USD");
+            fields.send("AAPL");
+            fields.send("NMS");
+            fields.send("BUY");
+            fields.send(100.0);
+            fields.send("LMT");
+            fields.send(143.85);
+            fields.send("");
+            fields.send("DAY");
+            fields.send("");
+            fields.send("DU123456");
+            for (int field = 0; field < 400; field++) {
+                fields.send("");
+            }
+            byte[] payload = payloadOf(fields);
+
+            // keep only the fields the decoder reads
+            int length;
+            try (EDecoder decoder = new EDecoder(SERVER_VERSION, new DefaultEWrapper())) {
+                length = decoder.processMsg(new EMessage(payload, payload.length));
+            }
+            b.send(Arrays.copyOf(payload, length));
+        });
+    }
+
+    private static byte[] frames(int count, MessageWriter writer) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(stream);
+        for (int i = 0; i < count; i++) {
+            Builder b = new Builder(256);
+            b.allocateLengthHeader();
+            writer.write(b, i);
+            b.updateLength(0);
+            b.writeTo(out);
+        }
+        return stream.toByteArray();
+    }
+
+    /** Returns the bytes written to {@code b} */
+    public static byte[] payloadOf(Builder b) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try {
+            b.writeTo(new DataOutputStream(stream));
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // a ByteArrayOutputStream does not throw
+        }
+        return stream.toByteArray();
+    }
+}
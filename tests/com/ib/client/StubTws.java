@@ -0,0 +1,427 @@
+package com.ib.client;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A stand-in for TWS or IB Gateway that speaks enough of the V100+ wire protocol to load test EClientSocket,
+ * EReader and EDecoder without a live TWS. It accepts any number of clients and for each:
+ * <ul>
+ * <li>completes the handshake and answers startAPI with nextValidId and managedAccounts,</li>
+ * <li>streams REAL_TIME_BARS for each reqRealTimeBars and TICK_PRICE for each reqMktData until cancelled, sharing
+ * the configured message rate between the subscriptions, with prices following a random walk per symbol,</li>
+ * <li>answers placeOrder with ORDER_STATUS Submitted and then Filled at the limit price,</li>
+ * <li>answers reqAccountUpdates with a few account values and accountDownloadEnd, and</li>
+ * <li>optionally answers requests over a pacing limit with error 100, as TWS does.</li>
+ * </ul>
+ * The handshake is the one of {@link LoopbackTws}. Other requests are read and ignored. Run standalone with
+ * {@code java com.ib.client.StubTws [port] [messages/sec] [symbols]} and point the client at it, e.g.
+ * {@code java -Dtws.port=7497 MainApp}.
+ */
+public class StubTws extends LoopbackTws {
+    public static final int DEFAULT_PORT = 7496;
+    public static final String ACCOUNT = "DU123456";
+    public static final int FIRST_ORDER_ID = 1;
+
+    // incoming
+    private static final int REQ_MKT_DATA = 1;
+    private static final int CANCEL_MKT_DATA = 2;
+    private static final int PLACE_ORDER = 3;
+    private static final int REQ_ACCT_DATA = 6;
+    private static final int REQ_REAL_TIME_BARS = 50;
+    private static final int CANCEL_REAL_TIME_BARS = 51;
+    private static final int START_API = 71;
+
+    // outgoing
+    private static final int TICK_PRICE = 1;
+    private static final int ERR_MSG = 4;
+    private static final int ORDER_STATUS = 3;
+    private static final int ACCT_VALUE = 6;
+    private static final int NEXT_VALID_ID = 9;
+    private static final int MANAGED_ACCTS = 15;
+    private static final int REAL_TIME_BARS = 50;
+    private static final int ACCT_DOWNLOAD_END = 54;
+
+    /** Error TWS sends for each request over its pacing limit */
+    public static final int MAX_RATE_EXCEEDED = 100;
+
+    // field positions in a PLACE_ORDER message at EClient.MAX_VERSION
+    private static final int ORDER_ID_FIELD = 2;
+    private static final int ORDER_QUANTITY_FIELD = 18;
+    private static final int ORDER_LIMIT_PRICE_FIELD = 20;
+
+    /** Streaming is paced in slices of this length */
+    private static final long SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int m_messagesPerSecond;
+    private final double[] m_prices;
+    private final List<Session> m_sessions = new CopyOnWriteArrayList<>();
+    private final AtomicLong m_messagesSent = new AtomicLong();
+    private volatile boolean m_isStampingNanoTime;
+    private volatile int m_maxRequestsPerSecond; // 0 for no limit
+    private final List<Integer> m_requestsReceived = new CopyOnWriteArrayList<>();
+    private final AtomicLong m_pacingViolations = new AtomicLong();
+
+    /**
+     * @param port 0 for any free port
+     * @param messagesPerSecond market data rate per client, shared between its subscriptions
+     * @param symbols number of distinct price series; request ids are mapped onto them
+     */
+    public StubTws(int port, int messagesPerSecond, int symbols) throws IOException {
+        super(port, 50);
+        m_messagesPerSecond = messagesPerSecond;
+        m_prices = new double[symbols];
+        Random random = new Random(42);
+        for (int i = 0; i < symbols; i++) {
+            m_prices[i] = 10 + random.nextInt(490);
+        }
+        startAccepting();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int messagesPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int symbols = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        StubTws tws = new StubTws(port, messagesPerSecond, symbols);
+        System.out.printf("StubTws listening on port %d, streaming %d msgs/sec per client across %d symbols%n",
+                tws.getPort(), messagesPerSecond, symbols);
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.printf("%d clients, %d messages sent%n", tws.m_sessions.size(), tws.messagesSent());
+        }
+    }
+
+    /**
+     * Puts System.nanoTime() instead of the epoch second into the time field of bars, so that an in-process client
+     * can measure latency from the stub writing a bar to its callback.
+     */
+    public void setStampingNanoTime(boolean isStampingNanoTime) {
+        m_isStampingNanoTime = isStampingNanoTime;
+    }
+
+    /**
+     * Answers each request beyond {@code maxRequestsPerSecond} within a second with error {@link #MAX_RATE_EXCEEDED},
+     * as TWS does; 0 for no limit
+     */
+    public void setMaxRequestsPerSecond(int maxRequestsPerSecond) {
+        m_maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /** Message ids of the requests received from all clients, in the order they arrived */
+    public List<Integer> requestsReceived() {
+        return new ArrayList<>(m_requestsReceived);
+    }
+
+    /** Number of requests answered with error {@link #MAX_RATE_EXCEEDED} */
+    public long pacingViolations() {
+        return m_pacingViolations.get();
+    }
+
+    /** Number of messages sent to all clients, handshake included */
+    public long messagesSent() {
+        return m_messagesSent.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        for (Session session : m_sessions) {
+            session.close();
+        }
+    }
+
+    @Override
+    protected void serve(Socket socket, DataInputStream in) throws IOException {
+        m_messagesSent.incrementAndGet(); // the handshake
+        Session session = new Session(socket);
+        m_sessions.add(session);
+        session.serve(in);
+    }
+
+    /** A market data subscription of a client */
+    private static final class Subscription {
+        private final int m_reqId;
+        private final boolean m_isBars; // REAL_TIME_BARS, otherwise TICK_PRICE
+        private final int m_symbol;
+
+        Subscription(int reqId, boolean isBars, int symbol) {
+            m_reqId = reqId;
+            m_isBars = isBars;
+            m_symbol = symbol;
+        }
+    }
+
+    /** One client connection: requests are read on its own thread and market data is streamed on another */
+    private final class Session {
+        private final Socket m_socket;
+        private final DataOutputStream m_out;
+        private final Builder m_builder = new Builder(256);
+        private final List<Subscription> m_subscriptions = new CopyOnWriteArrayList<>();
+        private final Random m_random = new Random();
+        private final ArrayDeque<Long> m_requestTimes = new ArrayDeque<>(); // of the last second
+        private long m_tick;
+
+        Session(Socket socket) throws IOException {
+            m_socket = socket;
+            m_out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        }
+
+        void serve(DataInputStream in) throws IOException {
+            try {
+                while (true) {
+                    byte[] payload = new byte[in.readInt()];
+                    in.readFully(payload);
+                    handle(fieldsOf(payload));
+                }
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            m_sessions.remove(this);
+            m_subscriptions.clear();
+            try {
+                m_socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        private void handle(String[] fields) throws IOException {
+            m_requestsReceived.add(Integer.parseInt(fields[0]));
+            if (isOverPacingLimit()) {
+                return;
+            }
+
+            switch (Integer.parseInt(fields[0])) {
+                case START_API:
+                    synchronized (m_out) {
+                        Builder b = start();
+                        b.send(NEXT_VALID_ID);
+                        b.send(1);
+                        b.send(FIRST_ORDER_ID);
+                        end(b);
+                        b = start();
+                        b.send(MANAGED_ACCTS);
+                        b.send(1);
+                        b.send(ACCOUNT);
+                        end(b);
+                        m_out.flush();
+                    }
+                    startStreaming();
+                    break;
+                case REQ_REAL_TIME_BARS:
+                case REQ_MKT_DATA:
+                    int reqId = Integer.parseInt(fields[2]);
+                    m_subscriptions.add(new Subscription(reqId, fields[0].equals(String.valueOf(REQ_REAL_TIME_BARS)),
+                            Math.floorMod(reqId, m_prices.length)));
+                    break;
+                case CANCEL_REAL_TIME_BARS:
+                case CANCEL_MKT_DATA:
+                    int cancelledReqId = Integer.parseInt(fields[2]);
+                    m_subscriptions.removeIf(subscription -> subscription.m_reqId == cancelledReqId);
+                    break;
+                case PLACE_ORDER:
+                    fill(Integer.parseInt(fields[ORDER_ID_FIELD]), Double.parseDouble(fields[ORDER_QUANTITY_FIELD]),
+                            fields[ORDER_LIMIT_PRICE_FIELD].isEmpty() ? 0
+                                    : Double.parseDouble(fields[ORDER_LIMIT_PRICE_FIELD]));
+                    break;
+                case REQ_ACCT_DATA:
+                    if ("1".equals(fields[2])) {
+                        sendAccount();
+                    }
+                    break;
+                default:
+                    // not simulated
+            }
+        }
+
+        /** Answers the request with an error instead if the client has sent too many in the last second */
+        private boolean isOverPacingLimit() throws IOException {
+            int maxRequestsPerSecond = m_maxRequestsPerSecond;
+            if (maxRequestsPerSecond <= 0) {
+                return false;
+            }
+            long now = System.nanoTime();
+            while (!m_requestTimes.isEmpty() && now - m_requestTimes.peekFirst() >= 1_000_000_000L) {
+                m_requestTimes.pollFirst();
+            }
+            m_requestTimes.addLast(now);
+            if (m_requestTimes.size() <= maxRequestsPerSecond) {
+                return false;
+            }
+
+            m_pacingViolations.incrementAndGet();
+            synchronized (m_out) {
+                Builder b = start();
+                b.send(ERR_MSG);
+                b.send(2);
+                b.send(-1);
+                b.send(MAX_RATE_EXCEEDED);
+                b.send("Max rate of messages per second has been exceeded");
+                end(b);
+                m_out.flush();
+            }
+            return true;
+        }
+
+        private void fill(int orderId, double quantity, double price) throws IOException {
+            synchronized (m_out) {
+                orderStatus(orderId, "Submitted", 0, quantity, 0);
+                orderStatus(orderId, "Filled", quantity, 0, price);
+                m_out.flush();
+            }
+        }
+
+        private void orderStatus(int orderId, String status, double filled, double remaining, double avgFillPrice)
+                throws IOException {
+            Builder b = start();
+            b.send(ORDER_STATUS);
+            b.send(orderId);
+            b.send(status);
+            b.send(filled);
+            b.send(remaining);
+            b.send(avgFillPrice);
+            b.send(orderId); // permId
+            b.send(0); // parentId
+            b.send(avgFillPrice); // lastFillPrice
+            b.send(0); // clientId
+            b.send(""); // whyHeld
+            b.send(0.0); // mktCapPrice
+            end(b);
+        }
+
+        private void sendAccount() throws IOException {
+            String[][] values = {
+                {"NetLiquidation", "100000.00"}, {"TotalCashValue", "100000.00"}, {"BuyingPower", "400000.00"}
+            };
+            synchronized (m_out) {
+                for (String[] value : values) {
+                    Builder b = start();
+                    b.send(ACCT_VALUE);
+                    b.send(2);
+                    b.send(value[0]);
+                    b.send(value[1]);
+                    b.send("USD");
+                    b.send(ACCOUNT);
+                    end(b);
+                }
+                Builder b = start();
+                b.send(ACCT_DOWNLOAD_END);
+                b.send(1);
+                b.send(ACCOUNT);
+                end(b);
+                m_out.flush();
+            }
+        }
+
+        private void startStreaming() {
+            Thread streamer = new Thread(this::stream, "StubTws streamer " + m_socket.getPort());
+            streamer.setDaemon(true);
+            streamer.start();
+        }
+
+        /** Writes market data in slices, each carrying the messages due since the stream started */
+        private void stream() {
+            long start = System.nanoTime();
+            long sent = 0;
+            int next = 0;
+            try {
+                while (!m_socket.isClosed()) {
+                    long due = (System.nanoTime() - start) * m_messagesPerSecond / 1_000_000_000L;
+                    Subscription[] subscriptions = m_subscriptions.toArray(new Subscription[0]);
+
+                    if (subscriptions.length > 0) {
+                        synchronized (m_out) {
+                            for (; sent < due; sent++) {
+                                next = (next + 1) % subscriptions.length;
+                                marketData(subscriptions[next]);
+                            }
+                            m_out.flush();
+                        }
+                    }
+                    // nothing is owed for the time without subscriptions
+                    sent = due;
+                    LockSupport.parkNanos(SLICE_NANOS);
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void marketData(Subscription subscription) throws IOException {
+            double price = nextPrice(subscription.m_symbol);
+            Builder b = start();
+            if (subscription.m_isBars) {
+                b.send(REAL_TIME_BARS);
+                b.send(3);
+                b.send(subscription.m_reqId);
+                b.send(m_isStampingNanoTime ? System.nanoTime() : System.currentTimeMillis() / 1000);
+                b.send(price);
+                b.send(price + 0.05);
+                b.send(price - 0.05);
+                b.send(price);
+                b.send(100 + m_random.nextInt(1000));
+                b.send(price);
+                b.send(1 + m_random.nextInt(20));
+            } else {
+                b.send(TICK_PRICE);
+                b.send(6);
+                b.send(subscription.m_reqId);
+                b.send(++m_tick % 2 == 0 ? TickType.BID.index() : TickType.ASK.index());
+                b.send(price);
+                b.send(100 * (1 + m_random.nextInt(10)));
+                b.send(0); // attribute mask
+            }
+            end(b);
+        }
+
+        /** Moves the symbol's price by up to a cent either way; prices are shared by all clients */
+        private double nextPrice(int symbol) {
+            synchronized (m_prices) {
+                double price = Math.max(0.01, m_prices[symbol] + (m_random.nextInt(3) - 1) * 0.01);
+                price = Math.round(price * 100) / 100.0;
+                m_prices[symbol] = price;
+                return price;
+            }
+        }
+
+        /** Starts a message in the reused builder; callers hold the lock on m_out until {@link #end(Builder)} */
+        private Builder start() {
+            m_builder.reset();
+            m_builder.allocateLengthHeader();
+            return m_builder;
+        }
+
+        private void end(Builder b) throws IOException {
+            b.updateLength(0);
+            b.writeTo(m_out);
+            m_messagesSent.incrementAndGet();
+        }
+    }
+
+    private static String[] fieldsOf(byte[] payload) {
+        List<String> fields = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < payload.length; i++) {
+            if (payload[i] == 0) {
+                fields.add(new String(payload, start, i - start, StandardCharsets.UTF_8));
+                start = i + 1;
+            }
+        }
+        return fields.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,160 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class StubTwsTest {
+    private StubTws tws;
+    private RecordingWrapper wrapper;
+    private EClientSocket client;
+    private Thread processor;
+
+    @Before
+    public void connect() throws Exception {
+        tws = new StubTws(0, 10_000, 10);
+        wrapper = new RecordingWrapper();
+        EReaderSignal signal = new EJavaSignal();
+        client = new EClientSocket(wrapper, signal);
+        client.eConnect("127.0.0.1", tws.getPort(), 0);
+
+        EReader reader = new EReader(client, signal);
+        reader.start();
+        processor = new Thread(() -> {
+            while (client.isConnected()) {
+                signal.waitForSignal();
+                try {
+                    reader.processMsgs();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        processor.start();
+    }
+
+    @After
+    public void disconnect() throws Exception {
+        client.eDisconnect();
+        processor.join(5000);
+        tws.close();
+    }
+
+    @Test
+    public void eConnect_answersStartApi() throws Exception {
+        assertTrue(wrapper.nextValidId.await(5, TimeUnit.SECONDS));
+        assertTrue(wrapper.managedAccountsReceived.await(5, TimeUnit.SECONDS));
+        assertEquals(StubTws.ACCOUNT, wrapper.managedAccounts);
+    }
+
+    @Test
+    public void reqRealTimeBarsAndReqMktData_streamForTheirRequestIds() throws Exception {
+        client.reqRealTimeBars(7, stock("AAPL"), 5, "MIDPOINT", true, null);
+        client.reqMktData(8, stock("MSFT"), "", false, false, null);
+
+        assertTrue(wrapper.bars.await(5, TimeUnit.SECONDS));
+        assertTrue(wrapper.ticks.await(5, TimeUnit.SECONDS));
+        assertTrue(wrapper.barReqIds.stream().allMatch(reqId -> reqId == 7));
+        assertTrue(wrapper.tickReqIds.stream().allMatch(reqId -> reqId == 8));
+    }
+
+    @Test
+    public void placeOrder_fillsAtLimitPrice() throws Exception {
+        Order order = new Order();
+        order.action("BUY");
+        order.orderType("LMT");
+        order.totalQuantity(100);
+        order.lmtPrice(143.85);
+        client.placeOrder(StubTws.FIRST_ORDER_ID, stock("AAPL"), order);
+
+        assertTrue(wrapper.filled.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("Submitted", "Filled"), wrapper.orderStatuses);
+        assertEquals(143.85, wrapper.avgFillPrice, 0);
+    }
+
+    @Test
+    public void reqAccountUpdates_sendsValuesAndDownloadEnd() throws Exception {
+        client.reqAccountUpdates(true, "");
+
+        assertTrue(wrapper.accountDownloadEnd.await(5, TimeUnit.SECONDS));
+        assertEquals(3, wrapper.accountValues.size());
+    }
+
+    private static Contract stock(String symbol) {
+        Contract contract = new Contract();
+        contract.symbol(symbol);
+        contract.secType("STK");
+        contract.exchange("SMART");
+        contract.currency("USD");
+        return contract;
+    }
+
+    private static class RecordingWrapper extends DefaultEWrapper {
+        private final CountDownLatch nextValidId = new CountDownLatch(1);
+        private volatile String managedAccounts;
+        private final CountDownLatch managedAccountsReceived = new CountDownLatch(1);
+        private final CountDownLatch bars = new CountDownLatch(20);
+        private final List<Integer> barReqIds = new CopyOnWriteArrayList<>();
+        private final CountDownLatch ticks = new CountDownLatch(20);
+        private final List<Integer> tickReqIds = new CopyOnWriteArrayList<>();
+        private final List<String> orderStatuses = new CopyOnWriteArrayList<>();
+        private volatile double avgFillPrice;
+        private final CountDownLatch filled = new CountDownLatch(1);
+        private final List<String> accountValues = new CopyOnWriteArrayList<>();
+        private final CountDownLatch accountDownloadEnd = new CountDownLatch(1);
+
+        @Override
+        public void nextValidId(int orderId) {
+            nextValidId.countDown();
+        }
+
+        @Override
+        public void managedAccounts(String accountsList) {
+            managedAccounts = accountsList;
+            managedAccountsReceived.countDown();
+        }
+
+        @Override
+        public void realtimeBar(int reqId, long time, double open, double high, double low, double close,
+                long volume, double wap, int count) {
+            barReqIds.add(reqId);
+            bars.countDown();
+        }
+
+        @Override
+        public void tickPrice(int tickerId, int field, double price, TickAttr attribs) {
+            tickReqIds.add(tickerId);
+            ticks.countDown();
+        }
+
+        @Override
+        public void orderStatus(int orderId, String status, double filledQuantity, double remaining,
+                double avgFillPrice, int permId, int parentId, double lastFillPrice, int clientId, String whyHeld,
+                double mktCapPrice) {
+            orderStatuses.add(status);
+            if ("Filled".equals(status)) {
+                this.avgFillPrice = avgFillPrice;
+                filled.countDown();
+            }
+        }
+
+        @Override
+        public void updateAccountValue(String key, String value, String currency, String accountName) {
+            accountValues.add(key);
+        }
+
+        @Override
+        public void accountDownloadEnd(String accountName) {
+            accountDownloadEnd.countDown();
+        }
+    }
+}
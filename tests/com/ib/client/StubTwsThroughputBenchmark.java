@@ -0,0 +1,71 @@
+package com.ib.client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Subscribes to real time bars for a number of symbols on a {@link StubTws} streaming at increasing rates and reports
+ * how many bars per second reach the EWrapper, i.e. where EClientSocket, EReader and EDecoder stop keeping up.
+ * Run with {@code java com.ib.client.StubTwsThroughputBenchmark}.
+ */
+public class StubTwsThroughputBenchmark {
+    private static final int[] MESSAGES_PER_SECOND = {1_000, 10_000, 100_000, 1_000_000};
+    private static final int SYMBOLS = 100;
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURED_MILLIS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        // EClient logs every reqRealTimeBars at INFO
+        Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(Level.WARNING);
+
+        System.out.printf("%12s %14s%n", "stub msgs/s", "bars/s");
+        for (int messagesPerSecond : MESSAGES_PER_SECOND) {
+            try (StubTws tws = new StubTws(0, messagesPerSecond, SYMBOLS)) {
+                AtomicLong bars = new AtomicLong();
+                EReaderSignal signal = new EJavaSignal();
+                EClientSocket client = new EClientSocket(new DefaultEWrapper() {
+                    @Override
+                    public void realtimeBar(int reqId, long time, double open, double high, double low,
+                            double close, long volume, double wap, int count) {
+                        bars.lazySet(bars.get() + 1);
+                    }
+                }, signal);
+                client.eConnect("127.0.0.1", tws.getPort(), 0);
+
+                EReader reader = new EReader(client, signal);
+                reader.start();
+                Thread processor = new Thread(() -> {
+                    while (client.isConnected()) {
+                        signal.waitForSignal();
+                        try {
+                            reader.processMsgs();
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+                processor.start();
+
+                for (int reqId = 1; reqId <= SYMBOLS; reqId++) {
+                    Contract contract = new Contract();
+                    contract.symbol("SYM" + reqId);
+                    contract.secType("STK");
+                    contract.exchange("SMART");
+                    contract.currency("USD");
+                    client.reqRealTimeBars(reqId, contract, 5, "MIDPOINT", true, null);
+                }
+
+                Thread.sleep(WARMUP_MILLIS);
+                long before = bars.get();
+                Thread.sleep(MEASURED_MILLIS);
+                long received = bars.get() - before;
+
+                System.out.printf("%12d %14.0f%n", messagesPerSecond, received * 1000.0 / MEASURED_MILLIS);
+                client.eDisconnect();
+                processor.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ib.client;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class TickTypeTest {
+
+    @Test
+    public void get_everyIndex_returnsItsTickType() {
+        for (TickType tickType : TickType.values()) {
+            if (tickType != TickType.UNKNOWN) {
+                assertSame(tickType, TickType.get(tickType.index()));
+            }
+        }
+    }
+
+    @Test
+    public void get_unknownIndex_returnsUnknown() {
+        assertSame(TickType.UNKNOWN, TickType.get(-1));
+        assertSame(TickType.UNKNOWN, TickType.get(TickType.maxIndex() + 1));
+        assertSame(TickType.UNKNOWN, TickType.get(Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,193 @@
+package com.ib.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ib.client.Bar;
+import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.EClientErrors;
+import com.ib.client.Types.BarSize;
+import com.ib.client.Types.DurationUnit;
+import com.ib.client.Types.WhatToShow;
+
+/**
+ * Answers the requests by calling the controller's callbacks as its reader thread would. The controller is marked
+ * connected by its first order id; its requests do not reach a TWS, and the connection only reports that once, with
+ * no request id.
+ */
+public class ApiFuturesTest {
+    /** ApiController numbers requests from the first order id plus this offset */
+    private static final int FIRST_REQ_ID = 1 + 10000000;
+
+    private ConnectionHandler connection;
+    private ApiController controller;
+    private ApiFutures futures;
+
+    @Before
+    public void setUp() {
+        connection = new ConnectionHandler();
+        controller = new ApiController(connection, message -> { }, message -> { });
+        controller.nextValidId(1);
+        futures = new ApiFutures(controller, 5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void reqContractDetails_completesOnEnd() throws Exception {
+        CompletableFuture<List<ContractDetails>> future = futures.reqContractDetails(new Contract());
+        ContractDetails details = new ContractDetails();
+        controller.contractDetails(FIRST_REQ_ID, details);
+        assertFalse(future.isDone());
+
+        controller.contractDetailsEnd(FIRST_REQ_ID);
+        assertEquals(1, future.get().size());
+        assertSame(details, future.get().get(0));
+    }
+
+    @Test
+    public void reqContractDetails_errorOfRequest_failsIt() throws Exception {
+        CompletableFuture<List<ContractDetails>> future = futures.reqContractDetails(new Contract());
+        controller.error(FIRST_REQ_ID, 200, "No security definition has been found for the request");
+        assertEquals(200, failureOf(future).errorCode());
+    }
+
+    @Test
+    public void reqHistoricalData_warningOfRequest_completesWithBars() throws Exception {
+        CompletableFuture<List<Bar>> future = futures.reqHistoricalData(new Contract(), "", 1, DurationUnit.DAY,
+                BarSize._1_min, WhatToShow.TRADES, true);
+        controller.historicalData(FIRST_REQ_ID, new Bar("1500000000", 1, 2, 0.5, 1.5, 100, 10, 1.2));
+        controller.error(FIRST_REQ_ID, 2174, "Time zone in request is deprecated");
+        assertFalse(future.isDone());
+        controller.historicalData(FIRST_REQ_ID, new Bar("1500000060", 1.5, 2, 1, 1.8, 120, 12, 1.6));
+        controller.historicalDataEnd(FIRST_REQ_ID, "", "");
+
+        assertEquals(2, future.get().size());
+        assertEquals("1500000060", future.get().get(1).time());
+    }
+
+    @Test
+    public void reqHistoricalData_errorOfRequest_cancelsIt() throws Exception {
+        CompletableFuture<List<Bar>> future = futures.reqHistoricalData(new Contract(), "", 1, DurationUnit.DAY,
+                BarSize._1_min, WhatToShow.TRADES, true);
+        int sent = connection.notConnected;
+        controller.error(FIRST_REQ_ID, 162, "Historical market data service error message");
+
+        assertEquals(162, failureOf(future).errorCode());
+        // the cancel reached the client, which reports that it is not connected
+        assertEquals(sent + 1, connection.notConnected);
+    }
+
+    @Test
+    public void reqContractDetails_cancelled_forgetsIt() throws Exception {
+        CompletableFuture<List<ContractDetails>> future = futures.reqContractDetails(new Contract());
+        assertTrue(future.cancel(false));
+
+        controller.contractDetails(FIRST_REQ_ID, new ContractDetails());
+        assertEquals("Error: no contract details handler for reqId " + FIRST_REQ_ID, connection.shown.get(0));
+    }
+
+    @Test
+    public void reqHeadTimestamp_notAnswered_timesOut() throws Exception {
+        CompletableFuture<Long> future = futures.withTimeout(20, TimeUnit.MILLISECONDS)
+                .reqHeadTimestamp(new Contract(), WhatToShow.TRADES, true);
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // a late answer is ignored
+        controller.headTimestamp(FIRST_REQ_ID, "1500000000");
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void reqMatchingSymbols_notConnected_failsAtOnce() throws Exception {
+        ApiController disconnected = new ApiController(new ConnectionHandler(), message -> { }, message -> { });
+        CompletableFuture<?> future = new ApiFutures(disconnected, 5, TimeUnit.SECONDS).reqMatchingSymbols("IB");
+        assertEquals(EClientErrors.NOT_CONNECTED.code(), failureOf(future).errorCode());
+    }
+
+    @Test
+    public void reqHistoricalData_notConnected_reportsItOnce() throws Exception {
+        ConnectionHandler disconnectedConnection = new ConnectionHandler();
+        ApiController disconnected = new ApiController(disconnectedConnection, message -> { }, message -> { });
+        CompletableFuture<?> future = new ApiFutures(disconnected, 5, TimeUnit.SECONDS).reqHistoricalData(
+                new Contract(), "", 1, DurationUnit.DAY, BarSize._1_min, WhatToShow.TRADES, true);
+
+        assertEquals(EClientErrors.NOT_CONNECTED.code(), failureOf(future).errorCode());
+        // the request was never sent, so it is not cancelled either
+        assertEquals(1, disconnectedConnection.notConnected);
+    }
+
+    /** Many requests are in flight at once without a thread each, and are answered in any order */
+    @Test
+    public void reqContractDetails_manyConcurrent_eachCompletesWithItsAnswer() throws Exception {
+        int requests = 1000;
+        List<CompletableFuture<List<ContractDetails>>> pending = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            pending.add(futures.reqContractDetails(new Contract()));
+        }
+        for (int i = requests - 1; i >= 0; i--) {
+            for (int row = 0; row < i % 3; row++) {
+                controller.contractDetails(FIRST_REQ_ID + i, new ContractDetails());
+            }
+            controller.contractDetailsEnd(FIRST_REQ_ID + i);
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+        for (int i = 0; i < requests; i++) {
+            assertEquals(i % 3, pending.get(i).get().size());
+        }
+    }
+
+    private static ApiFutures.RequestFailedException failureOf(CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return (ApiFutures.RequestFailedException) e.getCause();
+        }
+        throw new AssertionError("the request did not fail");
+    }
+
+    static class ConnectionHandler implements ApiController.IConnectionHandler {
+        private final List<String> shown = new ArrayList<>();
+        private int notConnected;
+
+        @Override public void connected() {
+        }
+
+        @Override public void disconnected() {
+        }
+
+        @Override public void accountList(List<String> list) {
+        }
+
+        @Override public void error(Exception e) {
+        }
+
+        @Override public void message(int id, int errorCode, String errorMsg) {
+            if (errorCode == EClientErrors.NOT_CONNECTED.code()) {
+                notConnected++;
+            }
+        }
+
+        @Override public void show(String string) {
+            shown.add(string);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.ib.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares the cost of a callback's handler lookup and of a cancellation by handler in the HashMap ApiController
+ * used to keep its handlers in, a ConcurrentHashMap and a {@link HandlerRegistry}. Run with
+ * {@code java com.ib.controller.HandlerRegistryBenchmark}.
+ */
+public class HandlerRegistryBenchmark {
+    private static final int[] NUMBER_OF_HANDLERS = {10, 100, 1000, 10000};
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int LOOKUPS_PER_ROUND = 1 << 20;
+    private static final int CANCELS_PER_ROUND = 1000;
+
+    // consumed after each round so that the JIT cannot drop the lookups
+    private static long blackhole;
+
+    public static void main(String[] args) {
+        System.out.printf("%9s %14s %14s %14s %16s %16s%n", "handlers", "HashMap ns", "CHM ns", "registry ns",
+                "scan cancel ns", "registry cancel ns");
+
+        for (int numberOfHandlers : NUMBER_OF_HANDLERS) {
+            Map<Integer, Object> hashMap = new HashMap<>();
+            Map<Integer, Object> concurrentMap = new ConcurrentHashMap<>();
+            HandlerRegistry<Object> registry = new HandlerRegistry<>();
+            Object[] handlers = new Object[numberOfHandlers];
+            for (int id = 0; id < numberOfHandlers; id++) {
+                handlers[id] = new Object();
+                hashMap.put(id, handlers[id]);
+                concurrentMap.put(id, handlers[id]);
+                registry.put(id, handlers[id]);
+            }
+
+            int[] ids = new int[LOOKUPS_PER_ROUND];
+            Random random = new Random(42);
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = random.nextInt(numberOfHandlers);
+            }
+
+            double hashMapLookup = measure(LOOKUPS_PER_ROUND, () -> {
+                long found = 0;
+                for (int id : ids) {
+                    found += hashMap.get(id) != null ? 1 : 0;
+                }
+                return found;
+            });
+            double concurrentMapLookup = measure(LOOKUPS_PER_ROUND, () -> {
+                long found = 0;
+                for (int id : ids) {
+                    found += concurrentMap.get(id) != null ? 1 : 0;
+                }
+                return found;
+            });
+            double registryLookup = measure(LOOKUPS_PER_ROUND, () -> {
+                long found = 0;
+                for (int id : ids) {
+                    found += registry.get(id) != null ? 1 : 0;
+                }
+                return found;
+            });
+
+            // cancels a random handler and subscribes it again, so that the number of handlers stays the same
+            double scanCancel = measure(CANCELS_PER_ROUND, () -> {
+                long found = 0;
+                for (int i = 0; i < CANCELS_PER_ROUND; i++) {
+                    Object handler = handlers[ids[i]];
+                    Integer id = getAndRemoveKey(hashMap, handler);
+                    hashMap.put(id, handler);
+                    found += id;
+                }
+                return found;
+            });
+            double registryCancel = measure(CANCELS_PER_ROUND, () -> {
+                long found = 0;
+                for (int i = 0; i < CANCELS_PER_ROUND; i++) {
+                    Object handler = handlers[ids[i]];
+                    int id = registry.removeHandler(handler);
+                    registry.put(id, handler);
+                    found += id;
+                }
+                return found;
+            });
+
+            System.out.printf("%9d %14.2f %14.2f %14.2f %16.1f %16.1f%n", numberOfHandlers, hashMapLookup,
+                    concurrentMapLookup, registryLookup, scanCancel, registryCancel);
+        }
+        System.out.println("(checksum " + blackhole + ")");
+    }
+
+    /** The cancellation ApiController performed before its handlers were kept in registries */
+    private static <K, V> K getAndRemoveKey(Map<K, V> map, V value) {
+        for (Entry<K, V> entry : map.entrySet()) {
+            if (entry.getValue() == value) {
+                map.remove(entry.getKey());
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /** Returns the average nanoseconds per operation over the measured rounds */
+    private static double measure(int operationsPerRound, Round round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            blackhole += round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            blackhole += round.run();
+        }
+        return (System.nanoTime() - start) / (double) (MEASURED_ROUNDS * (long) operationsPerRound);
+    }
+
+    private interface Round {
+        long run();
+    }
+}
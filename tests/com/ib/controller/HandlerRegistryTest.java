@@ -0,0 +1,154 @@
+package com.ib.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class HandlerRegistryTest {
+
+    @Test
+    public void putGetRemove_manyIds_likeMap() {
+        HandlerRegistry<Handler> registry = new HandlerRegistry<>();
+        List<Handler> handlers = new ArrayList<>();
+        for (int id = 0; id < 1000; id++) {
+            Handler handler = new Handler(id);
+            handlers.add(handler);
+            registry.put(id, handler);
+        }
+        for (int id = 0; id < 1000; id += 2) {
+            assertSame(handlers.get(id), registry.remove(id));
+        }
+
+        assertEquals(500, registry.size());
+        for (int id = 0; id < 1000; id++) {
+            assertSame(id % 2 == 0 ? null : handlers.get(id), registry.get(id));
+        }
+        assertNull(registry.get(-1));
+        assertNull(registry.remove(0));
+    }
+
+    @Test
+    public void removeHandler_registeredUnderSeveralIds_removesOldestFirst() {
+        HandlerRegistry<Handler> registry = new HandlerRegistry<>();
+        Handler shared = new Handler(0);
+        registry.put(5, shared);
+        registry.put(3, shared);
+        registry.put(9, new Handler(9));
+
+        assertEquals(5, registry.removeHandler(shared));
+        assertNull(registry.get(5));
+        assertEquals(3, registry.idOf(shared));
+        assertEquals(3, registry.removeHandler(shared));
+        assertEquals(HandlerRegistry.NO_ID, registry.removeHandler(shared));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void put_replacesHandler_reverseIndexFollows() {
+        HandlerRegistry<Handler> registry = new HandlerRegistry<>();
+        Handler first = new Handler(1);
+        Handler second = new Handler(1);
+        registry.put(1, first);
+        registry.put(1, second);
+
+        assertSame(second, registry.get(1));
+        assertEquals(HandlerRegistry.NO_ID, registry.removeHandler(first));
+        assertEquals(1, registry.removeHandler(second));
+
+        // removed ids can be registered again
+        registry.put(1, first);
+        assertSame(first, registry.get(1));
+        assertEquals(1, registry.size());
+    }
+
+    /**
+     * Subscribes and cancels from several threads while a callback thread looks handlers up, as ApiController's
+     * callers and its EReader thread do. A lookup must only ever find the handler registered under the id looked up.
+     */
+    @Test
+    public void concurrentSubscribeCancelAndCallbacks_lookupsSeeOwnHandler() throws Exception {
+        int writers = 3;
+        int idsPerWriter = 200;
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        HandlerRegistry<Handler> registry = new HandlerRegistry<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong callbacks = new AtomicLong();
+        AtomicInteger nextId = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(writers + 1);
+        long deadline = System.nanoTime() + durationNanos;
+
+        List<List<Handler>> live = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            List<Handler> subscribed = new ArrayList<>();
+            live.add(subscribed);
+            new Thread(() -> {
+                Random random = new Random();
+                try {
+                    while (System.nanoTime() < deadline) {
+                        if (subscribed.size() < idsPerWriter && random.nextBoolean()) {
+                            Handler handler = new Handler(nextId.getAndIncrement());
+                            registry.put(handler.id, handler);
+                            subscribed.add(handler);
+                        } else if (!subscribed.isEmpty()) {
+                            Handler handler = subscribed.remove(random.nextInt(subscribed.size()));
+                            if (registry.removeHandler(handler) != handler.id) {
+                                failure.compareAndSet(null, "cancel of " + handler.id + " found another id");
+                            }
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        new Thread(() -> {
+            Random random = new Random();
+            try {
+                while (System.nanoTime() < deadline) {
+                    int id = random.nextInt(Math.max(1, nextId.get()));
+                    Handler handler = registry.get(id);
+                    if (handler != null) {
+                        callbacks.incrementAndGet();
+                        if (handler.id != id) {
+                            failure.compareAndSet(null, "callback for " + id + " got handler of " + handler.id);
+                        }
+                    }
+                }
+            } finally {
+                done.countDown();
+            }
+        }).start();
+
+        done.await(10, TimeUnit.SECONDS);
+        assertNull(failure.get(), failure.get());
+
+        int subscribed = 0;
+        for (List<Handler> handlers : live) {
+            subscribed += handlers.size();
+            for (Handler handler : handlers) {
+                assertSame(handler, registry.get(handler.id));
+            }
+        }
+        assertEquals(subscribed, registry.size());
+    }
+
+    private static class Handler {
+        private final int id;
+
+        Handler(int id) {
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ib.controller;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.ib.client.Types.DeepSide;
+import com.ib.client.Types.DeepType;
+
+/**
+ * Measures the cost of applying depth updates to many {@link OrderBook}s, and the allocation per update once the
+ * books have filled. The updates are random changes of L2 books ten and a hundred rows deep, each followed by queries
+ * of the best price, the size of the first five rows and the size through the best bid, so that every query follows
+ * an update. Run with {@code java com.ib.controller.OrderBookBenchmark}.
+ */
+public class OrderBookBenchmark {
+    private static final int BOOKS = 200;
+    private static final int[] DEPTHS = {10, 100};
+    private static final int UPDATES = 2_000_000;
+    private static final int ROUNDS = 10;
+    private static final String[] MARKET_MAKERS = {"NSDQ", "ARCA", "BATS", "EDGX", "IEX"};
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        for (int depth : DEPTHS) {
+            run(depth);
+        }
+    }
+
+    private static void run(int rows) {
+        OrderBook[] books = new OrderBook[BOOKS];
+        for (int i = 0; i < BOOKS; i++) {
+            books[i] = new OrderBook();
+            for (int row = 0; row < rows; row++) {
+                books[i].updateMktDepth(row, MARKET_MAKERS[row % MARKET_MAKERS.length], DeepType.INSERT, DeepSide.BUY,
+                        100 - row * 0.01, 100);
+                books[i].updateMktDepth(row, MARKET_MAKERS[row % MARKET_MAKERS.length], DeepType.INSERT, DeepSide.SELL,
+                        100.01 + row * 0.01, 100);
+            }
+        }
+
+        // a delete followed by an insert at the same position keeps each book at its depth
+        Random random = new Random(42);
+        int[] book = new int[UPDATES];
+        int[] position = new int[UPDATES];
+        DeepType[] operation = new DeepType[UPDATES];
+        DeepSide[] side = new DeepSide[UPDATES];
+        int[] size = new int[UPDATES];
+        for (int i = 0; i < UPDATES; i += 2) {
+            book[i] = book[i + 1] = random.nextInt(BOOKS);
+            position[i] = position[i + 1] = random.nextInt(rows);
+            side[i] = side[i + 1] = random.nextBoolean() ? DeepSide.BUY : DeepSide.SELL;
+            operation[i] = random.nextInt(3) == 0 ? DeepType.DELETE : DeepType.UPDATE;
+            operation[i + 1] = operation[i] == DeepType.DELETE ? DeepType.INSERT : DeepType.UPDATE;
+            size[i] = size[i + 1] = 100 + random.nextInt(900);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        double nanosPerUpdate = 0;
+        double bytesPerUpdate = 0;
+        double checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long allocatedBefore = THREAD_MX_BEAN.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int i = 0; i < UPDATES; i++) {
+                OrderBook target = books[book[i]];
+                double price = side[i] == DeepSide.BUY ? 100 - position[i] * 0.01 : 100.01 + position[i] * 0.01;
+                target.updateMktDepth(position[i], MARKET_MAKERS[i % MARKET_MAKERS.length], operation[i], side[i],
+                        price, size[i]);
+                checksum += target.bestBid() + target.cumulativeSize(side[i], 5)
+                        + target.cumulativeSizeThrough(DeepSide.BUY, target.bestBid());
+            }
+            nanosPerUpdate = (System.nanoTime() - start) / (double) UPDATES;
+            bytesPerUpdate = (THREAD_MX_BEAN.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) UPDATES;
+        }
+        System.out.printf("%d books of %d rows: %.1f ns/update (%.1f M updates/s), %.2f bytes/update%n", BOOKS, rows,
+                nanosPerUpdate, 1000 / nanosPerUpdate, bytesPerUpdate);
+        System.out.println("(checksum " + checksum + ")");
+    }
+}
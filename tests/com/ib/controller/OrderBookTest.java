@@ -0,0 +1,122 @@
+package com.ib.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.ib.client.Types.DeepSide;
+import com.ib.client.Types.DeepType;
+
+public class OrderBookTest {
+
+    @Test
+    public void updateMktDepth_insertUpdateDelete_appliedByPosition() {
+        OrderBook book = new OrderBook();
+        assertTrue(Double.isNaN(book.bestBid()));
+
+        book.updateMktDepth(0, null, DeepType.INSERT, DeepSide.BUY, 10.0, 100);
+        book.updateMktDepth(0, null, DeepType.INSERT, DeepSide.BUY, 10.2, 300);
+        book.updateMktDepth(1, null, DeepType.INSERT, DeepSide.BUY, 10.1, 200);
+        book.updateMktDepth(2, null, DeepType.UPDATE, DeepSide.BUY, 10.0, 150);
+        book.updateMktDepth(0, null, DeepType.INSERT, DeepSide.SELL, 10.4, 50);
+        book.updateMktDepth(0, null, DeepType.INSERT, DeepSide.SELL, 10.3, 40);
+        book.updateMktDepth(0, null, DeepType.DELETE, DeepSide.SELL, 10.3, 40);
+
+        assertEquals(3, book.rows(DeepSide.BUY));
+        assertEquals(10.2, book.bestBid(), 0);
+        assertEquals(10.1, book.price(DeepSide.BUY, 1), 0);
+        assertEquals(150, book.size(DeepSide.BUY, 2));
+        assertEquals(1, book.rows(DeepSide.SELL));
+        assertEquals(10.4, book.bestAsk(), 0);
+        assertEquals(7, book.updates());
+    }
+
+    @Test
+    public void updateMktDepth_positionsPastTheEnd_appendOrIgnore() {
+        OrderBook book = new OrderBook();
+        book.updateMktDepth(5, null, DeepType.INSERT, DeepSide.BUY, 10.0, 100);
+        book.updateMktDepth(3, null, DeepType.UPDATE, DeepSide.BUY, 9.9, 100);
+        book.updateMktDepth(7, null, DeepType.DELETE, DeepSide.BUY, 0, 0);
+
+        assertEquals(2, book.rows(DeepSide.BUY));
+        assertEquals(9.9, book.price(DeepSide.BUY, 1), 0);
+    }
+
+    @Test
+    public void sizeQueries_l2BookWithSeveralRowsPerPrice() {
+        OrderBook book = new OrderBook();
+        double[] bids = {10.2, 10.2, 10.1, 10.0, 10.0, 10.0};
+        for (int i = 0; i < bids.length; i++) {
+            book.updateMktDepth(i, "MM" + (i % 2), DeepType.INSERT, DeepSide.BUY, bids[i], 100 * (i + 1));
+        }
+        double[] asks = {10.3, 10.4, 10.4};
+        for (int i = 0; i < asks.length; i++) {
+            book.updateMktDepth(i, "MM" + (i % 2), DeepType.INSERT, DeepSide.SELL, asks[i], 10);
+        }
+
+        assertEquals(300, book.sizeAt(DeepSide.BUY, 10.2));
+        assertEquals(1500, book.sizeAt(DeepSide.BUY, 10.0));
+        assertEquals(0, book.sizeAt(DeepSide.BUY, 10.05));
+        assertEquals(600, book.cumulativeSizeThrough(DeepSide.BUY, 10.1));
+        assertEquals(600, book.cumulativeSize(DeepSide.BUY, 3));
+        assertEquals(2100, book.cumulativeSize(DeepSide.BUY, 100));
+        assertEquals(20, book.sizeAt(DeepSide.SELL, 10.4));
+        assertEquals(10, book.cumulativeSizeThrough(DeepSide.SELL, 10.35));
+
+        // cumulative sizes follow later updates
+        book.updateMktDepth(0, "MM0", DeepType.DELETE, DeepSide.BUY, 10.2, 100);
+        assertEquals(200, book.sizeAt(DeepSide.BUY, 10.2));
+        assertEquals(500, book.cumulativeSize(DeepSide.BUY, 2));
+    }
+
+    @Test
+    public void cumulativeSize_updatesInterleavedWithQueries_matchesSumOfRows() {
+        OrderBook book = new OrderBook();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            int rows = book.rows(DeepSide.BUY);
+            int position = random.nextInt(rows + 1);
+            int size = 1 + random.nextInt(100);
+            if (rows > 20 || (rows > 0 && random.nextInt(4) == 0)) {
+                book.updateMktDepth(position, null, DeepType.DELETE, DeepSide.BUY, 0, 0);
+            } else if (position < rows && random.nextBoolean()) {
+                book.updateMktDepth(position, null, DeepType.UPDATE, DeepSide.BUY, book.price(DeepSide.BUY, position),
+                        size);
+            } else {
+                book.updateMktDepth(position, null, DeepType.INSERT, DeepSide.BUY, 0, size);
+            }
+
+            // queries of varying depth, so that the sums are brought up to date piecemeal
+            int depth = random.nextInt(book.rows(DeepSide.BUY) + 2);
+            long expected = 0;
+            for (int row = 0; row < Math.min(depth, book.rows(DeepSide.BUY)); row++) {
+                expected += book.size(DeepSide.BUY, row);
+            }
+            assertEquals(expected, book.cumulativeSize(DeepSide.BUY, depth));
+        }
+    }
+
+    @Test
+    public void marketMakers_internedAcrossBooks() {
+        OrderBook first = new OrderBook();
+        OrderBook second = new OrderBook();
+        first.updateMktDepth(0, "NSDQ", DeepType.INSERT, DeepSide.BUY, 10, 1);
+        second.updateMktDepth(0, new String("NSDQ"), DeepType.INSERT, DeepSide.SELL, 11, 1);
+        second.updateMktDepth(0, null, DeepType.INSERT, DeepSide.BUY, 10, 1);
+
+        int id = first.marketMakerId(DeepSide.BUY, 0);
+        assertEquals(id, second.marketMakerId(DeepSide.SELL, 0));
+        assertEquals("NSDQ", OrderBook.marketMaker(id));
+        assertEquals(OrderBook.NO_MARKET_MAKER, second.marketMakerId(DeepSide.BUY, 0));
+        assertNull(OrderBook.marketMaker(OrderBook.NO_MARKET_MAKER));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void price_positionPastTheEnd_throws() {
+        new OrderBook().price(DeepSide.BUY, 0);
+    }
+}
@@ -0,0 +1,300 @@
+package com.ib.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ib.client.Bar;
+import com.ib.client.Contract;
+import com.ib.client.TickAttr;
+import com.ib.client.TickType;
+import com.ib.client.Types.DeepSide;
+import com.ib.client.Types.DeepType;
+import com.ib.client.Types.SecType;
+import com.ib.client.Types.WhatToShow;
+import com.ib.controller.ApiController.IDeepMktDataHandler;
+import com.ib.controller.ApiController.IRealTimeBarHandler;
+import com.ib.controller.ApiController.IRequestErrorHandler;
+import com.ib.controller.ApiController.ITopMktDataHandler;
+
+public class SharedSubscriptionsTest {
+    /** ApiController numbers requests from the first order id plus this offset */
+    private static final int FIRST_REQ_ID_OFFSET = 10000000;
+
+    @Test
+    public void join_sameContractAndParameters_sharesOneSubscription() {
+        SharedSubscriptions<ITopMktDataHandler, MarketDataFanOut.TopMktData> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.TopMktData::new);
+        RecordingTopHandler first = new RecordingTopHandler();
+        RecordingTopHandler second = new RecordingTopHandler();
+
+        MarketDataFanOut.TopMktData fanOut = shared.join(SharedSubscriptions.key(stock("AAPL"), ""), first);
+        assertNotNull(fanOut);
+        assertNull(shared.join(SharedSubscriptions.key(stock("AAPL"), ""), second));
+        assertEquals(1, shared.subscriptionCount());
+        assertEquals(2, shared.handlerCount());
+
+        fanOut.tickPrice(TickType.LAST, 10.5, new TickAttr());
+        assertEquals(1, first.messages.size());
+        assertEquals(1, second.messages.size());
+    }
+
+    @Test
+    public void leave_lastHandler_returnsFanOutToCancel() {
+        SharedSubscriptions<ITopMktDataHandler, MarketDataFanOut.TopMktData> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.TopMktData::new);
+        RecordingTopHandler first = new RecordingTopHandler();
+        RecordingTopHandler second = new RecordingTopHandler();
+        MarketDataFanOut.TopMktData fanOut = shared.join(SharedSubscriptions.key(stock("AAPL"), ""), first);
+        assertFalse(shared.requested(fanOut));
+        shared.join(SharedSubscriptions.key(stock("AAPL"), ""), second);
+
+        assertNull(shared.leave(first));
+        assertFalse(shared.isJoined(first));
+        fanOut.tickSize(TickType.VOLUME, 100);
+        assertEquals(0, first.messages.size());
+        assertEquals(1, second.messages.size());
+
+        assertSame(fanOut, shared.leave(second));
+        assertNull(shared.leave(second));
+        assertEquals(0, shared.subscriptionCount());
+
+        // the next handler starts a new subscription
+        assertNotNull(shared.join(SharedSubscriptions.key(stock("AAPL"), ""), first));
+    }
+
+    @Test
+    public void leave_lastHandlerBeforeRequested_requesterCancels() {
+        SharedSubscriptions<ITopMktDataHandler, MarketDataFanOut.TopMktData> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.TopMktData::new);
+        RecordingTopHandler handler = new RecordingTopHandler();
+        MarketDataFanOut.TopMktData fanOut = shared.join(SharedSubscriptions.key(stock("AAPL"), ""), handler);
+
+        // the handler leaves on another thread while its subscription is being requested
+        assertNull(shared.leave(handler));
+        assertEquals(0, shared.subscriptionCount());
+
+        assertTrue(shared.requested(fanOut));
+    }
+
+    @Test
+    public void requested_thenEndedByTws_nothingToCancel() {
+        SharedSubscriptions<ITopMktDataHandler, MarketDataFanOut.TopMktData> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.TopMktData::new);
+        RecordingTopHandler handler = new RecordingTopHandler();
+        MarketDataFanOut.TopMktData fanOut = shared.join(SharedSubscriptions.key(stock("AAPL"), ""), handler);
+
+        shared.end(fanOut);
+
+        assertFalse(shared.requested(fanOut));
+        assertNull(shared.leave(handler));
+    }
+
+    @Test
+    public void join_runningTopMktData_replaysLastState() {
+        SharedSubscriptions<ITopMktDataHandler, MarketDataFanOut.TopMktData> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.TopMktData::new);
+        MarketDataFanOut.TopMktData fanOut = shared.join(SharedSubscriptions.key(stock("AAPL"), ""),
+                new RecordingTopHandler());
+        fanOut.marketDataType(3);
+        fanOut.tickPrice(TickType.BID, 10.0, new TickAttr());
+        fanOut.tickPrice(TickType.BID, 10.1, new TickAttr());
+        fanOut.tickSize(TickType.BID_SIZE, 200);
+        fanOut.tickString(TickType.LAST_TIMESTAMP, "1500000000");
+        fanOut.tickSnapshotEnd();
+
+        RecordingTopHandler late = new RecordingTopHandler();
+        shared.join(SharedSubscriptions.key(stock("AAPL"), ""), late);
+
+        assertEquals(4, late.messages.size());
+        assertTrue(late.messages.contains("type 3"));
+        assertTrue(late.messages.contains("BID 10.1"));
+        assertTrue(late.messages.contains("BID_SIZE 200"));
+        assertTrue(late.messages.contains("LAST_TIMESTAMP 1500000000"));
+    }
+
+    @Test
+    public void join_runningRealTimeBars_replaysLastBar() {
+        SharedSubscriptions<IRealTimeBarHandler, MarketDataFanOut.RealTimeBars> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.RealTimeBars::new);
+        SharedSubscriptions.Key key = SharedSubscriptions.key(stock("AAPL"), WhatToShow.TRADES, true);
+        RecordingBarHandler first = new RecordingBarHandler();
+        MarketDataFanOut.RealTimeBars fanOut = shared.join(key, first);
+
+        RecordingBarHandler early = new RecordingBarHandler();
+        shared.join(SharedSubscriptions.key(stock("AAPL"), WhatToShow.TRADES, true), early);
+        assertEquals(0, early.times.size());
+
+        fanOut.realtimeBar(100, 1, 2, 0.5, 1.5, 10, 1.2, 3);
+        fanOut.realtimeBar(105, 1.5, 2, 1, 1.8, 12, 1.6, 4);
+
+        RecordingBarHandler late = new RecordingBarHandler();
+        shared.join(key, late);
+        assertEquals(2, first.times.size());
+        assertEquals(2, early.times.size());
+        assertEquals(1, late.times.size());
+        assertEquals(105L, (long) late.times.get(0));
+    }
+
+    @Test
+    public void join_runningDeepMktData_replaysBookAsInserts() {
+        SharedSubscriptions<IDeepMktDataHandler, MarketDataFanOut.DeepMktData> shared =
+                new SharedSubscriptions<>(MarketDataFanOut.DeepMktData::new);
+        MarketDataFanOut.DeepMktData fanOut = shared.join(SharedSubscriptions.key(stock("AAPL"), 5),
+                new RecordingDepthHandler());
+        fanOut.updateMktDepth(0, "", DeepType.INSERT, DeepSide.BUY, 10.0, 100);
+        fanOut.updateMktDepth(0, "", DeepType.INSERT, DeepSide.BUY, 10.1, 200);
+        fanOut.updateMktDepth(1, "", DeepType.UPDATE, DeepSide.BUY, 10.0, 150);
+        fanOut.updateMktDepth(0, "", DeepType.INSERT, DeepSide.SELL, 10.3, 50);
+        fanOut.updateMktDepth(1, "", DeepType.INSERT, DeepSide.SELL, 10.4, 60);
+        fanOut.updateMktDepth(0, "", DeepType.DELETE, DeepSide.SELL, 10.3, 50);
+
+        RecordingDepthHandler late = new RecordingDepthHandler();
+        shared.join(SharedSubscriptions.key(stock("AAPL"), 5), late);
+
+        assertEquals(3, late.messages.size());
+        assertEquals("0 INSERT BUY 10.1 200", late.messages.get(0));
+        assertEquals("1 INSERT BUY 10.0 150", late.messages.get(1));
+        assertEquals("0 INSERT SELL 10.4 60", late.messages.get(2));
+    }
+
+    @Test
+    public void key_identifiesContractByConidAndExchangeOrByFields() {
+        Contract byConid = stock("AAPL");
+        byConid.conid(265598);
+        Contract sameConid = stock("IBM");
+        sameConid.conid(265598);
+        Contract otherExchange = stock("AAPL");
+        otherExchange.conid(265598);
+        otherExchange.exchange("ISLAND");
+
+        assertEquals(SharedSubscriptions.key(byConid, ""), SharedSubscriptions.key(sameConid, ""));
+        assertEquals(SharedSubscriptions.key(byConid, "").hashCode(), SharedSubscriptions.key(sameConid, "").hashCode());
+        assertNotEquals(SharedSubscriptions.key(byConid, ""), SharedSubscriptions.key(otherExchange, ""));
+        assertNotEquals(SharedSubscriptions.key(byConid, ""), SharedSubscriptions.key(byConid, "233"));
+
+        Contract reused = stock("AAPL");
+        SharedSubscriptions.Key key = SharedSubscriptions.key(reused, "");
+        reused.symbol("IBM");
+        assertEquals(SharedSubscriptions.key(stock("AAPL"), ""), key);
+        assertNotEquals(SharedSubscriptions.key(stock("MSFT"), ""), key);
+    }
+
+    @Test
+    public void error_ofSharedTopMktData_endsItForEveryHandler() {
+        ApiController controller = connectedController(1);
+        int reqId = 1 + FIRST_REQ_ID_OFFSET;
+        RecordingTopHandler first = new RecordingTopHandler();
+        RecordingTopHandler second = new RecordingTopHandler();
+        controller.reqTopMktData(stock("AAPL"), "", false, false, first);
+        controller.reqTopMktData(stock("AAPL"), "", false, false, second);
+
+        controller.error(reqId, 2104, "Market data farm connection is OK");
+        controller.tickPrice(reqId, TickType.LAST.index(), 10.5, new TickAttr());
+        assertEquals(1, first.messages.size());
+
+        controller.error(reqId, 354, "Requested market data is not subscribed");
+        assertEquals("error 354", first.messages.get(1));
+        assertEquals("error 354", second.messages.get(1));
+        controller.tickPrice(reqId, TickType.LAST.index(), 10.6, new TickAttr());
+        assertEquals(2, first.messages.size());
+
+        // the next handler requests it again
+        RecordingTopHandler late = new RecordingTopHandler();
+        controller.reqTopMktData(stock("AAPL"), "", false, false, late);
+        controller.tickPrice(reqId + 1, TickType.LAST.index(), 10.7, new TickAttr());
+        assertEquals(1, late.messages.size());
+        assertEquals(2, second.messages.size());
+    }
+
+    @Test
+    public void connectionClosed_endsSharedSubscriptions() {
+        ApiController controller = connectedController(1);
+        RecordingTopHandler first = new RecordingTopHandler();
+        RecordingBarHandler bars = new RecordingBarHandler();
+        controller.reqTopMktData(stock("AAPL"), "", false, false, first);
+        controller.reqRealTimeBars(stock("AAPL"), WhatToShow.TRADES, true, bars);
+
+        controller.connectionClosed();
+        controller.nextValidId(100);
+
+        RecordingTopHandler late = new RecordingTopHandler();
+        controller.reqTopMktData(stock("AAPL"), "", false, false, late);
+        controller.tickPrice(100 + FIRST_REQ_ID_OFFSET, TickType.LAST.index(), 10.5, new TickAttr());
+        assertEquals(1, late.messages.size());
+        assertEquals(0, first.messages.size());
+
+        RecordingBarHandler lateBars = new RecordingBarHandler();
+        controller.reqRealTimeBars(stock("AAPL"), WhatToShow.TRADES, true, lateBars);
+        controller.realtimeBar(101 + FIRST_REQ_ID_OFFSET, 100, 1, 2, 0.5, 1.5, 10, 1.2, 3);
+        assertEquals(1, lateBars.times.size());
+        assertEquals(0, bars.times.size());
+    }
+
+    /** A controller marked connected by its first order id; its requests do not reach a TWS */
+    private static ApiController connectedController(int orderId) {
+        ApiController controller = new ApiController(new ApiFuturesTest.ConnectionHandler(), message -> { },
+                message -> { });
+        controller.nextValidId(orderId);
+        return controller;
+    }
+
+    private static Contract stock(String symbol) {
+        Contract contract = new Contract();
+        contract.symbol(symbol);
+        contract.secType(SecType.STK);
+        contract.exchange("SMART");
+        contract.currency("USD");
+        return contract;
+    }
+
+    private static class RecordingTopHandler extends ApiController.TopMktDataAdapter implements IRequestErrorHandler {
+        private final List<String> messages = new ArrayList<>();
+
+        @Override public void requestError(int errorCode, String errorMsg) {
+            messages.add("error " + errorCode);
+        }
+
+        @Override public void tickPrice(TickType tickType, double price, TickAttr attribs) {
+            messages.add(tickType + " " + price);
+        }
+
+        @Override public void tickSize(TickType tickType, int size) {
+            messages.add(tickType + " " + size);
+        }
+
+        @Override public void tickString(TickType tickType, String value) {
+            messages.add(tickType + " " + value);
+        }
+
+        @Override public void marketDataType(int marketDataType) {
+            messages.add("type " + marketDataType);
+        }
+    }
+
+    private static class RecordingBarHandler implements IRealTimeBarHandler {
+        private final List<Long> times = new ArrayList<>();
+
+        @Override public void realtimeBar(Bar bar) {
+            times.add(Long.parseLong(bar.time()));
+        }
+    }
+
+    private static class RecordingDepthHandler implements IDeepMktDataHandler {
+        private final List<String> messages = new ArrayList<>();
+
+        @Override public void updateMktDepth(int position, String marketMaker, DeepType operation, DeepSide side,
+                double price, int size) {
+            messages.add(position + " " + operation + " " + side + " " + price + " " + size);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.ib.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.ib.client.TickAttr;
+import com.ib.client.TickType;
+
+public class TopOfBookCacheTest {
+
+    @Test
+    public void read_afterTicks_holdsLatestValues() {
+        TopOfBookCache cache = new TopOfBookCache();
+        assertTrue(Double.isNaN(cache.read().bid()));
+
+        cache.tickPrice(TickType.BID, 10.0, new TickAttr());
+        cache.tickPrice(TickType.BID, 10.1, new TickAttr());
+        cache.tickSize(TickType.BID_SIZE, 300);
+        cache.tickPrice(TickType.ASK, 10.2, new TickAttr());
+        cache.tickSize(TickType.VOLUME, 12345);
+
+        TopOfBookCache.Snapshot snapshot = cache.read();
+        assertEquals(10.1, snapshot.bid(), 0);
+        assertEquals(300, snapshot.bidSize(), 0);
+        assertEquals(10.2, snapshot.ask(), 0);
+        assertEquals(12345, snapshot.volume(), 0);
+        assertTrue(Double.isNaN(snapshot.last()));
+        assertEquals(5, snapshot.updates());
+        assertEquals(5, cache.updates());
+    }
+
+    @Test
+    public void tickPrice_delayedAndUncachedTicks() {
+        TopOfBookCache cache = new TopOfBookCache();
+        cache.tickPrice(TickType.DELAYED_LAST, 20.5, new TickAttr());
+        cache.tickPrice(TickType.MARK_PRICE, 20.4, new TickAttr());
+
+        TopOfBookCache.Snapshot snapshot = cache.read();
+        assertEquals(20.5, snapshot.last(), 0);
+        assertEquals(20.5, snapshot.get(TickType.LAST), 0);
+        assertTrue(Double.isNaN(snapshot.get(TickType.MARK_PRICE)));
+        assertFalse(TopOfBookCache.isCached(TickType.MARK_PRICE));
+        assertEquals(1, cache.updates());
+    }
+
+    @Test
+    public void read_reusedSnapshot_isOverwritten() {
+        TopOfBookCache cache = new TopOfBookCache();
+        TopOfBookCache.Snapshot snapshot = new TopOfBookCache.Snapshot();
+        cache.tickPrice(TickType.BID, 1, new TickAttr());
+        assertSame(snapshot, cache.read(snapshot));
+        cache.tickPrice(TickType.BID, 2, new TickAttr());
+        assertEquals(2, cache.read(snapshot).bid(), 0);
+    }
+
+    /**
+     * The writer always stores the bid, then an ask equal to it, so a consistent snapshot has the ask at most one
+     * update behind the bid. A reader that copied the values while they were being updated could see the ask ahead.
+     */
+    @Test
+    public void read_whileUpdating_seesConsistentSnapshots() throws Exception {
+        TopOfBookCache cache = new TopOfBookCache();
+        AtomicReference<String> failure = new AtomicReference<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+
+        Thread writer = new Thread(() -> {
+            for (int i = 1; System.nanoTime() < deadline; i++) {
+                cache.update(TickType.BID.index(), i);
+                cache.update(TickType.ASK.index(), i);
+            }
+        });
+        writer.start();
+
+        TopOfBookCache.Snapshot snapshot = new TopOfBookCache.Snapshot();
+        long lastUpdates = 0;
+        while (writer.isAlive()) {
+            cache.read(snapshot);
+            double bid = snapshot.bid();
+            double ask = snapshot.ask();
+            if (snapshot.updates() < lastUpdates) {
+                failure.compareAndSet(null, "updates went back from " + lastUpdates + " to " + snapshot.updates());
+            }
+            lastUpdates = snapshot.updates();
+            if (lastUpdates > 1 && ask != bid && ask != bid - 1) {
+                failure.compareAndSet(null, "bid " + bid + " with ask " + ask);
+            }
+        }
+        writer.join();
+        assertNull(failure.get(), failure.get());
+    }
+}
@@ -0,0 +1,92 @@
+package logic;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.ContractBuilder;
+import model.ContractWithPriceDetail;
+import model.ModelManager;
+import model.RealTimeBarStore;
+
+public class EWrapperImplementationTest {
+    private static final int REQ_ID = 7;
+
+    @Test
+    public void onBatchEnd_barBelowThresholdWithinBatch_submitsContractOnce() throws Exception {
+        RecordingModel model = new RecordingModel();
+        ContractWithPriceDetail contract = registeredContract(model, 10.00);
+        EWrapperImplementation wrapper = new EWrapperImplementation(model);
+
+        wrapper.realtimeBar(REQ_ID, 0, 9.50, 0, 0, 0, 0, 0, 0);
+        wrapper.realtimeBar(REQ_ID, 0, 8.00, 0, 0, 0, 0, 0, 0);
+        wrapper.realtimeBar(REQ_ID, 0, 9.00, 0, 0, 0, 0, 0, 0);
+        assertEquals(0, model.ordered.size());
+
+        wrapper.onBatchEnd(3);
+
+        assertEquals(1, model.ordered.size());
+        assertEquals(9.00, contract.getCurrentPrice(), 0);
+    }
+
+    @Test
+    public void onBatchEnd_noBarBelowThreshold_submitsNothing() throws Exception {
+        RecordingModel model = new RecordingModel();
+        registeredContract(model, 10.00);
+        EWrapperImplementation wrapper = new EWrapperImplementation(model);
+
+        wrapper.realtimeBar(REQ_ID, 0, 9.50, 0, 0, 0, 0, 0, 0);
+        wrapper.onBatchEnd(1);
+        wrapper.onBatchEnd(0);
+
+        assertEquals(0, model.ordered.size());
+    }
+
+    @Test
+    public void onBatchEnd_cancelledRequest_ignoresBars() throws Exception {
+        RecordingModel model = new RecordingModel();
+        ContractWithPriceDetail contract = registeredContract(model, 10.00);
+        EWrapperImplementation wrapper = new EWrapperImplementation(model);
+
+        wrapper.realtimeBar(REQ_ID, 0, 5.00, 0, 0, 0, 0, 0, 0);
+        model.unregisterContractWithPriceDetailRequestId(contract);
+        wrapper.onBatchEnd(1);
+
+        assertEquals(0, model.ordered.size());
+    }
+
+    @Test
+    public void realtimeBar_registeredContract_storesBar() throws Exception {
+        RecordingModel model = new RecordingModel();
+        registeredContract(model, 10.00);
+        EWrapperImplementation wrapper = new EWrapperImplementation(model);
+
+        wrapper.realtimeBar(REQ_ID, 1500000000L, 9.50, 9.75, 9.25, 9.60, 300, 9.55, 12);
+
+        RealTimeBarStore bars = model.getRealTimeBarStore();
+        int slot = bars.slotOf(REQ_ID);
+        assertEquals(1, bars.barCount(slot));
+        assertEquals(9.60, bars.close(slot, 0), 0);
+        assertEquals(9.55, bars.wap(slot, 0), 0);
+    }
+
+    private static ContractWithPriceDetail registeredContract(ModelManager model, double openingPrice)
+            throws Exception {
+        ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail("AAPL", openingPrice);
+        contract.setRequestId(REQ_ID);
+        model.registerContractWithPriceDetailRequestId(contract);
+        return contract;
+    }
+
+    private static class RecordingModel extends ModelManager {
+        private final List<ContractWithPriceDetail> ordered = new ArrayList<>();
+
+        @Override
+        public void addContractWithPriceDetailToOrderList(ContractWithPriceDetail contractWithPriceDetail) {
+            ordered.add(contractWithPriceDetail);
+        }
+    }
+}
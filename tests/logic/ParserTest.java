@@ -1,14 +1,216 @@
 package logic;
 
-import static org.junit.Assert.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
-import org.junit.After;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.ContractWithPriceDetail;
+import model.Model;
+import model.ModelManager;
 
 public class ParserTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path csvFile;
+    private Model model;
+    private Parser parser;
+
+    @Before
+    public void setUp() throws IOException {
+        csvFile = temporaryFolder.newFile("tickersWithPrice.csv").toPath();
+        model = new ModelManager();
+        parser = new Parser(csvFile.toString(), model);
+    }
+
     @Test
-    public void parseCsvFile_returnsCorrectOutput() {
-        // TODO: add test
+    public void readDataUpdateModel_populatesTickerPriceHashMapOnly() throws IOException {
+        write("AAPL 10.5\nMSFT 20\n");
+
+        parser.readDataUpdateModel();
+
+        assertEquals(Double.valueOf(10.5), model.getTickerPriceHashMap().get("AAPL"));
+        assertEquals(Double.valueOf(20), model.getTickerPriceHashMap().get("MSFT"));
+        assertTrue(symbolsInContractList().isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void run_appendedLines_addsOnlyCompleteNewLines() throws IOException {
+        write("AAPL 10\nMSFT 20\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        append("GOOG 30\nTSL");
+        parser.run();
+        assertTrue(symbolsInContractList().contains("GOOG"));
+        assertEquals(3, symbolsInContractList().size());
+        assertFalse(model.getTickerPriceHashMap().containsKey("TSL"));
+
+        append("A 40\n");
+        parser.run();
+        assertEquals(Double.valueOf(40), model.getTickerPriceHashMap().get("TSLA"));
+        assertTrue(symbolsInContractList().contains("TSLA"));
+        assertEquals(4, symbolsInContractList().size());
+    }
+
+    @Test
+    public void readDataUpdateModel_lastLineWithoutNewline_addsItOnceUnchanged() throws IOException {
+        write("AAPL 10.5\nMSFT 20");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+        assertFalse(model.getTickerPriceHashMap().containsKey("MSFT"));
+
+        // the first scheduled run cannot yet tell whether the line is still being written
+        parser.run();
+        assertFalse(model.getTickerPriceHashMap().containsKey("MSFT"));
+
+        parser.run();
+        assertEquals(Double.valueOf(20), model.getTickerPriceHashMap().get("MSFT"));
+        assertTrue(symbolsInContractList().contains("MSFT"));
+    }
+
+    @Test
+    public void readDataUpdateModel_partialLineAtStartUp_readsCompletedLine() throws IOException {
+        write("AAPL 10\nMSFT 12");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+        assertFalse(model.getTickerPriceHashMap().containsKey("MSFT"));
+
+        append("3.45\n");
+        parser.run();
+        assertEquals(Double.valueOf(123.45), model.getTickerPriceHashMap().get("MSFT"));
+        assertTrue(symbolsInContractList().contains("MSFT"));
+        assertEquals(2, symbolsInContractList().size());
+    }
+
+    @Test
+    public void checkForUpdates_lastLineWithoutNewline_waitsForNewline() throws IOException {
+        write("AAPL 10\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        // a half-written line, reported as modified more than once before the rest of it arrives
+        append("GOOG 30\nMSFT 12");
+        parser.checkForUpdates(false);
+        parser.checkForUpdates(false);
+        assertFalse(model.getTickerPriceHashMap().containsKey("MSFT"));
+
+        append("3.45\n");
+        parser.checkForUpdates(false);
+        assertEquals(Double.valueOf(123.45), model.getTickerPriceHashMap().get("MSFT"));
+        assertTrue(symbolsInContractList().contains("MSFT"));
+        assertEquals(3, symbolsInContractList().size());
+    }
+
+    @Test
+    public void run_malformedPrice_skipsLineAndReadsOn() throws IOException {
+        write("AAPL 10\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        append("GOOG abc\nMSFT 20\n");
+        parser.run();
+        assertFalse(model.getTickerPriceHashMap().containsKey("GOOG"));
+        assertTrue(symbolsInContractList().contains("MSFT"));
+
+        // the malformed line has been read past rather than read again
+        append("TSLA 40\n");
+        parser.run();
+        assertTrue(symbolsInContractList().contains("TSLA"));
+        assertEquals(3, symbolsInContractList().size());
+    }
+
+    @Test
+    public void run_truncatedFile_rescansFromStart() throws IOException {
+        write("AAPL 10\nMSFT 20\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        // shorter than what has been read, so the parser cannot resume from its offset
+        write("NVDA 5\n");
+        parser.run();
+
+        assertTrue(symbolsInContractList().contains("NVDA"));
+        assertEquals(3, symbolsInContractList().size());
+    }
+
+    @Test
+    public void run_rotatedFile_rescansFromStart() throws IOException {
+        write("AAPL 10\nMSFT 20\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        // replace the file with a longer one, which resuming from the old offset would only partly read
+        File rotated = temporaryFolder.newFile("rotated.csv");
+        Files.write(rotated.toPath(), "GOOG 30\nTSLA 40\nAMZN 50\n".getBytes(StandardCharsets.UTF_8));
+        Files.move(rotated.toPath(), csvFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        parser.run();
+
+        List<String> symbols = symbolsInContractList();
+        assertTrue(symbols.contains("GOOG"));
+        assertTrue(symbols.contains("TSLA"));
+        assertTrue(symbols.contains("AMZN"));
+        assertEquals(5, symbols.size());
+    }
+
+    @Test
+    public void run_replacedFileWithoutNewline_addsLastLineOnceUnchanged() throws IOException {
+        write("AAPL 10\nMSFT 20\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        File rotated = temporaryFolder.newFile("rotated.csv");
+        Files.write(rotated.toPath(), "GOOG 30\nTSLA 40".getBytes(StandardCharsets.UTF_8));
+        Files.move(rotated.toPath(), csvFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        parser.run();
+        assertTrue(symbolsInContractList().contains("GOOG"));
+        assertFalse(model.getTickerPriceHashMap().containsKey("TSLA"));
+
+        parser.run();
+        assertTrue(symbolsInContractList().contains("TSLA"));
+        assertEquals(4, symbolsInContractList().size());
+    }
+
+    @Test
+    public void run_unchangedFile_addsNothing() throws IOException {
+        write("AAPL 10\n");
+        parser.readDataUpdateModel();
+        model.initializeModel();
+
+        parser.run();
+        parser.run();
+
+        assertEquals(1, symbolsInContractList().size());
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(csvFile, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void append(String content) throws IOException {
+        Files.write(csvFile, content.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private List<String> symbolsInContractList() {
+        List<String> symbols = new ArrayList<>();
+        for (ContractWithPriceDetail contract : model.getViewOnlyContractWithPriceDetailList()) {
+            symbols.add(contract.symbol());
+        }
+        return symbols;
+    }
+}
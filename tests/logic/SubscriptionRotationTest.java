@@ -0,0 +1,168 @@
+package logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.ib.client.DefaultEWrapper;
+
+import logic.backtest.SimulatedClient;
+import model.ContractBuilder;
+import model.ContractWithPriceDetail;
+import model.RealTimeBarStore;
+
+public class SubscriptionRotationTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final SimulatedClient client = new SimulatedClient(new DefaultEWrapper());
+    private final RealTimeBarStore store = new RealTimeBarStore(100, 10);
+    private final List<ContractWithPriceDetail> contracts = new ArrayList<>();
+
+    @Test
+    public void rotate_fillsSlotsThenRotatesOnlyAfterBar() throws Exception {
+        SubscriptionRotation rotation = rotation(3, 10, 10);
+
+        rotation.rotate(0);
+        assertEquals(3, client.getSubscriptions().size());
+        List<ContractWithPriceDetail> first = live(rotation);
+
+        // no bar yet, and not live for the maximum dwell
+        rotation.rotate(7 * SECOND);
+        assertEquals(first, live(rotation));
+
+        writeBarsForLive(rotation, 7, 10.00);
+        rotation.rotate(7 * SECOND);
+        assertEquals(3, client.getSubscriptions().size());
+        for (ContractWithPriceDetail contract : first) {
+            assertFalse(rotation.isLive(contract));
+        }
+    }
+
+    @Test
+    public void rotate_noBar_rotatedOutAfterMaxDwell() throws Exception {
+        SubscriptionRotation rotation = rotation(1, 2, 2);
+        rotation.rotate(0);
+        ContractWithPriceDetail first = live(rotation).get(0);
+
+        rotation.rotate(14 * SECOND);
+        assertTrue(rotation.isLive(first));
+        rotation.rotate(15 * SECOND);
+        assertFalse(rotation.isLive(first));
+        assertEquals(1, client.getSubscriptions().size());
+    }
+
+    @Test
+    public void rotate_everyContractCovered_closerToTriggerMoreOften() throws Exception {
+        SubscriptionRotation rotation = rotation(4, 10, 20);
+        // 10% below opening, 3% from its trigger; the others are at their opening price, 13% from theirs
+        ContractWithPriceDetail falling = contracts.get(0);
+
+        Map<ContractWithPriceDetail, Integer> subscriptions = new HashMap<>();
+        for (int second = 0; second <= 600; second += 6) {
+            writeBarsForLive(rotation, second, 10.00);
+            if (rotation.isLive(falling)) {
+                writeBar(falling, second, 9.00);
+            }
+            rotation.rotate(second * SECOND);
+            for (ContractWithPriceDetail contract : live(rotation)) {
+                subscriptions.merge(contract, 1, Integer::sum);
+            }
+            assertTrue(client.getSubscriptions().size() <= 4);
+        }
+
+        for (ContractWithPriceDetail contract : contracts) {
+            assertTrue(contract.symbol(), subscriptions.containsKey(contract));
+            assertTrue(rotation.getStalenessNanos(contract, 600 * SECOND) < 120 * SECOND);
+        }
+        assertTrue(subscriptions.get(falling) > 2 * subscriptions.get(contracts.get(1)));
+    }
+
+    @Test
+    public void rotate_withinPinDistance_keepsSlot() throws Exception {
+        SubscriptionRotation rotation = rotation(2, 10, 10);
+        rotation.rotate(0);
+        ContractWithPriceDetail pinned = live(rotation).get(0);
+
+        for (int second = 6; second <= 60; second += 6) {
+            writeBarsForLive(rotation, second, 10.00);
+            // 12.5% below opening, 0.5% from its trigger
+            writeBar(pinned, second, 8.75);
+            rotation.rotate(second * SECOND);
+            assertTrue(rotation.isLive(pinned));
+        }
+        assertEquals(2, client.getSubscriptions().size());
+    }
+
+    @Test
+    public void rotate_maxRequestsPerRotation_capsRequests() throws Exception {
+        SubscriptionRotation rotation = rotation(6, 4, 20);
+
+        rotation.rotate(0);
+        assertEquals(4, rotation.getLiveCount());
+        rotation.rotate(SECOND);
+        assertEquals(6, rotation.getLiveCount());
+
+        writeBarsForLive(rotation, 7, 10.00);
+        rotation.rotate(7 * SECOND);
+        // two swaps of a cancellation and a subscription each
+        assertEquals(8, rotation.getSubscriptionCount());
+    }
+
+    @Test
+    public void remove_liveContract_cancelledAndSlotReused() throws Exception {
+        SubscriptionRotation rotation = rotation(2, 10, 3);
+        rotation.rotate(0);
+        ContractWithPriceDetail removed = live(rotation).get(0);
+
+        rotation.remove(removed);
+        assertFalse(client.isSubscribed(removed.getRequestId()));
+        assertEquals(1, rotation.getLiveCount());
+
+        rotation.rotate(SECOND);
+        assertEquals(2, rotation.getLiveCount());
+        assertEquals(2, rotation.getWatchlistSize());
+        assertEquals(-1, rotation.getStalenessNanos(removed, SECOND));
+    }
+
+    /** A rotation of {@code watched} contracts opening at 10.00, each triggered 13% below its opening price */
+    private SubscriptionRotation rotation(int liveSlots, int maxRequestsPerRotation, int watched) throws Exception {
+        SubscriptionRotation rotation = new SubscriptionRotation(client, store, liveSlots, maxRequestsPerRotation, 6,
+                15, TimeUnit.SECONDS);
+        for (int i = 0; i < watched; i++) {
+            ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail("S" + i, 10.00, 13);
+            contract.setRequestId(i + 1);
+            store.open(i + 1);
+            contracts.add(contract);
+            rotation.add(contract, 0);
+        }
+        return rotation;
+    }
+
+    private List<ContractWithPriceDetail> live(SubscriptionRotation rotation) {
+        List<ContractWithPriceDetail> live = new ArrayList<>();
+        for (ContractWithPriceDetail contract : contracts) {
+            if (rotation.isLive(contract)) {
+                live.add(contract);
+            }
+        }
+        return live;
+    }
+
+    private void writeBarsForLive(SubscriptionRotation rotation, long second, double price) {
+        for (ContractWithPriceDetail contract : live(rotation)) {
+            writeBar(contract, second, price);
+        }
+    }
+
+    private void writeBar(ContractWithPriceDetail contract, long second, double price) {
+        store.write(contract.getRequestId(), second, price, price, price, price, 100, price, 1);
+    }
+}
@@ -0,0 +1,58 @@
+package logic.backtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays a full trading day of 5 second bars, 6.5 hours or 4680 bars per symbol, for a universe of random walks at
+ * maximum speed, once on one thread and once on every processor. A full day of 5000 symbols holds 1.4GB of bars, so
+ * run with e.g. {@code java -Xmx3g logic.backtest.BacktestBenchmark [symbols] [bars]}.
+ */
+public class BacktestBenchmark {
+    private static final int DEFAULT_SYMBOLS = 5000;
+    private static final int BARS_PER_DAY = 6 * 720 + 360;
+    private static final long MARKET_OPEN = 1500039000L;
+
+    public static void main(String[] args) throws Exception {
+        int symbols = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_SYMBOLS;
+        int bars = args.length > 1 ? Integer.parseInt(args[1]) : BARS_PER_DAY;
+        Logger.getLogger(Logger.GLOBAL_LOGGER_NAME).setLevel(Level.WARNING);
+
+        List<BarSeries> universe = randomWalks(symbols, bars, new Random(42));
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        // the first run warms up the JIT
+        new Backtest(BacktestClock.MAXIMUM_SPEED, processors).run(universe);
+
+        for (int parallelism : new int[] {1, processors}) {
+            BacktestReport report = new Backtest(BacktestClock.MAXIMUM_SPEED, parallelism).run(universe);
+            System.out.printf("%d threads: %d symbols, %d bars fed in %.2fs (%.0f bars/s), %d orders, %d filled, "
+                            + "P&L %.2f%n", parallelism, symbols, report.getBars(), report.getElapsedNanos() / 1e9,
+                    report.getBars() / (report.getElapsedNanos() / 1e9), report.getOrdersPlaced(),
+                    report.getOrdersFilled(), report.getProfitAndLoss());
+        }
+    }
+
+    /** Random walks of 5 second bars; one symbol in 20 crashes by a third around midday */
+    private static List<BarSeries> randomWalks(int symbols, int bars, Random random) {
+        List<BarSeries> universe = new ArrayList<>(symbols);
+        for (int s = 0; s < symbols; s++) {
+            BarSeries series = new BarSeries("SYM" + s);
+            double price = 1 + random.nextInt(100);
+            boolean crashes = s % 20 == 0;
+
+            for (int i = 0; i < bars; i++) {
+                double open = price;
+                price *= 1 + random.nextGaussian() * 0.001 - (crashes && Math.abs(i - bars / 2) < 60 ? 0.005 : 0);
+                double high = Math.max(open, price) * (1 + random.nextDouble() * 0.0005);
+                double low = Math.min(open, price) * (1 - random.nextDouble() * 0.0005);
+                series.add(MARKET_OPEN + 5L * i, open, high, low, price, 100, (open + price) / 2, 10);
+            }
+            universe.add(series);
+        }
+        return universe;
+    }
+}
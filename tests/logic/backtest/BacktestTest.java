@@ -0,0 +1,143 @@
+package logic.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BacktestTest {
+    private static final long START = 1500000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void run_dropBelowThresholdThenLimitReached_fillsOrderAndMarksToLastClose() throws Exception {
+        // opens at 10.00, so the order is a limit buy at 8.40 for floor(100 / 8.40) = 11 shares
+        BarSeries dropping = series("DROP", 10.00, 9.50, 8.60, 8.50, 9.00);
+        dropping.add(START + 25, 8.50, 8.60, 8.30, 9.00, 0, 0, 0);
+
+        BacktestReport report = new Backtest().run(Arrays.asList(dropping));
+
+        BacktestReport.SymbolResult result = report.getResult("DROP");
+        assertEquals(1, result.getOrders().size());
+        SimulatedOrder order = result.getOrders().get(0);
+        assertTrue(order.isBuy());
+        assertEquals(8.40, order.getLimitPrice(), 0);
+        assertEquals(11, order.getQuantity(), 0);
+        assertTrue(order.isFilled());
+        assertEquals(8.40, order.getFillPrice(), 0);
+        assertEquals(11 * (9.00 - 8.40), result.getProfitAndLoss(), 1e-9);
+    }
+
+    @Test
+    public void run_barsAfterOrder_notFedToStrategy() throws Exception {
+        BarSeries dropping = series("DROP", 10.00, 8.60, 8.00, 7.00);
+
+        BacktestReport report = new Backtest().run(Arrays.asList(dropping));
+
+        // the bar at 8.60 places the order and cancels the real time bars
+        assertEquals(2, report.getBars());
+        assertEquals(1, report.getOrdersPlaced());
+        // filled at the open of the next bar, which is below the limit
+        assertEquals(8.00, report.getResult("DROP").getOrders().get(0).getFillPrice(), 0);
+    }
+
+    @Test
+    public void run_limitNeverReached_leavesOrderWorking() throws Exception {
+        BarSeries dipping = series("DIP", 10.00, 8.60, 9.50, 9.80);
+
+        BacktestReport report = new Backtest().run(Arrays.asList(dipping));
+
+        SimulatedOrder order = report.getResult("DIP").getOrders().get(0);
+        assertFalse(order.isFilled());
+        assertEquals(0, report.getOrdersFilled());
+        assertEquals(0, report.getProfitAndLoss(), 0);
+    }
+
+    @Test
+    public void run_manySymbolsInParallel_sameResultAsOneThread() throws Exception {
+        List<BarSeries> universe = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            double open = 5 + i % 17;
+            // every third symbol falls far enough to be bought, reaches the limit and then recovers
+            boolean falls = i % 3 == 0;
+            universe.add(series("S" + i, open, open * 0.99, falls ? open * 0.86 : open * 0.95,
+                    falls ? open * 0.80 : open * 0.95, open));
+        }
+
+        BacktestReport parallel = new Backtest(BacktestClock.MAXIMUM_SPEED, 4).run(universe);
+        BacktestReport sequential = new Backtest(BacktestClock.MAXIMUM_SPEED, 1).run(universe);
+
+        assertEquals(67, parallel.getOrdersPlaced());
+        assertEquals(67, parallel.getOrdersFilled());
+        assertEquals(sequential.getProfitAndLoss(), parallel.getProfitAndLoss(), 1e-9);
+        assertEquals(sequential.getBars(), parallel.getBars());
+    }
+
+    @Test
+    public void run_scaledClock_waitsForBarTimes() throws Exception {
+        // 3 bars 5 seconds apart take 10 seconds of bar time, replayed 100 times faster
+        BarSeries flat = series("FLAT", 10.00, 10.00, 10.00);
+
+        long start = System.nanoTime();
+        BacktestReport report = new Backtest(BacktestClock.scaled(100), 2).run(Arrays.asList(flat));
+
+        assertTrue(System.nanoTime() - start >= 100_000_000L);
+        assertEquals(3, report.getBars());
+        assertEquals(0, report.getOrdersPlaced());
+    }
+
+    @Test
+    public void readUniverse_csvAndHistoricalDataFiles_readsBarsOfEachSymbol() throws IOException {
+        Path directory = folder.newFolder("bars").toPath();
+        write(directory.resolve("AAA.csv"),
+                "time,open,high,low,close,volume,wap,count",
+                "1500000000,10.0,10.5,9.5,10.25,1200,10.1,42",
+                "1500000005,10.25,10.5,10.0,10.0,300,10.2,7");
+        write(directory.resolve("BBB.txt"),
+                "HistoricalData. 3 - Date: 20170714  09:30:00, Open: 2.5, High: 2.75, Low: 2.25, Close: 2.6, "
+                        + "Volume: 100, Count: 5, WAP: 2.55",
+                "HistoricalDataEnd. 3 - Start Date: 20170714  09:30:00, End Date: 20170714  09:31:00");
+
+        List<BarSeries> universe = Backtest.readUniverse(directory);
+
+        assertEquals(2, universe.size());
+        BarSeries aaa = universe.get(0);
+        assertEquals("AAA", aaa.getSymbol());
+        assertEquals(2, aaa.size());
+        assertEquals(1500000005L, aaa.time(1));
+        assertEquals(10.25, aaa.close(0), 0);
+        assertEquals(42, aaa.count(0));
+
+        BarSeries bbb = universe.get(1);
+        assertEquals("BBB", bbb.getSymbol());
+        assertEquals(1, bbb.size());
+        assertEquals(2.25, bbb.low(0), 0);
+        assertEquals(2.55, bbb.wap(0), 0);
+    }
+
+    /** A series of bars 5 seconds apart, each opening and closing at the given price, with a low of that price */
+    private static BarSeries series(String symbol, double... prices) {
+        BarSeries series = new BarSeries(symbol);
+        for (int i = 0; i < prices.length; i++) {
+            series.add(START + 5 * i, prices[i], prices[i], prices[i], prices[i], 100, prices[i], 1);
+        }
+        return series;
+    }
+
+    private static void write(Path file, String... lines) throws IOException {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
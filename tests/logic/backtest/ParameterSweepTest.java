@@ -0,0 +1,80 @@
+package logic.backtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import model.StrategySettings;
+
+public class ParameterSweepTest {
+    private static final long START = 1500000000L;
+
+    @Test
+    public void grid_everyCombination() {
+        List<StrategySettings> grid = ParameterSweep.grid(new double[] {10, 13}, new double[] {16},
+                new double[] {100, 200, 300}, new int[] {1, 15});
+
+        assertEquals(2 * 1 * 3 * 2, grid.size());
+        assertEquals(10, grid.get(0).getMinimumPercentageDecrease(), 0);
+        assertEquals(13, grid.get(grid.size() - 1).getMinimumPercentageDecrease(), 0);
+        assertEquals(15, grid.get(grid.size() - 1).getMaxOrders());
+    }
+
+    @Test
+    public void run_rankedByProfitAndLoss_sameAsSingleBacktests() throws Exception {
+        // falls 14% and then 20% below its opening price of 10.00 before recovering to 9.50
+        List<BarSeries> universe = Arrays.asList(series("A", START, 10.00, 9.50, 8.60, 8.00, 9.50));
+        List<StrategySettings> grid = ParameterSweep.grid(new double[] {13, 18, 25}, new double[] {16, 19},
+                new double[] {100}, new int[] {15});
+
+        List<ParameterSweep.SweepResult> results = new ParameterSweep(3).run(universe, grid);
+
+        assertEquals(grid.size(), results.size());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getProfitAndLoss() >= results.get(i).getProfitAndLoss());
+        }
+        for (ParameterSweep.SweepResult result : results) {
+            BacktestReport single = new Backtest(BacktestClock.BAR_BY_BAR, 1).run(universe, result.getSettings());
+            assertEquals(single.getProfitAndLoss(), result.getProfitAndLoss(), 0);
+        }
+
+        // bought at 8.00, the open of the bar after 8.60, with a limit of 8.10 for floor(100 / 8.10) = 12 shares
+        ParameterSweep.SweepResult best = results.get(0);
+        assertEquals(13, best.getSettings().getMinimumPercentageDecrease(), 0);
+        assertEquals(19, best.getSettings().getPercentageBelowOpening(), 0);
+        assertEquals(12 * (9.50 - 8.00), best.getProfitAndLoss(), 1e-9);
+        // never falls 25%
+        assertEquals(0, results.get(results.size() - 1).getReport().getOrdersPlaced());
+    }
+
+    @Test
+    public void run_maxOrders_goToContractsThatFellFirst() throws Exception {
+        List<BarSeries> universe = new ArrayList<>();
+        // listed in the reverse of the order in which they fall
+        for (int i = 0; i < 5; i++) {
+            universe.add(series("S" + i, START + 5 * (5 - i), 10.00, 10.00, 8.00, 8.00));
+        }
+        List<StrategySettings> grid = ParameterSweep.grid(new double[] {13}, new double[] {16}, new double[] {100},
+                new int[] {2});
+
+        BacktestReport report = new ParameterSweep(2).run(universe, grid).get(0).getReport();
+
+        assertEquals(2, report.getOrdersPlaced());
+        assertEquals(1, report.getResult("S4").getOrders().size());
+        assertEquals(1, report.getResult("S3").getOrders().size());
+    }
+
+    /** A series of bars 5 seconds apart from {@code start}, each at the given price */
+    private static BarSeries series(String symbol, long start, double... prices) {
+        BarSeries series = new BarSeries(symbol);
+        for (int i = 0; i < prices.length; i++) {
+            series.add(start + 5 * i, prices[i], prices[i], prices[i], prices[i], 100, prices[i], 1);
+        }
+        return series;
+    }
+}
@@ -0,0 +1,90 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Compares the cost of matching a realtimeBar reqId to its contract by scanning the contract list against a lookup in
+ * {@link ContractRegistry}. Run with {@code java model.ContractRegistryBenchmark}.
+ */
+public class ContractRegistryBenchmark {
+    private static final int[] NUMBER_OF_CONTRACTS = {100, 1000, 10000};
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+    private static final int LOOKUPS_PER_ROUND = 100_000;
+
+    // consumed after each round so that the JIT cannot drop the lookups
+    private static long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%10s %18s %18s%n", "contracts", "linear scan ns/op", "registry ns/op");
+
+        for (int numberOfContracts : NUMBER_OF_CONTRACTS) {
+            ArrayList<ContractWithPriceDetail> contracts = new ArrayList<>(numberOfContracts);
+            ContractRegistry registry = new ContractRegistry(numberOfContracts);
+
+            for (int reqId = 1; reqId <= numberOfContracts; reqId++) {
+                ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail("SYM" + reqId, 10.00);
+                contract.setRequestId(reqId);
+                contracts.add(contract);
+                registry.register(contract);
+            }
+
+            int[] reqIds = randomReqIds(numberOfContracts);
+
+            double linearScan = measure(() -> {
+                long sum = 0;
+                for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+                    sum += linearScan(contracts, reqIds[i & (reqIds.length - 1)]).getRequestId();
+                }
+                return sum;
+            });
+            double registryLookup = measure(() -> {
+                long sum = 0;
+                for (int i = 0; i < LOOKUPS_PER_ROUND; i++) {
+                    sum += registry.get(reqIds[i & (reqIds.length - 1)]).getRequestId();
+                }
+                return sum;
+            });
+
+            System.out.printf("%10d %18.2f %18.2f%n", numberOfContracts, linearScan, registryLookup);
+        }
+        System.out.println("(checksum " + blackhole + ")");
+    }
+
+    /** The lookup ModelManager#retrieveContractWithPriceDetailByReqId performed before the registry was added */
+    private static ContractWithPriceDetail linearScan(ArrayList<ContractWithPriceDetail> contracts, int reqId) {
+        for (ContractWithPriceDetail contract : contracts) {
+            if (contract.getRequestId() == reqId) {
+                return contract;
+            }
+        }
+        return null;
+    }
+
+    private static int[] randomReqIds(int numberOfContracts) {
+        // power-of-two length so that the benchmark loops can index with a mask
+        int[] reqIds = new int[1 << 16];
+        Random random = new Random(42);
+        for (int i = 0; i < reqIds.length; i++) {
+            reqIds[i] = 1 + random.nextInt(numberOfContracts);
+        }
+        return reqIds;
+    }
+
+    /** Returns the average nanoseconds per lookup over the measured rounds */
+    private static double measure(Round round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            blackhole += round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            blackhole += round.run();
+        }
+        return (System.nanoTime() - start) / (double) (MEASURED_ROUNDS * (long) LOOKUPS_PER_ROUND);
+    }
+
+    private interface Round {
+        long run();
+    }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ContractRegistryTest {
+    @Test
+    public void register_contractWithRequestId_retrievableByRequestId() throws Exception {
+        ContractRegistry registry = new ContractRegistry(4);
+        ContractWithPriceDetail aapl = contractWithRequestId("AAPL", 7);
+        ContractWithPriceDetail msft = contractWithRequestId("MSFT", 8);
+
+        registry.register(aapl);
+        registry.register(msft);
+
+        assertSame(aapl, registry.get(7));
+        assertSame(msft, registry.get(8));
+        assertNull(registry.get(9));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    public void register_contractWithoutRequestId_ignored() {
+        ContractRegistry registry = new ContractRegistry(4);
+
+        registry.register(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+
+        assertEquals(0, registry.size());
+        assertNull(registry.get(-1));
+    }
+
+    @Test
+    public void remove_registeredRequestId_returnsAndForgetsContract() throws Exception {
+        ContractRegistry registry = new ContractRegistry(4);
+        ContractWithPriceDetail aapl = contractWithRequestId("AAPL", 7);
+        registry.register(aapl);
+
+        assertSame(aapl, registry.get(7));
+        assertSame(aapl, registry.remove(7));
+
+        assertNull(registry.get(7));
+        assertNull(registry.remove(7));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void unregister_cancelledRequest_lateCallbackFindsNothing() throws Exception {
+        ContractRegistry registry = new ContractRegistry(4);
+        ContractWithPriceDetail aapl = contractWithRequestId("AAPL", 7);
+        registry.register(aapl);
+
+        registry.unregister(aapl);
+
+        assertNull(registry.get(7));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void unregister_requestIdReusedByAnotherContract_keepsNewContract() throws Exception {
+        ContractRegistry registry = new ContractRegistry(4);
+        ContractWithPriceDetail aapl = contractWithRequestId("AAPL", 7);
+        ContractWithPriceDetail msft = contractWithRequestId("MSFT", 7);
+        registry.register(aapl);
+
+        // the id is handed to a new request before the old contract is cleaned up
+        registry.register(msft);
+        registry.unregister(aapl);
+
+        assertSame(msft, registry.get(7));
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    public void register_reusedRequestIdAfterRemoval_retrievable() throws Exception {
+        ContractRegistry registry = new ContractRegistry(2);
+
+        // cycle far more ids through the registry than it was sized for, reusing each id once it is removed
+        for (int round = 0; round < 1000; round++) {
+            ContractWithPriceDetail contract = contractWithRequestId("SYM" + round, round % 3);
+            registry.register(contract);
+            assertSame(contract, registry.get(round % 3));
+            registry.unregister(contract);
+            assertNull(registry.get(round % 3));
+        }
+
+        assertEquals(0, registry.size());
+    }
+
+    private static ContractWithPriceDetail contractWithRequestId(String symbol, int requestId) throws Exception {
+        ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail(symbol, 10.00);
+        contract.setRequestId(requestId);
+        return contract;
+    }
+}
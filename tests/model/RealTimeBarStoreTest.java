@@ -0,0 +1,90 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RealTimeBarStoreTest {
+    @Test
+    public void write_openedReqId_readsEveryColumnBack() {
+        RealTimeBarStore store = new RealTimeBarStore(4, 8);
+        int slot = store.open(7);
+
+        assertTrue(store.write(7, 1500000000L, 10.0, 10.5, 9.5, 10.25, 1200, 10.1, 42));
+
+        assertEquals(1, store.barCount(slot));
+        assertEquals(1500000000L, store.time(slot, 0));
+        assertEquals(10.0, store.open(slot, 0), 0);
+        assertEquals(10.5, store.high(slot, 0), 0);
+        assertEquals(9.5, store.low(slot, 0), 0);
+        assertEquals(10.25, store.close(slot, 0), 0);
+        assertEquals(1200, store.volume(slot, 0));
+        assertEquals(10.1, store.wap(slot, 0), 0);
+        assertEquals(42, store.count(slot, 0));
+    }
+
+    @Test
+    public void write_moreBarsThanCapacity_keepsLatestBars() {
+        RealTimeBarStore store = new RealTimeBarStore(4, 8);
+        int slot = store.open(7);
+
+        for (int time = 0; time < 20; time++) {
+            store.write(7, time, time, time, time, time, time, time, time);
+        }
+
+        assertEquals(8, store.barCount(slot));
+        assertEquals(20, store.totalBarCount(slot));
+        for (int barsAgo = 0; barsAgo < 8; barsAgo++) {
+            assertEquals(19 - barsAgo, store.time(slot, barsAgo));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void time_olderThanStoredBars_throwsIndexOutOfBoundsException() {
+        RealTimeBarStore store = new RealTimeBarStore(4, 8);
+        int slot = store.open(7);
+        store.write(7, 0, 1, 1, 1, 1, 1, 1, 1);
+
+        store.time(slot, 1);
+    }
+
+    @Test
+    public void write_contractsDoNotShareBars() {
+        RealTimeBarStore store = new RealTimeBarStore(4, 8);
+        int first = store.open(7);
+        int second = store.open(8);
+
+        store.write(7, 1, 10.0, 10.0, 10.0, 10.0, 1, 10.0, 1);
+        store.write(8, 1, 20.0, 20.0, 20.0, 20.0, 1, 20.0, 1);
+
+        assertNotEquals(first, second);
+        assertEquals(10.0, store.close(first, 0), 0);
+        assertEquals(20.0, store.close(second, 0), 0);
+    }
+
+    @Test
+    public void openAndClose_slotsAreBoundedAndReused() {
+        RealTimeBarStore store = new RealTimeBarStore(2, 8);
+        store.open(1);
+        int slot = store.open(2);
+        assertEquals(RealTimeBarStore.NO_SLOT, store.open(3));
+
+        store.write(2, 1, 1, 1, 1, 1, 1, 1, 1);
+        store.close(2);
+        assertFalse(store.write(2, 2, 1, 1, 1, 1, 1, 1, 1));
+        assertEquals(RealTimeBarStore.NO_SLOT, store.slotOf(2));
+
+        // the freed slot starts out empty for its new request
+        assertEquals(slot, store.open(3));
+        assertEquals(0, store.barCount(slot));
+        assertNotEquals(RealTimeBarStore.NO_SLOT, store.slotOf(1));
+    }
+
+    @Test
+    public void bytesFor_tenThousandContractsForAnHour() {
+        assertEquals(432_000_000L, RealTimeBarStore.bytesFor(10_000, 720));
+    }
+}
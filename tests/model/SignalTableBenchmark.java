@@ -0,0 +1,87 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * Compares the bars per second checked for a buy signal with {@link ContractWithPriceDetail#hasFallenBelowPercentage}
+ * against {@link SignalTable#hasFallenBelowTrigger}, and the contracts per second re-evaluated by
+ * {@link SignalTable#evaluateAll}. Run with {@code java model.SignalTableBenchmark}.
+ */
+public class SignalTableBenchmark {
+    private static final int[] NUMBER_OF_CONTRACTS = {1000, 10000, 100000};
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int BARS_PER_ROUND = 1 << 20;
+
+    // consumed after each round so that the JIT cannot drop the checks
+    private static long blackhole;
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %18s %18s %20s%n", "contracts", "contract bars/s", "table bars/s",
+                "evaluateAll ctr/s");
+
+        for (int numberOfContracts : NUMBER_OF_CONTRACTS) {
+            ContractWithPriceDetail[] contracts = new ContractWithPriceDetail[numberOfContracts];
+            SignalTable table = new SignalTable(numberOfContracts);
+            Random random = new Random(42);
+
+            for (int i = 0; i < numberOfContracts; i++) {
+                double openingPrice = 1.00 + random.nextInt(10000) / 100.00;
+                contracts[i] = ContractBuilder.buildContractWithPriceDetail("SYM" + i, openingPrice);
+                table.add(openingPrice, ContractBuilder.MINIMUM_PERCENTAGE_DECREASE);
+            }
+
+            // bars of random contracts within 10% of their opening price, so that none is triggered
+            int[] ids = new int[BARS_PER_ROUND];
+            double[] prices = new double[BARS_PER_ROUND];
+            for (int i = 0; i < BARS_PER_ROUND; i++) {
+                ids[i] = random.nextInt(numberOfContracts);
+                prices[i] = table.getOpeningPrice(ids[i]) * (0.90 + random.nextDouble() * 0.20);
+            }
+
+            double contractPath = measure(BARS_PER_ROUND, () -> {
+                long triggered = 0;
+                for (int i = 0; i < BARS_PER_ROUND; i++) {
+                    triggered += contracts[ids[i]].hasFallenBelowPercentage(prices[i]) ? 1 : 0;
+                }
+                return triggered;
+            });
+            double tablePath = measure(BARS_PER_ROUND, () -> {
+                long triggered = 0;
+                for (int i = 0; i < BARS_PER_ROUND; i++) {
+                    triggered += table.hasFallenBelowTrigger(ids[i], prices[i]) ? 1 : 0;
+                }
+                return triggered;
+            });
+
+            int[] triggeredIds = new int[numberOfContracts];
+            int evaluationsPerRound = Math.max(1, BARS_PER_ROUND / numberOfContracts);
+            double bulk = measure((long) evaluationsPerRound * numberOfContracts, () -> {
+                long triggered = 0;
+                for (int i = 0; i < evaluationsPerRound; i++) {
+                    triggered += table.evaluateAll(triggeredIds);
+                }
+                return triggered;
+            });
+
+            System.out.printf("%10d %18.3e %18.3e %20.3e%n", numberOfContracts, contractPath, tablePath, bulk);
+        }
+        System.out.println("(checksum " + blackhole + ")");
+    }
+
+    /** Returns the checks per second over the measured rounds of {@code checksPerRound} each */
+    private static double measure(long checksPerRound, Round round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            blackhole += round.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            blackhole += round.run();
+        }
+        return MEASURED_ROUNDS * (double) checksPerRound / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private interface Round {
+        long run();
+    }
+}
@@ -0,0 +1,78 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SignalTableTest {
+
+    @Test
+    public void hasFallenBelowTrigger_sameAsContract() {
+        SignalTable table = new SignalTable(1000);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 1000; i++) {
+            double openingPrice = 0.50 + random.nextInt(20000) / 100.00;
+            double percentage = 5 + random.nextInt(20);
+            ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail("S" + i, openingPrice,
+                    percentage);
+            int id = table.add(openingPrice, percentage);
+            assertEquals(i, id);
+
+            // prices away from the trigger price itself, which the contract's division can round either way
+            double price = table.getTriggerPrice(id) * (random.nextBoolean() ? 0.999 : 1.001);
+            assertEquals(contract.hasFallenBelowPercentage(price), table.hasFallenBelowTrigger(id, price));
+        }
+    }
+
+    @Test
+    public void hasFallenBelowTrigger_triggeredOnce() {
+        SignalTable table = new SignalTable(1);
+        int id = table.add(10.00, 13);
+
+        assertEquals(8.70, table.getTriggerPrice(id), 1e-9);
+        assertFalse(table.hasFallenBelowTrigger(id, 8.80));
+        assertTrue(table.hasFallenBelowTrigger(id, 8.60));
+        assertFalse(table.hasFallenBelowTrigger(id, 8.50));
+        assertTrue(table.isTriggered(id));
+        assertEquals(8.50, table.getLatestPrice(id), 0);
+    }
+
+    @Test
+    public void add_full_returnsNoId() {
+        SignalTable table = new SignalTable(2);
+        table.add(10.00, 13);
+        table.add(10.00, 13);
+
+        assertEquals(SignalTable.NO_ID, table.add(10.00, 13));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void evaluateAll_afterPercentageChange_findsNewlyTriggered() {
+        SignalTable table = new SignalTable(5);
+        for (int i = 0; i < 5; i++) {
+            table.add(10.00, 13);
+        }
+        // 10% down, 15% down and triggered, 11% down, retired at 20% down, no bar yet
+        table.hasFallenBelowTrigger(0, 9.00);
+        assertTrue(table.hasFallenBelowTrigger(1, 8.50));
+        table.hasFallenBelowTrigger(2, 8.90);
+        table.retire(3);
+        table.hasFallenBelowTrigger(3, 8.00);
+
+        int[] triggered = new int[5];
+        assertEquals(0, table.evaluateAll(triggered));
+
+        table.setPercentage(9.5);
+        assertEquals(9.5, table.getPercentage(4), 0);
+        assertEquals(2, table.evaluateAll(triggered));
+        assertEquals(0, triggered[0]);
+        assertEquals(2, triggered[1]);
+        assertEquals(0, table.evaluateAll(triggered));
+    }
+}
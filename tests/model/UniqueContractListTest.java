@@ -0,0 +1,108 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import model.exceptions.DuplicateContractException;
+import model.exceptions.FullContractListException;
+
+public class UniqueContractListTest {
+    @Test
+    public void addContract_duplicateSymbol_throwsDuplicateContractException() throws Exception {
+        UniqueContractList uniqueContractList = new UniqueContractList();
+        uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+
+        try {
+            // a different object with a different opening price is still the same contract
+            uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 12.00));
+            throw new AssertionError("Expected DuplicateContractException");
+        } catch (DuplicateContractException dce) {
+            assertEquals(1, uniqueContractList.size());
+        }
+    }
+
+    @Test
+    public void addContract_sameConid_throwsDuplicateContractException() throws Exception {
+        UniqueContractList uniqueContractList = new UniqueContractList();
+        ContractWithPriceDetail first = ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00);
+        first.conid(265598);
+        uniqueContractList.addContract(first);
+
+        ContractWithPriceDetail second = ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00);
+        second.conid(265598);
+        second.exchange("ISLAND");
+
+        try {
+            uniqueContractList.addContract(second);
+            throw new AssertionError("Expected DuplicateContractException");
+        } catch (DuplicateContractException dce) {
+            assertEquals(1, uniqueContractList.size());
+        }
+    }
+
+    @Test(expected = FullContractListException.class)
+    public void addContract_fullList_throwsFullContractListException() throws Exception {
+        UniqueContractList uniqueContractList = new UniqueContractList(2);
+        uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+        uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("MSFT", 10.00));
+        uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("GOOG", 10.00));
+    }
+
+    @Test(expected = FullContractListException.class)
+    public void addContract_duplicateToFullList_throwsFullContractListException() throws Exception {
+        // a full list is reported before a duplicate, as before
+        UniqueContractList uniqueContractList = new UniqueContractList(1);
+        uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+        uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+    }
+
+    @Test
+    public void removeContract_freesSpaceAndAllowsReadding() throws Exception {
+        UniqueContractList uniqueContractList = new UniqueContractList(1);
+        ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00);
+        uniqueContractList.addContract(contract);
+
+        uniqueContractList.removeContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+        assertFalse(uniqueContractList.contains(contract));
+
+        uniqueContractList.addContract(contract);
+        assertTrue(uniqueContractList.contains(contract));
+    }
+
+    @Test
+    public void getContractArrayWithPriceDetailList_preservesInsertionOrder() throws Exception {
+        UniqueContractList uniqueContractList = new UniqueContractList();
+        String[] symbols = {"TSLA", "AAPL", "MSFT", "AMZN", "GOOG"};
+        for (String symbol : symbols) {
+            uniqueContractList.addContract(ContractBuilder.buildContractWithPriceDetail(symbol, 10.00));
+        }
+        uniqueContractList.removeContract(ContractBuilder.buildContractWithPriceDetail("MSFT", 10.00));
+
+        ArrayList<ContractWithPriceDetail> contracts = uniqueContractList.getContractArrayWithPriceDetailList();
+        assertEquals(4, contracts.size());
+        assertEquals("TSLA", contracts.get(0).symbol());
+        assertEquals("AAPL", contracts.get(1).symbol());
+        assertEquals("AMZN", contracts.get(2).symbol());
+        assertEquals("GOOG", contracts.get(3).symbol());
+    }
+
+    @Test
+    public void getContractByRequestId_followsAddRegisterAndRemove() throws Exception {
+        UniqueContractList uniqueContractList = new UniqueContractList();
+        ContractWithPriceDetail contract = ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00);
+        uniqueContractList.addContract(contract);
+
+        contract.setRequestId(7);
+        uniqueContractList.registerRequestId(contract);
+        assertSame(contract, uniqueContractList.getContractByRequestId(7));
+
+        uniqueContractList.removeContract(contract);
+        assertEquals(null, uniqueContractList.getContractByRequestId(7));
+    }
+}
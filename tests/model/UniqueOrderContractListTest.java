@@ -0,0 +1,86 @@
+package model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observable;
+
+import org.junit.Test;
+
+import logic.Logic;
+import logic.Parser;
+import logic.SubscriptionRotation;
+import model.exceptions.DuplicateContractException;
+import model.exceptions.FullContractListException;
+
+public class UniqueOrderContractListTest {
+    @Test
+    public void addContract_duplicate_throwsWithoutPlacingSecondOrder() throws Exception {
+        RecordingLogic logic = new RecordingLogic();
+        UniqueOrderContractList uniqueOrderContractList = new UniqueOrderContractList(15);
+        uniqueOrderContractList.setLogic(logic);
+
+        uniqueOrderContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+        try {
+            uniqueOrderContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+            throw new AssertionError("Expected DuplicateContractException");
+        } catch (DuplicateContractException dce) {
+            assertEquals(1, logic.ordersPlaced.size());
+            assertEquals(1, logic.cancelledRealTimeBars.size());
+        }
+    }
+
+    @Test
+    public void addContract_full_throwsWithoutPlacingOrderAndCancelsBars() throws Exception {
+        RecordingLogic logic = new RecordingLogic();
+        UniqueOrderContractList uniqueOrderContractList = new UniqueOrderContractList(1);
+        uniqueOrderContractList.setLogic(logic);
+
+        uniqueOrderContractList.addContract(ContractBuilder.buildContractWithPriceDetail("AAPL", 10.00));
+        try {
+            uniqueOrderContractList.addContract(ContractBuilder.buildContractWithPriceDetail("MSFT", 10.00));
+            throw new AssertionError("Expected FullContractListException");
+        } catch (FullContractListException fcle) {
+            assertEquals(1, logic.ordersPlaced.size());
+            assertEquals("AAPL", logic.ordersPlaced.get(0).symbol());
+            assertEquals("MSFT", logic.cancelledRealTimeBars.get(1).symbol());
+        }
+    }
+
+    /** Records the calls UniqueOrderContractList makes to Logic */
+    private static class RecordingLogic implements Logic {
+        private final List<ContractWithPriceDetail> ordersPlaced = new ArrayList<>();
+        private final List<ContractWithPriceDetail> cancelledRealTimeBars = new ArrayList<>();
+
+        @Override
+        public void placeLimitBuyOrder(ContractWithPriceDetail contract, double percentageBelow, double sum) {
+            ordersPlaced.add(contract);
+        }
+
+        @Override
+        public void cancelRealTimeBarsForContract(ContractWithPriceDetail contract) {
+            cancelledRealTimeBars.add(contract);
+        }
+
+        @Override
+        public void getRealTimeBars() {}
+
+        @Override
+        public void setSubscriptionRotation(SubscriptionRotation subscriptionRotation) {}
+
+        @Override
+        public Parser getParser() {
+            return null;
+        }
+
+        @Override
+        public void requestAccountUpdates() {}
+
+        @Override
+        public void closeAllActivePositionsAtMarketOpen() {}
+
+        @Override
+        public void update(Observable o, Object arg) {}
+    }
+}